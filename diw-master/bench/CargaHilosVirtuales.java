@@ -0,0 +1,134 @@
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Banco de carga para comparar el modo de hilos virtuales con el de hilos de plataforma.
+ *
+ * <p>Lanza {@code concurrencia} clientes en bucle cerrado contra los listados de administración y,
+ * tras un calentamiento, informa del rendimiento y de los percentiles de latencia. Las páginas de
+ * libros se sirven casi siempre desde la caché de respuestas; el listado de usuarios consulta la
+ * base de datos en cada petición. Es un programa de un solo fichero; no forma parte de la
+ * compilación de Maven.</p>
+ *
+ * <pre>
+ * # Servidor con hilos de plataforma
+ * ./mvnw spring-boot:run
+ * java bench/CargaHilosVirtuales.java http://localhost:8080 1000 30
+ *
+ * # Servidor con hilos virtuales
+ * ./mvnw spring-boot:run -Dspring-boot.run.profiles=virtual
+ * java bench/CargaHilosVirtuales.java http://localhost:8080 1000 30
+ * </pre>
+ *
+ * Argumentos: URL base, clientes concurrentes (1000), segundos de medida (30), segundos de calentamiento (10).
+ */
+public class CargaHilosVirtuales {
+
+    private static final String[] RUTAS = {
+            "/admin/libros?tamanio=50&orden=titulo",
+            "/admin/libros?tamanio=50",
+            "/admin/usuarios?tamanio=50"
+    };
+
+    public static void main(String[] args) throws Exception {
+        String base = args.length > 0 ? args[0] : "http://localhost:8080";
+        int concurrencia = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        int segundos = args.length > 2 ? Integer.parseInt(args[2]) : 30;
+        int calentamiento = args.length > 3 ? Integer.parseInt(args[3]) : 10;
+
+        String credenciales = "Basic " + Base64.getEncoder()
+                .encodeToString("admin:adminpass".getBytes(StandardCharsets.UTF_8));
+        List<HttpRequest> peticiones = Arrays.stream(RUTAS)
+                .map(ruta -> HttpRequest.newBuilder(URI.create(base + ruta))
+                        .header("Authorization", credenciales)
+                        .timeout(Duration.ofSeconds(60))
+                        .build())
+                .toList();
+
+        try (ExecutorService clientes = Executors.newVirtualThreadPerTaskExecutor()) {
+            HttpClient http = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .executor(clientes)
+                    .build();
+
+            System.out.printf("Calentamiento: %d clientes durante %d s%n", concurrencia, calentamiento);
+            ejecutar(http, clientes, peticiones, concurrencia, calentamiento);
+
+            System.out.printf("Medida: %d clientes durante %d s%n", concurrencia, segundos);
+            Resultado resultado = ejecutar(http, clientes, peticiones, concurrencia, segundos);
+            resultado.imprimir(segundos);
+        }
+    }
+
+    private static Resultado ejecutar(HttpClient http, ExecutorService clientes, List<HttpRequest> peticiones,
+                                      int concurrencia, int segundos) throws InterruptedException {
+        long fin = System.nanoTime() + Duration.ofSeconds(segundos).toNanos();
+        long[][] latenciasPorCliente = new long[concurrencia][];
+        AtomicLong errores = new AtomicLong();
+        CountDownLatch terminados = new CountDownLatch(concurrencia);
+
+        for (int c = 0; c < concurrencia; c++) {
+            int cliente = c;
+            long[][] latencias = {new long[1024]};
+            int[] total = {0};
+            clientes.submit(() -> {
+                try {
+                    while (System.nanoTime() < fin) {
+                        HttpRequest peticion = peticiones.get((cliente + total[0]) % peticiones.size());
+                        long inicio = System.nanoTime();
+                        try {
+                            HttpResponse<Void> respuesta = http.send(peticion, HttpResponse.BodyHandlers.discarding());
+                            if (respuesta.statusCode() >= 400) {
+                                errores.incrementAndGet();
+                            }
+                        } catch (Exception e) {
+                            errores.incrementAndGet();
+                        }
+                        if (total[0] == latencias[0].length) {
+                            latencias[0] = Arrays.copyOf(latencias[0], total[0] * 2);
+                        }
+                        latencias[0][total[0]++] = System.nanoTime() - inicio;
+                    }
+                } finally {
+                    latenciasPorCliente[cliente] = Arrays.copyOf(latencias[0], total[0]);
+                    terminados.countDown();
+                }
+            });
+        }
+        terminados.await();
+
+        long[] todas = Arrays.stream(latenciasPorCliente).flatMapToLong(Arrays::stream).sorted().toArray();
+        return new Resultado(todas, errores.get());
+    }
+
+    private record Resultado(long[] latenciasOrdenadas, long errores) {
+
+        void imprimir(int segundos) {
+            int n = latenciasOrdenadas.length;
+            System.out.printf("Peticiones: %d  errores: %d  rendimiento: %.1f pet/s%n",
+                    n, errores, n / (double) segundos);
+            if (n == 0) {
+                return;
+            }
+            System.out.printf("Latencia (ms)  p50: %.2f  p90: %.2f  p99: %.2f  p99.9: %.2f  máx: %.2f%n",
+                    percentil(0.50), percentil(0.90), percentil(0.99), percentil(0.999),
+                    latenciasOrdenadas[n - 1] / 1e6);
+        }
+
+        double percentil(double p) {
+            int indice = (int) Math.ceil(p * latenciasOrdenadas.length) - 1;
+            return latenciasOrdenadas[Math.max(0, indice)] / 1e6;
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.diw.practica.carga;
+
+import java.net.URI;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Parámetros de una ejecución, leídos de argumentos {@code -clave=valor}.
+ *
+ * @param url             URL base de la aplicación
+ * @param tasa            peticiones por segundo que se lanzan, independientemente de las respuestas
+ * @param duracion        duración de la medida
+ * @param calentamiento   duración del calentamiento, cuyos resultados se descartan
+ * @param mezcla          peso relativo de cada operación
+ * @param usuarios        usuarios que se crean para la prueba
+ * @param librosCalientes libros sobre los que se concentran préstamos y devoluciones
+ * @param libros          tamaño mínimo del catálogo (afecta al listado de disponibles)
+ * @param maximoEnVuelo   peticiones simultáneas a partir de las cuales se descartan nuevas llegadas
+ * @param credencialesUsuario credenciales Basic para {@code /usuarios/**}
+ * @param credencialesAdmin   credenciales Basic para preparar los datos en {@code /admin/**}
+ * @param salida          directorio donde se escriben las distribuciones de percentiles
+ */
+record Configuracion(
+        URI url,
+        int tasa,
+        Duration duracion,
+        Duration calentamiento,
+        Map<Operacion, Integer> mezcla,
+        int usuarios,
+        int librosCalientes,
+        int libros,
+        int maximoEnVuelo,
+        String credencialesUsuario,
+        String credencialesAdmin,
+        Path salida
+) {
+
+    static final String AYUDA = """
+            Uso: GeneradorCarga [-clave=valor ...]
+              -url=http://localhost:8080
+              -tasa=200                 peticiones por segundo (llegadas a ritmo constante)
+              -duracion=60              segundos de medida
+              -calentamiento=15         segundos de calentamiento
+              -mezcla=prestamo=40,devolucion=40,disponibles=20
+              -usuarios=200             usuarios creados para la prueba
+              -librosCalientes=5        libros sobre los que compiten los préstamos
+              -libros=1000              tamaño mínimo del catálogo
+              -maximoEnVuelo=10000      límite de peticiones simultáneas
+              -usuario=user:userpass    credenciales para /usuarios/**
+              -admin=admin:adminpass    credenciales para preparar datos en /admin/**
+              -salida=target/carga      directorio de las distribuciones (.hgrm)
+            """;
+
+    static Configuracion desdeArgumentos(String[] args) {
+        Map<String, String> valores = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("-") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Argumento no válido: " + arg);
+            }
+            int igual = arg.indexOf('=');
+            valores.put(arg.substring(1, igual), arg.substring(igual + 1));
+        }
+        Configuracion configuracion = new Configuracion(
+                URI.create(valores.getOrDefault("url", "http://localhost:8080")),
+                entero(valores, "tasa", 200),
+                Duration.ofSeconds(entero(valores, "duracion", 60)),
+                Duration.ofSeconds(entero(valores, "calentamiento", 15)),
+                mezcla(valores.getOrDefault("mezcla", "prestamo=40,devolucion=40,disponibles=20")),
+                entero(valores, "usuarios", 200),
+                entero(valores, "librosCalientes", 5),
+                entero(valores, "libros", 1000),
+                entero(valores, "maximoEnVuelo", 10_000),
+                valores.getOrDefault("usuario", "user:userpass"),
+                valores.getOrDefault("admin", "admin:adminpass"),
+                Path.of(valores.getOrDefault("salida", "target/carga")));
+        if (configuracion.tasa < 1 || configuracion.usuarios < 1 || configuracion.librosCalientes < 1) {
+            throw new IllegalArgumentException("tasa, usuarios y librosCalientes deben ser positivos");
+        }
+        return configuracion;
+    }
+
+    private static int entero(Map<String, String> valores, String clave, int porDefecto) {
+        String valor = valores.get(clave);
+        try {
+            return valor != null ? Integer.parseInt(valor) : porDefecto;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Valor no numérico para -" + clave + ": " + valor, e);
+        }
+    }
+
+    private static Map<Operacion, Integer> mezcla(String texto) {
+        Map<Operacion, Integer> mezcla = new EnumMap<>(Operacion.class);
+        for (String parte : texto.split(",")) {
+            String[] claveValor = parte.split("=");
+            if (claveValor.length != 2) {
+                throw new IllegalArgumentException("Mezcla no válida: " + texto);
+            }
+            int peso = Integer.parseInt(claveValor[1].strip());
+            if (peso < 0) {
+                throw new IllegalArgumentException("Peso negativo en la mezcla: " + parte);
+            }
+            mezcla.put(Operacion.desdeClave(claveValor[0]), peso);
+        }
+        if (mezcla.values().stream().mapToInt(Integer::intValue).sum() == 0) {
+            throw new IllegalArgumentException("La mezcla no contiene ninguna operación");
+        }
+        return mezcla;
+    }
+}
@@ -0,0 +1,165 @@
+package com.diw.practica.carga;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Datos de la prueba y construcción de las peticiones.
+ *
+ * <p>Antes de medir crea los usuarios y los libros calientes a través de la API de administración
+ * y completa el catálogo con una importación CSV. Durante la carga recuerda qué usuario tiene cada
+ * libro caliente para que las devoluciones, como en producción, las haga el prestatario.</p>
+ */
+final class Escenario {
+
+    private static final Pattern ID = Pattern.compile("\"id\"\\s*:\\s*(\\d+)");
+    private static final Duration TIEMPO_MAXIMO_PETICION = Duration.ofSeconds(30);
+
+    private final Configuracion configuracion;
+    private final HttpClient http;
+    private final String autorizacionUsuario;
+    private final String autorizacionAdmin;
+
+    private final List<Integer> usuarios = new ArrayList<>();
+    private final List<Integer> librosCalientes = new ArrayList<>();
+    private final Map<Integer, Integer> prestatarios = new ConcurrentHashMap<>();
+
+    Escenario(Configuracion configuracion, HttpClient http) {
+        this.configuracion = configuracion;
+        this.http = http;
+        this.autorizacionUsuario = basic(configuracion.credencialesUsuario());
+        this.autorizacionAdmin = basic(configuracion.credencialesAdmin());
+    }
+
+    /**
+     * Crea usuarios, libros calientes y el resto del catálogo.
+     */
+    void preparar() throws IOException, InterruptedException {
+        long sufijo = System.currentTimeMillis();
+        for (int i = 0; i < configuracion.usuarios(); i++) {
+            usuarios.add(crear("/admin/usuarios",
+                    "{\"nombre\":\"carga-" + sufijo + "-" + i + "\",\"rol\":\"ALUMNO\"}"));
+        }
+        for (int i = 0; i < configuracion.librosCalientes(); i++) {
+            librosCalientes.add(crear("/admin/libros",
+                    "{\"titulo\":\"Libro caliente " + sufijo + "-" + i + "\",\"autor\":\"Carga\","
+                            + "\"anioPublicacion\":2024,\"estadoLibro\":\"DISPONIBLE\"}"));
+        }
+        int restantes = configuracion.libros() - configuracion.librosCalientes();
+        if (restantes > 0) {
+            StringBuilder csv = new StringBuilder("titulo,autor,aniopublicacion,editorial\n");
+            for (int i = 0; i < restantes; i++) {
+                csv.append("Libro de catálogo ").append(sufijo).append('-').append(i)
+                        .append(",Autor ").append(i % 97)
+                        .append(',').append(1950 + i % 75)
+                        .append(",Editorial ").append(i % 13).append('\n');
+            }
+            HttpResponse<String> respuesta = http.send(HttpRequest.newBuilder(uri("/admin/libros/importacion"))
+                            .header("Authorization", autorizacionAdmin)
+                            .header("Content-Type", "text/csv")
+                            .POST(HttpRequest.BodyPublishers.ofString(csv.toString(), StandardCharsets.UTF_8))
+                            .build(),
+                    HttpResponse.BodyHandlers.ofString());
+            comprobar(respuesta, "importar el catálogo");
+        }
+    }
+
+    /**
+     * Construye la petición de una operación, eligiendo usuario y libro al azar.
+     */
+    Peticion peticion(Operacion operacion) {
+        ThreadLocalRandom aleatorio = ThreadLocalRandom.current();
+        return switch (operacion) {
+            case PRESTAMO -> {
+                int usuario = usuarios.get(aleatorio.nextInt(usuarios.size()));
+                int libro = librosCalientes.get(aleatorio.nextInt(librosCalientes.size()));
+                yield new Peticion(operacion, usuario, libro,
+                        post("/usuarios/" + usuario + "/prestamos/" + libro));
+            }
+            case DEVOLUCION -> {
+                int libro = librosCalientes.get(aleatorio.nextInt(librosCalientes.size()));
+                Integer prestatario = prestatarios.get(libro);
+                int usuario = prestatario != null ? prestatario : usuarios.get(aleatorio.nextInt(usuarios.size()));
+                yield new Peticion(operacion, usuario, libro,
+                        post("/usuarios/" + usuario + "/devoluciones/" + libro));
+            }
+            case DISPONIBLES -> new Peticion(operacion, 0, 0, HttpRequest.newBuilder(uri("/usuarios/libros/disponibles"))
+                    .header("Authorization", autorizacionUsuario)
+                    .timeout(TIEMPO_MAXIMO_PETICION)
+                    .GET()
+                    .build());
+        };
+    }
+
+    /**
+     * Actualiza el registro de prestatarios con el resultado de una petición.
+     */
+    void registrarResultado(Peticion peticion, int estado) {
+        if (estado / 100 != 2) {
+            return;
+        }
+        switch (peticion.operacion()) {
+            case PRESTAMO -> prestatarios.put(peticion.libro(), peticion.usuario());
+            case DEVOLUCION -> prestatarios.remove(peticion.libro(), peticion.usuario());
+            default -> {
+            }
+        }
+    }
+
+    private HttpRequest post(String ruta) {
+        return HttpRequest.newBuilder(uri(ruta))
+                .header("Authorization", autorizacionUsuario)
+                .timeout(TIEMPO_MAXIMO_PETICION)
+                .POST(HttpRequest.BodyPublishers.noBody())
+                .build();
+    }
+
+    private int crear(String ruta, String json) throws IOException, InterruptedException {
+        HttpResponse<String> respuesta = http.send(HttpRequest.newBuilder(uri(ruta))
+                        .header("Authorization", autorizacionAdmin)
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofString(json, StandardCharsets.UTF_8))
+                        .build(),
+                HttpResponse.BodyHandlers.ofString());
+        comprobar(respuesta, "crear " + ruta);
+        Matcher matcher = ID.matcher(respuesta.body());
+        if (!matcher.find()) {
+            throw new IllegalStateException("La respuesta de " + ruta + " no contiene un id: " + respuesta.body());
+        }
+        return Integer.parseInt(matcher.group(1));
+    }
+
+    private URI uri(String ruta) {
+        return configuracion.url().resolve(ruta);
+    }
+
+    private static void comprobar(HttpResponse<String> respuesta, String accion) {
+        if (respuesta.statusCode() / 100 != 2) {
+            throw new IllegalStateException("No se pudo " + accion + ": HTTP " + respuesta.statusCode()
+                    + " " + respuesta.body());
+        }
+    }
+
+    private static String basic(String credenciales) {
+        return "Basic " + Base64.getEncoder().encodeToString(credenciales.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Petición lista para enviar, con los datos necesarios para interpretar su respuesta.
+     */
+    record Peticion(Operacion operacion, int usuario, int libro, HttpRequest http) {
+    }
+}
@@ -0,0 +1,139 @@
+package com.diw.practica.carga;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Resultados acumulados por operación.
+ *
+ * <p>Cada respuesta se registra dos veces: la latencia <em>corregida</em> se mide desde el instante
+ * en que la petición debía lanzarse según la tasa configurada, de modo que las esperas provocadas por
+ * un servidor saturado cuentan (corrección de la omisión coordinada); la <em>sin corregir</em> se
+ * mide desde el envío real, como haría un cliente en bucle cerrado.</p>
+ */
+final class Estadisticas {
+
+    private static final int DIGITOS_SIGNIFICATIVOS = 3;
+
+    private final Map<Operacion, PorOperacion> porOperacion = new EnumMap<>(Operacion.class);
+
+    Estadisticas() {
+        for (Operacion operacion : Operacion.values()) {
+            porOperacion.put(operacion, new PorOperacion());
+        }
+    }
+
+    /**
+     * Registra una respuesta.
+     *
+     * @param operacion   operación ejecutada
+     * @param estado      código HTTP, o 0 si la petición falló sin respuesta
+     * @param previsto    instante previsto de lanzamiento ({@link System#nanoTime()})
+     * @param enviado     instante real de envío
+     * @param recibido    instante de recepción de la respuesta
+     */
+    void registrar(Operacion operacion, int estado, long previsto, long enviado, long recibido) {
+        PorOperacion datos = porOperacion.get(operacion);
+        datos.corregida.recordValue(microsegundos(recibido - previsto));
+        datos.sinCorregir.recordValue(microsegundos(recibido - enviado));
+        if (estado / 100 == 2) {
+            datos.correctas.increment();
+        } else if (estado == 400 || estado == 404 || estado == 409) {
+            // Préstamo de un libro ya prestado o devolución de un libro no prestado: resultado de negocio
+            datos.rechazos.increment();
+        } else {
+            datos.errores.increment();
+        }
+    }
+
+    /**
+     * Registra una llegada que no se lanzó por superar el máximo de peticiones en vuelo.
+     */
+    void descartar(Operacion operacion) {
+        porOperacion.get(operacion).descartadas.increment();
+    }
+
+    void imprimir(PrintStream salida, Duration duracion) {
+        double segundos = duracion.toMillis() / 1000.0;
+        salida.printf("%-12s %9s %9s %8s %8s %8s %10s %10s %10s %10s %10s %14s%n",
+                "operación", "peticiones", "pet/s", "rechazo", "error", "descarte",
+                "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "máx ms", "p99 sin corr.");
+        Histogram totalCorregida = new Histogram(DIGITOS_SIGNIFICATIVOS);
+        Histogram totalSinCorregir = new Histogram(DIGITOS_SIGNIFICATIVOS);
+        long[] total = new long[4];
+        for (Map.Entry<Operacion, PorOperacion> entrada : porOperacion.entrySet()) {
+            PorOperacion datos = entrada.getValue();
+            long correctas = datos.correctas.sum();
+            long rechazos = datos.rechazos.sum();
+            long errores = datos.errores.sum();
+            long descartadas = datos.descartadas.sum();
+            imprimirFila(salida, entrada.getKey().getClave(), correctas, rechazos, errores, descartadas,
+                    datos.corregida, datos.sinCorregir, segundos);
+            totalCorregida.add(datos.corregida);
+            totalSinCorregir.add(datos.sinCorregir);
+            total[0] += correctas;
+            total[1] += rechazos;
+            total[2] += errores;
+            total[3] += descartadas;
+        }
+        imprimirFila(salida, "total", total[0], total[1], total[2], total[3],
+                totalCorregida, totalSinCorregir, segundos);
+    }
+
+    /**
+     * Escribe la distribución de percentiles corregida de cada operación en formato {@code .hgrm}.
+     */
+    void escribirDistribuciones(Path directorio) throws IOException {
+        Files.createDirectories(directorio);
+        for (Map.Entry<Operacion, PorOperacion> entrada : porOperacion.entrySet()) {
+            Path fichero = directorio.resolve(entrada.getKey().getClave() + ".hgrm");
+            try (PrintStream salida = new PrintStream(Files.newOutputStream(fichero))) {
+                // Valores en microsegundos; se escalan a milisegundos
+                entrada.getValue().corregida.outputPercentileDistribution(salida, 1000.0);
+            }
+        }
+    }
+
+    private static void imprimirFila(PrintStream salida, String nombre, long correctas, long rechazos,
+                                     long errores, long descartadas, Histogram corregida,
+                                     Histogram sinCorregir, double segundos) {
+        long peticiones = correctas + rechazos + errores + descartadas;
+        salida.printf("%-12s %9d %9.1f %7.2f%% %7.2f%% %7.2f%% %10.2f %10.2f %10.2f %10.2f %10.2f %14.2f%n",
+                nombre, peticiones, (correctas + rechazos + errores) / segundos,
+                porcentaje(rechazos, peticiones), porcentaje(errores, peticiones), porcentaje(descartadas, peticiones),
+                ms(corregida, 50), ms(corregida, 90), ms(corregida, 99), ms(corregida, 99.9),
+                corregida.getTotalCount() == 0 ? 0 : corregida.getMaxValue() / 1000.0,
+                ms(sinCorregir, 99));
+    }
+
+    private static double ms(Histogram histograma, double percentil) {
+        return histograma.getTotalCount() == 0 ? 0 : histograma.getValueAtPercentile(percentil) / 1000.0;
+    }
+
+    private static double porcentaje(long parte, long total) {
+        return total == 0 ? 0 : 100.0 * parte / total;
+    }
+
+    private static long microsegundos(long nanos) {
+        return Math.max(1, TimeUnit.NANOSECONDS.toMicros(nanos));
+    }
+
+    private static final class PorOperacion {
+        private final ConcurrentHistogram corregida = new ConcurrentHistogram(DIGITOS_SIGNIFICATIVOS);
+        private final ConcurrentHistogram sinCorregir = new ConcurrentHistogram(DIGITOS_SIGNIFICATIVOS);
+        private final LongAdder correctas = new LongAdder();
+        private final LongAdder rechazos = new LongAdder();
+        private final LongAdder errores = new LongAdder();
+        private final LongAdder descartadas = new LongAdder();
+    }
+}
@@ -0,0 +1,148 @@
+package com.diw.practica.carga;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Generador de carga en bucle abierto para la API de préstamos.
+ *
+ * <p>Las peticiones se lanzan a una tasa constante, cada una en su propio hilo virtual, sin esperar
+ * a que terminen las anteriores: un servidor lento no frena la llegada de peticiones, igual que no
+ * frena a los usuarios reales. La latencia se mide desde el instante previsto de cada llegada
+ * (ver {@link Estadisticas}).</p>
+ *
+ * <p>Reproduce el patrón de contención de producción: muchos usuarios compitiendo por préstamos
+ * sobre unos pocos libros calientes, junto con lecturas del listado de disponibles.</p>
+ */
+public final class GeneradorCarga {
+
+    private final Configuracion configuracion;
+    private final HttpClient http;
+    private final Escenario escenario;
+    private final Operacion[] ruleta;
+
+    private GeneradorCarga(Configuracion configuracion, HttpClient http) {
+        this.configuracion = configuracion;
+        this.http = http;
+        this.escenario = new Escenario(configuracion, http);
+        this.ruleta = ruleta(configuracion.mezcla());
+    }
+
+    public static void main(String[] args) throws Exception {
+        Configuracion configuracion;
+        try {
+            configuracion = Configuracion.desdeArgumentos(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.print(Configuracion.AYUDA);
+            System.exit(2);
+            return;
+        }
+
+        try (ExecutorService hilos = Executors.newVirtualThreadPerTaskExecutor()) {
+            HttpClient http = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .connectTimeout(Duration.ofSeconds(10))
+                    .executor(hilos)
+                    .build();
+            GeneradorCarga generador = new GeneradorCarga(configuracion, http);
+
+            System.out.printf("Preparando datos en %s: %d usuarios, %d libros calientes, catálogo de %d libros%n",
+                    configuracion.url(), configuracion.usuarios(), configuracion.librosCalientes(),
+                    configuracion.libros());
+            generador.escenario.preparar();
+
+            System.out.printf("Calentamiento: %d s a %d pet/s%n",
+                    configuracion.calentamiento().toSeconds(), configuracion.tasa());
+            generador.ejecutar(hilos, configuracion.calentamiento(), new Estadisticas());
+
+            System.out.printf("Medida: %d s a %d pet/s, mezcla %s%n",
+                    configuracion.duracion().toSeconds(), configuracion.tasa(), configuracion.mezcla());
+            Estadisticas estadisticas = new Estadisticas();
+            generador.ejecutar(hilos, configuracion.duracion(), estadisticas);
+
+            estadisticas.imprimir(System.out, configuracion.duracion());
+            estadisticas.escribirDistribuciones(configuracion.salida());
+            System.out.println("Distribuciones de percentiles en " + configuracion.salida().toAbsolutePath());
+        }
+    }
+
+    /**
+     * Lanza llegadas a la tasa configurada durante el tiempo indicado y espera a que terminen.
+     */
+    private void ejecutar(ExecutorService hilos, Duration duracion, Estadisticas estadisticas)
+            throws InterruptedException {
+        Semaphore enVuelo = new Semaphore(configuracion.maximoEnVuelo());
+        long intervalo = TimeUnit.SECONDS.toNanos(1) / configuracion.tasa();
+        long inicio = System.nanoTime();
+        long fin = inicio + duracion.toNanos();
+
+        for (long i = 0; ; i++) {
+            long previsto = inicio + i * intervalo;
+            if (previsto >= fin) {
+                break;
+            }
+            esperarHasta(previsto);
+            Operacion operacion = ruleta[ThreadLocalRandom.current().nextInt(ruleta.length)];
+            if (!enVuelo.tryAcquire()) {
+                estadisticas.descartar(operacion);
+                continue;
+            }
+            hilos.execute(() -> {
+                try {
+                    lanzar(operacion, previsto, estadisticas);
+                } finally {
+                    enVuelo.release();
+                }
+            });
+        }
+        // Espera a las peticiones pendientes antes de dar la fase por terminada
+        enVuelo.acquire(configuracion.maximoEnVuelo());
+    }
+
+    private void lanzar(Operacion operacion, long previsto, Estadisticas estadisticas) {
+        Escenario.Peticion peticion = escenario.peticion(operacion);
+        long enviado = System.nanoTime();
+        int estado;
+        try {
+            estado = http.send(peticion.http(), HttpResponse.BodyHandlers.discarding()).statusCode();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            estado = 0;
+        } catch (Exception e) {
+            estado = 0;
+        }
+        estadisticas.registrar(operacion, estado, previsto, enviado, System.nanoTime());
+        escenario.registrarResultado(peticion, estado);
+    }
+
+    private static void esperarHasta(long instante) {
+        long restante;
+        while ((restante = instante - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(restante);
+        }
+    }
+
+    /**
+     * Expande la mezcla en una tabla en la que cada operación aparece tantas veces como su peso.
+     */
+    private static Operacion[] ruleta(Map<Operacion, Integer> mezcla) {
+        int total = mezcla.values().stream().mapToInt(Integer::intValue).sum();
+        Operacion[] ruleta = new Operacion[total];
+        int posicion = 0;
+        for (Map.Entry<Operacion, Integer> entrada : mezcla.entrySet()) {
+            for (int i = 0; i < entrada.getValue(); i++) {
+                ruleta[posicion++] = entrada.getKey();
+            }
+        }
+        return ruleta;
+    }
+}
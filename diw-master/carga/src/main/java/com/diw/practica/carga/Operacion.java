@@ -0,0 +1,41 @@
+package com.diw.practica.carga;
+
+/**
+ * Operaciones que genera la carga.
+ */
+enum Operacion {
+
+    /**
+     * {@code POST /usuarios/{id}/prestamos/{libroId}} sobre uno de los libros calientes.
+     */
+    PRESTAMO("prestamo"),
+
+    /**
+     * {@code POST /usuarios/{id}/devoluciones/{libroId}}, devolviendo preferentemente un libro prestado.
+     */
+    DEVOLUCION("devolucion"),
+
+    /**
+     * {@code GET /usuarios/libros/disponibles}.
+     */
+    DISPONIBLES("disponibles");
+
+    private final String clave;
+
+    Operacion(String clave) {
+        this.clave = clave;
+    }
+
+    String getClave() {
+        return clave;
+    }
+
+    static Operacion desdeClave(String clave) {
+        for (Operacion operacion : values()) {
+            if (operacion.clave.equalsIgnoreCase(clave.strip())) {
+                return operacion;
+            }
+        }
+        throw new IllegalArgumentException("Operación desconocida: " + clave);
+    }
+}
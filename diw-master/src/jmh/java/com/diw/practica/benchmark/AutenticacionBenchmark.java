@@ -0,0 +1,92 @@
+package com.diw.practica.benchmark;
+
+import com.diw.practica.contoller.AutenticacionController;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rendimiento de extremo a extremo de un endpoint barato ({@code /usuarios/{id}/prestamos/total})
+ * según cómo se autentique el cliente: autenticación básica con BCrypt en cada petición, básica
+ * con la caché de comprobaciones y token de acceso {@code Bearer}.
+ *
+ * <p>Las peticiones van por HTTP contra la aplicación arrancada en un puerto libre, desde varios
+ * hilos a la vez, de modo que se mide el coste de la autenticación frente al del resto de la
+ * petición.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(8)
+@Fork(1)
+public class AutenticacionBenchmark {
+
+    public enum Autenticacion {BASICA, BASICA_CACHEADA, TOKEN}
+
+    @Param({"BASICA", "BASICA_CACHEADA", "TOKEN"})
+    public Autenticacion autenticacion;
+
+    private ConfigurableApplicationContext contexto;
+    private HttpClient http;
+    private HttpRequest peticion;
+
+    @Setup(Level.Trial)
+    public void arrancar() throws IOException, InterruptedException {
+        contexto = ContextoBenchmark.arrancar("autenticacion" + autenticacion, 100,
+                "--diw.seguridad.cache-basic.habilitada=" + (autenticacion == Autenticacion.BASICA_CACHEADA));
+        String base = "http://localhost:" + contexto.getEnvironment().getProperty("local.server.port");
+        http = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+        String basica = "Basic " + Base64.getEncoder().encodeToString("user:userpass".getBytes(StandardCharsets.UTF_8));
+        String cabecera = basica;
+        if (autenticacion == Autenticacion.TOKEN) {
+            HttpResponse<String> emitido = http.send(HttpRequest.newBuilder(URI.create(base + AutenticacionController.RUTA_TOKEN))
+                    .header("Authorization", basica)
+                    .POST(HttpRequest.BodyPublishers.noBody())
+                    .build(), HttpResponse.BodyHandlers.ofString());
+            cabecera = "Bearer " + new ObjectMapper().readTree(emitido.body()).get("token").asText();
+        }
+        peticion = HttpRequest.newBuilder(URI.create(base + "/usuarios/2/prestamos/total"))
+                .header("Authorization", cabecera)
+                .build();
+        int estado = http.send(peticion, HttpResponse.BodyHandlers.discarding()).statusCode();
+        if (estado != 200) {
+            throw new IllegalStateException("Respuesta inesperada " + estado + " con " + autenticacion);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void cerrar() {
+        http.close();
+        contexto.close();
+    }
+
+    @Benchmark
+    public int peticion() throws IOException, InterruptedException {
+        return http.send(peticion, HttpResponse.BodyHandlers.ofByteArray()).statusCode();
+    }
+}
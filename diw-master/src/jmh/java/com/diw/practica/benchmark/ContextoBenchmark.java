@@ -0,0 +1,66 @@
+package com.diw.practica.benchmark;
+
+import com.diw.practica.PracticaApplication;
+import com.diw.practica.model.Libro;
+import com.diw.practica.repository.LibroRepository;
+import org.springframework.boot.Banner;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Arranque de la aplicación para los benchmarks con el perfil {@code embebida} (H2 en memoria en modo MySQL).
+ *
+ * <p>Cada contexto usa su propia base de datos, de modo que los parámetros de un benchmark
+ * (por ejemplo, el tamaño del catálogo) no se mezclan entre ejecuciones.</p>
+ */
+final class ContextoBenchmark {
+
+    private static final int TAMANIO_LOTE = 500;
+
+    private ContextoBenchmark() {
+    }
+
+    /**
+     * Arranca la aplicación y completa el catálogo hasta el número de libros indicado.
+     *
+     * @param nombreBaseDatos nombre de la base de datos H2 en memoria
+     * @param libros          número total de libros del catálogo
+     * @param propiedades     propiedades adicionales, como {@code --clave=valor}
+     * @return contexto arrancado; debe cerrarse al terminar
+     */
+    static ConfigurableApplicationContext arrancar(String nombreBaseDatos, int libros, String... propiedades) {
+        List<String> argumentos = new ArrayList<>(List.of(
+                "--server.port=0",
+                "--spring.profiles.active=embebida",
+                "--spring.datasource.url=jdbc:h2:mem:" + nombreBaseDatos + ";MODE=MySQL;DB_CLOSE_DELAY=-1",
+                "--springdoc.api-docs.enabled=false",
+                "--springdoc.swagger-ui.enabled=false",
+                "--logging.level.root=WARN",
+                "--logging.level.com.diw.practica=WARN",
+                "--logging.level.org.springframework.web=WARN"));
+        argumentos.addAll(List.of(propiedades));
+        ConfigurableApplicationContext contexto = new SpringApplicationBuilder(PracticaApplication.class)
+                .bannerMode(Banner.Mode.OFF)
+                // Argumentos de línea de comandos: tienen prioridad sobre application.properties.
+                .run(argumentos.toArray(String[]::new));
+        completarCatalogo(contexto.getBean(LibroRepository.class), libros);
+        return contexto;
+    }
+
+    private static void completarCatalogo(LibroRepository libroRepository, int libros) {
+        long existentes = libroRepository.count();
+        List<Libro> lote = new ArrayList<>(TAMANIO_LOTE);
+        for (long i = existentes; i < libros; i++) {
+            lote.add(new Libro("Libro de prueba " + i, "Autor " + (i % 97), String.format("978-%010d", i),
+                    1950 + (int) (i % 75), "Editorial " + (i % 13), Libro.Estado.DISPONIBLE));
+            if (lote.size() == TAMANIO_LOTE) {
+                libroRepository.saveAll(lote);
+                lote.clear();
+            }
+        }
+        libroRepository.saveAll(lote);
+    }
+}
@@ -0,0 +1,98 @@
+package com.diw.practica.benchmark;
+
+import com.diw.practica.config.FormatoSerializacion;
+import com.diw.practica.dto.LibroResumen;
+import com.diw.practica.dto.PaginaCursor;
+import com.diw.practica.model.Libro;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Coste de CPU de una página de {@code /admin/libros} en cada {@link FormatoSerializacion}, sin
+ * comprimir, comprimida como lo hace Tomcat (gzip con el nivel por defecto) y comprimida con el
+ * nivel máximo que usa la caché de respuestas.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FormatosBenchmark {
+
+    @Param({"50", "500"})
+    public int tamanioPagina;
+
+    @Param({"JSON", "CBOR", "SMILE"})
+    public FormatoSerializacion formato;
+
+    private ObjectWriter writer;
+    private PaginaCursor<LibroResumen> pagina;
+    private byte[] serializada;
+
+    @Setup(Level.Trial)
+    public void preparar() throws IOException {
+        // Misma construcción que MapeadoresFormato: builder de Spring con Blackbird y la factoría del formato.
+        writer = Jackson2ObjectMapperBuilder.json()
+                .modulesToInstall(new BlackbirdModule())
+                .factory(formato.crearFactoria())
+                .build()
+                .writer();
+        List<LibroResumen> libros = new ArrayList<>(tamanioPagina);
+        for (int i = 0; i < tamanioPagina; i++) {
+            libros.add(new LibroResumen(i + 1, "Libro de prueba " + i, "Autor " + i % 97,
+                    String.format("978-%010d", i), 1950 + i % 70, "Editorial " + i % 13,
+                    Libro.Estado.values()[i % Libro.Estado.values().length], (long) i));
+        }
+        pagina = new PaginaCursor<>(libros, "c3ViZ3VpZW50ZQ");
+        serializada = writer.writeValueAsBytes(pagina);
+    }
+
+    @Benchmark
+    public byte[] serializar() throws IOException {
+        return writer.writeValueAsBytes(pagina);
+    }
+
+    @Benchmark
+    public byte[] serializarYComprimir() throws IOException {
+        return gzip(writer.writeValueAsBytes(pagina), Deflater.DEFAULT_COMPRESSION);
+    }
+
+    @Benchmark
+    public byte[] comprimirMaximo() throws IOException {
+        return gzip(serializada, Deflater.BEST_COMPRESSION);
+    }
+
+    private static byte[] gzip(byte[] datos, int nivel) throws IOException {
+        ByteArrayOutputStream salida = new ByteArrayOutputStream(datos.length / 4);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(salida) {
+            {
+                def.setLevel(nivel);
+            }
+        }) {
+            gzip.write(datos);
+        }
+        return salida.toByteArray();
+    }
+}
@@ -0,0 +1,110 @@
+package com.diw.practica.benchmark;
+
+import com.diw.practica.dto.LibroResumen;
+import com.diw.practica.dto.Vistas;
+import com.diw.practica.model.Libro;
+import com.diw.practica.model.Usuario;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks de serialización JSON de las entidades, incluido el grafo
+ * {@code Usuario.libros} ({@code @JsonManagedReference}) / {@code Libro.prestadoA}
+ * ({@code @JsonBackReference}), frente a la proyección {@link LibroResumen} y a las vistas
+ * {@link Vistas} de los listados, con y sin el módulo Blackbird que registra la aplicación.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializacionBenchmark {
+
+    @Param({"1", "10", "100"})
+    public int librosPorUsuario;
+
+    @Param({"false", "true"})
+    public boolean blackbird;
+
+    private ObjectMapper objectMapper;
+    private Libro libro;
+    private LibroResumen resumen;
+    private Usuario usuario;
+    private List<LibroResumen> resumenes;
+    private ObjectWriter vistaCatalogo;
+    private ObjectWriter vistaUsuarios;
+
+    @Setup(Level.Trial)
+    public void preparar() {
+        // Misma construcción base que el ObjectMapper que configura Spring Boot.
+        Jackson2ObjectMapperBuilder builder = Jackson2ObjectMapperBuilder.json();
+        if (blackbird) {
+            builder.modulesToInstall(new BlackbirdModule());
+        }
+        objectMapper = builder.build();
+        vistaCatalogo = objectMapper.writerWithView(Vistas.Catalogo.class);
+        vistaUsuarios = objectMapper.writerWithView(Vistas.ListadoUsuarios.class);
+
+        usuario = new Usuario(1, "Alumna", Usuario.Rol.ALUMNO);
+        for (int i = 0; i < librosPorUsuario; i++) {
+            Libro prestado = new Libro("Libro de prueba " + i, "Autor " + i, String.format("978-%010d", i),
+                    2000 + i % 25, "Editorial", Libro.Estado.PRESTADO);
+            prestado.setId(i + 1);
+            prestado.setVersion((long) i);
+            prestado.setPrestadoA(usuario);
+            usuario.getLibros().add(prestado);
+        }
+        libro = usuario.getLibros().get(0);
+        resumen = LibroResumen.desde(libro);
+        resumenes = usuario.getLibros().stream().map(LibroResumen::desde).toList();
+    }
+
+    @Benchmark
+    public byte[] serializarLibro() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(libro);
+    }
+
+    @Benchmark
+    public byte[] serializarLibroResumen() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(resumen);
+    }
+
+    @Benchmark
+    public byte[] serializarUsuarioConLibros() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(usuario);
+    }
+
+    @Benchmark
+    public byte[] serializarUsuarioVistaListado() throws JsonProcessingException {
+        return vistaUsuarios.writeValueAsBytes(usuario);
+    }
+
+    @Benchmark
+    public byte[] serializarResumenes() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(resumenes);
+    }
+
+    @Benchmark
+    public byte[] serializarResumenesVistaCatalogo() throws JsonProcessingException {
+        return vistaCatalogo.writeValueAsBytes(resumenes);
+    }
+}
@@ -0,0 +1,114 @@
+package com.diw.practica.benchmark;
+
+import com.diw.practica.beans.AdminService;
+import com.diw.practica.beans.UsuarioService;
+import com.diw.practica.config.CacheConfig;
+import com.diw.practica.dto.LibroResumen;
+import com.diw.practica.model.Libro;
+import com.diw.practica.repository.LibroRepository;
+import com.diw.practica.repository.UsuarioRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks de la capa de servicio sobre H2 en memoria: préstamo y devolución, listado de
+ * disponibles (con y sin caché) y actualización de un libro, para varios tamaños de catálogo.
+ *
+ * <p>Las llamadas se hacen directamente a los beans de servicio, sin pasar por HTTP ni por
+ * la autenticación, de modo que se mide la lógica de servicio, JPA y la caché.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ServicioBenchmark {
+
+    @Param({"100", "10000"})
+    public int tamanioCatalogo;
+
+    private ConfigurableApplicationContext contexto;
+    private UsuarioService usuarioService;
+    private AdminService adminService;
+    private CacheManager cacheManager;
+
+    private Integer usuarioId;
+    private Integer libroPrestamoId;
+    private Integer libroEdicionId;
+    private Libro edicion;
+    private long contadorEdiciones;
+
+    @Setup(Level.Trial)
+    public void arrancar() {
+        contexto = ContextoBenchmark.arrancar("servicio" + tamanioCatalogo, tamanioCatalogo);
+        usuarioService = contexto.getBean(UsuarioService.class);
+        adminService = contexto.getBean(AdminService.class);
+        cacheManager = contexto.getBean(CacheManager.class);
+
+        usuarioId = contexto.getBean(UsuarioRepository.class).findAll().get(0).getId();
+        List<LibroResumen> disponibles = usuarioService.librosDisponibles();
+        libroPrestamoId = disponibles.get(0).id();
+        libroEdicionId = disponibles.get(1).id();
+        edicion = contexto.getBean(LibroRepository.class).findById(libroEdicionId).orElseThrow();
+    }
+
+    @TearDown(Level.Trial)
+    public void cerrar() {
+        contexto.close();
+    }
+
+    /**
+     * Un préstamo seguido de su devolución, para que el libro vuelva a estar disponible.
+     */
+    @Benchmark
+    public Optional<Libro> prestamoYDevolucion() {
+        usuarioService.solicitarPrestamo(usuarioId, libroPrestamoId).orElseThrow();
+        return usuarioService.devolverPrestamo(usuarioId, libroPrestamoId);
+    }
+
+    /**
+     * Listado de disponibles servido desde la caché.
+     */
+    @Benchmark
+    public List<LibroResumen> librosDisponibles() {
+        return usuarioService.librosDisponibles();
+    }
+
+    /**
+     * Listado de disponibles con la caché vacía: proyección desde la base de datos.
+     */
+    @Benchmark
+    public List<LibroResumen> librosDisponiblesSinCache() {
+        Objects.requireNonNull(cacheManager.getCache(CacheConfig.CACHE_LIBROS_DISPONIBLES)).clear();
+        return usuarioService.librosDisponibles();
+    }
+
+    /**
+     * Cambio de título con control de versión optimista.
+     */
+    @Benchmark
+    public Libro actualizarLibro() {
+        edicion.setTitulo("Título revisado " + contadorEdiciones++);
+        edicion = adminService.actualizarLibro(libroEdicionId, edicion).orElseThrow();
+        return edicion;
+    }
+}
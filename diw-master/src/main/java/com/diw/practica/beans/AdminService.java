@@ -1,10 +1,13 @@
 package com.diw.practica.beans;
 
+    import com.diw.practica.dto.LibroResumen;
+    import com.diw.practica.dto.OrdenLibro;
+    import com.diw.practica.dto.PaginaCursor;
     import com.diw.practica.model.Libro;
     import com.diw.practica.model.Usuario;
 
-    import java.util.List;
     import java.util.Optional;
+    import java.util.function.Consumer;
 
     /**
      * Interfaz de servicio para operaciones administrativas sobre usuarios y libros.
@@ -43,15 +46,19 @@ package com.diw.practica.beans;
         Usuario registrarUsuario(Usuario usuario);
 
         /**
-         * Lista todos los usuarios registrados en el sistema.
+         * Lista los usuarios registrados en el sistema, página a página.
          *
-         * <p>El resultado no debe ser {@code null}. Si no existen usuarios, se debe
-         * retornar una lista vacía.</p>
+         * <p>La paginación es por cursor (keyset) sobre el identificador: cada página
+         * cuesta lo mismo con independencia de su profundidad. El resultado no debe ser
+         * {@code null}; si no existen más usuarios, el contenido es una lista vacía.</p>
          *
-         * @return lista no {@code null} de {@link Usuario}; puede estar vacía
+         * @param cursor  token devuelto en la página anterior, o {@code null} para la primera página
+         * @param tamanio número máximo de usuarios por página
+         * @return página no {@code null} de {@link Usuario}
+         * @throws IllegalArgumentException si el cursor no es válido
          * @throws RuntimeException si ocurre un error al recuperar los datos
          */
-        List<Usuario> listarUsuarios();
+        PaginaCursor<Usuario> listarUsuarios(String cursor, int tamanio);
 
         /**
          * Registra un nuevo libro en el sistema.
@@ -98,13 +105,46 @@ package com.diw.practica.beans;
         boolean eliminarLibro(Integer libroId);
 
         /**
-         * Lista todos los libros disponibles en el sistema.
+         * Lista los libros del catálogo, página a página.
          *
-         * <p>El resultado no debe ser {@code null}. Si no hay libros registrados, se debe
-         * retornar una lista vacía.</p>
+         * <p>La paginación es por cursor (keyset) sobre la clave {@code orden} y el
+         * identificador como desempate. El cursor lleva codificada la clave con la que se
+         * generó, por lo que debe reutilizarse con la misma ordenación. El resultado no
+         * debe ser {@code null}; si no hay más libros, el contenido es una lista vacía.
+         * Los libros se devuelven como vistas de solo lectura, sin el usuario prestatario.</p>
          *
-         * @return lista no {@code null} de {@link Libro}; puede estar vacía
+         * @param cursor  token devuelto en la página anterior, o {@code null} para la primera página
+         * @param tamanio número máximo de libros por página
+         * @param orden   clave de ordenación; no debe ser {@code null}
+         * @return página no {@code null} de {@link LibroResumen}
+         * @throws IllegalArgumentException si el cursor no es válido o no corresponde a {@code orden}
          * @throws RuntimeException si ocurre un error al recuperar los datos
          */
-        List<Libro> listarLibros();
-    }
\ No newline at end of file
+        PaginaCursor<LibroResumen> listarLibros(String cursor, int tamanio, OrdenLibro orden);
+
+        /**
+         * Tamaño de página que usa {@link #listarLibros} para el tamaño solicitado.
+         *
+         * <p>Las peticiones que piden tamaños distintos pero reciben la misma página (por encima del
+         * máximo, por ejemplo) deben poder reconocerse como iguales, p. ej. para cachear la respuesta
+         * una sola vez.</p>
+         *
+         * @param tamanio número de libros solicitado
+         * @return número máximo de libros de la página que se devolvería
+         */
+        int tamanioPagina(int tamanio);
+
+        /**
+         * Recorre el catálogo completo en orden de identificador, entregando cada libro al consumidor.
+         *
+         * <p>Pensado para exportaciones masivas: la implementación no debe materializar el
+         * catálogo en memoria, sino leerlo en streaming y liberar las entidades ya entregadas,
+         * de modo que el consumo de memoria sea constante con independencia del número de filas.
+         * Los libros entregados no deben conservarse más allá de la llamada al consumidor.</p>
+         *
+         * @param consumidor receptor de cada libro; no debe ser {@code null}
+         * @return número de libros recorridos
+         * @throws RuntimeException si ocurre un error de lectura o lo lanza el consumidor
+         */
+        long recorrerCatalogo(Consumer<Libro> consumidor);
+    }
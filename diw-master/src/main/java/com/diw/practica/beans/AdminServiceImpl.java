@@ -1,22 +1,42 @@
 package com.diw.practica.beans;
 
+import com.diw.practica.dto.CursorKeyset;
+import com.diw.practica.dto.CursorUsuario;
+import com.diw.practica.dto.LibroResumen;
+import com.diw.practica.dto.OrdenLibro;
+import com.diw.practica.dto.PaginaCursor;
+import com.diw.practica.eventos.LibroCambiadoEvent;
+import com.diw.practica.metricas.MetricasBiblioteca;
 import com.diw.practica.model.Libro;
 import com.diw.practica.model.Usuario;
 import com.diw.practica.repository.LibroRepository;
+import com.diw.practica.repository.ReservaRepository;
 import com.diw.practica.repository.UsuarioRepository;
+import com.diw.practica.reservas.ColaReservas;
+import jakarta.persistence.EntityManager;
+import org.hibernate.dialect.MySQLDialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 /**
  * Implementación del servicio administrativo encargado de operaciones CRUD
  * sobre las entidades {@link Usuario} y {@link Libro}.
  *
  * <p>Esta clase delega la persistencia en las instancias de
- * {@link UsuarioRepository} y {@link LibroRepository} inyectadas por Spring.</p>
+ * {@link UsuarioRepository} y {@link LibroRepository} inyectadas por Spring.
+ * Cada operación se mide con {@link MetricasBiblioteca#medirAdmin}.</p>
  *
  * @author
  * @since 1.0
@@ -24,6 +44,11 @@ import java.util.Optional;
 @Service
 public class AdminServiceImpl implements AdminService {
 
+    /**
+     * Tamaño máximo de página admitido en los listados paginados.
+     */
+    static final int TAMANIO_MAXIMO_PAGINA = 500;
+
     /**
      * Repositorio para operaciones sobre {@link Usuario}.
      */
@@ -34,17 +59,55 @@ public class AdminServiceImpl implements AdminService {
      */
     private final LibroRepository libroRepository;
 
+    /**
+     * Repositorio de reservas, para retirar las de los libros dados de baja.
+     */
+    private final ReservaRepository reservaRepository;
+
+    /**
+     * Colas de reserva en memoria, que se mantienen junto con la tabla.
+     */
+    private final ColaReservas colaReservas;
+
+    /**
+     * Contexto de persistencia compartido, usado para liberar entidades en los recorridos masivos.
+     */
+    private final EntityManager entityManager;
+
+    /**
+     * Publicador de {@link LibroCambiadoEvent} para las estructuras derivadas del catálogo.
+     */
+    private final ApplicationEventPublisher eventPublisher;
+
+    /**
+     * Temporizadores de las operaciones de administración.
+     */
+    private final MetricasBiblioteca metricas;
+
     /**
      * Construye una nueva instancia de {@code AdminServiceImpl} con los
      * repositorios necesarios inyectados.
      *
      * @param usuarioRepository repositorio para la gestión de usuarios; no debe ser {@code null}
      * @param libroRepository   repositorio para la gestión de libros; no debe ser {@code null}
+     * @param reservaRepository repositorio para la gestión de reservas; no debe ser {@code null}
+     * @param colaReservas      colas de reserva en memoria; no debe ser {@code null}
+     * @param entityManager     contexto de persistencia compartido; no debe ser {@code null}
+     * @param eventPublisher    publicador de eventos de cambio del catálogo; no debe ser {@code null}
+     * @param metricas          temporizadores de las operaciones; no debe ser {@code null}
      */
     @Autowired
-    public AdminServiceImpl(UsuarioRepository usuarioRepository, LibroRepository libroRepository) {
+    public AdminServiceImpl(UsuarioRepository usuarioRepository, LibroRepository libroRepository,
+                            ReservaRepository reservaRepository, ColaReservas colaReservas,
+                            EntityManager entityManager, ApplicationEventPublisher eventPublisher,
+                            MetricasBiblioteca metricas) {
         this.usuarioRepository = Objects.requireNonNull(usuarioRepository, "El repositorio de usuarios es obligatorio");
         this.libroRepository = Objects.requireNonNull(libroRepository, "El repositorio de libros es obligatorio");
+        this.reservaRepository = Objects.requireNonNull(reservaRepository, "El repositorio de reservas es obligatorio");
+        this.colaReservas = Objects.requireNonNull(colaReservas, "Las colas de reserva son obligatorias");
+        this.entityManager = Objects.requireNonNull(entityManager, "El EntityManager es obligatorio");
+        this.eventPublisher = Objects.requireNonNull(eventPublisher, "El publicador de eventos es obligatorio");
+        this.metricas = Objects.requireNonNull(metricas, "Las métricas son obligatorias");
     }
 
     /**
@@ -59,131 +122,347 @@ public class AdminServiceImpl implements AdminService {
      */
     @Override
     public Usuario registrarUsuario(Usuario usuario) {
-        Objects.requireNonNull(usuario, "El usuario no puede ser nulo");
+        return metricas.medirAdmin("registrarUsuario", () -> {
+            Objects.requireNonNull(usuario, "El usuario no puede ser nulo");
 
-        // Al crear un usuario vía POST se puede enviar un id=0 desde el cliente.
-        // Forzamos el identificador a null para evitar que Hibernate intente hacer
-        // un merge sobre una fila inexistente y provoque un StaleObjectStateException.
-        usuario.setId(null);
+            // Al crear un usuario vía POST se puede enviar un id=0 desde el cliente.
+            // Forzamos el identificador a null para evitar que Hibernate intente hacer
+            // un merge sobre una fila inexistente y provoque un StaleObjectStateException.
+            usuario.setId(null);
 
-        return usuarioRepository.save(usuario);
+            return usuarioRepository.save(usuario);
+        });
     }
 
     /**
-     * Devuelve la lista de todos los usuarios almacenados.
+     * Devuelve una página de usuarios ordenados por identificador.
+     *
+     * <p>Se solicita un elemento más del tamaño pedido para saber si existe página
+     * siguiente sin lanzar una consulta de recuento.</p>
      *
-     * @return lista de instancias {@link Usuario}; nunca {@code null} (puede ser vacía)
+     * @param cursor  token de la página anterior, o {@code null} para la primera
+     * @param tamanio número máximo de usuarios; se acota a [1, {@value #TAMANIO_MAXIMO_PAGINA}]
+     * @return página de instancias {@link Usuario}; nunca {@code null}
      */
     @Override
-    public List<Usuario> listarUsuarios() {
-        return usuarioRepository.findAll();
+    public PaginaCursor<Usuario> listarUsuarios(String cursor, int tamanio) {
+        return metricas.medirAdmin("listarUsuarios", () -> {
+            int limite = acotarTamanio(tamanio);
+            int ultimoId = cursor != null ? CursorUsuario.decodificar(cursor).ultimoId() : 0;
+
+            List<Usuario> usuarios = usuarioRepository.paginaPorId(ultimoId, Limit.of(limite + 1));
+            if (usuarios.size() <= limite) {
+                return new PaginaCursor<>(usuarios, null);
+            }
+            List<Usuario> contenido = usuarios.subList(0, limite);
+            Usuario ultimo = contenido.get(limite - 1);
+            return new PaginaCursor<>(contenido, new CursorUsuario(ultimo.getId()).codificar());
+        });
     }
 
     /**
      * Registra un nuevo libro en la persistencia.
      *
      * <p>Si el campo {@code estadoLibro} del objeto proporcionado es {@code null},
-     * se establece por defecto a {@link Libro.Estado#DISPONIBLE} antes de persistir.</p>
+     * se establece por defecto a {@link Libro.Estado#DISPONIBLE} antes de persistir; cualquier
+     * otro estado se rechaza, ya que un libro prestado o reservado necesita un prestatario.
+     * Tras guardar se publica un {@link LibroCambiadoEvent} de tipo {@code CREADO}.</p>
      *
      * @param libro entidad {@link Libro} a registrar
      * @return la instancia persistida de {@link Libro} (puede contener campos generados como id)
+     * @throws IllegalArgumentException si el libro no está disponible
      */
     @Override
     public Libro registrarLibro(Libro libro) {
-        Objects.requireNonNull(libro, "El libro no puede ser nulo");
+        return metricas.medirAdmin("registrarLibro", () -> {
+            Objects.requireNonNull(libro, "El libro no puede ser nulo");
 
-        // Al crear un usuario vía POST se puede enviar un id=0 desde el cliente.
-        // Forzamos el identificador a null para evitar que Hibernate intente hacer
-        // un merge sobre una fila inexistente y provoque un StaleObjectStateException.
-        libro.setId(null);
+            // Al crear un usuario vía POST se puede enviar un id=0 desde el cliente.
+            // Forzamos el identificador a null para evitar que Hibernate intente hacer
+            // un merge sobre una fila inexistente y provoque un StaleObjectStateException.
+            libro.setId(null);
+            libro.setVersion(null);
+            libro.setVecesPrestado(0);
 
-        if (libro.getEstadoLibro() == null) {
-            libro.setEstadoLibro(Libro.Estado.DISPONIBLE);
-        }
-        return libroRepository.save(libro);
+            if (libro.getEstadoLibro() == null) {
+                libro.setEstadoLibro(Libro.Estado.DISPONIBLE);
+            } else if (libro.getEstadoLibro() != Libro.Estado.DISPONIBLE) {
+                throw new IllegalArgumentException("Un libro nuevo debe estar disponible");
+            }
+            libro.setPrestadoA(null);
+            Libro guardado = libroRepository.save(libro);
+            eventPublisher.publishEvent(new LibroCambiadoEvent(
+                    LibroCambiadoEvent.Tipo.CREADO, null, LibroResumen.desde(guardado)));
+            return guardado;
+        });
     }
 
     /**
      * Actualiza los datos de un libro existente con los valores proporcionados.
      *
      * <p>Busca el libro por su identificador; si existe, actualiza los campos
-     * título, autor, ISBN, año de publicación, editorial y, si se proporciona,
-     * el estado del libro. Persiste los cambios y devuelve el libro actualizado.</p>
+     * título, autor, ISBN, año de publicación y editorial. Persiste los cambios y devuelve el
+     * libro actualizado.</p>
+     *
+     * <p>El estado no se edita: prestar, devolver y reservar son los únicos cambios de estado,
+     * porque mantienen el prestatario y la cola de reservas. Si {@code libroActualizado} indica un
+     * estado, debe ser el vigente.</p>
+     *
+     * <p>Si {@code libroActualizado} incluye una versión, debe coincidir con la almacenada:
+     * así una edición hecha sobre datos obsoletos (por ejemplo, antes de un préstamo)
+     * no sobrescribe el estado actual. Aunque no la incluya, la escritura se protege
+     * con la versión leída en esta misma transacción.</p>
+     *
+     * <p>Los cambios se vuelcan antes de publicar el {@link LibroCambiadoEvent}, de modo que
+     * el evento ya refleja la versión incrementada.</p>
      *
      * @param libroId          identificador del libro a actualizar
      * @param libroActualizado objeto {@link Libro} que contiene los nuevos valores
      * @return {@link Optional} que contiene el libro actualizado si se encontró el libro,
      *         o {@link Optional#empty()} si no existe un libro con el identificador dado
+     * @throws ObjectOptimisticLockingFailureException si la versión indicada no es la vigente
+     * @throws IllegalArgumentException si el estado indicado no es el vigente
      */
     @Override
+    @Transactional
     public Optional<Libro> actualizarLibro(Integer libroId, Libro libroActualizado) {
-        Objects.requireNonNull(libroId, "El identificador del libro no puede ser nulo");
-        Objects.requireNonNull(libroActualizado, "El libro actualizado no puede ser nulo");
-
-        return libroRepository.findById(libroId).map(libroExistente -> {
-            /**
-             2 months ago
-
-             modificaciones
-             libroExistente.setTitulo(libroActualizado.getTitulo());
-             libroExistente.setAutor(libroActualizado.getAutor());
-             libroExistente.setIsbn(libroActualizado.getIsbn());
-             libroExistente.setAnioPublicacion(libroActualizado.getAnioPublicacion());
-             libroExistente.setEditorial(libroActualizado.getEditorial());
-             8 minutes ago
-
-             ojo!!
-             libroExistente.setEstadoLibro(libroActualizado.getEstadoLibro());
-             */
-
-            if (libroActualizado.getTitulo() != null) {
-                libroExistente.setTitulo(libroActualizado.getTitulo());
-            }
-            if (libroActualizado.getAutor() != null) {
-                libroExistente.setAutor(libroActualizado.getAutor());
-            }
-            if (libroActualizado.getIsbn() != null) {
-                libroExistente.setIsbn(libroActualizado.getIsbn());
-            }
-            if (libroActualizado.getAnioPublicacion() != null) {
-                libroExistente.setAnioPublicacion(libroActualizado.getAnioPublicacion());
-            }
-            if (libroActualizado.getEditorial() != null) {
-                libroExistente.setEditorial(libroActualizado.getEditorial());
-            }
+        return metricas.medirAdmin("actualizarLibro", () -> {
+            Objects.requireNonNull(libroId, "El identificador del libro no puede ser nulo");
+            Objects.requireNonNull(libroActualizado, "El libro actualizado no puede ser nulo");
 
-            if (libroActualizado.getEstadoLibro() != null) {
-                libroExistente.setEstadoLibro(libroActualizado.getEstadoLibro());
-            }
-            return libroRepository.save(libroExistente);
+            return libroRepository.findById(libroId).map(libroExistente -> {
+                if (libroActualizado.getVersion() != null
+                        && !libroActualizado.getVersion().equals(libroExistente.getVersion())) {
+                    throw new ObjectOptimisticLockingFailureException(Libro.class, libroId);
+                }
+                LibroResumen anterior = LibroResumen.desde(libroExistente);
+                Integer prestatarioAnterior = prestatarioId(libroExistente);
+
+                /**
+                 2 months ago
+
+                 modificaciones
+                 libroExistente.setTitulo(libroActualizado.getTitulo());
+                 libroExistente.setAutor(libroActualizado.getAutor());
+                 libroExistente.setIsbn(libroActualizado.getIsbn());
+                 libroExistente.setAnioPublicacion(libroActualizado.getAnioPublicacion());
+                 libroExistente.setEditorial(libroActualizado.getEditorial());
+                 8 minutes ago
+
+                 ojo!!
+                 libroExistente.setEstadoLibro(libroActualizado.getEstadoLibro());
+                 */
+
+                if (libroActualizado.getTitulo() != null) {
+                    libroExistente.setTitulo(libroActualizado.getTitulo());
+                }
+                if (libroActualizado.getAutor() != null) {
+                    libroExistente.setAutor(libroActualizado.getAutor());
+                }
+                if (libroActualizado.getIsbn() != null) {
+                    libroExistente.setIsbn(libroActualizado.getIsbn());
+                }
+                if (libroActualizado.getAnioPublicacion() != null) {
+                    libroExistente.setAnioPublicacion(libroActualizado.getAnioPublicacion());
+                }
+                if (libroActualizado.getEditorial() != null) {
+                    libroExistente.setEditorial(libroActualizado.getEditorial());
+                }
+
+                // El estado solo cambia con préstamos, devoluciones y reservas, que mantienen el
+                // prestatario y la cola de reservas; aquí se admite el vigente, sin cambios.
+                if (libroActualizado.getEstadoLibro() != null
+                        && libroActualizado.getEstadoLibro() != libroExistente.getEstadoLibro()) {
+                    throw new IllegalArgumentException("El estado de un libro no se puede cambiar al editarlo: "
+                            + libroExistente.getEstadoLibro() + " -> " + libroActualizado.getEstadoLibro());
+                }
+                Libro guardado = libroRepository.saveAndFlush(libroExistente);
+                eventPublisher.publishEvent(new LibroCambiadoEvent(LibroCambiadoEvent.Tipo.ACTUALIZADO,
+                        anterior, LibroResumen.desde(guardado), prestatarioAnterior, prestatarioId(guardado)));
+                return guardado;
+            });
         });
     }
 
     /**
      * Elimina un libro por su identificador.
      *
-     * <p>Si el libro existe, se elimina y el método devuelve {@code true}.
-     * Si no existe, devuelve {@code false}.</p>
+     * <p>Si el libro existe, se eliminan sus reservas y el libro, se publica un
+     * {@link LibroCambiadoEvent} de tipo {@code ELIMINADO} y el método devuelve {@code true}. Si no
+     * existe, devuelve {@code false}. Las reservas se borran con la fila del libro bloqueada, de
+     * modo que no puede entrar ninguna nueva antes de borrar el libro.</p>
      *
      * @param libroId identificador del libro a eliminar
      * @return {@code true} si el libro fue encontrado y eliminado; {@code false} en caso contrario
      */
     @Override
+    @Transactional
     public boolean eliminarLibro(Integer libroId) {
-        Objects.requireNonNull(libroId, "El identificador del libro no puede ser nulo");
-        return libroRepository.findById(libroId).map(libro -> {
-            libroRepository.delete(libro);
-            return true;
-        }).orElse(false);
+        return metricas.medirAdmin("eliminarLibro", () -> {
+            Objects.requireNonNull(libroId, "El identificador del libro no puede ser nulo");
+            return libroRepository.findById(libroId).map(libro -> {
+                libroRepository.bloquearPorIds(List.of(libroId));
+                reservaRepository.eliminarDeLibro(libroId);
+                colaReservas.retirarTodas(libroId);
+                libroRepository.delete(libro);
+                eventPublisher.publishEvent(new LibroCambiadoEvent(LibroCambiadoEvent.Tipo.ELIMINADO,
+                        LibroResumen.desde(libro), null, prestatarioId(libro), null));
+                return true;
+            }).orElse(false);
+        });
+    }
+
+    /**
+     * Obtiene una página de libros según la clave de ordenación indicada.
+     *
+     * <p>Los libros sin valor en la clave van al principio, como los ordena la base de datos;
+     * el cursor indica si la página anterior terminó dentro de ese tramo para elegir la consulta
+     * de {@link LibroRepository} que continúa desde él.</p>
+     *
+     * @param cursor  token de la página anterior, o {@code null} para la primera
+     * @param tamanio número máximo de libros; se acota a [1, {@value #TAMANIO_MAXIMO_PAGINA}]
+     * @param orden   clave de ordenación
+     * @return página de vistas {@link LibroResumen}; nunca {@code null}
+     */
+    @Override
+    public PaginaCursor<LibroResumen> listarLibros(String cursor, int tamanio, OrdenLibro orden) {
+        return metricas.medirAdmin("listarLibros", () -> {
+            Objects.requireNonNull(orden, "La clave de ordenación no puede ser nula");
+            int limite = acotarTamanio(tamanio);
+
+            CursorKeyset posicion = cursor != null
+                    ? CursorKeyset.decodificar(cursor)
+                    : CursorKeyset.inicial(orden);
+            if (posicion.orden() != orden) {
+                throw new IllegalArgumentException("El cursor no corresponde a la ordenación " + orden.getCampo());
+            }
+
+            Limit consulta = Limit.of(limite + 1);
+            boolean enNulos = posicion.valor() == null;
+            int ultimoId = posicion.ultimoId();
+            List<LibroResumen> libros = switch (orden) {
+                case ID -> libroRepository.paginaPorId(ultimoId, consulta);
+                case TITULO -> enNulos
+                        ? libroRepository.paginaPorTituloDesdeNulos(ultimoId, consulta)
+                        : libroRepository.paginaPorTitulo(posicion.valor(), ultimoId, consulta);
+                case AUTOR -> enNulos
+                        ? libroRepository.paginaPorAutorDesdeNulos(ultimoId, consulta)
+                        : libroRepository.paginaPorAutor(posicion.valor(), ultimoId, consulta);
+                case ANIO_PUBLICACION -> enNulos
+                        ? libroRepository.paginaPorAnioPublicacionDesdeNulos(ultimoId, consulta)
+                        : libroRepository.paginaPorAnioPublicacion(parsearAnio(posicion.valor()), ultimoId, consulta);
+            };
+
+            if (libros.size() <= limite) {
+                return new PaginaCursor<>(libros, null);
+            }
+            List<LibroResumen> contenido = libros.subList(0, limite);
+            LibroResumen ultimo = contenido.get(limite - 1);
+            String valor = switch (orden) {
+                case ID -> "";
+                case TITULO -> ultimo.titulo();
+                case AUTOR -> ultimo.autor();
+                case ANIO_PUBLICACION -> ultimo.anioPublicacion() != null ? String.valueOf(ultimo.anioPublicacion()) : null;
+            };
+            return new PaginaCursor<>(contenido, new CursorKeyset(orden, valor, ultimo.id()).codificar());
+        });
     }
 
     /**
-     * Obtiene la lista de todos los libros almacenados.
+     * {@inheritDoc}
      *
-     * @return lista de instancias {@link Libro}; nunca {@code null} (puede ser vacía)
+     * @return tamaño acotado a [1, {@value #TAMANIO_MAXIMO_PAGINA}]
      */
     @Override
-    public List<Libro> listarLibros() {
-        return libroRepository.findAll();
+    public int tamanioPagina(int tamanio) {
+        return acotarTamanio(tamanio);
+    }
+
+    /**
+     * Recorre el catálogo completo en streaming, ordenado por id.
+     *
+     * <p>Las entidades se cargan en modo solo lectura (sin instantánea para dirty checking) y cada
+     * {@value LibroRepository#TAMANIO_LOTE_RECORRIDO} libros se vacía el contexto de persistencia,
+     * de modo que nunca quedan retenidas más entidades que las de un lote.</p>
+     *
+     * <p>Con MySQL la sentencia se ejecuta en modo streaming del driver ({@code fetchSize}
+     * {@link Integer#MIN_VALUE}): las filas llegan según se leen en lugar de cargarse enteras en
+     * memoria, solo para esta sentencia y sin {@code useCursorFetch} en la URL de conexión. La
+     * conexión no admite otras sentencias hasta cerrar el recorrido, por eso el consumidor no debe
+     * consultar la base de datos. Con otras bases de datos se leen lotes de
+     * {@value LibroRepository#TAMANIO_LOTE_RECORRIDO} filas.</p>
+     *
+     * @param consumidor receptor de cada libro
+     * @return número de libros recorridos
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public long recorrerCatalogo(Consumer<Libro> consumidor) {
+        return metricas.medirAdmin("recorrerCatalogo", () -> {
+            Objects.requireNonNull(consumidor, "El consumidor no puede ser nulo");
+
+            long recorridos = 0;
+            try (Stream<Libro> libros = entityManager.createQuery("SELECT l FROM Libro l ORDER BY l.id", Libro.class)
+                    .setHint(HibernateHints.HINT_FETCH_SIZE, tamanioLecturaRecorrido())
+                    .setHint(HibernateHints.HINT_READ_ONLY, true)
+                    .setHint(HibernateHints.HINT_CACHEABLE, false)
+                    .getResultStream()) {
+                var iterador = libros.iterator();
+                while (iterador.hasNext()) {
+                    consumidor.accept(iterador.next());
+                    if (++recorridos % LibroRepository.TAMANIO_LOTE_RECORRIDO == 0) {
+                        entityManager.clear();
+                    }
+                }
+            }
+            return recorridos;
+        });
+    }
+
+    /**
+     * Tamaño de lectura del recorrido del catálogo según la base de datos.
+     *
+     * @return {@link Integer#MIN_VALUE} con MySQL (streaming fila a fila) y
+     * {@value LibroRepository#TAMANIO_LOTE_RECORRIDO} con las demás
+     */
+    private int tamanioLecturaRecorrido() {
+        boolean mysql = entityManager.getEntityManagerFactory().unwrap(SessionFactoryImplementor.class)
+                .getJdbcServices().getDialect() instanceof MySQLDialect;
+        return mysql ? Integer.MIN_VALUE : LibroRepository.TAMANIO_LOTE_RECORRIDO;
+    }
+
+    /**
+     * Acota el tamaño de página solicitado al rango admitido.
+     *
+     * @param tamanio tamaño solicitado
+     * @return tamaño efectivo entre 1 y {@value #TAMANIO_MAXIMO_PAGINA}
+     */
+    private static int acotarTamanio(int tamanio) {
+        return Math.max(1, Math.min(tamanio, TAMANIO_MAXIMO_PAGINA));
+    }
+
+    /**
+     * Interpreta el valor de un cursor ordenado por año de publicación.
+     *
+     * @param valor valor codificado en el cursor
+     * @return año de publicación
+     * @throws IllegalArgumentException si el valor no es numérico
+     */
+    private static int parsearAnio(String valor) {
+        try {
+            return Integer.parseInt(valor);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Cursor de paginación inválido", e);
+        }
+    }
+
+    /**
+     * Identificador del prestatario de un libro sin inicializar el proxy del usuario.
+     *
+     * @param libro libro gestionado
+     * @return id del prestatario, o {@code null} si no está prestado
+     */
+    private static Integer prestatarioId(Libro libro) {
+        return libro.getPrestadoA() != null ? libro.getPrestadoA().getId() : null;
     }
-}
\ No newline at end of file
+}
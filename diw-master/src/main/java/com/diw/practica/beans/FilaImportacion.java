@@ -0,0 +1,21 @@
+package com.diw.practica.beans;
+
+import com.diw.practica.model.Libro;
+
+/**
+ * Fila leída de un origen de importación: o bien un libro, o bien el error que impidió leerlo.
+ *
+ * @param numero número de fila en el origen (1 para el primer registro de datos)
+ * @param libro  libro leído, o {@code null} si la fila no pudo interpretarse
+ * @param error  motivo por el que no pudo interpretarse, o {@code null} si es válida
+ */
+record FilaImportacion(long numero, Libro libro, String error) {
+
+    static FilaImportacion valida(long numero, Libro libro) {
+        return new FilaImportacion(numero, libro, null);
+    }
+
+    static FilaImportacion invalida(long numero, String error) {
+        return new FilaImportacion(numero, null, error);
+    }
+}
@@ -0,0 +1,45 @@
+package com.diw.practica.beans;
+
+import com.diw.practica.dto.ResultadoImportacion;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Servicio de importación masiva de libros al catálogo.
+ *
+ * <p>Las implementaciones deben leer el origen en streaming, validar cada fila e
+ * insertar los libros válidos por lotes, cada lote en su propia transacción. Una fila
+ * inválida se informa en el resultado sin abortar el resto de la importación.</p>
+ *
+ * <p>Los libros importados se registran siempre como nuevos: se ignoran los campos
+ * {@code id} y {@code version} del origen.</p>
+ *
+ * @since 1.1
+ */
+public interface ImportacionService {
+
+    /**
+     * Importa libros desde un CSV con cabecera.
+     *
+     * <p>La primera línea debe nombrar las columnas ({@code titulo}, {@code autor}, {@code isbn},
+     * {@code anioPublicacion}, {@code editorial}, {@code estadoLibro}), en cualquier orden y sin
+     * distinguir mayúsculas. Los campos pueden ir entre comillas dobles según RFC 4180.</p>
+     *
+     * @param origen flujo con el contenido CSV en UTF-8; no debe ser {@code null}
+     * @return resumen de la importación
+     * @throws IllegalArgumentException si la cabecera no es válida
+     * @throws IOException si falla la lectura del origen
+     */
+    ResultadoImportacion importarCsv(InputStream origen) throws IOException;
+
+    /**
+     * Importa libros desde un array JSON de objetos con la forma de {@code Libro}.
+     *
+     * @param origen flujo con el array JSON; no debe ser {@code null}
+     * @return resumen de la importación
+     * @throws IllegalArgumentException si el contenido no es un array JSON
+     * @throws IOException si falla la lectura del origen
+     */
+    ResultadoImportacion importarJson(InputStream origen) throws IOException;
+}
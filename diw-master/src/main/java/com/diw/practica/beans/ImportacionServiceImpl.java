@@ -0,0 +1,283 @@
+package com.diw.practica.beans;
+
+import com.diw.practica.dto.ErrorImportacion;
+import com.diw.practica.dto.LibroResumen;
+import com.diw.practica.dto.ResultadoImportacion;
+import com.diw.practica.eventos.LibroCambiadoEvent;
+import com.diw.practica.model.Libro;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.Year;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Implementación de {@link ImportacionService} con inserciones JDBC por lotes.
+ *
+ * <p>Las filas válidas se acumulan hasta completar un lote de {@code diw.importacion.tamanio-lote}
+ * libros, que se inserta en una transacción propia y se vacía del contexto de persistencia.
+ * Con identificadores de secuencia agrupada y {@code hibernate.jdbc.batch_size}, cada lote se
+ * traduce en unas pocas sentencias por lotes en lugar de una inserción por libro.</p>
+ *
+ * <p>Si un lote falla en la base de datos, se reintenta fila a fila para aislar los libros
+ * culpables y conservar el resto.</p>
+ *
+ * <p>Cada alta se publica como {@link LibroCambiadoEvent}, que los oyentes transaccionales
+ * reciben tras el commit de su lote.</p>
+ *
+ * @see ImportacionService
+ * @since 1.1
+ */
+@Service
+public class ImportacionServiceImpl implements ImportacionService {
+
+    /**
+     * Número máximo de errores detallados en el resultado.
+     */
+    static final int MAXIMO_ERRORES_DETALLADOS = 1000;
+
+    /**
+     * Longitud máxima de las columnas de texto de {@code libro}.
+     */
+    private static final int LONGITUD_MAXIMA_TEXTO = 255;
+
+    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final ApplicationEventPublisher eventPublisher;
+    private final int tamanioLote;
+
+    /**
+     * Crea el servicio de importación.
+     *
+     * @param entityManager      contexto de persistencia compartido
+     * @param transactionManager gestor de transacciones para los lotes
+     * @param objectMapper       mapeador JSON de la aplicación
+     * @param eventPublisher     publicador de eventos de cambio del catálogo
+     * @param tamanioLote        número de libros por transacción
+     */
+    @Autowired
+    public ImportacionServiceImpl(EntityManager entityManager,
+                                  PlatformTransactionManager transactionManager,
+                                  ObjectMapper objectMapper,
+                                  ApplicationEventPublisher eventPublisher,
+                                  @Value("${diw.importacion.tamanio-lote:500}") int tamanioLote) {
+        if (tamanioLote < 1) {
+            throw new IllegalArgumentException("El tamaño de lote debe ser positivo");
+        }
+        this.entityManager = Objects.requireNonNull(entityManager, "El EntityManager es obligatorio");
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.objectMapper = Objects.requireNonNull(objectMapper, "El ObjectMapper es obligatorio");
+        this.eventPublisher = Objects.requireNonNull(eventPublisher, "El publicador de eventos es obligatorio");
+        this.tamanioLote = tamanioLote;
+    }
+
+    @Override
+    public ResultadoImportacion importarCsv(InputStream origen) throws IOException {
+        Objects.requireNonNull(origen, "El origen no puede ser nulo");
+        BufferedReader lector = new BufferedReader(new InputStreamReader(origen, StandardCharsets.UTF_8));
+        return importar(new LectorCsvLibros(lector));
+    }
+
+    @Override
+    public ResultadoImportacion importarJson(InputStream origen) throws IOException {
+        Objects.requireNonNull(origen, "El origen no puede ser nulo");
+        JsonParser parser = objectMapper.getFactory().createParser(origen);
+        if (parser.nextToken() != JsonToken.START_ARRAY) {
+            throw new IllegalArgumentException("Se esperaba un array JSON de libros");
+        }
+        parser.clearCurrentToken();
+        MappingIterator<JsonNode> nodos = objectMapper.readerFor(JsonNode.class).readValues(parser);
+
+        // Cada elemento se lee como árbol y se convierte aparte, para que un elemento con tipos
+        // incorrectos solo invalide su fila. Un JSON mal formado sí detiene la lectura.
+        Iterator<FilaImportacion> filas = new Iterator<>() {
+            private long numero;
+            private boolean roto;
+
+            @Override
+            public boolean hasNext() {
+                try {
+                    return !roto && nodos.hasNextValue();
+                } catch (IOException e) {
+                    roto = true;
+                    return true;
+                }
+            }
+
+            @Override
+            public FilaImportacion next() {
+                long fila = ++numero;
+                if (roto) {
+                    return FilaImportacion.invalida(fila, "JSON mal formado; se detiene la importación");
+                }
+                JsonNode nodo;
+                try {
+                    nodo = nodos.nextValue();
+                } catch (IOException e) {
+                    roto = true;
+                    return FilaImportacion.invalida(fila, "JSON mal formado; se detiene la importación");
+                }
+                try {
+                    return FilaImportacion.valida(fila, objectMapper.treeToValue(nodo, Libro.class));
+                } catch (JsonProcessingException e) {
+                    return FilaImportacion.invalida(fila, "Libro no interpretable: " + e.getOriginalMessage());
+                } catch (IllegalArgumentException e) {
+                    return FilaImportacion.invalida(fila, "Libro no interpretable: " + e.getMessage());
+                }
+            }
+        };
+        return importar(filas);
+    }
+
+    /**
+     * Valida las filas y las inserta por lotes.
+     *
+     * @param filas filas leídas del origen
+     * @return resumen de la importación
+     */
+    private ResultadoImportacion importar(Iterator<FilaImportacion> filas) {
+        Resultado resultado = new Resultado();
+        List<FilaImportacion> lote = new ArrayList<>(tamanioLote);
+
+        while (filas.hasNext()) {
+            FilaImportacion fila = filas.next();
+            String error = fila.error() != null ? fila.error() : validar(fila.libro());
+            if (error != null) {
+                resultado.rechazar(fila.numero(), error);
+                continue;
+            }
+            lote.add(fila);
+            if (lote.size() == tamanioLote) {
+                guardarLote(lote, resultado);
+                lote.clear();
+            }
+        }
+        if (!lote.isEmpty()) {
+            guardarLote(lote, resultado);
+        }
+        return resultado.construir();
+    }
+
+    /**
+     * Inserta un lote en una transacción. Si falla, reintenta cada fila en su propia transacción.
+     */
+    private void guardarLote(List<FilaImportacion> lote, Resultado resultado) {
+        try {
+            transactionTemplate.executeWithoutResult(estado -> {
+                lote.forEach(fila -> entityManager.persist(fila.libro()));
+                entityManager.flush();
+                entityManager.clear();
+                lote.forEach(fila -> publicarAlta(fila.libro()));
+            });
+            resultado.importados += lote.size();
+        } catch (RuntimeException e) {
+            for (FilaImportacion fila : lote) {
+                // La transacción fallida pudo asignar identificador y versión: se descartan.
+                fila.libro().setId(null);
+                fila.libro().setVersion(null);
+                try {
+                    transactionTemplate.executeWithoutResult(estado -> {
+                        entityManager.persist(fila.libro());
+                        entityManager.flush();
+                        entityManager.clear();
+                        publicarAlta(fila.libro());
+                    });
+                    resultado.importados++;
+                } catch (RuntimeException errorFila) {
+                    resultado.rechazar(fila.numero(), "Error al guardar: " + causaRaiz(errorFila).getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Publica el alta de un libro importado; los oyentes transaccionales la reciben tras el commit del lote.
+     */
+    private void publicarAlta(Libro libro) {
+        eventPublisher.publishEvent(new LibroCambiadoEvent(LibroCambiadoEvent.Tipo.CREADO, null, LibroResumen.desde(libro)));
+    }
+
+    /**
+     * Comprueba los datos de un libro a importar y normaliza los campos de sistema.
+     *
+     * @param libro libro leído del origen
+     * @return mensaje de error, o {@code null} si es válido
+     */
+    private static String validar(Libro libro) {
+        libro.setId(null);
+        libro.setVersion(null);
+        libro.setVecesPrestado(0);
+        libro.setPrestadoA(null);
+
+        if (libro.getTitulo() == null || libro.getTitulo().isBlank()) {
+            return "El título es obligatorio";
+        }
+        if (libro.getAutor() == null || libro.getAutor().isBlank()) {
+            return "El autor es obligatorio";
+        }
+        for (String texto : new String[]{libro.getTitulo(), libro.getAutor(), libro.getIsbn(), libro.getEditorial()}) {
+            if (texto != null && texto.length() > LONGITUD_MAXIMA_TEXTO) {
+                return "Los campos de texto no pueden superar " + LONGITUD_MAXIMA_TEXTO + " caracteres";
+            }
+        }
+        Integer anio = libro.getAnioPublicacion();
+        if (anio != null && (anio < 0 || anio > Year.now().getValue() + 1)) {
+            return "Año de publicación fuera de rango: " + anio;
+        }
+        if (libro.getEstadoLibro() == null) {
+            libro.setEstadoLibro(Libro.Estado.DISPONIBLE);
+        } else if (libro.getEstadoLibro() != Libro.Estado.DISPONIBLE) {
+            // Prestado o reservado exigiría un prestatario y, en su caso, su cola de reservas.
+            return "Un libro importado debe estar disponible";
+        }
+        return null;
+    }
+
+    private static Throwable causaRaiz(Throwable error) {
+        Throwable causa = error;
+        while (causa.getCause() != null && causa.getCause() != causa) {
+            causa = causa.getCause();
+        }
+        return causa;
+    }
+
+    /**
+     * Acumulador del resultado de una importación.
+     */
+    private static final class Resultado {
+        private long importados;
+        private long rechazados;
+        private final List<ErrorImportacion> errores = new ArrayList<>();
+
+        void rechazar(long fila, String mensaje) {
+            rechazados++;
+            if (errores.size() < MAXIMO_ERRORES_DETALLADOS) {
+                errores.add(new ErrorImportacion(fila, mensaje));
+            }
+        }
+
+        ResultadoImportacion construir() {
+            return new ResultadoImportacion(importados, rechazados, List.copyOf(errores));
+        }
+    }
+}
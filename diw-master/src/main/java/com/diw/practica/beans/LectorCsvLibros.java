@@ -0,0 +1,169 @@
+package com.diw.practica.beans;
+
+import com.diw.practica.model.Libro;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Lector en streaming de libros en formato CSV (RFC 4180) con fila de cabecera.
+ *
+ * <p>Lee un registro cada vez, de modo que el consumo de memoria no depende del tamaño
+ * del fichero. Las filas que no pueden interpretarse se entregan como
+ * {@link FilaImportacion#invalida(long, String)} en lugar de interrumpir la lectura.</p>
+ */
+class LectorCsvLibros implements Iterator<FilaImportacion> {
+
+    private static final List<String> COLUMNAS =
+            List.of("titulo", "autor", "isbn", "aniopublicacion", "editorial", "estadolibro");
+
+    private final BufferedReader lector;
+    private final Map<String, Integer> posiciones = new HashMap<>();
+    private long numeroFila;
+    private List<String> siguiente;
+
+    /**
+     * Crea el lector y consume la fila de cabecera.
+     *
+     * @param lector origen del CSV
+     * @throws IOException si falla la lectura
+     * @throws IllegalArgumentException si la cabecera falta o no incluye la columna {@code titulo}
+     */
+    LectorCsvLibros(BufferedReader lector) throws IOException {
+        this.lector = lector;
+        List<String> cabecera = leerRegistro();
+        if (cabecera == null) {
+            throw new IllegalArgumentException("El CSV está vacío");
+        }
+        for (int i = 0; i < cabecera.size(); i++) {
+            String columna = cabecera.get(i).strip().toLowerCase(Locale.ROOT);
+            if (COLUMNAS.contains(columna)) {
+                posiciones.put(columna, i);
+            }
+        }
+        if (!posiciones.containsKey("titulo")) {
+            throw new IllegalArgumentException("La cabecera del CSV debe incluir la columna titulo");
+        }
+        this.siguiente = leerRegistro();
+    }
+
+    @Override
+    public boolean hasNext() {
+        return siguiente != null;
+    }
+
+    @Override
+    public FilaImportacion next() {
+        if (siguiente == null) {
+            throw new NoSuchElementException();
+        }
+        List<String> campos = siguiente;
+        long numero = ++numeroFila;
+        try {
+            siguiente = leerRegistro();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return convertir(numero, campos);
+    }
+
+    private FilaImportacion convertir(long numero, List<String> campos) {
+        Libro libro = new Libro();
+        libro.setTitulo(campo(campos, "titulo"));
+        libro.setAutor(campo(campos, "autor"));
+        libro.setIsbn(campo(campos, "isbn"));
+        libro.setEditorial(campo(campos, "editorial"));
+
+        String anio = campo(campos, "aniopublicacion");
+        if (anio != null) {
+            try {
+                libro.setAnioPublicacion(Integer.valueOf(anio));
+            } catch (NumberFormatException e) {
+                return FilaImportacion.invalida(numero, "Año de publicación no numérico: " + anio);
+            }
+        }
+
+        String estado = campo(campos, "estadolibro");
+        if (estado != null) {
+            try {
+                libro.setEstadoLibro(Libro.Estado.valueOf(estado.toUpperCase(Locale.ROOT)));
+            } catch (IllegalArgumentException e) {
+                return FilaImportacion.invalida(numero, "Estado desconocido: " + estado);
+            }
+        }
+        return FilaImportacion.valida(numero, libro);
+    }
+
+    /**
+     * Devuelve el valor de una columna, o {@code null} si no existe o está vacío.
+     */
+    private String campo(List<String> campos, String columna) {
+        Integer posicion = posiciones.get(columna);
+        if (posicion == null || posicion >= campos.size()) {
+            return null;
+        }
+        String valor = campos.get(posicion).strip();
+        return valor.isEmpty() ? null : valor;
+    }
+
+    /**
+     * Lee un registro completo, que puede abarcar varias líneas si contiene campos entre comillas.
+     * Las líneas en blanco se omiten.
+     *
+     * @return campos del registro, o {@code null} al final del origen
+     */
+    private List<String> leerRegistro() throws IOException {
+        String linea = lector.readLine();
+        while (linea != null && linea.isBlank()) {
+            linea = lector.readLine();
+        }
+        if (linea == null) {
+            return null;
+        }
+
+        List<String> campos = new ArrayList<>();
+        StringBuilder actual = new StringBuilder();
+        boolean entreComillas = false;
+        while (true) {
+            for (int i = 0; i < linea.length(); i++) {
+                char c = linea.charAt(i);
+                if (entreComillas) {
+                    if (c == '"' && i + 1 < linea.length() && linea.charAt(i + 1) == '"') {
+                        actual.append('"');
+                        i++;
+                    } else if (c == '"') {
+                        entreComillas = false;
+                    } else {
+                        actual.append(c);
+                    }
+                } else if (c == '"') {
+                    entreComillas = true;
+                } else if (c == ',') {
+                    campos.add(actual.toString());
+                    actual.setLength(0);
+                } else {
+                    actual.append(c);
+                }
+            }
+            if (!entreComillas) {
+                break;
+            }
+            // Campo entre comillas con salto de línea: el registro continúa en la línea siguiente.
+            linea = lector.readLine();
+            if (linea == null) {
+                break;
+            }
+            actual.append('\n');
+        }
+        campos.add(actual.toString());
+        return campos;
+    }
+}
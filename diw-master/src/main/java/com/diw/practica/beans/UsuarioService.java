@@ -1,5 +1,11 @@
 package com.diw.practica.beans;
 
+import com.diw.practica.dto.LibroResumen;
+import com.diw.practica.dto.PaginaCursor;
+import com.diw.practica.dto.ReservaLibro;
+import com.diw.practica.dto.ResultadoBusqueda;
+import com.diw.practica.dto.ResultadoLote;
+import com.diw.practica.dto.SugerenciaAutocompletado;
 import com.diw.practica.model.Libro;
 
 import java.util.List;
@@ -20,30 +26,71 @@ public interface UsuarioService {
     /**
      * Obtiene todos los libros que actualmente están disponibles para préstamo.
      *
-     * <p>La lista devuelta no debe ser {@code null}; puede ser vacía si no hay libros disponibles.</p>
+     * <p>La lista devuelta no debe ser {@code null}; puede ser vacía si no hay libros disponibles.
+     * Se devuelven vistas de solo lectura, sin el usuario prestatario.</p>
      *
      * @return lista de libros disponibles para préstamo
      */
-    List<Libro> librosDisponibles();
+    List<LibroResumen> librosDisponibles();
 
     /**
-     * Recupera los libros que tiene actualmente prestados un usuario identificado por {@code usuarioId}.
+     * Busca libros por texto libre en título, autor, editorial e ISBN.
      *
-     * <p>Si el usuario no tiene préstamos, se debe devolver una lista vacía.</p>
+     * <p>La búsqueda no distingue mayúsculas ni acentos y exige que aparezcan todos los términos
+     * de la consulta. Los resultados se ordenan por relevancia y se devuelven paginados.</p>
+     *
+     * @param consulta texto a buscar; si no contiene términos significativos el resultado es vacío
+     * @param pagina   número de página, desde 0
+     * @param tamanio  número máximo de libros por página
+     * @return página de resultados; nunca {@code null}
+     * @throws IllegalArgumentException si {@code pagina} es negativa
+     */
+    ResultadoBusqueda buscarLibros(String consulta, int pagina, int tamanio);
+
+    /**
+     * Sugiere títulos y autores que empiezan por el prefijo tecleado en cualquiera de sus palabras.
+     *
+     * <p>Las sugerencias se ordenan de más a menos préstamos acumulados y no distinguen
+     * mayúsculas ni acentos.</p>
+     *
+     * @param prefijo texto tecleado; si está vacío el resultado es vacío
+     * @param k       número máximo de sugerencias
+     * @return sugerencias ordenadas por popularidad; nunca {@code null}
+     */
+    List<SugerenciaAutocompletado> autocompletar(String prefijo, int k);
+
+    /**
+     * Recupera una página de los libros que tiene actualmente prestados un usuario, ordenados por id.
+     *
+     * <p>Si el usuario no tiene préstamos o no existe, la página es vacía. La página siguiente se
+     * obtiene reenviando el cursor devuelto.</p>
      *
      * @param usuarioId identificador del usuario cuyos préstamos se desean consultar; no debe ser {@code null}
-     * @return lista de libros prestados al usuario (vacía si no tiene préstamos)
-     * @throws IllegalArgumentException si {@code usuarioId} es {@code null}
+     * @param cursor    token devuelto en la página anterior, o {@code null} para la primera
+     * @param tamanio   número máximo de libros por página
+     * @return página de libros prestados al usuario; nunca {@code null}
+     * @throws NullPointerException     si {@code usuarioId} es {@code null}
+     * @throws IllegalArgumentException si el cursor no es válido
+     */
+    PaginaCursor<LibroResumen> prestamosDeUsuario(Integer usuarioId, String cursor, int tamanio);
+
+    /**
+     * Cuenta los libros que tiene actualmente prestados un usuario.
+     *
+     * @param usuarioId identificador del usuario; no debe ser {@code null}
+     * @return número de préstamos activos (0 si el usuario no existe)
+     * @throws NullPointerException si {@code usuarioId} es {@code null}
      */
-    List<Libro> prestamosDeUsuario(Integer usuarioId);
+    long contarPrestamos(Integer usuarioId);
 
     /**
      * Solicita el préstamo de un libro para un usuario.
      *
      * <p>Si la solicitud se procesa correctamente y el libro queda prestado, se devuelve un
-     * {@link Optional} con el {@link Libro} prestado. Si la solicitud no puede completarse
-     * (por ejemplo, el libro no existe, no está disponible o el usuario no puede tomarlo),
-     * se devuelve {@link Optional#empty()}.</p>
+     * {@link Optional} con el {@link Libro} prestado. Un libro {@link Libro.Estado#RESERVADO}
+     * solo puede prestarse al usuario para quien está reservado. Si la solicitud no puede
+     * completarse (por ejemplo, el libro no existe, no está disponible o el usuario no puede
+     * tomarlo), se devuelve {@link Optional#empty()}.</p>
      *
      * @param usuarioId identificador del usuario solicitante; no debe ser {@code null}
      * @param libroId   identificador del libro a solicitar; no debe ser {@code null}
@@ -56,8 +103,10 @@ public interface UsuarioService {
      * Devuelve un libro que tenía prestado un usuario.
      *
      * <p>Si la devolución se procesa correctamente y el préstamo se cierra, se devuelve un
-     * {@link Optional} con el {@link Libro} devuelto. Si no existía dicho préstamo o la
-     * devolución no puede realizarse, se devuelve {@link Optional#empty()}.</p>
+     * {@link Optional} con el {@link Libro} devuelto. Si alguien había reservado el libro, pasa
+     * en la misma transacción a {@link Libro.Estado#RESERVADO} a nombre de la primera reserva.
+     * Si no existía dicho préstamo o la devolución no puede realizarse, se devuelve
+     * {@link Optional#empty()}.</p>
      *
      * @param usuarioId identificador del usuario que devuelve el libro; no debe ser {@code null}
      * @param libroId   identificador del libro a devolver; no debe ser {@code null}
@@ -65,4 +114,90 @@ public interface UsuarioService {
      * @throws IllegalArgumentException si {@code usuarioId} o {@code libroId} son {@code null}
      */
     Optional<Libro> devolverPrestamo(Integer usuarioId, Integer libroId);
-}
\ No newline at end of file
+
+    /**
+     * Presta varios libros a un usuario en una única transacción.
+     *
+     * <p>Cada libro se resuelve por separado: se prestan los que están disponibles y del resto se
+     * indica el motivo. Los identificadores repetidos se tienen en cuenta una sola vez.</p>
+     *
+     * @param usuarioId identificador del usuario solicitante; no debe ser {@code null}
+     * @param libroIds  identificadores de los libros; ninguno debe ser {@code null}
+     * @return resultado de cada libro, en el orden pedido; nunca {@code null}
+     * @throws NullPointerException     si {@code usuarioId} o {@code libroIds} son {@code null}
+     * @throws IllegalArgumentException si algún identificador es {@code null} o el lote es demasiado grande
+     */
+    ResultadoLote solicitarPrestamos(Integer usuarioId, List<Integer> libroIds);
+
+    /**
+     * Devuelve varios libros de un usuario en una única transacción.
+     *
+     * <p>Se devuelven los libros que tiene el usuario; del resto se indica el motivo. Los
+     * identificadores repetidos se tienen en cuenta una sola vez.</p>
+     *
+     * @param usuarioId identificador del usuario que devuelve los libros; no debe ser {@code null}
+     * @param libroIds  identificadores de los libros; ninguno debe ser {@code null}
+     * @return resultado de cada libro, en el orden pedido; nunca {@code null}
+     * @throws NullPointerException     si {@code usuarioId} o {@code libroIds} son {@code null}
+     * @throws IllegalArgumentException si algún identificador es {@code null} o el lote es demasiado grande
+     */
+    ResultadoLote devolverPrestamos(Integer usuarioId, List<Integer> libroIds);
+
+    /**
+     * Devuelve todos los libros que tiene prestados un usuario en una única transacción.
+     *
+     * @param usuarioId identificador del usuario; no debe ser {@code null}
+     * @return resultado de cada libro devuelto; vacío si no tenía préstamos o no existe
+     * @throws NullPointerException si {@code usuarioId} es {@code null}
+     */
+    ResultadoLote devolverTodos(Integer usuarioId);
+
+    /**
+     * Reserva un libro prestado o reservado para otro usuario.
+     *
+     * <p>La reserva entra en la cola del libro según el rol del usuario y la hora de solicitud.
+     * Si el usuario ya tenía reservado el libro, se devuelve su reserva sin cambios. No se pueden
+     * reservar libros disponibles ni libros que el usuario ya tiene.</p>
+     *
+     * @param usuarioId identificador del usuario; no debe ser {@code null}
+     * @param libroId   identificador del libro; no debe ser {@code null}
+     * @return {@code Optional} con la situación de la reserva, o {@code Optional.empty()} si no es posible
+     * @throws NullPointerException si {@code usuarioId} o {@code libroId} son {@code null}
+     */
+    Optional<ReservaLibro> reservarLibro(Integer usuarioId, Integer libroId);
+
+    /**
+     * Cancela la reserva de un libro.
+     *
+     * <p>Si el libro aún no le había llegado al usuario, sale de la cola. Si ya estaba
+     * {@link Libro.Estado#RESERVADO} a su nombre, renuncia a él y pasa a la siguiente reserva,
+     * o queda disponible si no hay más.</p>
+     *
+     * @param usuarioId identificador del usuario; no debe ser {@code null}
+     * @param libroId   identificador del libro; no debe ser {@code null}
+     * @return {@code true} si el usuario tenía la reserva
+     * @throws NullPointerException si {@code usuarioId} o {@code libroId} son {@code null}
+     */
+    boolean cancelarReserva(Integer usuarioId, Integer libroId);
+
+    /**
+     * Retira un libro {@link Libro.Estado#RESERVADO} cuyo plazo de recogida ha vencido.
+     *
+     * <p>El libro pasa a la siguiente reserva de su cola, con un plazo nuevo, o queda disponible si
+     * no hay más. Si entretanto el usuario lo recogió o renunció a él, no se hace nada.</p>
+     *
+     * @param libroId identificador del libro; no debe ser {@code null}
+     * @return {@code true} si la reserva había caducado
+     * @throws NullPointerException si {@code libroId} es {@code null}
+     */
+    boolean caducarReserva(Integer libroId);
+
+    /**
+     * Obtiene las reservas de un usuario que siguen en cola, con su posición.
+     *
+     * @param usuarioId identificador del usuario; no debe ser {@code null}
+     * @return reservas pendientes en orden de solicitud; vacía si no tiene
+     * @throws NullPointerException si {@code usuarioId} es {@code null}
+     */
+    List<ReservaLibro> reservasDeUsuario(Integer usuarioId);
+}
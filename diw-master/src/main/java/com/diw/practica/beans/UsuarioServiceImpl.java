@@ -1,16 +1,51 @@
 package com.diw.practica.beans;
 
+import com.diw.practica.busqueda.Autocompletado;
+import com.diw.practica.busqueda.IndiceCatalogo;
+import com.diw.practica.cache.CatalogoCache;
+import com.diw.practica.cache.LecturasCoalescidas;
+import com.diw.practica.dto.CursorKeyset;
+import com.diw.practica.dto.LibroConPrestatario;
+import com.diw.practica.dto.LibroResumen;
+import com.diw.practica.dto.OrdenLibro;
+import com.diw.practica.dto.PaginaCursor;
+import com.diw.practica.dto.ReservaLibro;
+import com.diw.practica.dto.ResultadoBusqueda;
+import com.diw.practica.dto.ResultadoLote;
+import com.diw.practica.dto.SugerenciaAutocompletado;
+import com.diw.practica.eventos.LibroCambiadoEvent;
+import com.diw.practica.metricas.MetricasBiblioteca;
+import com.diw.practica.metricas.MetricasBiblioteca.OperacionPrestamo;
+import com.diw.practica.metricas.MetricasBiblioteca.ResultadoPrestamo;
 import com.diw.practica.model.Libro;
+import com.diw.practica.model.Reserva;
 import com.diw.practica.model.Usuario;
 import com.diw.practica.repository.LibroRepository;
+import com.diw.practica.repository.ReservaRepository;
 import com.diw.practica.repository.UsuarioRepository;
+import com.diw.practica.reservas.ColaReservas;
+import com.diw.practica.reservas.EntradaReserva;
+import io.micrometer.core.instrument.Timer;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
 
-import java.util.Collections;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 
 /**
  * Implementación de {@code UsuarioService} que gestiona operaciones relacionadas con
@@ -19,13 +54,17 @@ import java.util.Optional;
  * <p>Esta clase proporciona métodos para:
  * <ul>
  *     <li>Listar libros disponibles.</li>
- *     <li>Obtener los préstamos (libros) de un usuario.</li>
+ *     <li>Obtener los préstamos (libros) de un usuario, paginados por cursor, y su número.</li>
  *     <li>Solicitar el préstamo de un libro por un usuario.</li>
  *     <li>Devolver un libro prestado por un usuario.</li>
+ *     <li>Prestar o devolver varios libros, o todos los de un usuario, en una transacción.</li>
+ *     <li>Reservar libros prestados y entregarlos por orden de reserva al devolverse.</li>
  * </ul>
  *
  * <p>Las operaciones que modifican entidades persisten los cambios mediante los
- * repositorios {@link UsuarioRepository} y {@link LibroRepository}.
+ * repositorios {@link UsuarioRepository} y {@link LibroRepository}. Los préstamos y
+ * devoluciones se resuelven con una actualización condicionada en una sola sentencia,
+ * lo que los hace seguros frente a peticiones concurrentes sobre el mismo libro.
  *
  * @see UsuarioService
  * @see UsuarioRepository
@@ -35,6 +74,38 @@ import java.util.Optional;
 @Service
 public class UsuarioServiceImpl implements UsuarioService {
 
+    /**
+     * Tamaño máximo de página admitido en las búsquedas.
+     */
+    static final int TAMANIO_MAXIMO_BUSQUEDA = 100;
+
+    /**
+     * Tamaño máximo de página admitido en el listado de préstamos de un usuario.
+     */
+    static final int TAMANIO_MAXIMO_PRESTAMOS = 200;
+
+    /**
+     * Número máximo de libros distintos en un préstamo o una devolución por lotes.
+     */
+    static final int MAXIMO_LIBROS_LOTE = 5_000;
+
+    /**
+     * Ids por sentencia en los préstamos y devoluciones por lotes.
+     */
+    static final int TAMANIO_TRAMO_LOTE = 500;
+
+    /**
+     * Nombres de las lecturas por usuario en {@link LecturasCoalescidas}.
+     */
+    static final String LECTURA_PRESTAMOS = "usuarios.prestamos";
+    static final String LECTURA_TOTAL_PRESTAMOS = "usuarios.prestamos.total";
+
+    /**
+     * Parámetros de una página de préstamos, clave de su lectura coalescida.
+     */
+    private record ConsultaPrestamos(Integer usuarioId, int ultimoId, int limite) {
+    }
+
     /**
      * Repositorio de usuarios inyectado para búsquedas y persistencia.
      */
@@ -45,45 +116,203 @@ public class UsuarioServiceImpl implements UsuarioService {
      */
     private final LibroRepository libroRepository;
 
+    /**
+     * Repositorio de reservas, fuente de verdad de las colas de reserva.
+     */
+    private final ReservaRepository reservaRepository;
+
+    /**
+     * Colas de reserva por libro en memoria.
+     */
+    private final ColaReservas colaReservas;
+
+    /**
+     * Caché de lectura del catálogo (libros por id y listado de disponibles).
+     */
+    private final CatalogoCache catalogoCache;
+
+    /**
+     * Índice invertido en memoria para las búsquedas de texto.
+     */
+    private final IndiceCatalogo indiceCatalogo;
+
+    /**
+     * Sugerencias por prefijo de títulos y autores.
+     */
+    private final Autocompletado autocompletado;
+
+    /**
+     * Publicador de {@link LibroCambiadoEvent} tras cada préstamo o devolución.
+     */
+    private final ApplicationEventPublisher eventPublisher;
+
+    /**
+     * Temporizadores de préstamos, devoluciones y listado de disponibles.
+     */
+    private final MetricasBiblioteca metricas;
+
+    /**
+     * Coalescencia de las lecturas de préstamos idénticas y simultáneas.
+     */
+    private final LecturasCoalescidas lecturas;
+
+    /**
+     * Plazo que tiene el usuario de una reserva para recoger el libro que se le entrega.
+     */
+    private final Duration plazoRecogida;
+
     /**
      * Crea una nueva instancia de {@code UsuarioServiceImpl} con los repositorios necesarios.
      *
      * @param usuarioRepository repositorio usado para operaciones con {@link Usuario}; no debe ser {@code null}.
      * @param libroRepository   repositorio usado para operaciones con {@link Libro}; no debe ser {@code null}.
+     * @param reservaRepository repositorio usado para operaciones con {@link Reserva}; no debe ser {@code null}.
+     * @param colaReservas      colas de reserva en memoria; no debe ser {@code null}.
+     * @param catalogoCache     caché de lectura del catálogo; no debe ser {@code null}.
+     * @param indiceCatalogo    índice de búsqueda del catálogo; no debe ser {@code null}.
+     * @param autocompletado    sugerencias por prefijo del catálogo; no debe ser {@code null}.
+     * @param eventPublisher    publicador de eventos de cambio del catálogo; no debe ser {@code null}.
+     * @param metricas          temporizadores de las operaciones; no debe ser {@code null}.
+     * @param lecturas          coalescencia de lecturas idénticas; no debe ser {@code null}.
+     * @param plazoRecogida     plazo para recoger un libro entregado a una reserva.
      */
     @Autowired
-    public UsuarioServiceImpl(UsuarioRepository usuarioRepository, LibroRepository libroRepository) {
+    public UsuarioServiceImpl(UsuarioRepository usuarioRepository, LibroRepository libroRepository,
+                              ReservaRepository reservaRepository, ColaReservas colaReservas,
+                              CatalogoCache catalogoCache, IndiceCatalogo indiceCatalogo,
+                              Autocompletado autocompletado, ApplicationEventPublisher eventPublisher,
+                              MetricasBiblioteca metricas, LecturasCoalescidas lecturas,
+                              @Value("${diw.reservas.plazo-recogida:3d}") Duration plazoRecogida) {
         this.usuarioRepository = usuarioRepository;
         this.libroRepository = libroRepository;
+        this.reservaRepository = reservaRepository;
+        this.colaReservas = colaReservas;
+        this.catalogoCache = catalogoCache;
+        this.indiceCatalogo = indiceCatalogo;
+        this.autocompletado = autocompletado;
+        this.eventPublisher = eventPublisher;
+        this.metricas = metricas;
+        this.lecturas = lecturas;
+        this.plazoRecogida = plazoRecogida;
     }
 
     /**
      * Recupera la lista de libros cuyo estado es {@link Libro.Estado#DISPONIBLE}.
      *
-     * <p>Este método delega la consulta al {@link LibroRepository}.
+     * <p>El listado se sirve desde {@link CatalogoCache}; en caso de fallo se consulta al
+     * {@link LibroRepository}, que proyecta solo las columnas del libro sin cargar entidades
+     * ni su prestatario.
      *
      * @return lista de libros disponibles; si no hay, se devuelve una lista vacía.
      */
     @Override
-    public List<Libro> librosDisponibles() {
-        return libroRepository.findByEstadoLibro(Libro.Estado.DISPONIBLE);
+    public List<LibroResumen> librosDisponibles() {
+        return metricas.medirLibrosDisponibles(catalogoCache::disponibles);
+    }
+
+    /**
+     * Busca libros en el índice invertido en memoria, sin acceder a la base de datos.
+     *
+     * @param consulta texto a buscar
+     * @param pagina   número de página, desde 0
+     * @param tamanio  número máximo de libros; se acota a [1, {@value #TAMANIO_MAXIMO_BUSQUEDA}]
+     * @return página de resultados ordenados por relevancia
+     */
+    @Override
+    public ResultadoBusqueda buscarLibros(String consulta, int pagina, int tamanio) {
+        if (pagina < 0) {
+            throw new IllegalArgumentException("La página no puede ser negativa");
+        }
+        int limite = Math.max(1, Math.min(tamanio, TAMANIO_MAXIMO_BUSQUEDA));
+        return indiceCatalogo.buscar(consulta, pagina, limite);
+    }
+
+    /**
+     * Resuelve el prefijo en el índice de autocompletado en memoria, sin acceder a la base de datos.
+     *
+     * @param prefijo texto tecleado
+     * @param k       número máximo de sugerencias; se acota a [1, {@value Autocompletado#MAXIMO_SUGERENCIAS}]
+     * @return sugerencias ordenadas por popularidad
+     */
+    @Override
+    public List<SugerenciaAutocompletado> autocompletar(String prefijo, int k) {
+        if (prefijo == null) {
+            return List.of();
+        }
+        return autocompletado.sugerir(prefijo, k);
     }
 
     /**
-     * Obtiene la lista de libros actualmente prestados a un usuario determinado.
+     * Obtiene una página de los libros prestados a un usuario con una única consulta sobre la clave
+     * foránea del libro, sin cargar el {@link Usuario} ni su colección de libros.
      *
-     * <p>Si el usuario no existe, se devuelve una lista vacía.
+     * <p>Se pide un libro más del tamaño de página para saber si hay página siguiente sin una
+     * consulta adicional. Las peticiones idénticas simultáneas comparten la consulta a través de
+     * {@link LecturasCoalescidas}; un préstamo o devolución del usuario la descarta, así que nunca se
+     * sirve una página anterior a sus propios cambios.</p>
      *
-     * @param usuarioId identificador del usuario cuyo listado de préstamos se solicita; puede ser {@code null}.
-     * @return lista de {@link Libro} asociados al usuario, o lista vacía si el usuario no existe.
+     * @param usuarioId identificador del usuario cuyo listado de préstamos se solicita.
+     * @param cursor    token de la página anterior, o {@code null} para la primera.
+     * @param tamanio   número máximo de libros; se acota a [1, {@value #TAMANIO_MAXIMO_PRESTAMOS}]
+     * @return página de préstamos; vacía si el usuario no existe o no tiene préstamos.
      */
     @Override
-    public List<Libro> prestamosDeUsuario(Integer usuarioId) {
+    public PaginaCursor<LibroResumen> prestamosDeUsuario(Integer usuarioId, String cursor, int tamanio) {
         Objects.requireNonNull(usuarioId, "El identificador del usuario no puede ser nulo");
+        int limite = Math.max(1, Math.min(tamanio, TAMANIO_MAXIMO_PRESTAMOS));
+
+        CursorKeyset posicion = cursor != null
+                ? CursorKeyset.decodificar(cursor)
+                : new CursorKeyset(OrdenLibro.ID, "", 0);
+        if (posicion.orden() != OrdenLibro.ID) {
+            throw new IllegalArgumentException("El cursor no corresponde a un listado de préstamos");
+        }
 
-        return usuarioRepository.findById(usuarioId)
-                .map(Usuario::getLibros)
-                .orElse(Collections.emptyList());
+        List<LibroResumen> libros = lecturas.leer(LECTURA_PRESTAMOS,
+                new ConsultaPrestamos(usuarioId, posicion.ultimoId(), limite),
+                () -> List.copyOf(libroRepository.prestamosDeUsuario(usuarioId, posicion.ultimoId(), Limit.of(limite + 1))));
+        if (libros.size() <= limite) {
+            return new PaginaCursor<>(libros, null);
+        }
+        List<LibroResumen> contenido = libros.subList(0, limite);
+        return new PaginaCursor<>(contenido,
+                new CursorKeyset(OrdenLibro.ID, "", contenido.get(limite - 1).id()).codificar());
+    }
+
+    /**
+     * Cuenta los préstamos de un usuario sobre la clave foránea del libro, sin cargar entidades.
+     * Los recuentos simultáneos del mismo usuario comparten la consulta.
+     *
+     * @param usuarioId identificador del usuario.
+     * @return número de libros prestados al usuario.
+     */
+    @Override
+    public long contarPrestamos(Integer usuarioId) {
+        Objects.requireNonNull(usuarioId, "El identificador del usuario no puede ser nulo");
+        return lecturas.leer(LECTURA_TOTAL_PRESTAMOS, usuarioId,
+                () -> libroRepository.contarPrestamosDeUsuario(usuarioId));
+    }
+
+    /**
+     * Descarta tras el commit las lecturas coalescidas de préstamos de los usuarios afectados por
+     * un cambio, para que sus siguientes consultas ya lo reflejen.
+     *
+     * @param evento cambio sobre un libro
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void alCambiarLibro(LibroCambiadoEvent evento) {
+        Set<Integer> usuarios = new HashSet<>(2);
+        if (evento.prestatarioAnterior() != null) {
+            usuarios.add(evento.prestatarioAnterior());
+        }
+        if (evento.prestatarioActual() != null) {
+            usuarios.add(evento.prestatarioActual());
+        }
+        if (usuarios.isEmpty()) {
+            return;
+        }
+        lecturas.invalidar(LECTURA_PRESTAMOS, consulta -> usuarios.contains(((ConsultaPrestamos) consulta).usuarioId()));
+        lecturas.invalidar(LECTURA_TOTAL_PRESTAMOS, usuarios::contains);
     }
 
     /**
@@ -91,44 +320,82 @@ public class UsuarioServiceImpl implements UsuarioService {
      *
      * <p>Flujo:
      * <ol>
-     *     <li>Verifica que el usuario y el libro existan.</li>
-     *     <li>Verifica que el libro esté en estado {@link Libro.Estado#DISPONIBLE}.</li>
-     *     <li>Actualiza el estado del libro a {@link Libro.Estado#PRESTADO}, asigna el usuario
-     *     como prestatario y añade el libro a la colección de libros del usuario.</li>
-     *     <li>Persiste los cambios en ambos repositorios y devuelve el libro actualizado.</li>
+     *     <li>Ejecuta una única sentencia {@code UPDATE} condicionada a que el libro esté en estado
+     *     {@link Libro.Estado#DISPONIBLE} y a que el usuario exista, que lo pasa a
+     *     {@link Libro.Estado#PRESTADO} y asigna el usuario como prestatario.</li>
+     *     <li>Si la sentencia no modifica ninguna fila, el préstamo no es posible.</li>
+     *     <li>En caso contrario, recarga y devuelve el libro actualizado.</li>
      * </ol>
      *
+     * <p>Al delegar la comprobación en la propia sentencia, dos peticiones concurrentes sobre el
+     * mismo libro no pueden concederlo ambas: la base de datos serializa la escritura sobre la fila.
+     * {@link CatalogoCache} solo orienta qué sentencia probar primero: si el libro consta como
+     * {@link Libro.Estado#RESERVADO}, la que exige que esté reservado para el usuario. Una entrada
+     * de la caché nunca rechaza la solicitud por sí sola; si la sentencia no modifica ninguna fila,
+     * se descarta la entrada, se consulta el estado real y, si es el otro estado admitido, se
+     * prueba la sentencia correspondiente.
+     *
      * <p>Si el usuario o el libro no existen, o el libro no está disponible, se devuelve {@link Optional#empty()}.
+     * La duración se registra en {@link MetricasBiblioteca} con el resultado de la solicitud.
      *
      * @param usuarioId identificador del usuario que solicita el préstamo.
      * @param libroId   identificador del libro solicitado.
      * @return {@link Optional} con el {@link Libro} prestado tras la operación, o {@code Optional.empty()} si no se pudo realizar.
      */
     @Override
+    @Transactional
     public Optional<Libro> solicitarPrestamo(Integer usuarioId, Integer libroId) {
         Objects.requireNonNull(usuarioId, "El identificador del usuario no puede ser nulo");
         Objects.requireNonNull(libroId, "El identificador del libro no puede ser nulo");
 
-        Optional<Usuario> usuario = usuarioRepository.findById(usuarioId);
-        Optional<Libro> libro = libroRepository.findById(libroId);
-
-        if (usuario.isEmpty() || libro.isEmpty()) {
-            return Optional.empty();
-        }
+        Timer.Sample muestra = metricas.iniciar();
+        ResultadoPrestamo resultado = ResultadoPrestamo.ERROR;
+        try {
+            Libro.Estado supuesto = catalogoCache.libro(libroId).map(LibroResumen::estadoLibro).orElse(null);
 
-        Libro libroSolicitado = libro.get();
-        if (libroSolicitado.getEstadoLibro() != Libro.Estado.DISPONIBLE) {
-            return Optional.empty();
+            // Referencia sin consulta previa: la existencia del usuario se comprueba en la sentencia.
+            Usuario usuario = usuarioRepository.getReferenceById(usuarioId);
+            Libro.Estado intentado = supuesto == Libro.Estado.RESERVADO ? Libro.Estado.RESERVADO : Libro.Estado.DISPONIBLE;
+            int modificadas = prestarSiEstado(libroId, usuario, intentado);
+            if (modificadas == 0) {
+                // La caché pudo estar obsoleta: se descarta y se decide con el estado real.
+                catalogoCache.invalidar(libroId);
+                Optional<Libro.Estado> real = libroRepository.resumenPorId(libroId).map(LibroResumen::estadoLibro);
+                if (real.isPresent() && real.get() != intentado && real.get() != Libro.Estado.PRESTADO) {
+                    intentado = real.get();
+                    modificadas = prestarSiEstado(libroId, usuario, intentado);
+                }
+                if (modificadas == 0) {
+                    resultado = real.isPresent() && usuarioRepository.existsById(usuarioId)
+                            ? ResultadoPrestamo.NO_DISPONIBLE
+                            : ResultadoPrestamo.NO_ENCONTRADO;
+                    return Optional.empty();
+                }
+            }
+            Libro.Estado estadoAnterior = intentado;
+            Optional<Libro> prestado = libroRepository.findById(libroId).map(libro -> {
+                publicarTransicion(LibroCambiadoEvent.Tipo.PRESTADO, estadoAnterior, libro, usuarioId);
+                return libro;
+            });
+            resultado = prestado.isPresent() ? ResultadoPrestamo.EXITO : ResultadoPrestamo.NO_ENCONTRADO;
+            return prestado;
+        } finally {
+            metricas.registrarPrestamo(muestra, OperacionPrestamo.SOLICITAR, resultado);
         }
+    }
 
-        libroSolicitado.setEstadoLibro(Libro.Estado.PRESTADO);
-        libroSolicitado.setPrestadoA(usuario.get());
-        usuario.get().getLibros().add(libroSolicitado);
-
-        libroRepository.save(libroSolicitado);
-        usuarioRepository.save(usuario.get());
-
-        return Optional.of(libroSolicitado);
+    /**
+     * Presta un libro con la sentencia condicionada al estado del que parte.
+     *
+     * @param libroId identificador del libro
+     * @param usuario referencia al usuario
+     * @param estado  estado del libro que exige la sentencia: disponible o reservado para el usuario
+     * @return filas modificadas (0 o 1)
+     */
+    private int prestarSiEstado(Integer libroId, Usuario usuario, Libro.Estado estado) {
+        return estado == Libro.Estado.RESERVADO
+                ? libroRepository.prestarSiReservadoPara(libroId, usuario)
+                : libroRepository.prestarSiDisponible(libroId, usuario);
     }
 
     /**
@@ -136,11 +403,14 @@ public class UsuarioServiceImpl implements UsuarioService {
      *
      * <p>Flujo:
      * <ol>
-     *     <li>Verifica que el usuario y el libro existan.</li>
-     *     <li>Verifica que el libro esté efectivamente prestado al usuario indicado.</li>
-     *     <li>Actualiza el estado del libro a {@link Libro.Estado#DISPONIBLE}, elimina la referencia
-     *     al prestatario y elimina el libro de la colección de préstamos del usuario.</li>
-     *     <li>Persiste los cambios en ambos repositorios y devuelve el libro actualizado.</li>
+     *     <li>Bloquea la fila del libro, igual que al reservarlo, para que una reserva y la
+     *     devolución no puedan cruzarse.</li>
+     *     <li>Si el libro no está prestado al usuario indicado, la devolución no es válida.</li>
+     *     <li>Si alguien espera el libro, una única sentencia {@code UPDATE} lo pasa de
+     *     {@link Libro.Estado#PRESTADO} a {@link Libro.Estado#RESERVADO} a nombre de la primera
+     *     reserva (ver {@link #entregarAReserva}); si no, otra lo deja
+     *     {@link Libro.Estado#DISPONIBLE} sin prestatario.</li>
+     *     <li>Recarga y devuelve el libro actualizado.</li>
      * </ol>
      *
      * <p>Si el usuario o libro no existen, o si el libro no está prestado al usuario indicado,
@@ -151,30 +421,432 @@ public class UsuarioServiceImpl implements UsuarioService {
      * @return {@link Optional} con el {@link Libro} actualizado tras la devolución, o {@code Optional.empty()} si no se pudo procesar.
      */
     @Override
+    @Transactional
     public Optional<Libro> devolverPrestamo(Integer usuarioId, Integer libroId) {
         Objects.requireNonNull(usuarioId, "El identificador del usuario no puede ser nulo");
         Objects.requireNonNull(libroId, "El identificador del libro no puede ser nulo");
 
-        Optional<Usuario> usuario = usuarioRepository.findById(usuarioId);
-        Optional<Libro> libro = libroRepository.findById(libroId);
+        Timer.Sample muestra = metricas.iniciar();
+        ResultadoPrestamo resultado = ResultadoPrestamo.ERROR;
+        try {
+            List<LibroConPrestatario> bloqueado = libroRepository.bloquearPorIds(List.of(libroId));
+            if (bloqueado.isEmpty()) {
+                resultado = ResultadoPrestamo.NO_ENCONTRADO;
+                return Optional.empty();
+            }
+            Map<Integer, ResultadoLote.Resultado> resultados = new HashMap<>();
+            devolver(usuarioId, bloqueado, resultados);
+            if (resultados.get(libroId) != ResultadoLote.Resultado.EXITO) {
+                resultado = usuarioRepository.existsById(usuarioId)
+                        ? ResultadoPrestamo.NO_DISPONIBLE
+                        : ResultadoPrestamo.NO_ENCONTRADO;
+                return Optional.empty();
+            }
+            Optional<Libro> devuelto = libroRepository.findById(libroId);
+            resultado = devuelto.isPresent() ? ResultadoPrestamo.EXITO : ResultadoPrestamo.NO_ENCONTRADO;
+            return devuelto;
+        } finally {
+            metricas.registrarPrestamo(muestra, OperacionPrestamo.DEVOLVER, resultado);
+        }
+    }
 
-        if (usuario.isEmpty() || libro.isEmpty()) {
-            return Optional.empty();
+    /**
+     * Presta los libros disponibles de la lista y los que estaban reservados para el usuario.
+     *
+     * <p>Por cada tramo de hasta {@value #TAMANIO_TRAMO_LOTE} ids se bloquean las filas con una
+     * lectura ({@link LibroRepository#bloquearPorIds}) y se prestan los disponibles con una única
+     * sentencia {@code UPDATE ... WHERE id IN (...)}. Al estar bloqueadas, la sentencia modifica
+     * exactamente los libros que la lectura dio por disponibles. Los reservados para el usuario se
+     * prestan uno a uno, igual que en {@link #solicitarPrestamo}.</p>
+     *
+     * @param usuarioId identificador del usuario solicitante.
+     * @param libroIds  libros a prestar; como máximo {@value #MAXIMO_LIBROS_LOTE} distintos.
+     * @return resultado de cada libro; si el usuario no existe, todos {@code NO_ENCONTRADO}.
+     */
+    @Override
+    @Transactional
+    public ResultadoLote solicitarPrestamos(Integer usuarioId, List<Integer> libroIds) {
+        Objects.requireNonNull(usuarioId, "El identificador del usuario no puede ser nulo");
+        List<Integer> ids = idsDelLote(libroIds);
+        Map<Integer, ResultadoLote.Resultado> resultados = new HashMap<>();
+        if (ids.isEmpty() || !usuarioRepository.existsById(usuarioId)) {
+            return resultadoLote(ids, resultados);
+        }
+
+        Usuario usuario = usuarioRepository.getReferenceById(usuarioId);
+        List<LibroResumen> prestados = new ArrayList<>();
+        for (List<Integer> tramo : tramos(ids)) {
+            List<Integer> aPrestar = new ArrayList<>();
+            for (LibroConPrestatario libro : libroRepository.bloquearPorIds(tramo)) {
+                if (libro.estadoLibro() == Libro.Estado.DISPONIBLE) {
+                    aPrestar.add(libro.id());
+                    prestados.add(libro.resumen());
+                    resultados.put(libro.id(), ResultadoLote.Resultado.EXITO);
+                } else if (libro.estadoLibro() == Libro.Estado.RESERVADO && usuarioId.equals(libro.prestatarioId())) {
+                    // Recogida de una reserva: con la fila bloqueada, la sentencia no puede fallar.
+                    comprobarFilas(libroRepository.prestarSiReservadoPara(libro.id(), usuario), List.of(libro.id()));
+                    prestados.add(libro.resumen());
+                    resultados.put(libro.id(), ResultadoLote.Resultado.EXITO);
+                } else {
+                    resultados.put(libro.id(), ResultadoLote.Resultado.NO_DISPONIBLE);
+                }
+            }
+            if (!aPrestar.isEmpty()) {
+                comprobarFilas(libroRepository.prestarSiDisponibles(aPrestar, usuario), aPrestar);
+            }
+        }
+
+        prestados.forEach(anterior -> publicarTransicion(LibroCambiadoEvent.Tipo.PRESTADO, anterior,
+                Libro.Estado.PRESTADO, usuarioId));
+        return resultadoLote(ids, resultados);
+    }
+
+    /**
+     * Devuelve los libros de la lista que tiene el usuario, con el mismo esquema de bloqueo y
+     * actualización por tramos que {@link #solicitarPrestamos}.
+     *
+     * @param usuarioId identificador del usuario que devuelve los libros.
+     * @param libroIds  libros a devolver; como máximo {@value #MAXIMO_LIBROS_LOTE} distintos.
+     * @return resultado de cada libro.
+     */
+    @Override
+    @Transactional
+    public ResultadoLote devolverPrestamos(Integer usuarioId, List<Integer> libroIds) {
+        Objects.requireNonNull(usuarioId, "El identificador del usuario no puede ser nulo");
+        List<Integer> ids = idsDelLote(libroIds);
+        Map<Integer, ResultadoLote.Resultado> resultados = new HashMap<>();
+        List<LibroConPrestatario> bloqueados = new ArrayList<>();
+        for (List<Integer> tramo : tramos(ids)) {
+            bloqueados.addAll(libroRepository.bloquearPorIds(tramo));
+        }
+        devolver(usuarioId, bloqueados, resultados);
+        return resultadoLote(ids, resultados);
+    }
+
+    /**
+     * Devuelve todos los préstamos del usuario: una lectura con bloqueo sobre la clave foránea y
+     * una sentencia {@code UPDATE} por cada tramo de {@value #TAMANIO_TRAMO_LOTE} libros. Los libros
+     * que el usuario solo tiene reservados ni se bloquean ni aparecen en el resultado.
+     *
+     * @param usuarioId identificador del usuario.
+     * @return resultado de cada libro devuelto, ordenados por id.
+     */
+    @Override
+    @Transactional
+    public ResultadoLote devolverTodos(Integer usuarioId) {
+        Objects.requireNonNull(usuarioId, "El identificador del usuario no puede ser nulo");
+        List<LibroConPrestatario> bloqueados = libroRepository.bloquearPrestamosDeUsuario(usuarioId);
+        Map<Integer, ResultadoLote.Resultado> resultados = new HashMap<>();
+        devolver(usuarioId, bloqueados, resultados);
+        return resultadoLote(bloqueados.stream().map(LibroConPrestatario::id).toList(), resultados);
+    }
+
+    /**
+     * Devuelve, entre los libros bloqueados, los que tiene prestados el usuario, y anota el resultado
+     * de cada uno. Los libros que alguien espera pasan directamente a su primera reserva, uno a uno;
+     * el resto queda disponible con una sentencia por tramo.
+     */
+    private void devolver(Integer usuarioId, List<LibroConPrestatario> bloqueados,
+                          Map<Integer, ResultadoLote.Resultado> resultados) {
+        List<LibroResumen> devueltos = new ArrayList<>();
+        for (LibroConPrestatario libro : bloqueados) {
+            if (libro.estadoLibro() == Libro.Estado.PRESTADO && usuarioId.equals(libro.prestatarioId())) {
+                resultados.put(libro.id(), ResultadoLote.Resultado.EXITO);
+                if (!entregarAReserva(libro.resumen(), usuarioId, LibroCambiadoEvent.Tipo.DEVUELTO)) {
+                    devueltos.add(libro.resumen());
+                }
+            } else {
+                resultados.put(libro.id(), ResultadoLote.Resultado.NO_PRESTADO);
+            }
+        }
+        if (devueltos.isEmpty()) {
+            return;
         }
 
-        Libro libroPrestado = libro.get();
-        if (libroPrestado.getPrestadoA() == null || !libroPrestado.getPrestadoA().getId().equals(usuarioId)) {
+        Usuario usuario = usuarioRepository.getReferenceById(usuarioId);
+        for (List<Integer> tramo : tramos(devueltos.stream().map(LibroResumen::id).toList())) {
+            comprobarFilas(libroRepository.devolverSiPrestadosA(tramo, usuario), tramo);
+        }
+        devueltos.forEach(anterior -> publicarTransicion(LibroCambiadoEvent.Tipo.DEVUELTO, anterior,
+                Libro.Estado.DISPONIBLE, usuarioId));
+    }
+
+    /**
+     * Reserva un libro que no está disponible.
+     *
+     * <p>Se bloquea la fila del libro antes de comprobar su estado, igual que al devolverlo: así
+     * una reserva y una devolución del mismo libro no pueden cruzarse, y la devolución siempre ve
+     * la reserva en {@link ColaReservas}.</p>
+     *
+     * @param usuarioId identificador del usuario.
+     * @param libroId   identificador del libro.
+     * @return situación de la reserva, o vacío si el libro o el usuario no existen, el libro está
+     *         disponible o ya lo tiene el usuario.
+     */
+    @Override
+    @Transactional
+    public Optional<ReservaLibro> reservarLibro(Integer usuarioId, Integer libroId) {
+        Objects.requireNonNull(usuarioId, "El identificador del usuario no puede ser nulo");
+        Objects.requireNonNull(libroId, "El identificador del libro no puede ser nulo");
+
+        List<LibroConPrestatario> bloqueado = libroRepository.bloquearPorIds(List.of(libroId));
+        if (bloqueado.isEmpty()) {
+            return Optional.empty();
+        }
+        LibroConPrestatario libro = bloqueado.get(0);
+        if (libro.estadoLibro() == Libro.Estado.DISPONIBLE || usuarioId.equals(libro.prestatarioId())) {
             return Optional.empty();
         }
+        Optional<EntradaReserva> existente = reservaRepository.entrada(libroId, usuarioId);
+        if (existente.isPresent()) {
+            return existente.map(this::situacion);
+        }
+
+        return usuarioRepository.findById(usuarioId).map(usuario -> {
+            // Con la precisión de la columna, para que la entrada coincida con la que se lea después.
+            Instant solicitada = Instant.now().truncatedTo(ChronoUnit.MICROS);
+            Reserva reserva = reservaRepository.save(new Reserva(libroRepository.getReferenceById(libroId),
+                    usuario, usuario.getRol(), solicitada));
+            EntradaReserva entrada = new EntradaReserva(reserva.getId(), libroId, usuarioId,
+                    reserva.getRol(), reserva.getSolicitada());
+            colaReservas.anotar(entrada);
+            return situacion(entrada);
+        });
+    }
+
+    /**
+     * Cancela la reserva de un libro con su fila bloqueada. Si el libro estaba
+     * {@link Libro.Estado#RESERVADO} para el usuario, pasa a la siguiente reserva o, si no la hay,
+     * queda disponible (ver {@link #liberarReserva}).
+     *
+     * @param usuarioId identificador del usuario.
+     * @param libroId   identificador del libro.
+     * @return {@code true} si el usuario tenía la reserva.
+     */
+    @Override
+    @Transactional
+    public boolean cancelarReserva(Integer usuarioId, Integer libroId) {
+        Objects.requireNonNull(usuarioId, "El identificador del usuario no puede ser nulo");
+        Objects.requireNonNull(libroId, "El identificador del libro no puede ser nulo");
+
+        List<LibroConPrestatario> bloqueado = libroRepository.bloquearPorIds(List.of(libroId));
+        if (bloqueado.isEmpty()) {
+            return false;
+        }
+        LibroConPrestatario libro = bloqueado.get(0);
+        if (libro.estadoLibro() == Libro.Estado.RESERVADO && usuarioId.equals(libro.prestatarioId())) {
+            liberarReserva(libro);
+            return true;
+        }
+
+        return reservaRepository.entrada(libroId, usuarioId).map(entrada -> {
+            reservaRepository.eliminarSiExiste(entrada.id());
+            colaReservas.retirar(entrada);
+            return true;
+        }).orElse(false);
+    }
+
+    /**
+     * Retira el libro al usuario de su reserva si no lo recogió a tiempo. Con la fila bloqueada se
+     * comprueba que sigue {@link Libro.Estado#RESERVADO} con el plazo vencido: entre la búsqueda de
+     * caducadas y este punto el usuario pudo recogerlo o renunciar.
+     *
+     * @param libroId identificador del libro.
+     * @return {@code true} si la reserva había caducado y el libro pasó a otra reserva o quedó disponible.
+     */
+    @Override
+    @Transactional
+    public boolean caducarReserva(Integer libroId) {
+        Objects.requireNonNull(libroId, "El identificador del libro no puede ser nulo");
+
+        List<LibroConPrestatario> bloqueado = libroRepository.bloquearPorIds(List.of(libroId));
+        if (bloqueado.isEmpty() || !libroRepository.reservaCaducada(libroId, Instant.now())) {
+            return false;
+        }
+        liberarReserva(bloqueado.get(0));
+        return true;
+    }
+
+    /**
+     * Lista las reservas en cola de un usuario con una consulta sobre su índice; la posición de
+     * cada una se calcula en {@link ColaReservas}.
+     *
+     * @param usuarioId identificador del usuario.
+     * @return reservas pendientes en orden de solicitud.
+     */
+    @Override
+    public List<ReservaLibro> reservasDeUsuario(Integer usuarioId) {
+        Objects.requireNonNull(usuarioId, "El identificador del usuario no puede ser nulo");
+        return reservaRepository.entradasDeUsuario(usuarioId).stream().map(this::situacion).toList();
+    }
+
+    /**
+     * Quita un libro {@link Libro.Estado#RESERVADO}, con su fila bloqueada, al usuario para quien
+     * estaba reservado: pasa a la siguiente reserva o, si no la hay, queda disponible. En ambos
+     * casos se publica un único evento {@code ACTUALIZADO}.
+     *
+     * @param libro libro bloqueado, reservado para su prestatario
+     */
+    private void liberarReserva(LibroConPrestatario libro) {
+        LibroResumen reservado = libro.resumen();
+        if (entregarAReserva(reservado, libro.prestatarioId(), LibroCambiadoEvent.Tipo.ACTUALIZADO)) {
+            return;
+        }
+        Usuario usuario = usuarioRepository.getReferenceById(libro.prestatarioId());
+        comprobarFilas(libroRepository.liberarSiReservadoPara(libro.id(), usuario), List.of(libro.id()));
+        eventPublisher.publishEvent(new LibroCambiadoEvent(LibroCambiadoEvent.Tipo.ACTUALIZADO, reservado,
+                reservado.conEstado(Libro.Estado.DISPONIBLE, reservado.version() + 1), libro.prestatarioId(), null));
+    }
+
+    /**
+     * Entrega el libro que deja un usuario a la primera reserva de su cola, en la transacción en
+     * curso y con la fila del libro ya bloqueada.
+     *
+     * <p>La primera reserva se toma de {@link ColaReservas} sin consultar la base de datos y se
+     * consume borrando su fila; si ya no existía, se descarta y se prueba con la siguiente. Una
+     * única sentencia pasa el libro de su estado actual (prestado o reservado para el usuario) a
+     * {@link Libro.Estado#RESERVADO} a nombre de la reserva, con el plazo de recogida, y se publica
+     * un único evento con los dos prestatarios.</p>
+     *
+     * @param anterior  libro bloqueado, antes de la entrega
+     * @param usuarioId usuario que lo tiene ahora
+     * @param tipo      tipo del evento: {@code DEVUELTO} si se devuelve o {@code ACTUALIZADO} si se
+     *                  renuncia a la reserva
+     * @return {@code true} si se entregó a una reserva; {@code false} si nadie lo esperaba
+     */
+    private boolean entregarAReserva(LibroResumen anterior, Integer usuarioId, LibroCambiadoEvent.Tipo tipo) {
+        Optional<EntradaReserva> primera;
+        while ((primera = colaReservas.primera(anterior.id())).isPresent()) {
+            EntradaReserva entrada = primera.get();
+            if (reservaRepository.eliminarSiExiste(entrada.id()) == 0) {
+                colaReservas.descartarObsoleta(entrada);
+                continue;
+            }
+            colaReservas.retirar(entrada);
+
+            Usuario usuario = usuarioRepository.getReferenceById(usuarioId);
+            Usuario reservador = usuarioRepository.getReferenceById(entrada.usuarioId());
+            Instant hasta = Instant.now().plus(plazoRecogida).truncatedTo(ChronoUnit.MICROS);
+            comprobarFilas(libroRepository.entregarAReservaSi(anterior.id(), anterior.estadoLibro(), usuario,
+                    reservador, hasta), List.of(anterior.id()));
+            LibroResumen reservado = anterior.conEstado(Libro.Estado.RESERVADO, anterior.version() + 1);
+            eventPublisher.publishEvent(new LibroCambiadoEvent(tipo, anterior, reservado, usuarioId,
+                    entrada.usuarioId()));
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Situación actual de una reserva en la cola de su libro.
+     */
+    private ReservaLibro situacion(EntradaReserva entrada) {
+        return new ReservaLibro(entrada.libroId(), entrada.solicitada(), colaReservas.posicion(entrada),
+                colaReservas.pendientes(entrada.libroId()));
+    }
+
+    /**
+     * Valida los ids de un lote y los devuelve sin repetidos, en el orden pedido.
+     */
+    private static List<Integer> idsDelLote(List<Integer> libroIds) {
+        Objects.requireNonNull(libroIds, "La lista de libros no puede ser nula");
+        Set<Integer> distintos = new LinkedHashSet<>();
+        for (Integer id : libroIds) {
+            if (id == null) {
+                throw new IllegalArgumentException("Los identificadores de libro no pueden ser nulos");
+            }
+            distintos.add(id);
+        }
+        if (distintos.size() > MAXIMO_LIBROS_LOTE) {
+            throw new IllegalArgumentException("Un lote admite como máximo " + MAXIMO_LIBROS_LOTE + " libros");
+        }
+        return List.copyOf(distintos);
+    }
 
-        libroPrestado.setEstadoLibro(Libro.Estado.DISPONIBLE);
-        libroPrestado.setPrestadoA(null);
-        usuario.get().getLibros().removeIf(l -> l.getId().equals(libroId));
+    /**
+     * Parte los ids, ordenados, en tramos de {@value #TAMANIO_TRAMO_LOTE}: las filas se bloquean
+     * siempre en orden ascendente y ninguna sentencia supera ese número de parámetros.
+     */
+    private static List<List<Integer>> tramos(List<Integer> ids) {
+        List<Integer> ordenados = ids.stream().sorted().toList();
+        List<List<Integer>> tramos = new ArrayList<>();
+        for (int i = 0; i < ordenados.size(); i += TAMANIO_TRAMO_LOTE) {
+            tramos.add(ordenados.subList(i, Math.min(i + TAMANIO_TRAMO_LOTE, ordenados.size())));
+        }
+        return tramos;
+    }
+
+    /**
+     * Con las filas bloqueadas, la sentencia debe modificar todos los libros seleccionados; si no
+     * es así se revierte el lote entero en lugar de informar de un resultado falso.
+     */
+    private static void comprobarFilas(int modificadas, List<Integer> esperados) {
+        if (modificadas != esperados.size()) {
+            throw new IllegalStateException("Se esperaban " + esperados.size()
+                    + " libros modificados y se modificaron " + modificadas);
+        }
+    }
 
-        libroRepository.save(libroPrestado);
-        usuarioRepository.save(usuario.get());
+    /**
+     * Compone el resultado en el orden pedido; los ids sin resultado no existen.
+     */
+    private static ResultadoLote resultadoLote(List<Integer> ids, Map<Integer, ResultadoLote.Resultado> resultados) {
+        List<ResultadoLote.ResultadoLibro> libros = new ArrayList<>(ids.size());
+        int exitos = 0;
+        for (Integer id : ids) {
+            ResultadoLote.Resultado resultado = resultados.getOrDefault(id, ResultadoLote.Resultado.NO_ENCONTRADO);
+            if (resultado == ResultadoLote.Resultado.EXITO) {
+                exitos++;
+            }
+            libros.add(new ResultadoLote.ResultadoLibro(id, resultado));
+        }
+        return new ResultadoLote(exitos, libros);
+    }
 
-        return Optional.of(libroPrestado);
+    /**
+     * Publica el cambio de estado de un libro de un lote a partir de su estado antes de la sentencia,
+     * que solo modifica el estado, el prestatario y la versión.
+     *
+     * @param tipo        tipo de transición
+     * @param anterior    libro leído antes de la actualización
+     * @param estadoNuevo estado que asigna la sentencia
+     * @param usuarioId   usuario que recibe o devuelve el libro
+     * @return libro tras la actualización
+     */
+    private LibroResumen publicarTransicion(LibroCambiadoEvent.Tipo tipo, LibroResumen anterior,
+                                            Libro.Estado estadoNuevo, Integer usuarioId) {
+        LibroResumen actual = anterior.conEstado(estadoNuevo, anterior.version() + 1);
+        publicar(tipo, anterior, actual, usuarioId);
+        return actual;
+    }
+
+    /**
+     * Publica el cambio de estado de un libro tras una actualización condicionada.
+     *
+     * <p>La sentencia solo modifica el estado, el prestatario y la versión, por lo que el estado
+     * anterior se reconstruye a partir del actual.</p>
+     *
+     * @param tipo           tipo de transición
+     * @param estadoAnterior estado que exigía la sentencia
+     * @param libro          libro recargado tras la actualización
+     * @param usuarioId      usuario que recibe o devuelve el libro
+     */
+    private void publicarTransicion(LibroCambiadoEvent.Tipo tipo, Libro.Estado estadoAnterior, Libro libro,
+                                    Integer usuarioId) {
+        LibroResumen actual = LibroResumen.desde(libro);
+        LibroResumen anterior = actual.conEstado(estadoAnterior, libro.getVersion() - 1);
+        publicar(tipo, anterior, actual, usuarioId);
+    }
+
+    /**
+     * Publica una transición del usuario, que figura como prestatario en los estados en que el
+     * libro no está disponible: al recibirlo pasa a serlo (o ya lo era, si lo tenía reservado) y
+     * al devolverlo deja de serlo.
+     */
+    private void publicar(LibroCambiadoEvent.Tipo tipo, LibroResumen anterior, LibroResumen actual, Integer usuarioId) {
+        eventPublisher.publishEvent(new LibroCambiadoEvent(tipo, anterior, actual,
+                anterior.estadoLibro() != Libro.Estado.DISPONIBLE ? usuarioId : null,
+                actual.estadoLibro() != Libro.Estado.DISPONIBLE ? usuarioId : null));
     }
 
 }
\ No newline at end of file
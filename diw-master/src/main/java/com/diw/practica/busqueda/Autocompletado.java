@@ -0,0 +1,349 @@
+package com.diw.practica.busqueda;
+
+import com.diw.practica.dto.SugerenciaAutocompletado;
+import com.diw.practica.eventos.LibroCambiadoEvent;
+import com.diw.practica.repository.LibroRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * Autocompletado por prefijo sobre títulos y autores, ordenado por popularidad.
+ *
+ * <p>Cada texto sugerible (un título o un autor distinto) se registra en un mapa ordenado bajo
+ * una clave por cada inicio de palabra, de modo que {@code "marq"} encuentra
+ * {@code "Gabriel García Márquez"}. Un prefijo se resuelve con una búsqueda de rango en el mapa
+ * ordenado y se queda con las {@value #MAXIMO_SUGERENCIAS} sugerencias con más préstamos.</p>
+ *
+ * <p>Los prefijos de hasta {@value #LONGITUD_PREFIJO_PRECALCULADO} caracteres abarcan muchas
+ * claves, así que su resultado se guarda: los incrementos de popularidad lo reordenan en el
+ * sitio y solo las bajas o renombrados lo descartan. Los prefijos más largos abarcan pocas claves
+ * y se resuelven directamente.</p>
+ *
+ * <p>Se construye al arrancar y se mantiene con cada {@link LibroCambiadoEvent} confirmado.</p>
+ */
+@Component
+public class Autocompletado {
+
+    private static final Logger log = LoggerFactory.getLogger(Autocompletado.class);
+
+    /**
+     * Número máximo de sugerencias por consulta.
+     */
+    public static final int MAXIMO_SUGERENCIAS = 10;
+
+    private static final int LONGITUD_PREFIJO_PRECALCULADO = 3;
+    private static final int LONGITUD_MAXIMA_CLAVE = 40;
+    private static final char SEPARADOR_CLAVE = '\u0000';
+
+    private final LibroRepository libroRepository;
+    private final ReadWriteLock cerrojo = new ReentrantReadWriteLock();
+
+    /**
+     * Clave normalizada desde un inicio de palabra + separador + id de entrada → entrada.
+     */
+    private final NavigableMap<String, Entrada> claves = new TreeMap<>();
+
+    /**
+     * Tipo + texto normalizado → entrada, para agrupar los libros que comparten texto.
+     */
+    private final Map<String, Entrada> entradas = new HashMap<>();
+
+    private final Map<Integer, LibroIndexado> libros = new HashMap<>();
+
+    /**
+     * Prefijo corto → mejores entradas ordenadas. Se rellena bajo demanda con el cerrojo de
+     * lectura (de ahí el mapa concurrente) y se modifica con el de escritura.
+     */
+    private final Map<String, List<Entrada>> mejoresPorPrefijo = new ConcurrentHashMap<>();
+
+    private int siguienteIdEntrada;
+
+    private static final Comparator<Entrada> POPULARIDAD = Comparator
+            .comparingLong((Entrada entrada) -> entrada.prestamos).reversed()
+            .thenComparing(entrada -> entrada.texto)
+            .thenComparingInt(entrada -> entrada.id);
+
+    private static final class Entrada {
+        private final int id;
+        private final String texto;
+        private final SugerenciaAutocompletado.Tipo tipo;
+        private final List<String> claves;
+        private final Set<Integer> libros = new HashSet<>();
+        private long prestamos;
+
+        private Entrada(int id, String texto, SugerenciaAutocompletado.Tipo tipo, List<String> claves) {
+            this.id = id;
+            this.texto = texto;
+            this.tipo = tipo;
+            this.claves = claves;
+        }
+    }
+
+    private record LibroIndexado(Entrada titulo, Entrada autor, int prestamos) {
+    }
+
+    public Autocompletado(LibroRepository libroRepository) {
+        this.libroRepository = libroRepository;
+    }
+
+    /**
+     * Carga títulos, autores y popularidad de todo el catálogo.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void construir() {
+        try (Stream<LibroPopularidad> filas = libroRepository.recorrerPopularidad()) {
+            filas.forEach(fila -> registrar(fila.id(), fila.titulo(), fila.autor(), fila.vecesPrestado()));
+        }
+        log.info("Autocompletado construido: {} sugerencias, {} claves", entradas.size(), claves.size());
+    }
+
+    /**
+     * Aplica un cambio confirmado sobre un libro.
+     *
+     * @param evento cambio sobre un libro
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void alCambiarLibro(LibroCambiadoEvent evento) {
+        switch (evento.tipo()) {
+            case PRESTADO -> sumarPrestamo(evento.libroId());
+            case ELIMINADO -> quitar(evento.libroId());
+            case CREADO, ACTUALIZADO -> registrar(evento.libroId(), evento.actual().titulo(),
+                    evento.actual().autor(), -1);
+            case DEVUELTO -> {
+                // La devolución no cambia textos ni popularidad.
+            }
+        }
+    }
+
+    /**
+     * Registra o reemplaza los textos sugeribles de un libro.
+     *
+     * @param libroId   identificador del libro
+     * @param titulo    título del libro
+     * @param autor     autor del libro
+     * @param prestamos préstamos acumulados del libro, o un valor negativo para conservar los ya registrados
+     */
+    public void registrar(Integer libroId, String titulo, String autor, int prestamos) {
+        cerrojo.writeLock().lock();
+        try {
+            if (prestamos < 0) {
+                LibroIndexado previo = libros.get(libroId);
+                prestamos = previo != null ? previo.prestamos() : 0;
+            }
+            quitarSinCerrojo(libroId);
+            Entrada entradaTitulo = vincular(SugerenciaAutocompletado.Tipo.TITULO, titulo, libroId, prestamos);
+            Entrada entradaAutor = vincular(SugerenciaAutocompletado.Tipo.AUTOR, autor, libroId, prestamos);
+            libros.put(libroId, new LibroIndexado(entradaTitulo, entradaAutor, prestamos));
+        } finally {
+            cerrojo.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Elimina los textos sugeribles de un libro.
+     *
+     * @param libroId identificador del libro
+     */
+    public void quitar(Integer libroId) {
+        cerrojo.writeLock().lock();
+        try {
+            quitarSinCerrojo(libroId);
+        } finally {
+            cerrojo.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Suma un préstamo a la popularidad de un libro.
+     *
+     * @param libroId identificador del libro
+     */
+    public void sumarPrestamo(Integer libroId) {
+        cerrojo.writeLock().lock();
+        try {
+            LibroIndexado libro = libros.get(libroId);
+            if (libro == null) {
+                return;
+            }
+            libros.put(libroId, new LibroIndexado(libro.titulo(), libro.autor(), libro.prestamos() + 1));
+            for (Entrada entrada : new Entrada[]{libro.titulo(), libro.autor()}) {
+                if (entrada != null) {
+                    entrada.prestamos++;
+                    promocionar(entrada);
+                }
+            }
+        } finally {
+            cerrojo.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Devuelve las sugerencias más populares que empiezan por el prefijo en algún inicio de palabra.
+     *
+     * @param prefijo texto tecleado; se ignoran mayúsculas y acentos
+     * @param k       número de sugerencias, entre 1 y {@value #MAXIMO_SUGERENCIAS}
+     * @return sugerencias ordenadas de más a menos préstamos
+     */
+    public List<SugerenciaAutocompletado> sugerir(String prefijo, int k) {
+        String clave = normalizarClave(prefijo);
+        if (clave.isEmpty()) {
+            return List.of();
+        }
+        int limite = Math.max(1, Math.min(k, MAXIMO_SUGERENCIAS));
+
+        cerrojo.readLock().lock();
+        try {
+            List<Entrada> mejores = clave.length() <= LONGITUD_PREFIJO_PRECALCULADO
+                    ? mejoresPorPrefijo.computeIfAbsent(clave, this::calcularMejores)
+                    : calcularMejores(clave);
+            return mejores.stream()
+                    .limit(limite)
+                    .map(entrada -> new SugerenciaAutocompletado(entrada.texto, entrada.tipo, entrada.prestamos))
+                    .toList();
+        } finally {
+            cerrojo.readLock().unlock();
+        }
+    }
+
+    private List<Entrada> calcularMejores(String prefijo) {
+        Set<Entrada> vistas = Collections.newSetFromMap(new HashMap<>());
+        PriorityQueue<Entrada> mejores = new PriorityQueue<>(POPULARIDAD.reversed());
+        for (Entrada entrada : claves.subMap(prefijo, true, prefijo + Character.MAX_VALUE, false).values()) {
+            if (!vistas.add(entrada)) {
+                continue;
+            }
+            mejores.add(entrada);
+            if (mejores.size() > MAXIMO_SUGERENCIAS) {
+                mejores.poll();
+            }
+        }
+        List<Entrada> ordenadas = new ArrayList<>(mejores);
+        ordenadas.sort(POPULARIDAD);
+        return ordenadas;
+    }
+
+    private Entrada vincular(SugerenciaAutocompletado.Tipo tipo, String texto, Integer libroId, int prestamos) {
+        List<String> clavesTexto = clavesDe(texto);
+        if (clavesTexto.isEmpty()) {
+            return null;
+        }
+        String identidad = tipo.name() + SEPARADOR_CLAVE + clavesTexto.get(0);
+        Entrada entrada = entradas.get(identidad);
+        if (entrada == null) {
+            entrada = new Entrada(siguienteIdEntrada++, texto.strip(), tipo, clavesTexto);
+            entradas.put(identidad, entrada);
+            for (String clave : clavesTexto) {
+                claves.put(clave + SEPARADOR_CLAVE + entrada.id, entrada);
+            }
+        }
+        entrada.libros.add(libroId);
+        entrada.prestamos += prestamos;
+        promocionar(entrada);
+        return entrada;
+    }
+
+    private void quitarSinCerrojo(Integer libroId) {
+        LibroIndexado libro = libros.remove(libroId);
+        if (libro == null) {
+            return;
+        }
+        for (Entrada entrada : new Entrada[]{libro.titulo(), libro.autor()}) {
+            if (entrada == null) {
+                continue;
+            }
+            entrada.libros.remove(libroId);
+            entrada.prestamos -= libro.prestamos();
+            if (entrada.libros.isEmpty()) {
+                entradas.remove(entrada.tipo.name() + SEPARADOR_CLAVE + entrada.claves.get(0));
+                for (String clave : entrada.claves) {
+                    claves.remove(clave + SEPARADOR_CLAVE + entrada.id);
+                }
+            }
+            // La entrada pierde popularidad o desaparece: los resultados guardados ya no son fiables.
+            entrada.claves.forEach(clave -> prefijosCortos(clave).forEach(mejoresPorPrefijo::remove));
+        }
+    }
+
+    /**
+     * Recoloca una entrada cuya popularidad ha crecido en los resultados guardados que la alcanzan.
+     */
+    private void promocionar(Entrada entrada) {
+        for (String clave : entrada.claves) {
+            for (String prefijo : prefijosCortos(clave)) {
+                List<Entrada> mejores = mejoresPorPrefijo.get(prefijo);
+                if (mejores == null) {
+                    continue;
+                }
+                mejores.remove(entrada);
+                int posicion = Collections.binarySearch(mejores, entrada, POPULARIDAD);
+                mejores.add(posicion < 0 ? -posicion - 1 : posicion, entrada);
+                if (mejores.size() > MAXIMO_SUGERENCIAS) {
+                    mejores.remove(mejores.size() - 1);
+                }
+            }
+        }
+    }
+
+    private static List<String> prefijosCortos(String clave) {
+        int maximo = Math.min(clave.length(), LONGITUD_PREFIJO_PRECALCULADO);
+        List<String> prefijos = new ArrayList<>(maximo);
+        for (int i = 1; i <= maximo; i++) {
+            prefijos.add(clave.substring(0, i));
+        }
+        return prefijos;
+    }
+
+    /**
+     * Genera una clave por cada inicio de palabra del texto, truncada a {@value #LONGITUD_MAXIMA_CLAVE}.
+     */
+    private static List<String> clavesDe(String texto) {
+        String normalizado = normalizarClave(texto);
+        if (normalizado.isEmpty()) {
+            return List.of();
+        }
+        List<String> resultado = new ArrayList<>();
+        int inicio = 0;
+        while (inicio >= 0) {
+            String clave = normalizado.substring(inicio);
+            if (!resultado.contains(clave)) {
+                resultado.add(clave);
+            }
+            int espacio = normalizado.indexOf(' ', inicio);
+            inicio = espacio < 0 ? -1 : espacio + 1;
+        }
+        return resultado;
+    }
+
+    /**
+     * Normaliza un texto como clave: sin acentos, en minúsculas y con las palabras separadas por un espacio.
+     */
+    private static String normalizarClave(String texto) {
+        String normalizado = String.join(" ",
+                Normalizador.normalizar(texto).strip().split("[^\\p{L}\\p{N}]+")).strip();
+        return normalizado.length() > LONGITUD_MAXIMA_CLAVE
+                ? normalizado.substring(0, LONGITUD_MAXIMA_CLAVE)
+                : normalizado;
+    }
+}
@@ -0,0 +1,240 @@
+package com.diw.practica.busqueda;
+
+import com.diw.practica.dto.LibroResumen;
+import com.diw.practica.dto.ResultadoBusqueda;
+import com.diw.practica.eventos.LibroCambiadoEvent;
+import com.diw.practica.repository.LibroRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * Índice invertido en memoria sobre título, autor, editorial e ISBN de los libros.
+ *
+ * <p>Cada término normalizado (ver {@link Normalizador}) apunta a los libros que lo contienen
+ * con un peso según el campo en que aparece. Una búsqueda exige que aparezcan todos sus
+ * términos y ordena los libros por la suma de pesos ponderada con la rareza del término
+ * (IDF), de modo que nunca se recurre a {@code LIKE '%...%'} en la base de datos.</p>
+ *
+ * <p>Se construye al arrancar la aplicación y se mantiene con cada {@link LibroCambiadoEvent}
+ * confirmado. Las lecturas concurrentes comparten un cerrojo de lectura; las actualizaciones
+ * toman el de escritura durante el breve tiempo de reindexar un libro.</p>
+ */
+@Component
+public class IndiceCatalogo {
+
+    private static final Logger log = LoggerFactory.getLogger(IndiceCatalogo.class);
+
+    private static final int PESO_TITULO = 3;
+    private static final int PESO_AUTOR = 2;
+    private static final int PESO_ISBN = 2;
+    private static final int PESO_EDITORIAL = 1;
+
+    private final LibroRepository libroRepository;
+    private final ReadWriteLock cerrojo = new ReentrantReadWriteLock();
+
+    /**
+     * Término → (id de libro → peso del término en el libro).
+     */
+    private final Map<String, Map<Integer, Integer>> postings = new HashMap<>();
+
+    /**
+     * Id de libro → documento indexado, para devolver resultados y desindexar.
+     */
+    private final Map<Integer, Documento> documentos = new HashMap<>();
+
+    private record Documento(LibroResumen libro, Set<String> terminos) {
+    }
+
+    private record Candidato(LibroResumen libro, double puntuacion) {
+    }
+
+    /**
+     * Orden de relevancia: mayor puntuación primero y, a igualdad, menor id.
+     */
+    private static final Comparator<Candidato> RELEVANCIA = Comparator
+            .comparingDouble(Candidato::puntuacion).reversed()
+            .thenComparing(candidato -> candidato.libro().id());
+
+    public IndiceCatalogo(LibroRepository libroRepository) {
+        this.libroRepository = libroRepository;
+    }
+
+    /**
+     * Construye el índice completo recorriendo el catálogo en streaming.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void construir() {
+        long inicio = System.nanoTime();
+        try (Stream<LibroResumen> libros = libroRepository.recorrerResumenes()) {
+            libros.forEach(this::indexar);
+        }
+        log.info("Índice del catálogo construido: {} libros, {} términos en {} ms",
+                documentos.size(), postings.size(), (System.nanoTime() - inicio) / 1_000_000);
+    }
+
+    /**
+     * Aplica un cambio confirmado sobre un libro.
+     *
+     * @param evento cambio sobre un libro
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void alCambiarLibro(LibroCambiadoEvent evento) {
+        if (evento.actual() != null) {
+            indexar(evento.actual());
+        } else {
+            desindexar(evento.libroId());
+        }
+    }
+
+    /**
+     * Indexa o reindexa un libro.
+     *
+     * @param libro libro a indexar
+     */
+    public void indexar(LibroResumen libro) {
+        Map<String, Integer> pesos = new HashMap<>();
+        acumular(pesos, libro.titulo(), PESO_TITULO);
+        acumular(pesos, libro.autor(), PESO_AUTOR);
+        acumular(pesos, libro.editorial(), PESO_EDITORIAL);
+        acumular(pesos, libro.isbn(), PESO_ISBN);
+        if (libro.isbn() != null) {
+            // El ISBN también se indexa compacto, para encontrarlo con o sin guiones.
+            acumular(pesos, libro.isbn().replaceAll("[\\s-]", ""), PESO_ISBN);
+        }
+
+        cerrojo.writeLock().lock();
+        try {
+            desindexarSinCerrojo(libro.id());
+            pesos.forEach((termino, peso) ->
+                    postings.computeIfAbsent(termino, t -> new HashMap<>()).put(libro.id(), peso));
+            documentos.put(libro.id(), new Documento(libro, pesos.keySet()));
+        } finally {
+            cerrojo.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Elimina un libro del índice.
+     *
+     * @param libroId identificador del libro
+     */
+    public void desindexar(Integer libroId) {
+        cerrojo.writeLock().lock();
+        try {
+            desindexarSinCerrojo(libroId);
+        } finally {
+            cerrojo.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Busca los libros que contienen todos los términos de la consulta.
+     *
+     * @param consulta texto libre
+     * @param pagina   número de página, desde 0
+     * @param tamanio  tamaño de página
+     * @return página de resultados ordenados por relevancia
+     */
+    public ResultadoBusqueda buscar(String consulta, int pagina, int tamanio) {
+        Set<String> terminos = new LinkedHashSet<>(Normalizador.tokenizar(consulta));
+        if (terminos.isEmpty()) {
+            return new ResultadoBusqueda(List.of(), 0, pagina, tamanio);
+        }
+
+        cerrojo.readLock().lock();
+        try {
+            List<Map.Entry<String, Map<Integer, Integer>>> listas = new ArrayList<>(terminos.size());
+            for (String termino : terminos) {
+                Map<Integer, Integer> lista = postings.get(termino);
+                if (lista == null) {
+                    return new ResultadoBusqueda(List.of(), 0, pagina, tamanio);
+                }
+                listas.add(Map.entry(termino, lista));
+            }
+            // Se recorre la lista más corta y se comprueba la pertenencia en las demás.
+            listas.sort(Comparator.comparingInt(entrada -> entrada.getValue().size()));
+            double[] idf = listas.stream()
+                    .mapToDouble(entrada -> Math.log(1.0 + (double) documentos.size() / entrada.getValue().size()))
+                    .toArray();
+
+            // Montículo con los mejores (pagina + 1) * tamanio candidatos; la raíz es el peor.
+            long necesarios = (long) (pagina + 1) * tamanio;
+            PriorityQueue<Candidato> mejores = new PriorityQueue<>(RELEVANCIA.reversed());
+            int total = 0;
+            for (Map.Entry<Integer, Integer> posting : listas.get(0).getValue().entrySet()) {
+                Integer libroId = posting.getKey();
+                double puntuacion = posting.getValue() * idf[0];
+                boolean coincide = true;
+                for (int i = 1; i < listas.size() && coincide; i++) {
+                    Integer peso = listas.get(i).getValue().get(libroId);
+                    if (peso == null) {
+                        coincide = false;
+                    } else {
+                        puntuacion += peso * idf[i];
+                    }
+                }
+                if (!coincide) {
+                    continue;
+                }
+                total++;
+                Candidato candidato = new Candidato(documentos.get(libroId).libro(), puntuacion);
+                if (mejores.size() < necesarios) {
+                    mejores.add(candidato);
+                } else if (RELEVANCIA.compare(candidato, mejores.peek()) < 0) {
+                    mejores.poll();
+                    mejores.add(candidato);
+                }
+            }
+
+            List<Candidato> ordenados = new ArrayList<>(mejores);
+            ordenados.sort(RELEVANCIA);
+            int desde = Math.min(pagina * tamanio, ordenados.size());
+            List<LibroResumen> contenido = ordenados.subList(desde, ordenados.size()).stream()
+                    .map(Candidato::libro)
+                    .toList();
+            return new ResultadoBusqueda(contenido, total, pagina, tamanio);
+        } finally {
+            cerrojo.readLock().unlock();
+        }
+    }
+
+    private void desindexarSinCerrojo(Integer libroId) {
+        Documento anterior = documentos.remove(libroId);
+        if (anterior == null) {
+            return;
+        }
+        for (String termino : anterior.terminos()) {
+            Map<Integer, Integer> lista = postings.get(termino);
+            if (lista != null) {
+                lista.remove(libroId);
+                if (lista.isEmpty()) {
+                    postings.remove(termino);
+                }
+            }
+        }
+    }
+
+    private static void acumular(Map<String, Integer> pesos, String texto, int peso) {
+        for (String termino : Normalizador.tokenizar(texto)) {
+            pesos.merge(termino, peso, Integer::sum);
+        }
+    }
+}
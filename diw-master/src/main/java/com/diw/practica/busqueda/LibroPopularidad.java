@@ -0,0 +1,12 @@
+package com.diw.practica.busqueda;
+
+/**
+ * Datos de un libro necesarios para el autocompletado: textos sugeribles y popularidad.
+ *
+ * @param id            identificador del libro
+ * @param titulo        título del libro
+ * @param autor         autor o autores del libro
+ * @param vecesPrestado número de préstamos registrados
+ */
+public record LibroPopularidad(Integer id, String titulo, String autor, int vecesPrestado) {
+}
@@ -0,0 +1,58 @@
+package com.diw.practica.busqueda;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Normalización y tokenización de texto para las búsquedas del catálogo.
+ *
+ * <p>Pliega acentos y diacríticos ({@code "Márquez"} → {@code "marquez"}, {@code "Año"} →
+ * {@code "ano"}), pasa a minúsculas y divide por cualquier carácter no alfanumérico.
+ * En la tokenización se descartan las palabras vacías más frecuentes del español.</p>
+ */
+public final class Normalizador {
+
+    private static final Pattern DIACRITICOS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARADORES = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private static final Set<String> PALABRAS_VACIAS = Set.of(
+            "a", "al", "con", "de", "del", "e", "el", "en", "la", "las", "lo", "los",
+            "o", "para", "por", "u", "un", "una", "y");
+
+    private Normalizador() {
+    }
+
+    /**
+     * Pliega acentos y pasa a minúsculas, conservando el resto del texto.
+     *
+     * @param texto texto original; puede ser {@code null}
+     * @return texto normalizado, o cadena vacía si {@code texto} es {@code null}
+     */
+    public static String normalizar(String texto) {
+        if (texto == null) {
+            return "";
+        }
+        String descompuesto = Normalizer.normalize(texto, Normalizer.Form.NFD);
+        return DIACRITICOS.matcher(descompuesto).replaceAll("").toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Divide un texto en términos normalizados, sin palabras vacías.
+     *
+     * @param texto texto original; puede ser {@code null}
+     * @return términos en orden de aparición (puede haber repetidos)
+     */
+    public static List<String> tokenizar(String texto) {
+        List<String> terminos = new ArrayList<>();
+        for (String termino : SEPARADORES.split(normalizar(texto))) {
+            if (!termino.isEmpty() && !PALABRAS_VACIAS.contains(termino)) {
+                terminos.add(termino);
+            }
+        }
+        return terminos;
+    }
+}
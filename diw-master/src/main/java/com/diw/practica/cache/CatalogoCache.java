@@ -0,0 +1,135 @@
+package com.diw.practica.cache;
+
+import com.diw.practica.config.CacheConfig;
+import com.diw.practica.dto.LibroResumen;
+import com.diw.practica.eventos.LibroCambiadoEvent;
+import com.diw.practica.model.Libro;
+import com.diw.practica.repository.LibroRepository;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Caché de lectura del catálogo con invalidación por escritura.
+ *
+ * <p>Guarda cada libro por id y el listado de disponibles como vistas inmutables
+ * ({@link LibroResumen}), cargándolos desde {@link LibroRepository} en el primer acceso.</p>
+ *
+ * <p>La consulta de un fallo se hace fuera de la caché y el resultado se guarda después: cargar
+ * dentro de {@code Cache#get(clave, cargador)} la ejecutaría en el {@code compute} de Caffeine,
+ * bajo el monitor de {@code ConcurrentHashMap}, que ancla el hilo virtual a su portador durante
+ * toda la consulta. A cambio, dos fallos simultáneos de la misma clave consultan ambos (el listado
+ * de disponibles ya llega coalescido desde {@link LecturasCoalescidas}). Para no guardar un
+ * resultado leído antes de un cambio que ya se ha aplicado, cada cambio incrementa un contador y
+ * una carga que lo ve cambiar descarta lo que acaba de guardar.</p>
+ *
+ * <p>Se mantiene coherente escuchando {@link LibroCambiadoEvent} tras el commit de cada
+ * escritura: la entrada del libro se reemplaza por su nuevo estado y el listado de
+ * disponibles solo se descarta si el cambio entra, sale o modifica un libro disponible.</p>
+ */
+@Component
+public class CatalogoCache {
+
+    private static final String CLAVE_DISPONIBLES = "todos";
+
+    private final LibroRepository libroRepository;
+    private final Cache libros;
+    private final Cache disponibles;
+    private final AtomicLong cambios = new AtomicLong();
+
+    public CatalogoCache(LibroRepository libroRepository, CacheManager cacheManager) {
+        this.libroRepository = libroRepository;
+        this.libros = Objects.requireNonNull(cacheManager.getCache(CacheConfig.CACHE_LIBROS),
+                "Caché no configurada: " + CacheConfig.CACHE_LIBROS);
+        this.disponibles = Objects.requireNonNull(cacheManager.getCache(CacheConfig.CACHE_LIBROS_DISPONIBLES),
+                "Caché no configurada: " + CacheConfig.CACHE_LIBROS_DISPONIBLES);
+    }
+
+    /**
+     * Obtiene un libro por id. La ausencia también se cachea hasta que se cree un libro con ese id.
+     *
+     * @param libroId identificador del libro
+     * @return el libro, o vacío si no existe
+     */
+    public Optional<LibroResumen> libro(Integer libroId) {
+        return Optional.ofNullable(cargar(libros, libroId, () -> libroRepository.resumenPorId(libroId).orElse(null)));
+    }
+
+    /**
+     * Obtiene el listado de libros disponibles ordenado por id.
+     *
+     * @return lista inmutable de libros disponibles
+     */
+    public List<LibroResumen> disponibles() {
+        return cargar(disponibles, CLAVE_DISPONIBLES,
+                () -> List.copyOf(libroRepository.resumenPorEstado(Libro.Estado.DISPONIBLE)));
+    }
+
+    /**
+     * Descarta la entrada de un libro, por ejemplo cuando se detecta que estaba obsoleta.
+     *
+     * @param libroId identificador del libro
+     */
+    public void invalidar(Integer libroId) {
+        libros.evict(libroId);
+    }
+
+    /**
+     * Aplica un cambio confirmado sobre las entradas afectadas. Se ejecuta antes que el resto de
+     * oyentes para que los que derivan datos de esta caché ({@link RespuestasCatalogo}) ya lean el
+     * estado nuevo.
+     *
+     * @param evento cambio sobre un libro
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void alCambiarLibro(LibroCambiadoEvent evento) {
+        cambios.incrementAndGet();
+        if (evento.actual() != null) {
+            libros.put(evento.libroId(), evento.actual());
+        } else {
+            libros.evict(evento.libroId());
+        }
+        if (esDisponible(evento.anterior()) || esDisponible(evento.actual())) {
+            disponibles.evict(CLAVE_DISPONIBLES);
+        }
+    }
+
+    /**
+     * Devuelve la entrada de una clave o la carga sin mantener bloqueada la caché durante la consulta.
+     *
+     * @param cache  caché de la entrada
+     * @param clave  clave de la entrada
+     * @param cargar consulta que obtiene el valor; puede devolver {@code null}
+     * @param <T>    tipo del valor
+     * @return el valor guardado o cargado
+     */
+    @SuppressWarnings("unchecked")
+    private <T> T cargar(Cache cache, Object clave, Supplier<T> cargar) {
+        Cache.ValueWrapper guardado = cache.get(clave);
+        if (guardado != null) {
+            return (T) guardado.get();
+        }
+        long antes = cambios.get();
+        T valor = cargar.get();
+        cache.putIfAbsent(clave, valor);
+        // Un cambio aplicado durante la consulta pudo descartarse antes de que se guardara el valor
+        if (cambios.get() != antes) {
+            cache.evict(clave);
+        }
+        return valor;
+    }
+
+    private static boolean esDisponible(LibroResumen libro) {
+        return libro != null && libro.estadoLibro() == Libro.Estado.DISPONIBLE;
+    }
+}
@@ -0,0 +1,160 @@
+package com.diw.practica.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Coalescencia de lecturas idénticas concurrentes ("single flight").
+ *
+ * <p>La primera llamada con una clave ejecuta la lectura; las que llegan mientras está en curso
+ * esperan y reciben el mismo resultado, o la misma excepción, sin volver a consultar la base de
+ * datos ni a serializar. El resultado se sigue sirviendo durante {@code diw.coalescencia.frescura-ms}
+ * tras completarse, de modo que una ráfaga de peticiones (por ejemplo, al empezar una clase) se
+ * resuelve con una lectura por ventana aunque los datos cambien entre medias. Con frescura
+ * {@code 0} solo se comparten las lecturas simultáneas.</p>
+ *
+ * <p>Quien necesite leer sus propias escrituras debe descartar las claves afectadas con
+ * {@link #invalidar(String, Predicate)} tras el commit: las llamadas posteriores ya no se unen a
+ * una lectura empezada antes del cambio.</p>
+ *
+ * <p>Cada llamada se cuenta en {@value #LECTURAS} con la etiqueta {@code lectura} y el
+ * {@code resultado}: {@code ejecutada} si hizo la lectura, {@code en_curso} si se unió a una
+ * lectura en curso y {@code reciente} si reutilizó un resultado dentro de la ventana.</p>
+ */
+@Component
+public class LecturasCoalescidas {
+
+    public static final String LECTURAS = "biblioteca.lecturas";
+
+    private static final String EJECUTADA = "ejecutada";
+    private static final String EN_CURSO = "en_curso";
+    private static final String RECIENTE = "reciente";
+
+    /**
+     * Clave de una lectura: la operación y sus parámetros.
+     */
+    private record Clave(String lectura, Object parametros) {
+    }
+
+    /**
+     * Lectura en curso o completada. {@code caduca} se fija antes de completar el resultado.
+     */
+    private static final class Vuelo {
+        final CompletableFuture<Object> resultado = new CompletableFuture<>();
+        volatile long caduca = Long.MAX_VALUE;
+    }
+
+    private final Map<Clave, Vuelo> vuelos = new ConcurrentHashMap<>();
+    private final Map<String, Counter> contadores = new ConcurrentHashMap<>();
+    private final MeterRegistry registry;
+    private final long frescuraNanos;
+
+    public LecturasCoalescidas(MeterRegistry registry,
+                               @Value("${diw.coalescencia.frescura-ms:250}") long frescuraMs) {
+        this.registry = registry;
+        this.frescuraNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, frescuraMs));
+    }
+
+    /**
+     * Ejecuta una lectura o se une a otra idéntica en curso o reciente.
+     *
+     * @param lectura    nombre de la operación, usado también como etiqueta de la métrica
+     * @param parametros parámetros de la lectura; deben implementar {@code equals} y {@code hashCode}
+     * @param carga      lectura; no debe devolver {@code null} ni modificarse su resultado
+     * @param <T>        tipo del resultado
+     * @return resultado de la lectura
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T leer(String lectura, Object parametros, Supplier<T> carga) {
+        Clave clave = new Clave(lectura, parametros);
+        while (true) {
+            Vuelo vuelo = vuelos.get(clave);
+            if (vuelo != null) {
+                if (!vuelo.resultado.isDone()) {
+                    contar(lectura, EN_CURSO);
+                    return (T) esperar(vuelo);
+                }
+                if (System.nanoTime() - vuelo.caduca < 0 && !vuelo.resultado.isCompletedExceptionally()) {
+                    contar(lectura, RECIENTE);
+                    return (T) vuelo.resultado.join();
+                }
+                vuelos.remove(clave, vuelo);
+            }
+            Vuelo nuevo = new Vuelo();
+            if (vuelos.putIfAbsent(clave, nuevo) == null) {
+                contar(lectura, EJECUTADA);
+                return ejecutar(clave, nuevo, carga);
+            }
+        }
+    }
+
+    /**
+     * Descarta las lecturas de una operación cuyos parámetros cumplen la condición, estén en curso
+     * o completadas. Quien ya esperaba una lectura en curso sigue recibiendo su resultado.
+     *
+     * @param lectura    nombre de la operación
+     * @param parametros condición sobre los parámetros de la lectura
+     */
+    public void invalidar(String lectura, Predicate<Object> parametros) {
+        vuelos.keySet().removeIf(clave -> clave.lectura().equals(lectura) && parametros.test(clave.parametros()));
+    }
+
+    /**
+     * Libera los resultados que ya salieron de la ventana y que nadie ha vuelto a pedir.
+     */
+    @Scheduled(fixedDelayString = "${diw.coalescencia.limpieza-ms:60000}")
+    public void limpiar() {
+        long ahora = System.nanoTime();
+        vuelos.values().removeIf(vuelo -> vuelo.resultado.isDone() && ahora - vuelo.caduca >= 0);
+    }
+
+    private <T> T ejecutar(Clave clave, Vuelo vuelo, Supplier<T> carga) {
+        T valor;
+        try {
+            valor = carga.get();
+        } catch (RuntimeException | Error e) {
+            vuelos.remove(clave, vuelo);
+            vuelo.resultado.completeExceptionally(e);
+            throw e;
+        }
+        vuelo.caduca = System.nanoTime() + frescuraNanos;
+        vuelo.resultado.complete(valor);
+        if (frescuraNanos == 0) {
+            vuelos.remove(clave, vuelo);
+        }
+        return valor;
+    }
+
+    private static Object esperar(Vuelo vuelo) {
+        try {
+            return vuelo.resultado.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException causa) {
+                throw causa;
+            }
+            if (e.getCause() instanceof Error causa) {
+                throw causa;
+            }
+            throw e;
+        }
+    }
+
+    private void contar(String lectura, String resultado) {
+        contadores.computeIfAbsent(lectura + '|' + resultado, clave -> Counter.builder(LECTURAS)
+                .description("Lecturas del catálogo, según si se ejecutaron o se coalescieron con otra")
+                .tag("lectura", lectura)
+                .tag("resultado", resultado)
+                .register(registry)).increment();
+    }
+}
@@ -0,0 +1,287 @@
+package com.diw.practica.cache;
+
+import com.diw.practica.config.FormatoSerializacion;
+import com.diw.practica.config.MapeadoresFormato;
+import com.diw.practica.eventos.LibroCambiadoEvent;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Locale;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Caché de respuestas ya serializadas de los listados del catálogo.
+ *
+ * <p>Los listados más pedidos devuelven los mismos datos en cada petición mientras el catálogo no
+ * cambia. Guardar los bytes de la respuesta evita volver a serializarla: un acierto no crea objetos
+ * ni buffers de texto, solo copia el {@code byte[]} a la salida. Cada listado se guarda por separado
+ * en cada {@link FormatoSerializacion} que se haya pedido.</p>
+ *
+ * <p>Si la compresión del servidor está activa ({@code server.compression.enabled}), las respuestas
+ * que superan {@code server.compression.min-response-size} se guardan también comprimidas en gzip con
+ * el nivel máximo, y se sirven así a los clientes que lo aceptan. La compresión se paga una vez por
+ * versión en lugar de en cada petición, y Tomcat no vuelve a comprimir una respuesta que ya lleva
+ * {@code Content-Encoding}.</p>
+ *
+ * <p>Las entradas se indexan por la {@link VersionCatalogo} leída antes de obtener los datos: una
+ * serialización que empezó antes de un cambio se guarda con la versión anterior y ya no se sirve.
+ * Cada respuesta lleva como ETag fuerte esa versión, el formato y la codificación; si el cliente
+ * envía un {@code If-None-Match} que coincide se responde {@code 304} sin consultar la caché ni la
+ * base de datos. {@code Cache-Control: private, no-cache} permite al navegador guardar la respuesta
+ * a condición de revalidarla en cada uso.</p>
+ *
+ * <p>Las peticiones del listado de disponibles pasan además por {@link LecturasCoalescidas}: las
+ * simultáneas esperan a una sola consulta y serialización, y durante la ventana de frescura se sigue
+ * sirviendo la última respuesta obtenida, con el ETag de su versión, aunque el catálogo haya
+ * cambiado. Así, mientras se prestan libros sin parar, el listado se reconstruye como mucho una vez
+ * por ventana y no con cada préstamo. Un {@code If-None-Match} de la versión actual sigue
+ * respondiéndose con {@code 304} sin esperar.</p>
+ *
+ * <p>El tamaño total se acota en bytes con {@code diw.respuestas.maximo-mb}. Los aciertos y fallos
+ * se publican como {@code cache.gets{cache="respuestasCatalogo"}}.</p>
+ */
+@Component
+public class RespuestasCatalogo {
+
+    static final String NOMBRE = "respuestasCatalogo";
+    static final String LECTURA = "libros.disponibles";
+
+    private static final String DISPONIBLES = "disponibles:";
+    private static final String PAGINA = "pagina:";
+    private static final String SUFIJO_GZIP = "-gz";
+    private static final CacheControl REVALIDAR = CacheControl.noCache().cachePrivate();
+
+    private final Cache<String, Serializada> respuestas;
+    private final MapeadoresFormato mapeadores;
+    private final VersionCatalogo version;
+    private final LecturasCoalescidas lecturas;
+    private final int umbralCompresion;
+
+    public RespuestasCatalogo(MapeadoresFormato mapeadores, VersionCatalogo version, LecturasCoalescidas lecturas,
+                              MeterRegistry registry,
+                              @Value("${diw.respuestas.maximo-mb:32}") long maximoMb,
+                              @Value("${server.compression.enabled:false}") boolean compresion,
+                              @Value("${server.compression.min-response-size:2KB}") DataSize umbralCompresion) {
+        this.mapeadores = mapeadores;
+        this.version = version;
+        this.lecturas = lecturas;
+        this.umbralCompresion = compresion ? (int) umbralCompresion.toBytes() : Integer.MAX_VALUE;
+        this.respuestas = Caffeine.newBuilder()
+                .maximumWeight(maximoMb * 1024 * 1024)
+                .weigher((String clave, Serializada valor) -> valor.peso() + 2 * clave.length())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(registry, respuestas, NOMBRE);
+    }
+
+    /**
+     * Respuesta con el listado de libros disponibles en la vista indicada.
+     *
+     * @param peticion cabeceras de la petición ({@code Accept}, {@code Accept-Encoding}, {@code If-None-Match})
+     * @param vista    vista JSON con la que se serializa
+     * @param origen   listado que se serializa si no está en caché
+     * @return {@code 200} con el listado o {@code 304} si el cliente ya tiene la versión actual
+     */
+    public ResponseEntity<byte[]> disponibles(HttpHeaders peticion, Class<?> vista, Supplier<?> origen) {
+        return responder(peticion, DISPONIBLES, version::disponibles, vista.getSimpleName(), vista, origen, true);
+    }
+
+    /**
+     * Respuesta con una página del catálogo.
+     *
+     * @param peticion cabeceras de la petición ({@code Accept}, {@code Accept-Encoding}, {@code If-None-Match})
+     * @param clave    parámetros que identifican la página (ordenación, cursor, tamaño)
+     * @param vista    vista JSON con la que se serializa, o {@code null} para todos los campos
+     * @param origen   página que se serializa si no está en caché
+     * @return {@code 200} con la página o {@code 304} si el cliente ya tiene la versión actual
+     */
+    public ResponseEntity<byte[]> pagina(HttpHeaders peticion, String clave, Class<?> vista, Supplier<?> origen) {
+        return responder(peticion, PAGINA, version::catalogo,
+                (vista != null ? vista.getSimpleName() : "") + ":" + clave, vista, origen, false);
+    }
+
+    /**
+     * Libera las respuestas de versiones anteriores sin esperar al desalojo. Se ejecuta después de
+     * que {@link VersionCatalogo} avance.
+     *
+     * @param evento cambio sobre un libro
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    public void alCambiarLibro(LibroCambiadoEvent evento) {
+        boolean afectaDisponibles = VersionCatalogo.afectaDisponibles(evento);
+        String paginasVigentes = PAGINA + version.catalogo() + ":";
+        String disponiblesVigentes = DISPONIBLES + version.disponibles() + ":";
+        respuestas.asMap().keySet().removeIf(clave -> clave.startsWith(PAGINA)
+                ? !clave.startsWith(paginasVigentes)
+                : afectaDisponibles && !clave.startsWith(disponiblesVigentes));
+    }
+
+    private ResponseEntity<byte[]> responder(HttpHeaders peticion, String listado, LongSupplier versionActual,
+                                             String clave, Class<?> vista, Supplier<?> origen, boolean coalescer) {
+        FormatoSerializacion formato = FormatoSerializacion.negociar(String.join(",", peticion.getOrEmpty(HttpHeaders.ACCEPT)));
+        String variante = formato.name().toLowerCase(Locale.ROOT);
+
+        long versionLeida = versionActual.getAsLong();
+        ResponseEntity<byte[]> noModificada = noModificada(peticion, versionLeida, variante);
+        if (noModificada != null) {
+            return noModificada;
+        }
+
+        Supplier<Vigente> obtener = () -> {
+            long v = versionActual.getAsLong();
+            return new Vigente(v, cargar(listado + v + ":" + formato + ":" + clave, v, versionActual,
+                    () -> serializar(mapeadores.get(formato), vista, origen.get())));
+        };
+        Vigente vigente = coalescer ? lecturas.leer(LECTURA, formato + ":" + clave, obtener) : obtener.get();
+        if (vigente.version() != versionLeida) {
+            // Dentro de la ventana de frescura puede servirse una versión anterior que el cliente ya tenga.
+            noModificada = noModificada(peticion, vigente.version(), variante);
+            if (noModificada != null) {
+                return noModificada;
+            }
+        }
+
+        Serializada serializada = vigente.serializada();
+        ResponseEntity.BodyBuilder respuesta = ResponseEntity.ok()
+                .contentType(formato.getTipo())
+                .cacheControl(REVALIDAR)
+                .varyBy(HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING);
+        if (serializada.gzip() != null && aceptaGzip(peticion)) {
+            return respuesta.eTag(version.etag(vigente.version(), variante + SUFIJO_GZIP))
+                    .header(HttpHeaders.CONTENT_ENCODING, "gzip").body(serializada.gzip());
+        }
+        return respuesta.eTag(version.etag(vigente.version(), variante)).body(serializada.cuerpo());
+    }
+
+    /**
+     * Devuelve la respuesta guardada o la obtiene fuera de la caché y la guarda después, como
+     * {@link CatalogoCache}: serializar dentro de {@code Cache#get(clave, cargador)} haría la
+     * consulta y la serialización en el {@code compute} de Caffeine, anclando el hilo virtual a su
+     * portador y bloqueando otras claves de la misma celda. Si el catálogo cambia mientras tanto, la
+     * entrada se descarta en lugar de esperar al desalojo: su versión ya no se volverá a pedir.
+     */
+    private Serializada cargar(String clave, long versionLeida, LongSupplier versionActual,
+                               Supplier<byte[]> serializacion) {
+        Serializada guardada = respuestas.getIfPresent(clave);
+        if (guardada != null) {
+            return guardada;
+        }
+        byte[] cuerpo = serializacion.get();
+        Serializada nueva = new Serializada(cuerpo, cuerpo.length >= umbralCompresion ? comprimir(cuerpo) : null);
+        Serializada previa = respuestas.asMap().putIfAbsent(clave, nueva);
+        if (versionActual.getAsLong() != versionLeida) {
+            respuestas.invalidate(clave);
+        }
+        return previa != null ? previa : nueva;
+    }
+
+    /**
+     * Respuesta {@code 304} si el cliente ya tiene la versión indicada, o {@code null} si no.
+     */
+    private ResponseEntity<byte[]> noModificada(HttpHeaders peticion, long versionLeida, String variante) {
+        String vigente = coincidente(peticion, version.etag(versionLeida, variante),
+                version.etag(versionLeida, variante + SUFIJO_GZIP));
+        if (vigente == null) {
+            return null;
+        }
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                .eTag(vigente)
+                .cacheControl(REVALIDAR)
+                .varyBy(HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING)
+                .build();
+    }
+
+    /**
+     * ETag de {@code If-None-Match} que sigue vigente. La versión comprimida y la sin comprimir tienen
+     * ETag distintos, pero ambas representan los mismos datos: cualquiera de las dos vale para
+     * revalidar.
+     */
+    private static String coincidente(HttpHeaders peticion, String etag, String etagGzip) {
+        for (String candidato : peticion.getIfNoneMatch()) {
+            String valor = candidato.startsWith("W/") ? candidato.substring(2) : candidato;
+            if (valor.equals("*") || valor.equals(etag)) {
+                return etag;
+            }
+            if (valor.equals(etagGzip)) {
+                return etagGzip;
+            }
+        }
+        return null;
+    }
+
+    private static boolean aceptaGzip(HttpHeaders peticion) {
+        for (String cabecera : peticion.getOrEmpty(HttpHeaders.ACCEPT_ENCODING)) {
+            for (String codificacion : cabecera.split(",")) {
+                String[] partes = codificacion.trim().split(";");
+                if (partes[0].trim().equalsIgnoreCase("gzip")) {
+                    return partes.length < 2 || !partes[1].trim().matches("q\\s*=\\s*0(\\.0*)?");
+                }
+            }
+        }
+        return false;
+    }
+
+    private static byte[] serializar(ObjectMapper mapeador, Class<?> vista, Object valor) {
+        ObjectWriter writer = vista != null ? mapeador.writerWithView(vista) : mapeador.writer();
+        try {
+            return writer.writeValueAsBytes(valor);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static byte[] comprimir(byte[] cuerpo) {
+        ByteArrayOutputStream salida = new ByteArrayOutputStream(cuerpo.length / 4);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(salida) {
+            {
+                def.setLevel(Deflater.BEST_COMPRESSION);
+            }
+        }) {
+            gzip.write(cuerpo);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return salida.toByteArray();
+    }
+
+    /**
+     * Respuesta servida y versión a la que corresponde, que es la de su ETag.
+     */
+    private record Vigente(long version, Serializada serializada) {
+    }
+
+    /**
+     * Respuesta guardada en la caché.
+     *
+     * @param cuerpo cuerpo serializado; no debe modificarse
+     * @param gzip   cuerpo comprimido en gzip, o {@code null} si no llega al umbral de compresión
+     */
+    private record Serializada(byte[] cuerpo, byte[] gzip) {
+
+        int peso() {
+            return cuerpo.length + (gzip != null ? gzip.length : 0);
+        }
+    }
+}
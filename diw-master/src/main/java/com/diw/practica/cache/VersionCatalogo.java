@@ -0,0 +1,86 @@
+package com.diw.practica.cache;
+
+import com.diw.practica.dto.LibroResumen;
+import com.diw.practica.eventos.LibroCambiadoEvent;
+import com.diw.practica.model.Libro;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Versión del catálogo en memoria, base de los ETag de los listados.
+ *
+ * <p>Son dos contadores monótonos que avanzan con cada {@link LibroCambiadoEvent} confirmado, es
+ * decir, con cada alta, edición, baja, importación, préstamo o devolución: el del catálogo con
+ * cualquier cambio y el de los disponibles solo cuando el libro estaba o queda disponible. Leerlos
+ * no consulta la base de datos.</p>
+ *
+ * <p>El oyente se ejecuta después de los que mantienen los datos de origen ({@link CatalogoCache})
+ * y antes de la limpieza de {@link RespuestasCatalogo}. Así, quien lee una versión y después los
+ * datos nunca obtiene datos más antiguos que la versión; como mucho, datos más nuevos, que se
+ * vuelven a pedir una vez de más en la siguiente consulta.</p>
+ *
+ * <p>Los ETag incluyen un identificador del arranque: tras reiniciar, los contadores vuelven a
+ * cero y un ETag de la ejecución anterior no puede coincidir por casualidad.</p>
+ */
+@Component
+public class VersionCatalogo {
+
+    private final String arranque = Long.toString(System.currentTimeMillis(), Character.MAX_RADIX);
+    private final AtomicLong catalogo = new AtomicLong();
+    private final AtomicLong disponibles = new AtomicLong();
+
+    /**
+     * Versión de todo el catálogo.
+     *
+     * @return número de cambios confirmados desde el arranque
+     */
+    public long catalogo() {
+        return catalogo.get();
+    }
+
+    /**
+     * Versión del listado de libros disponibles.
+     *
+     * @return número de cambios confirmados que afectaron a los libros disponibles
+     */
+    public long disponibles() {
+        return disponibles.get();
+    }
+
+    /**
+     * ETag fuerte de una representación en una versión.
+     *
+     * @param version  versión leída con {@link #catalogo()} o {@link #disponibles()}
+     * @param variante identifica la representación (listado, formato, codificación)
+     * @return ETag entre comillas
+     */
+    public String etag(long version, String variante) {
+        return "\"" + arranque + "-" + Long.toString(version, Character.MAX_RADIX) + "-" + variante + "\"";
+    }
+
+    /**
+     * Avanza las versiones afectadas por un cambio confirmado.
+     *
+     * @param evento cambio sobre un libro
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    @Order(Ordered.LOWEST_PRECEDENCE - 1)
+    public void alCambiarLibro(LibroCambiadoEvent evento) {
+        catalogo.incrementAndGet();
+        if (afectaDisponibles(evento)) {
+            disponibles.incrementAndGet();
+        }
+    }
+
+    static boolean afectaDisponibles(LibroCambiadoEvent evento) {
+        return esDisponible(evento.anterior()) || esDisponible(evento.actual());
+    }
+
+    private static boolean esDisponible(LibroResumen libro) {
+        return libro != null && libro.estadoLibro() == Libro.Estado.DISPONIBLE;
+    }
+}
@@ -0,0 +1,27 @@
+package com.diw.practica.config;
+
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Habilita la caché en proceso de la aplicación.
+ *
+ * <p>El proveedor (Caffeine, con desalojo W-TinyLFU), el tamaño máximo, el TTL y el registro
+ * de estadísticas se configuran en {@code application.properties} mediante
+ * {@code spring.cache.*}. Las estadísticas de aciertos, fallos y desalojos se publican en
+ * {@code /actuator/metrics/cache.gets} y {@code /actuator/metrics/cache.evictions}.</p>
+ */
+@Configuration
+@EnableCaching
+public class CacheConfig {
+
+    /**
+     * Caché de libros individuales por id ({@code Integer → LibroResumen}).
+     */
+    public static final String CACHE_LIBROS = "libros";
+
+    /**
+     * Caché del listado de libros disponibles (una única entrada).
+     */
+    public static final String CACHE_LIBROS_DISPONIBLES = "librosDisponibles";
+}
@@ -0,0 +1,79 @@
+package com.diw.practica.config;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.http.MediaType;
+
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Formatos en los que se pueden servir las respuestas del catálogo.
+ *
+ * <p>JSON es el formato por defecto. CBOR y Smile son codificaciones binarias del mismo modelo de
+ * datos de Jackson: las mismas vistas y anotaciones, sin texto que escapar ni números que formatear,
+ * y con respuestas más pequeñas. Los clientes de sincronización los piden con la cabecera
+ * {@code Accept}.</p>
+ */
+public enum FormatoSerializacion {
+
+    JSON(MediaType.APPLICATION_JSON),
+    CBOR(MediaType.APPLICATION_CBOR),
+    SMILE(new MediaType("application", "x-jackson-smile"));
+
+    public static final String CBOR_VALUE = "application/cbor";
+    public static final String SMILE_VALUE = "application/x-jackson-smile";
+
+    private final MediaType tipo;
+
+    FormatoSerializacion(MediaType tipo) {
+        this.tipo = tipo;
+    }
+
+    public MediaType getTipo() {
+        return tipo;
+    }
+
+    /**
+     * Factoría de Jackson que escribe y lee este formato.
+     *
+     * @return factoría nueva
+     */
+    public JsonFactory crearFactoria() {
+        return switch (this) {
+            case JSON -> new JsonFactory();
+            case CBOR -> new CBORFactory();
+            case SMILE -> new SmileFactory();
+        };
+    }
+
+    /**
+     * Elige el formato de la respuesta a partir de la cabecera {@code Accept}.
+     *
+     * <p>Se recorren los tipos aceptados de mayor a menor calidad y se devuelve el primer formato
+     * que encaje; ante comodines o sin cabecera se responde en JSON.</p>
+     *
+     * @param accept valor de la cabecera {@code Accept}, o {@code null}
+     * @return formato de la respuesta
+     * @throws org.springframework.http.InvalidMediaTypeException si la cabecera no es válida
+     */
+    public static FormatoSerializacion negociar(String accept) {
+        if (accept == null || accept.isBlank()) {
+            return JSON;
+        }
+        List<MediaType> aceptados = MediaType.parseMediaTypes(accept);
+        aceptados.sort(Comparator.comparingDouble(MediaType::getQualityValue).reversed());
+        for (MediaType aceptado : aceptados) {
+            if (aceptado.getQualityValue() == 0) {
+                continue;
+            }
+            for (FormatoSerializacion formato : values()) {
+                if (aceptado.includes(formato.tipo)) {
+                    return formato;
+                }
+            }
+        }
+        return JSON;
+    }
+}
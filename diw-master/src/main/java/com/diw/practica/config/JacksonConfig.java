@@ -0,0 +1,44 @@
+package com.diw.practica.config;
+
+import com.fasterxml.jackson.databind.Module;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.List;
+
+/**
+ * Ajustes del {@code ObjectMapper} de la aplicación.
+ *
+ * <p>Spring Boot registra en el {@code ObjectMapper} todos los {@link Module} declarados como
+ * beans. {@link BlackbirdModule} sustituye la reflexión en getters, setters y constructores por
+ * accesos generados con {@code LambdaMetafactory}; a diferencia de Afterburner, funciona con el
+ * sistema de módulos de Java 9+ y con records.</p>
+ *
+ * <p>Los conversores de CBOR y Smile se añaden al final de la lista: un cliente que acepta
+ * cualquier tipo sigue recibiendo JSON, y solo quien pide el formato binario en {@code Accept}
+ * lo obtiene.</p>
+ */
+@Configuration
+public class JacksonConfig {
+
+    @Bean
+    public Module blackbirdModule() {
+        return new BlackbirdModule();
+    }
+
+    @Bean
+    public WebMvcConfigurer convertidoresBinarios(MapeadoresFormato mapeadores) {
+        return new WebMvcConfigurer() {
+            @Override
+            public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+                converters.add(new MappingJackson2CborHttpMessageConverter(mapeadores.get(FormatoSerializacion.CBOR)));
+                converters.add(new MappingJackson2SmileHttpMessageConverter(mapeadores.get(FormatoSerializacion.SMILE)));
+            }
+        };
+    }
+}
@@ -0,0 +1,35 @@
+package com.diw.practica.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Un {@link ObjectMapper} por cada {@link FormatoSerializacion}.
+ *
+ * <p>El de JSON es el de la aplicación. Los binarios se crean con el mismo
+ * {@link Jackson2ObjectMapperBuilder} que configura Spring Boot, así que comparten módulos
+ * (Blackbird incluido) y opciones; solo cambia la factoría. No se declaran como beans
+ * {@code ObjectMapper} para no sustituir al de la aplicación.</p>
+ */
+@Component
+public class MapeadoresFormato {
+
+    private final Map<FormatoSerializacion, ObjectMapper> mapeadores = new EnumMap<>(FormatoSerializacion.class);
+
+    public MapeadoresFormato(ObjectMapper objectMapper, ObjectProvider<Jackson2ObjectMapperBuilder> builders) {
+        for (FormatoSerializacion formato : FormatoSerializacion.values()) {
+            mapeadores.put(formato, formato == FormatoSerializacion.JSON
+                    ? objectMapper
+                    : builders.getObject().factory(formato.crearFactoria()).build());
+        }
+    }
+
+    public ObjectMapper get(FormatoSerializacion formato) {
+        return mapeadores.get(formato);
+    }
+}
@@ -0,0 +1,44 @@
+package com.diw.practica.config;
+
+import com.diw.practica.sql.PerfiladorSql;
+import net.ttddyy.dsproxy.support.ProxyDataSource;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+
+/**
+ * Envuelve el {@link DataSource} en un proxy de datasource-proxy que entrega cada sentencia a
+ * {@link PerfiladorSql}.
+ *
+ * <p>Sustituye a {@code spring.jpa.show-sql}: en lugar de escribir todas las sentencias, solo se
+ * registran las lentas y las repetidas. Se desactiva con {@code diw.sql.perfilado.habilitado=false}.
+ * El pool sigue siendo accesible con {@code unwrap}, así que las métricas de Hikari no cambian.</p>
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty(name = "diw.sql.perfilado.habilitado", havingValue = "true", matchIfMissing = true)
+public class PerfiladoSqlConfig {
+
+    @Bean
+    static BeanPostProcessor proxyDataSourcePerfilado(ObjectProvider<PerfiladorSql> perfilador) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof DataSource dataSource && !(bean instanceof ProxyDataSource)) {
+                    PerfiladorSql listener = perfilador.getObject();
+                    return ProxyDataSourceBuilder.create(dataSource)
+                            .name(beanName)
+                            .listener(listener)
+                            .methodListener(listener)
+                            .proxyResultSet()
+                            .build();
+                }
+                return bean;
+            }
+        };
+    }
+}
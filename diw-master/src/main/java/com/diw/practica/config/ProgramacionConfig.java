@@ -0,0 +1,14 @@
+package com.diw.practica.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Habilita las tareas periódicas ({@code @Scheduled}) de la aplicación.
+ *
+ * <p>Se ejecutan en el planificador de Spring Boot, configurable con {@code spring.task.scheduling.*}.</p>
+ */
+@Configuration
+@EnableScheduling
+public class ProgramacionConfig {
+}
@@ -0,0 +1,60 @@
+package com.diw.practica.config;
+
+import com.diw.practica.model.Libro;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Sitúa la secuencia {@code libro_seq} por encima de los identificadores de libro existentes.
+ *
+ * <p>Los libros tenían antes identificadores {@code AUTO_INCREMENT}. En un esquema MySQL que ya
+ * tenía libros, {@code ddl-auto=update} crea la tabla que emula la secuencia con
+ * {@code next_val = 1}, y las primeras inserciones chocarían con las claves existentes. Al
+ * arrancar, antes de atender peticiones, se sube {@code next_val} lo bastante para que el primer
+ * bloque de {@value Libro#TAMANIO_BLOQUE_ID} identificadores quede por encima de
+ * {@code MAX(id)}. La sentencia es condicional, así que no hace nada si la secuencia ya va por
+ * delante y es segura con varias instancias arrancando a la vez.</p>
+ *
+ * <p>Solo actúa en bases de datos sin secuencias nativas (MySQL); en las demás la secuencia la crea
+ * Hibernate junto con la tabla.</p>
+ */
+@Component
+public class SecuenciaLibros {
+
+    private static final Logger log = LoggerFactory.getLogger(SecuenciaLibros.class);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final EntityManagerFactory entityManagerFactory;
+
+    public SecuenciaLibros(JdbcTemplate jdbcTemplate, EntityManagerFactory entityManagerFactory) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.entityManagerFactory = entityManagerFactory;
+    }
+
+    /**
+     * Ajusta {@code libro_seq.next_val} si está por debajo de los identificadores existentes.
+     */
+    @PostConstruct
+    public void ajustar() {
+        boolean secuenciasNativas = entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+                .getJdbcServices().getDialect().getSequenceSupport().supportsSequences();
+        if (secuenciasNativas) {
+            return;
+        }
+        Long maximo = jdbcTemplate.queryForObject("SELECT MAX(id) FROM libro", Long.class);
+        if (maximo == null) {
+            return;
+        }
+        // El optimizador pooled reparte los ids (next_val - bloque, next_val]
+        long siguiente = maximo + Libro.TAMANIO_BLOQUE_ID;
+        int ajustadas = jdbcTemplate.update("UPDATE libro_seq SET next_val = ? WHERE next_val < ?", siguiente, siguiente);
+        if (ajustadas > 0) {
+            log.info("libro_seq estaba por debajo del id máximo de libro ({}); next_val pasa a {}", maximo, siguiente);
+        }
+    }
+}
@@ -1,14 +1,42 @@
 package com.diw.practica.contoller;
 
 import com.diw.practica.beans.AdminService;
+import com.diw.practica.beans.ImportacionService;
+import com.diw.practica.cache.RespuestasCatalogo;
+import com.diw.practica.config.FormatoSerializacion;
+import com.diw.practica.dto.LibroResumen;
+import com.diw.practica.dto.OrdenLibro;
+import com.diw.practica.dto.PaginaCursor;
+import com.diw.practica.dto.ResultadoImportacion;
+import com.diw.practica.dto.Vistas;
 import com.diw.practica.model.Libro;
 import com.diw.practica.model.Usuario;
+import com.fasterxml.jackson.annotation.JsonView;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.async.AsyncWebRequest;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.util.List;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.concurrent.Callable;
 
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
@@ -18,7 +46,6 @@ import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
-import io.swagger.v3.oas.annotations.media.ArraySchema;
 import io.swagger.v3.oas.annotations.headers.Header;
 
 /**
@@ -32,27 +59,56 @@ import io.swagger.v3.oas.annotations.headers.Header;
 @SecurityRequirement(name = "bearerAuth")
 public class AdminController {
 
+    /**
+     * Tipo MIME de JSON delimitado por saltos de línea.
+     */
+    static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+
+    /**
+     * Tipo MIME de CSV.
+     */
+    static final String TEXT_CSV_VALUE = "text/csv";
+
     private final AdminService adminService;
+    private final ImportacionService importacionService;
+    private final ObjectMapper objectMapper;
+    private final RespuestasCatalogo respuestasCatalogo;
+    private final Duration tiempoMaximoExportacion;
 
-    public AdminController(AdminService adminService) {
+    public AdminController(AdminService adminService, ImportacionService importacionService, ObjectMapper objectMapper,
+                           RespuestasCatalogo respuestasCatalogo,
+                           @Value("${diw.exportacion.tiempo-maximo:30m}") Duration tiempoMaximoExportacion) {
         this.adminService = adminService;
+        this.importacionService = importacionService;
+        this.objectMapper = objectMapper;
+        this.respuestasCatalogo = respuestasCatalogo;
+        this.tiempoMaximoExportacion = tiempoMaximoExportacion;
     }
 
     /**
-     * Lista todos los usuarios registrados.
+     * Lista los usuarios registrados, paginados por cursor.
+     * <p>
+     * Se emite la vista {@link Vistas.ListadoUsuarios}: id, nombre y rol, sin los libros prestados,
+     * que por tanto tampoco se cargan.
+     * </p>
      *
-     * @return lista de usuarios
+     * @param cursor  token de la página anterior (opcional)
+     * @param tamanio tamaño de página
+     * @return página de usuarios con el cursor de la siguiente
      */
     @GetMapping(path = "/usuarios", produces = MediaType.APPLICATION_JSON_VALUE)
-    @Operation(summary = "Listar usuarios", description = "Devuelve la lista de todos los usuarios registrados")
+    @Operation(summary = "Listar usuarios", description = "Devuelve una página de usuarios registrados ordenados por ID")
     @ApiResponses({
-            @ApiResponse(responseCode = "200", description = "Lista de usuarios obtenida correctamente",
-                    content = @Content(mediaType = "application/json",
-                            array = @ArraySchema(schema = @Schema(implementation = Usuario.class)))),
+            @ApiResponse(responseCode = "200", description = "Página de usuarios obtenida correctamente",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = PaginaCursor.class))),
+            @ApiResponse(responseCode = "400", description = "Cursor inválido", content = @Content),
             @ApiResponse(responseCode = "403", description = "Acceso denegado", content = @Content)
     })
-    public List<Usuario> listarUsuarios() {
-        return adminService.listarUsuarios();
+    @JsonView(Vistas.ListadoUsuarios.class)
+    public PaginaCursor<Usuario> listarUsuarios(
+            @Parameter(description = "Cursor devuelto en la página anterior") @RequestParam(required = false) String cursor,
+            @Parameter(description = "Número de usuarios por página (máx. 500)") @RequestParam(defaultValue = "50") int tamanio) {
+        return adminService.listarUsuarios(cursor, tamanio);
     }
 
     /**
@@ -78,20 +134,84 @@ public class AdminController {
     }
 
     /**
-     * Lista todos los libros.
+     * Lista los libros del catálogo, paginados por cursor.
+     * <p>
+     * La respuesta serializada se guarda en {@link RespuestasCatalogo} hasta el siguiente cambio
+     * del catálogo, así que las páginas repetidas no se vuelven a consultar ni a serializar. Los
+     * clientes de sincronización pueden pedirla en CBOR o Smile con {@code Accept}; las páginas
+     * grandes se sirven comprimidas en gzip a quien lo acepta. Con un {@code If-None-Match} que
+     * coincide con la versión actual del catálogo se responde 304 sin cuerpo.
+     * </p>
+     *
+     * @param cursor    token de la página anterior (opcional)
+     * @param tamanio   tamaño de página
+     * @param orden     clave de ordenación: id, titulo, autor o anioPublicacion
+     * @param cabeceras cabeceras de la petición
+     * @return página de libros con el cursor de la siguiente, o 304 si no ha cambiado
+     */
+    @GetMapping(path = "/libros", produces = {MediaType.APPLICATION_JSON_VALUE,
+            FormatoSerializacion.CBOR_VALUE, FormatoSerializacion.SMILE_VALUE})
+    @Operation(summary = "Listar libros", description = "Devuelve una página del catálogo ordenada por la clave indicada")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Página de libros obtenida correctamente",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = PaginaCursor.class))),
+            @ApiResponse(responseCode = "304", description = "Sin cambios desde el ETag de If-None-Match", content = @Content),
+            @ApiResponse(responseCode = "400", description = "Cursor u ordenación inválidos", content = @Content),
+            @ApiResponse(responseCode = "403", description = "Acceso denegado", content = @Content)
+    })
+    public ResponseEntity<byte[]> listarLibros(
+            @Parameter(description = "Cursor devuelto en la página anterior") @RequestParam(required = false) String cursor,
+            @Parameter(description = "Número de libros por página (máx. 500)") @RequestParam(defaultValue = "50") int tamanio,
+            @Parameter(description = "Clave de ordenación: id, titulo, autor o anioPublicacion") @RequestParam(required = false) String orden,
+            @Parameter(hidden = true) @RequestHeader HttpHeaders cabeceras) {
+        OrdenLibro ordenLibro = OrdenLibro.desdeCampo(orden);
+        // Clave con el tamaño efectivo: los tamaños que devuelven la misma página comparten la entrada.
+        int limite = adminService.tamanioPagina(tamanio);
+        return respuestasCatalogo.pagina(cabeceras, ordenLibro.getCampo() + ":" + limite + ":" + cursor, null,
+                () -> adminService.listarLibros(cursor, limite, ordenLibro));
+    }
+
+    /**
+     * Exporta el catálogo completo como JSON delimitado por saltos de línea (un libro por línea).
+     * <p>
+     * La respuesta se escribe en streaming a medida que se leen las filas, por lo que el
+     * consumo de memoria no depende del tamaño del catálogo. Como puede durar varios minutos,
+     * solo esta petición usa {@code diw.exportacion.tiempo-maximo} en lugar del tiempo máximo
+     * general de las peticiones asíncronas.
+     * </p>
      *
-     * @return lista de libros
+     * @param peticion petición en curso, para fijar su tiempo máximo
+     * @return cuerpo de respuesta que escribe el catálogo en streaming
      */
-    @GetMapping(path = "/libros", produces = MediaType.APPLICATION_JSON_VALUE)
-    @Operation(summary = "Listar libros", description = "Devuelve la lista de todos los libros")
+    @GetMapping(path = "/libros/exportacion", produces = APPLICATION_NDJSON_VALUE)
+    @Operation(summary = "Exportar catálogo", description = "Devuelve todos los libros en formato NDJSON, escritos en streaming")
     @ApiResponses({
-            @ApiResponse(responseCode = "200", description = "Lista de libros obtenida correctamente",
-                    content = @Content(mediaType = "application/json",
-                            array = @ArraySchema(schema = @Schema(implementation = Libro.class)))),
+            @ApiResponse(responseCode = "200", description = "Catálogo exportado",
+                    content = @Content(mediaType = APPLICATION_NDJSON_VALUE, schema = @Schema(implementation = Libro.class))),
             @ApiResponse(responseCode = "403", description = "Acceso denegado", content = @Content)
     })
-    public List<Libro> listarLibros() {
-        return adminService.listarLibros();
+    public ResponseEntity<StreamingResponseBody> exportarLibros(HttpServletRequest peticion) {
+        ampliarTiempoMaximo(peticion, tiempoMaximoExportacion);
+        StreamingResponseBody cuerpo = salida -> {
+            // Sin volcado por fila ni cierre del flujo: el contenedor agrupa la escritura en su búfer.
+            ObjectWriter escritorLibros = objectMapper.writerFor(Libro.class)
+                    .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE)
+                    .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                    .withRootValueSeparator("\n");
+            try (SequenceWriter escritor = escritorLibros.writeValues(salida)) {
+                adminService.recorrerCatalogo(libro -> {
+                    try {
+                        escritor.write(libro);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            }
+            salida.write('\n');
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(APPLICATION_NDJSON_VALUE))
+                .body(cuerpo);
     }
 
     /**
@@ -115,6 +235,74 @@ public class AdminController {
         return ResponseEntity.status(201).body(adminService.registrarLibro(libro));
     }
 
+    /**
+     * Importa libros desde un CSV enviado como cuerpo de la petición.
+     *
+     * @param cuerpo contenido CSV con cabecera, leído en streaming
+     * @return resumen de la importación con los errores por fila
+     * @throws IOException si falla la lectura del cuerpo
+     */
+    @PostMapping(path = "/libros/importacion", consumes = TEXT_CSV_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    @Operation(summary = "Importar libros (CSV)", description = "Inserta por lotes los libros de un CSV con cabecera; las filas inválidas se informan sin abortar la importación")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Importación procesada",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = ResultadoImportacion.class))),
+            @ApiResponse(responseCode = "400", description = "Cabecera CSV inválida", content = @Content),
+            @ApiResponse(responseCode = "403", description = "Acceso denegado", content = @Content)
+    })
+    public ResultadoImportacion importarLibrosCsv(InputStream cuerpo) throws IOException {
+        return importacionService.importarCsv(cuerpo);
+    }
+
+    /**
+     * Importa libros desde un array JSON enviado como cuerpo de la petición.
+     *
+     * @param cuerpo array JSON de libros, leído en streaming
+     * @return resumen de la importación con los errores por fila
+     * @throws IOException si falla la lectura del cuerpo
+     */
+    @PostMapping(path = "/libros/importacion", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    @Operation(summary = "Importar libros (JSON)", description = "Inserta por lotes los libros de un array JSON; los elementos inválidos se informan sin abortar la importación")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Importación procesada",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = ResultadoImportacion.class))),
+            @ApiResponse(responseCode = "400", description = "El cuerpo no es un array JSON", content = @Content),
+            @ApiResponse(responseCode = "403", description = "Acceso denegado", content = @Content)
+    })
+    public ResultadoImportacion importarLibrosJson(InputStream cuerpo) throws IOException {
+        return importacionService.importarJson(cuerpo);
+    }
+
+    /**
+     * Importa libros desde un fichero CSV o JSON subido como multipart.
+     *
+     * @param archivo fichero con extensión {@code .csv} o {@code .json}
+     * @return resumen de la importación con los errores por fila
+     * @throws IOException si falla la lectura del fichero
+     */
+    @PostMapping(path = "/libros/importacion", consumes = MediaType.MULTIPART_FORM_DATA_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    @Operation(summary = "Importar libros (fichero)", description = "Inserta por lotes los libros de un fichero CSV o JSON")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Importación procesada",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = ResultadoImportacion.class))),
+            @ApiResponse(responseCode = "400", description = "Formato de fichero no admitido", content = @Content),
+            @ApiResponse(responseCode = "403", description = "Acceso denegado", content = @Content)
+    })
+    public ResultadoImportacion importarLibrosArchivo(
+            @Parameter(description = "Fichero .csv o .json", required = true) @RequestParam("archivo") MultipartFile archivo) throws IOException {
+        String nombre = archivo.getOriginalFilename() != null ? archivo.getOriginalFilename().toLowerCase() : "";
+        String tipo = archivo.getContentType() != null ? archivo.getContentType() : "";
+        try (InputStream contenido = archivo.getInputStream()) {
+            if (nombre.endsWith(".csv") || tipo.startsWith(TEXT_CSV_VALUE)) {
+                return importacionService.importarCsv(contenido);
+            }
+            if (nombre.endsWith(".json") || tipo.startsWith(MediaType.APPLICATION_JSON_VALUE)) {
+                return importacionService.importarJson(contenido);
+            }
+        }
+        throw new IllegalArgumentException("Formato de fichero no admitido: " + nombre);
+    }
+
     /**
      * Actualiza un libro existente.
      *
@@ -127,7 +315,9 @@ public class AdminController {
     @ApiResponses({
             @ApiResponse(responseCode = "200", description = "Libro actualizado",
                     content = @Content(mediaType = "application/json", schema = @Schema(implementation = Libro.class))),
+            @ApiResponse(responseCode = "400", description = "Datos inválidos o cambio de estado", content = @Content),
             @ApiResponse(responseCode = "404", description = "Libro no encontrado", content = @Content),
+            @ApiResponse(responseCode = "409", description = "El libro fue modificado por otra operación", content = @Content),
             @ApiResponse(responseCode = "403", description = "Acceso denegado", content = @Content)
     })
     public ResponseEntity<Libro> actualizarLibro(
@@ -159,4 +349,49 @@ public class AdminController {
                 ? ResponseEntity.noContent().build()
                 : ResponseEntity.notFound().build();
     }
-}
\ No newline at end of file
+
+    /**
+     * Traduce los parámetros de paginación u ordenación inválidos a una respuesta 400.
+     *
+     * @param e excepción lanzada al interpretar el cursor o la ordenación
+     * @return respuesta 400 sin cuerpo
+     */
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<Void> parametrosInvalidos(IllegalArgumentException e) {
+        return ResponseEntity.badRequest().build();
+    }
+
+    /**
+     * Traduce los conflictos de versión (el libro cambió desde que se leyó) a una respuesta 409.
+     *
+     * @param e excepción de bloqueo optimista
+     * @return respuesta 409 sin cuerpo
+     */
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    public ResponseEntity<Void> conflictoDeVersion(OptimisticLockingFailureException e) {
+        return ResponseEntity.status(409).build();
+    }
+
+    /**
+     * Fija el tiempo máximo del procesamiento asíncrono de esta petición.
+     * <p>
+     * El manejador de {@link StreamingResponseBody} no admite un tiempo propio; el interceptor se
+     * registra solo para esta petición y se aplica justo antes de que empiece el procesamiento
+     * asíncrono, cuando todavía puede cambiarse.
+     * </p>
+     *
+     * @param peticion petición en curso
+     * @param tiempo   tiempo máximo
+     */
+    private static void ampliarTiempoMaximo(HttpServletRequest peticion, Duration tiempo) {
+        WebAsyncUtils.getAsyncManager(peticion).registerCallableInterceptor(AdminController.class.getName(),
+                new CallableProcessingInterceptor() {
+                    @Override
+                    public <T> void beforeConcurrentHandling(NativeWebRequest solicitud, Callable<T> tarea) {
+                        if (solicitud instanceof AsyncWebRequest asincrona) {
+                            asincrona.setTimeout(tiempo.toMillis());
+                        }
+                    }
+                });
+    }
+}
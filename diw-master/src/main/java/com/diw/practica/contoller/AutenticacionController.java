@@ -0,0 +1,61 @@
+package com.diw.practica.contoller;
+
+import com.diw.practica.dto.TokenAcceso;
+import com.diw.practica.security.TokensAcceso;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+
+/**
+ * Controlador de inicio de sesión: cambia las credenciales de autenticación básica por un token
+ * de acceso de corta duración para el resto de peticiones.
+ */
+@RestController
+@RequestMapping("/auth")
+@Tag(name = "Autenticación", description = "Emisión de tokens de acceso")
+@SecurityRequirement(name = "basicAuth")
+public class AutenticacionController {
+
+    /**
+     * Ruta de emisión de tokens; solo admite autenticación básica.
+     */
+    public static final String RUTA_TOKEN = "/auth/token";
+
+    private final TokensAcceso tokens;
+
+    public AutenticacionController(TokensAcceso tokens) {
+        this.tokens = tokens;
+    }
+
+    /**
+     * Emite un token de acceso para el usuario autenticado con sus credenciales.
+     *
+     * @param autenticacion usuario autenticado por autenticación básica
+     * @return token firmado y su caducidad
+     */
+    @PostMapping(path = "/token", produces = MediaType.APPLICATION_JSON_VALUE)
+    @Operation(summary = "Obtener token de acceso", description = "Verifica las credenciales de autenticación básica una vez y devuelve un token para enviar en Authorization: Bearer hasta que caduque")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Token emitido",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = TokenAcceso.class))),
+            @ApiResponse(responseCode = "401", description = "Credenciales inválidas", content = @Content)
+    })
+    public ResponseEntity<TokenAcceso> emitirToken(@Parameter(hidden = true) Authentication autenticacion) {
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noStore())
+                .body(tokens.emitir(autenticacion));
+    }
+}
@@ -0,0 +1,117 @@
+package com.diw.practica.contoller;
+
+import com.diw.practica.dto.PaginaCursor;
+import com.diw.practica.historial.RegistroEventosPrestamo;
+import com.diw.practica.informes.EstadisticasCatalogo;
+import com.diw.practica.informes.InformeCatalogo;
+import com.diw.practica.model.EventoPrestamo;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.time.Instant;
+
+/**
+ * Controlador de informes agregados del catálogo para administradores.
+ * Los agregados se sirven desde {@link EstadisticasCatalogo}, sin consultar la base de datos; el
+ * historial de préstamos, desde la tabla que escribe {@link RegistroEventosPrestamo}.
+ */
+@RestController
+@RequestMapping("/admin/informes")
+@PreAuthorize("hasRole('ADMIN')")
+@Tag(name = "Informes", description = "Agregados del catálogo e historial de préstamos")
+@SecurityRequirement(name = "bearerAuth")
+public class InformeController {
+
+    private final EstadisticasCatalogo estadisticas;
+    private final RegistroEventosPrestamo historial;
+
+    public InformeController(EstadisticasCatalogo estadisticas, RegistroEventosPrestamo historial) {
+        this.estadisticas = estadisticas;
+        this.historial = historial;
+    }
+
+    /**
+     * Devuelve los agregados del catálogo.
+     *
+     * @param prestatarios número de usuarios con más préstamos que se incluyen
+     * @return informe del catálogo
+     */
+    @GetMapping(produces = MediaType.APPLICATION_JSON_VALUE)
+    @Operation(summary = "Informe del catálogo", description = "Libros por estado, editorial y década, préstamos por rol y mayores prestatarios, mantenidos en memoria")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Informe obtenido correctamente",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = InformeCatalogo.class))),
+            @ApiResponse(responseCode = "403", description = "Acceso denegado", content = @Content)
+    })
+    public InformeCatalogo informe(
+            @Parameter(description = "Número de mayores prestatarios (máx. 100)") @RequestParam(defaultValue = "10") int prestatarios) {
+        return estadisticas.informe(prestatarios);
+    }
+
+    /**
+     * Recalcula los agregados contra la base de datos sin esperar a la reconciliación periódica.
+     *
+     * @param prestatarios número de usuarios con más préstamos que se incluyen
+     * @return informe reconciliado
+     */
+    @PostMapping(path = "/reconciliacion", produces = MediaType.APPLICATION_JSON_VALUE)
+    @Operation(summary = "Reconciliar informe", description = "Recalcula los agregados con consultas agrupadas y sustituye los mantenidos en memoria")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Informe reconciliado",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = InformeCatalogo.class))),
+            @ApiResponse(responseCode = "403", description = "Acceso denegado", content = @Content)
+    })
+    public ResponseEntity<InformeCatalogo> reconciliar(
+            @Parameter(description = "Número de mayores prestatarios (máx. 100)") @RequestParam(defaultValue = "10") int prestatarios) {
+        estadisticas.reconciliar();
+        return ResponseEntity.ok(estadisticas.informe(prestatarios));
+    }
+
+    /**
+     * Recorre el historial de préstamos, devoluciones y reservas en orden de escritura.
+     *
+     * @param cursor    cursor devuelto por la página anterior; omitir para empezar por el principio
+     * @param tamanio   número máximo de eventos por página
+     * @param desde     instante mínimo de los eventos
+     * @param libroId   filtra por libro
+     * @param usuarioId filtra por usuario
+     * @return página de eventos con el cursor de la siguiente
+     */
+    @GetMapping(path = "/eventos", produces = MediaType.APPLICATION_JSON_VALUE)
+    @Operation(summary = "Historial de préstamos", description = "Eventos de préstamo, devolución y reserva ya escritos, paginados por cursor y filtrables por libro o usuario")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Página del historial obtenida correctamente"),
+            @ApiResponse(responseCode = "400", description = "Cursor inválido o filtro por libro y usuario a la vez", content = @Content),
+            @ApiResponse(responseCode = "403", description = "Acceso denegado", content = @Content)
+    })
+    public PaginaCursor<EventoPrestamo> eventos(
+            @Parameter(description = "Cursor de la página anterior") @RequestParam(required = false) String cursor,
+            @Parameter(description = "Eventos por página (máx. 1000)") @RequestParam(defaultValue = "500") int tamanio,
+            @Parameter(description = "Instante mínimo (ISO-8601)") @RequestParam(required = false) Instant desde,
+            @Parameter(description = "Id del libro") @RequestParam(required = false) Integer libroId,
+            @Parameter(description = "Id del usuario") @RequestParam(required = false) Integer usuarioId) {
+        return historial.reproducir(cursor, tamanio, desde, libroId, usuarioId);
+    }
+
+    /**
+     * Traduce un cursor del historial inválido o filtros incompatibles a una respuesta 400.
+     *
+     * @param e excepción lanzada al interpretar los parámetros
+     * @return respuesta 400 sin cuerpo
+     */
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<Void> parametrosInvalidos(IllegalArgumentException e) {
+        return ResponseEntity.badRequest().build();
+    }
+}
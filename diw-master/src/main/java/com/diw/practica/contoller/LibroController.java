@@ -1,7 +1,10 @@
 package com.diw.practica.contoller;
 
+import com.diw.practica.dto.LibroApi;
+import com.diw.practica.repository.AlmacenLibrosApi;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
-import java.time.LocalDateTime;
 import java.util.*;
 
 @RestController
@@ -9,58 +12,44 @@ import java.util.*;
 @CrossOrigin(origins = "http://localhost:5173")
 public class LibroController {
 
-    private List<Map<String, Object>> libros = new ArrayList<>();
-    private long nextId = 1;
+    private final AlmacenLibrosApi almacen;
 
-    public LibroController() {
-        agregarLibro("Cien años de soledad", "Gabriel García Márquez");
-        agregarLibro("Don Quijote", "Miguel de Cervantes");
-        agregarLibro("1984", "George Orwell");
-    }
-
-    private void agregarLibro(String titulo, String autor) {
-        Map<String, Object> libro = new HashMap<>();
-        libro.put("id", nextId++);
-        libro.put("titulo", titulo);
-        libro.put("autor", autor);
-        libro.put("fechaCreacion", LocalDateTime.now().toString());
-        libros.add(libro);
+    public LibroController(AlmacenLibrosApi almacen) {
+        this.almacen = Objects.requireNonNull(almacen, "almacen no puede ser null");
+        if (almacen.tamanio() == 0) {
+            almacen.crear("Cien años de soledad", "Gabriel García Márquez");
+            almacen.crear("Don Quijote", "Miguel de Cervantes");
+            almacen.crear("1984", "George Orwell");
+        }
     }
 
     @GetMapping
-    public List<Map<String, Object>> getAllLibros() {
-        return libros;
+    public List<LibroApi> getAllLibros() {
+        return almacen.listar();
     }
 
     @PostMapping
-    public Map<String, Object> createLibro(@RequestBody Map<String, String> libro) {
-        Map<String, Object> nuevoLibro = new HashMap<>();
-        nuevoLibro.put("id", nextId++);
-        nuevoLibro.put("titulo", libro.get("titulo"));
-        nuevoLibro.put("autor", libro.get("autor"));
-        nuevoLibro.put("fechaCreacion", LocalDateTime.now().toString());
-        libros.add(nuevoLibro);
-        return nuevoLibro;
+    public LibroApi createLibro(@RequestBody Map<String, String> libro) {
+        return almacen.crear(libro.get("titulo"), libro.get("autor"));
     }
 
     @PutMapping("/{id}")
-    public Map<String, Object> updateLibro(@PathVariable Long id, @RequestBody Map<String, String> libro) {
-        return libros.stream()
-                .filter(l -> id.equals(l.get("id")))
-                .findFirst()
-                .map(l -> {
-                    l.put("titulo", libro.get("titulo"));
-                    l.put("autor", libro.get("autor"));
-                    return l;
-                })
-                .orElseThrow(() -> new RuntimeException("Libro no encontrado"));
+    public ResponseEntity<LibroApi> updateLibro(@PathVariable Long id, @RequestBody Map<String, String> libro) {
+        return almacen.actualizar(id, libro.get("titulo"), libro.get("autor"))
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
     }
 
     @DeleteMapping("/{id}")
     public Map<String, String> deleteLibro(@PathVariable Long id) {
-        libros.removeIf(libro -> id.equals(libro.get("id")));
+        almacen.eliminar(id);
         Map<String, String> response = new HashMap<>();
         response.put("message", "Libro eliminado");
         return response;
     }
-}
\ No newline at end of file
+
+    @ExceptionHandler(AlmacenLibrosApi.CapacidadAgotadaException.class)
+    public ResponseEntity<Map<String, String>> capacidadAgotada(AlmacenLibrosApi.CapacidadAgotadaException e) {
+        return ResponseEntity.status(HttpStatus.INSUFFICIENT_STORAGE).body(Map.of("message", e.getMessage()));
+    }
+}
@@ -1,12 +1,27 @@
 package com.diw.practica.contoller;
 
 import com.diw.practica.beans.UsuarioService;
+import com.diw.practica.cache.RespuestasCatalogo;
+import com.diw.practica.config.FormatoSerializacion;
+import com.diw.practica.dto.CambioLibro;
+import com.diw.practica.dto.LibroResumen;
+import com.diw.practica.dto.PaginaCursor;
+import com.diw.practica.dto.RecuentoPrestamos;
+import com.diw.practica.dto.ReservaLibro;
+import com.diw.practica.dto.ResultadoBusqueda;
+import com.diw.practica.dto.ResultadoLote;
+import com.diw.practica.dto.SugerenciaAutocompletado;
+import com.diw.practica.dto.Vistas;
+import com.diw.practica.eventos.CanalCambiosLibro;
 import com.diw.practica.model.Libro;
+import com.fasterxml.jackson.annotation.JsonView;
 import io.swagger.v3.oas.annotations.media.ArraySchema;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.List;
 
@@ -22,7 +37,7 @@ import io.swagger.v3.oas.annotations.headers.Header;
 
 /**
  * Controlador para operaciones disponibles a usuarios con rol \`USER\`.
- * Maneja listados de libros, préstamos y devoluciones.
+ * Maneja listados de libros, préstamos, devoluciones y reservas.
  */
 @RestController
 @RequestMapping("/usuarios")
@@ -32,50 +47,168 @@ import io.swagger.v3.oas.annotations.headers.Header;
 public class UsuarioController {
 
     private final UsuarioService usuarioService;
+    private final RespuestasCatalogo respuestasCatalogo;
+    private final CanalCambiosLibro canalCambiosLibro;
 
-    public UsuarioController(UsuarioService usuarioService) {
+    public UsuarioController(UsuarioService usuarioService, RespuestasCatalogo respuestasCatalogo,
+                             CanalCambiosLibro canalCambiosLibro) {
         this.usuarioService = usuarioService;
+        this.respuestasCatalogo = respuestasCatalogo;
+        this.canalCambiosLibro = canalCambiosLibro;
     }
 
     /**
      * Devuelve la lista de libros disponibles para préstamo.
+     * <p>
+     * Se emite la vista {@link Vistas.Catalogo} y la respuesta serializada se reutiliza mientras
+     * no cambie ningún libro disponible. Se sirve en JSON, CBOR o Smile según {@code Accept}, y
+     * comprimida en gzip si es grande y el cliente lo acepta. Con un {@code If-None-Match} que
+     * coincide con la versión actual del catálogo se responde 304 sin cuerpo.
+     * </p>
      *
-     * @return lista de libros disponibles
+     * @param cabeceras cabeceras de la petición
+     * @return lista de libros disponibles, o 304 si no ha cambiado
      */
-    @GetMapping(path = "/libros/disponibles", produces = MediaType.APPLICATION_JSON_VALUE)
+    @GetMapping(path = "/libros/disponibles", produces = {MediaType.APPLICATION_JSON_VALUE,
+            FormatoSerializacion.CBOR_VALUE, FormatoSerializacion.SMILE_VALUE})
     @Operation(summary = "Listar libros disponibles", description = "Devuelve la lista de libros que están disponibles para préstamo")
     @ApiResponses({
             @ApiResponse(responseCode = "200", description = "Lista de libros obtenida correctamente",
-                    content = @Content(mediaType = "application/json", array = @ArraySchema(schema = @Schema(implementation = Libro.class)))),
+                    content = @Content(mediaType = "application/json", array = @ArraySchema(schema = @Schema(implementation = LibroResumen.class)))),
+            @ApiResponse(responseCode = "304", description = "Sin cambios desde el ETag de If-None-Match", content = @Content),
             @ApiResponse(responseCode = "403", description = "Acceso denegado", content = @Content)
     })
-    public List<Libro> librosDisponibles() {
-        return usuarioService.librosDisponibles();
+    public ResponseEntity<byte[]> librosDisponibles(
+            @Parameter(hidden = true) @RequestHeader HttpHeaders cabeceras) {
+        return respuestasCatalogo.disponibles(cabeceras, Vistas.Catalogo.class, usuarioService::librosDisponibles);
     }
 
     /**
-     * Obtiene los préstamos de un usuario.
+     * Abre un flujo de server-sent events con los cambios de estado de los libros.
+     * <p>
+     * Cada evento se llama como el tipo de cambio ({@code CREADO}, {@code ACTUALIZADO},
+     * {@code ELIMINADO}, {@code PRESTADO}, {@code DEVUELTO}) y lleva un {@link CambioLibro} en JSON.
+     * Al reconectar, el navegador envía {@code Last-Event-ID} y se reanuda desde ese evento; si ya
+     * no se conserva se envía un evento {@code reinicio} y el cliente debe volver a leer el listado.
+     * </p>
+     *
+     * @param libroIds      solo cambios de estos libros (opcional)
+     * @param estados       solo cambios desde o hacia estos estados (opcional)
+     * @param ultimoEventoId último evento recibido antes de reconectar (opcional)
+     * @return flujo de eventos, o 503 si se alcanzó el máximo de suscriptores
+     */
+    @GetMapping(path = "/libros/cambios", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(summary = "Suscribirse a cambios de libros", description = "Flujo SSE con los préstamos, devoluciones, reservas y ediciones de libros, filtrable por libro o estado")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Flujo de eventos abierto",
+                    content = @Content(mediaType = "text/event-stream", schema = @Schema(implementation = CambioLibro.class))),
+            @ApiResponse(responseCode = "403", description = "Acceso denegado", content = @Content),
+            @ApiResponse(responseCode = "503", description = "Demasiados suscriptores; reintentar más tarde", content = @Content)
+    })
+    public ResponseEntity<SseEmitter> cambiosDeLibros(
+            @Parameter(description = "IDs de los libros a seguir") @RequestParam(name = "libroId", required = false) List<Integer> libroIds,
+            @Parameter(description = "Estados a seguir, como anterior o nuevo estado del libro") @RequestParam(name = "estado", required = false) List<Libro.Estado> estados,
+            @Parameter(hidden = true) @RequestHeader(name = "Last-Event-ID", required = false) String ultimoEventoId) {
+        return canalCambiosLibro.suscribir(libroIds, estados, ultimoEventoId)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.status(503).header(HttpHeaders.RETRY_AFTER, "10").build());
+    }
+
+    /**
+     * Busca libros por título, autor, editorial o ISBN.
+     *
+     * @param q       texto a buscar
+     * @param pagina  número de página, desde 0
+     * @param tamanio tamaño de página
+     * @return página de libros ordenados por relevancia
+     */
+    @GetMapping(path = "/libros/busqueda", produces = MediaType.APPLICATION_JSON_VALUE)
+    @Operation(summary = "Buscar libros", description = "Búsqueda por texto en título, autor, editorial e ISBN, sin distinguir acentos, ordenada por relevancia")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Resultados obtenidos correctamente",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = ResultadoBusqueda.class))),
+            @ApiResponse(responseCode = "400", description = "Parámetros de paginación inválidos", content = @Content),
+            @ApiResponse(responseCode = "403", description = "Acceso denegado", content = @Content)
+    })
+    public ResponseEntity<ResultadoBusqueda> buscarLibros(
+            @Parameter(description = "Texto a buscar", required = true) @RequestParam String q,
+            @Parameter(description = "Número de página, desde 0") @RequestParam(defaultValue = "0") int pagina,
+            @Parameter(description = "Número de libros por página (máx. 100)") @RequestParam(defaultValue = "20") int tamanio) {
+        if (pagina < 0) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(usuarioService.buscarLibros(q, pagina, tamanio));
+    }
+
+    /**
+     * Sugiere títulos y autores a partir de un prefijo.
+     *
+     * @param prefijo texto tecleado
+     * @param k       número máximo de sugerencias
+     * @return sugerencias ordenadas por número de préstamos
+     */
+    @GetMapping(path = "/libros/autocompletado", produces = MediaType.APPLICATION_JSON_VALUE)
+    @Operation(summary = "Autocompletar títulos y autores", description = "Sugerencias cuyo texto empieza por el prefijo en alguna de sus palabras, sin distinguir acentos, ordenadas por número de préstamos")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Sugerencias obtenidas correctamente",
+                    content = @Content(mediaType = "application/json", array = @ArraySchema(schema = @Schema(implementation = SugerenciaAutocompletado.class)))),
+            @ApiResponse(responseCode = "403", description = "Acceso denegado", content = @Content)
+    })
+    public ResponseEntity<List<SugerenciaAutocompletado>> autocompletar(
+            @Parameter(description = "Prefijo tecleado", required = true) @RequestParam String prefijo,
+            @Parameter(description = "Número de sugerencias (máx. 10)") @RequestParam(defaultValue = "8") int k) {
+        return ResponseEntity.ok(usuarioService.autocompletar(prefijo, k));
+    }
+
+    /**
+     * Obtiene los préstamos de un usuario, paginados por cursor, en la vista {@link Vistas.Catalogo}.
+     * Admite JSON, CBOR o Smile según {@code Accept}.
      *
      * @param usuarioId id del usuario
-     * @return lista de libros prestados o 404 si no tiene préstamos
+     * @param cursor    token de la página anterior (opcional)
+     * @param tamanio   tamaño de página
+     * @return página de libros prestados o 404 si el usuario no tiene préstamos
      */
-    @GetMapping(path = "/{usuarioId}/prestamos", produces = MediaType.APPLICATION_JSON_VALUE)
-    @Operation(summary = "Listar préstamos de usuario", description = "Devuelve los libros prestados a un usuario dado")
+    @GetMapping(path = "/{usuarioId}/prestamos", produces = {MediaType.APPLICATION_JSON_VALUE,
+            FormatoSerializacion.CBOR_VALUE, FormatoSerializacion.SMILE_VALUE})
+    @Operation(summary = "Listar préstamos de usuario", description = "Devuelve una página de los libros prestados a un usuario dado, ordenados por id")
     @ApiResponses({
             @ApiResponse(responseCode = "200", description = "Préstamos obtenidos correctamente",
-                    content = @Content(mediaType = "application/json", array = @ArraySchema(schema = @Schema(implementation = Libro.class)))),
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = PaginaCursor.class))),
+            @ApiResponse(responseCode = "400", description = "Cursor inválido", content = @Content),
             @ApiResponse(responseCode = "404", description = "No se encontraron préstamos para el usuario", content = @Content),
             @ApiResponse(responseCode = "403", description = "Acceso denegado", content = @Content)
     })
-    public ResponseEntity<List<Libro>> prestamosDeUsuario(
-            @Parameter(description = "ID del usuario", required = true) @PathVariable Integer usuarioId) {
-        List<Libro> prestamos = usuarioService.prestamosDeUsuario(usuarioId);
-        if (prestamos.isEmpty()) {
+    @JsonView(Vistas.Catalogo.class)
+    public ResponseEntity<PaginaCursor<LibroResumen>> prestamosDeUsuario(
+            @Parameter(description = "ID del usuario", required = true) @PathVariable Integer usuarioId,
+            @Parameter(description = "Cursor devuelto en la página anterior") @RequestParam(required = false) String cursor,
+            @Parameter(description = "Número de libros por página (máx. 200)") @RequestParam(defaultValue = "50") int tamanio) {
+        PaginaCursor<LibroResumen> prestamos = usuarioService.prestamosDeUsuario(usuarioId, cursor, tamanio);
+        if (cursor == null && prestamos.contenido().isEmpty()) {
             return ResponseEntity.notFound().build();
         }
         return ResponseEntity.ok(prestamos);
     }
 
+    /**
+     * Cuenta los préstamos activos de un usuario.
+     *
+     * @param usuarioId id del usuario
+     * @return número de libros prestados
+     */
+    @GetMapping(path = "/{usuarioId}/prestamos/total", produces = MediaType.APPLICATION_JSON_VALUE)
+    @Operation(summary = "Contar préstamos de usuario", description = "Devuelve el número de libros prestados a un usuario sin listarlos")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Recuento obtenido correctamente",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = RecuentoPrestamos.class))),
+            @ApiResponse(responseCode = "403", description = "Acceso denegado", content = @Content)
+    })
+    public ResponseEntity<RecuentoPrestamos> contarPrestamos(
+            @Parameter(description = "ID del usuario", required = true) @PathVariable Integer usuarioId) {
+        return ResponseEntity.ok(new RecuentoPrestamos(usuarioId, usuarioService.contarPrestamos(usuarioId)));
+    }
+
     /**
      * Solicita el préstamo de un libro para un usuario.
      *
@@ -124,4 +257,142 @@ public class UsuarioController {
                 .map(ResponseEntity::ok)
                 .orElse(ResponseEntity.badRequest().build());
     }
+
+    /**
+     * Presta varios libros a un usuario en una sola operación.
+     *
+     * @param usuarioId id del usuario que solicita
+     * @param libroIds  ids de los libros a solicitar
+     * @return resultado de cada libro
+     */
+    @PostMapping(path = "/{usuarioId}/prestamos", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    @Operation(summary = "Solicitar préstamos por lotes", description = "Presta en una transacción los libros disponibles de la lista e indica el resultado de cada uno")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Lote procesado; el resultado de cada libro va en la respuesta",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = ResultadoLote.class))),
+            @ApiResponse(responseCode = "400", description = "Lista inválida o demasiado grande", content = @Content),
+            @ApiResponse(responseCode = "403", description = "Acceso denegado", content = @Content)
+    })
+    public ResponseEntity<ResultadoLote> solicitarPrestamos(
+            @Parameter(description = "ID del usuario que solicita", required = true) @PathVariable Integer usuarioId,
+            @io.swagger.v3.oas.annotations.parameters.RequestBody(description = "IDs de los libros (máx. 5000)", required = true)
+            @RequestBody List<Integer> libroIds) {
+        return ResponseEntity.ok(usuarioService.solicitarPrestamos(usuarioId, libroIds));
+    }
+
+    /**
+     * Devuelve varios libros de un usuario en una sola operación.
+     *
+     * @param usuarioId id del usuario que devuelve
+     * @param libroIds  ids de los libros a devolver
+     * @return resultado de cada libro
+     */
+    @PostMapping(path = "/{usuarioId}/devoluciones", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    @Operation(summary = "Devolver préstamos por lotes", description = "Devuelve en una transacción los libros de la lista que tiene el usuario e indica el resultado de cada uno")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Lote procesado; el resultado de cada libro va en la respuesta",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = ResultadoLote.class))),
+            @ApiResponse(responseCode = "400", description = "Lista inválida o demasiado grande", content = @Content),
+            @ApiResponse(responseCode = "403", description = "Acceso denegado", content = @Content)
+    })
+    public ResponseEntity<ResultadoLote> devolverPrestamos(
+            @Parameter(description = "ID del usuario que devuelve", required = true) @PathVariable Integer usuarioId,
+            @io.swagger.v3.oas.annotations.parameters.RequestBody(description = "IDs de los libros (máx. 5000)", required = true)
+            @RequestBody List<Integer> libroIds) {
+        return ResponseEntity.ok(usuarioService.devolverPrestamos(usuarioId, libroIds));
+    }
+
+    /**
+     * Devuelve todos los libros que tiene prestados un usuario.
+     *
+     * @param usuarioId id del usuario que devuelve
+     * @return resultado de cada libro devuelto
+     */
+    @PostMapping(path = "/{usuarioId}/devoluciones/todas", produces = MediaType.APPLICATION_JSON_VALUE)
+    @Operation(summary = "Devolver todos los préstamos", description = "Devuelve en una transacción todos los libros prestados al usuario")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Devoluciones procesadas correctamente",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = ResultadoLote.class))),
+            @ApiResponse(responseCode = "403", description = "Acceso denegado", content = @Content)
+    })
+    public ResponseEntity<ResultadoLote> devolverTodos(
+            @Parameter(description = "ID del usuario que devuelve", required = true) @PathVariable Integer usuarioId) {
+        return ResponseEntity.ok(usuarioService.devolverTodos(usuarioId));
+    }
+
+    /**
+     * Reserva un libro prestado para un usuario.
+     *
+     * @param usuarioId id del usuario que reserva
+     * @param libroId   id del libro a reservar
+     * @return situación de la reserva con estado 201 o 400 si no es posible
+     */
+    @PostMapping(path = "/{usuarioId}/reservas/{libroId}", produces = MediaType.APPLICATION_JSON_VALUE)
+    @Operation(summary = "Reservar libro", description = "Pone al usuario en la cola de un libro no disponible; al devolverse, el libro queda reservado para la primera reserva por rol y antigüedad")
+    @ApiResponses({
+            @ApiResponse(responseCode = "201", description = "Reserva registrada, o la que ya existía",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = ReservaLibro.class))),
+            @ApiResponse(responseCode = "400", description = "Libro o usuario inexistente, libro disponible o ya en poder del usuario", content = @Content),
+            @ApiResponse(responseCode = "403", description = "Acceso denegado", content = @Content)
+    })
+    public ResponseEntity<ReservaLibro> reservarLibro(
+            @Parameter(description = "ID del usuario que reserva", required = true) @PathVariable Integer usuarioId,
+            @Parameter(description = "ID del libro a reservar", required = true) @PathVariable Integer libroId
+    ) {
+        return usuarioService.reservarLibro(usuarioId, libroId)
+                .map(reserva -> ResponseEntity.status(201).body(reserva))
+                .orElse(ResponseEntity.badRequest().build());
+    }
+
+    /**
+     * Cancela la reserva de un libro.
+     *
+     * @param usuarioId id del usuario que cancela
+     * @param libroId   id del libro reservado
+     * @return 204 si se canceló o 404 si el usuario no tenía la reserva
+     */
+    @DeleteMapping(path = "/{usuarioId}/reservas/{libroId}")
+    @Operation(summary = "Cancelar reserva", description = "Saca al usuario de la cola del libro o, si el libro ya estaba reservado a su nombre, lo pasa a la siguiente reserva")
+    @ApiResponses({
+            @ApiResponse(responseCode = "204", description = "Reserva cancelada", content = @Content),
+            @ApiResponse(responseCode = "404", description = "El usuario no tenía reservado el libro", content = @Content),
+            @ApiResponse(responseCode = "403", description = "Acceso denegado", content = @Content)
+    })
+    public ResponseEntity<Void> cancelarReserva(
+            @Parameter(description = "ID del usuario que cancela", required = true) @PathVariable Integer usuarioId,
+            @Parameter(description = "ID del libro reservado", required = true) @PathVariable Integer libroId
+    ) {
+        return usuarioService.cancelarReserva(usuarioId, libroId)
+                ? ResponseEntity.noContent().build()
+                : ResponseEntity.notFound().build();
+    }
+
+    /**
+     * Lista las reservas en cola de un usuario.
+     *
+     * @param usuarioId id del usuario
+     * @return reservas pendientes con su posición en la cola
+     */
+    @GetMapping(path = "/{usuarioId}/reservas", produces = MediaType.APPLICATION_JSON_VALUE)
+    @Operation(summary = "Listar reservas", description = "Reservas del usuario que aún esperan turno, con su posición en la cola del libro")
+    @ApiResponses({
+            @ApiResponse(responseCode = "200", description = "Reservas obtenidas correctamente",
+                    content = @Content(mediaType = "application/json", array = @ArraySchema(schema = @Schema(implementation = ReservaLibro.class)))),
+            @ApiResponse(responseCode = "403", description = "Acceso denegado", content = @Content)
+    })
+    public List<ReservaLibro> reservasDeUsuario(
+            @Parameter(description = "ID del usuario", required = true) @PathVariable Integer usuarioId) {
+        return usuarioService.reservasDeUsuario(usuarioId);
+    }
+
+    /**
+     * Traduce los cursores y lotes inválidos a una respuesta 400.
+     *
+     * @param e excepción lanzada al interpretar el cursor o el lote
+     * @return respuesta 400 sin cuerpo
+     */
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<Void> parametrosInvalidos(IllegalArgumentException e) {
+        return ResponseEntity.badRequest().build();
+    }
 }
\ No newline at end of file
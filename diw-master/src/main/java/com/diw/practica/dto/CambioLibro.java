@@ -0,0 +1,36 @@
+package com.diw.practica.dto;
+
+import com.diw.practica.eventos.LibroCambiadoEvent;
+import com.diw.practica.model.Libro;
+
+/**
+ * Cambio de un libro tal como se envía a los suscriptores del canal de cambios.
+ * <p>
+ * Lleva el estado completo del libro tras el cambio, así que aplicarlo dos veces no tiene
+ * efecto. Si llegan dos cambios del mismo libro desordenados, gana el de mayor
+ * {@code libro.version}.
+ * </p>
+ *
+ * @param tipo           tipo de cambio
+ * @param libroId        libro afectado
+ * @param estadoAnterior estado antes del cambio, o {@code null} si es un alta
+ * @param estadoActual   estado tras el cambio, o {@code null} si es una baja
+ * @param libro          libro tras el cambio, o {@code null} si es una baja
+ * @since 1.2
+ */
+public record CambioLibro(LibroCambiadoEvent.Tipo tipo, Integer libroId, Libro.Estado estadoAnterior,
+                          Libro.Estado estadoActual, LibroResumen libro) {
+
+    /**
+     * Crea el cambio a partir del evento interno.
+     *
+     * @param evento cambio confirmado
+     * @return cambio para los suscriptores
+     */
+    public static CambioLibro desde(LibroCambiadoEvent evento) {
+        return new CambioLibro(evento.tipo(), evento.libroId(),
+                evento.anterior() != null ? evento.anterior().estadoLibro() : null,
+                evento.actual() != null ? evento.actual().estadoLibro() : null,
+                evento.actual());
+    }
+}
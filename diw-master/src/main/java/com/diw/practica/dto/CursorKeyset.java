@@ -0,0 +1,93 @@
+package com.diw.practica.dto;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Objects;
+
+/**
+ * Posición de un cursor de paginación keyset.
+ * <p>
+ * Guarda la clave de ordenación utilizada, el valor de esa clave en el último
+ * elemento entregado y su identificador. Se serializa como un token Base64 URL
+ * opaco para el cliente, de modo que la página N cuesta lo mismo que la primera:
+ * la consulta siguiente filtra por {@code (valor, id) > (ultimoValor, ultimoId)}
+ * en lugar de saltar filas con {@code OFFSET}.
+ * </p>
+ * <p>
+ * Un valor {@code null} indica que el último elemento no tenía valor en la clave de ordenación.
+ * Los nulos van delante (como en MySQL y H2 en orden ascendente), así que un cursor con valor
+ * nulo sigue dentro del tramo de nulos y uno con valor ya ha salido de él. Solo sirve para
+ * listados de libros; los de usuarios usan {@link CursorUsuario}.
+ * </p>
+ *
+ * @param orden    clave de ordenación con la que se generó el cursor
+ * @param valor    valor de la clave de ordenación del último elemento, o {@code null} si no tenía
+ *                 (vacío si se ordena por id)
+ * @param ultimoId identificador del último elemento entregado
+ * @since 1.1
+ */
+public record CursorKeyset(OrdenLibro orden, String valor, int ultimoId) {
+
+    private static final char SEPARADOR = '|';
+    private static final char CON_VALOR = '=';
+    private static final char NULO = '~';
+
+    public CursorKeyset {
+        Objects.requireNonNull(orden, "La clave de ordenación no puede ser nula");
+    }
+
+    /**
+     * Cursor anterior al primer elemento de un listado.
+     *
+     * @param orden clave de ordenación
+     * @return cursor al principio del tramo de nulos, que es el primero
+     */
+    public static CursorKeyset inicial(OrdenLibro orden) {
+        return new CursorKeyset(orden, orden == OrdenLibro.ID ? "" : null, 0);
+    }
+
+    /**
+     * Codifica el cursor como token opaco.
+     *
+     * @return token Base64 URL sin relleno
+     */
+    public String codificar() {
+        String plano = orden.getCampo() + SEPARADOR + (valor != null ? CON_VALOR + valor : String.valueOf(NULO))
+                + SEPARADOR + ultimoId;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(plano.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decodifica un token generado por {@link #codificar()}.
+     *
+     * @param token token recibido del cliente; no debe ser {@code null}
+     * @return el cursor decodificado
+     * @throws IllegalArgumentException si el token no es válido
+     */
+    public static CursorKeyset decodificar(String token) {
+        Objects.requireNonNull(token, "El cursor no puede ser nulo");
+        try {
+            String plano = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            // El valor puede contener el separador: se toman el primer y el último tramo.
+            int primero = plano.indexOf(SEPARADOR);
+            int ultimo = plano.lastIndexOf(SEPARADOR);
+            if (primero < 0 || primero == ultimo) {
+                throw new IllegalArgumentException("Cursor mal formado");
+            }
+            OrdenLibro orden = OrdenLibro.desdeCampo(plano.substring(0, primero));
+            String marcado = plano.substring(primero + 1, ultimo);
+            String valor;
+            if (marcado.equals(String.valueOf(NULO))) {
+                valor = null;
+            } else if (!marcado.isEmpty() && marcado.charAt(0) == CON_VALOR) {
+                valor = marcado.substring(1);
+            } else {
+                throw new IllegalArgumentException("Cursor mal formado");
+            }
+            int ultimoId = Integer.parseInt(plano.substring(ultimo + 1));
+            return new CursorKeyset(orden, valor, ultimoId);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Cursor de paginación inválido", e);
+        }
+    }
+}
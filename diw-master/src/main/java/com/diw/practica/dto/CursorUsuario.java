@@ -0,0 +1,50 @@
+package com.diw.practica.dto;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Objects;
+
+/**
+ * Posición de un cursor del listado de usuarios, ordenado por identificador.
+ * <p>
+ * Se codifica con un prefijo propio, de modo que un cursor de libros ({@link CursorKeyset}) no se
+ * acepta en el listado de usuarios ni al revés.
+ * </p>
+ *
+ * @param ultimoId identificador del último usuario entregado
+ * @since 1.2
+ */
+public record CursorUsuario(int ultimoId) {
+
+    private static final String PREFIJO = "usuario|";
+
+    /**
+     * Codifica el cursor como token opaco.
+     *
+     * @return token Base64 URL sin relleno
+     */
+    public String codificar() {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((PREFIJO + ultimoId).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decodifica un token generado por {@link #codificar()}.
+     *
+     * @param token token recibido del cliente; no debe ser {@code null}
+     * @return el cursor decodificado
+     * @throws IllegalArgumentException si el token no es válido o es de otro listado
+     */
+    public static CursorUsuario decodificar(String token) {
+        Objects.requireNonNull(token, "El cursor no puede ser nulo");
+        try {
+            String plano = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            if (!plano.startsWith(PREFIJO)) {
+                throw new IllegalArgumentException("El cursor no corresponde al listado de usuarios");
+            }
+            return new CursorUsuario(Integer.parseInt(plano.substring(PREFIJO.length())));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Cursor de paginación inválido", e);
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.diw.practica.dto;
+
+/**
+ * Error asociado a una fila concreta de una importación masiva.
+ *
+ * @param fila    número de fila en el origen (1 para el primer registro de datos)
+ * @param mensaje descripción del motivo del rechazo
+ * @since 1.1
+ */
+public record ErrorImportacion(long fila, String mensaje) {
+}
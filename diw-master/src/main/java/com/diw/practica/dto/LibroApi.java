@@ -0,0 +1,24 @@
+package com.diw.practica.dto;
+
+/**
+ * Libro de la API de demostración {@code /api/libros}, independiente del catálogo persistido.
+ *
+ * @param id             identificador asignado por el almacén
+ * @param titulo         título del libro
+ * @param autor          autor del libro
+ * @param fechaCreacion  instante de alta en formato ISO-8601 local
+ * @since 1.1
+ */
+public record LibroApi(long id, String titulo, String autor, String fechaCreacion) {
+
+    /**
+     * Devuelve una copia con otro título y autor, conservando id y fecha de alta.
+     *
+     * @param titulo nuevo título
+     * @param autor  nuevo autor
+     * @return copia modificada
+     */
+    public LibroApi conDatos(String titulo, String autor) {
+        return new LibroApi(id, titulo, autor, fechaCreacion);
+    }
+}
@@ -0,0 +1,42 @@
+package com.diw.practica.dto;
+
+import com.diw.practica.model.Libro;
+
+/**
+ * Columnas propias de un {@link Libro} junto con el identificador de su prestatario.
+ * <p>
+ * Se construye en la consulta JPQL a partir de la clave foránea, sin cargar el usuario, y
+ * permite decidir qué libros de un lote pueden prestarse o devolverse.
+ * </p>
+ *
+ * @param id              identificador del libro
+ * @param titulo          título del libro
+ * @param autor           autor o autores del libro
+ * @param isbn            código ISBN
+ * @param anioPublicacion año de publicación
+ * @param editorial       editorial del libro
+ * @param estadoLibro     estado actual del libro
+ * @param version         versión del registro
+ * @param prestatarioId   identificador del usuario que lo tiene, o {@code null} si no lo tiene nadie
+ */
+public record LibroConPrestatario(
+        Integer id,
+        String titulo,
+        String autor,
+        String isbn,
+        Integer anioPublicacion,
+        String editorial,
+        Libro.Estado estadoLibro,
+        Long version,
+        Integer prestatarioId
+) {
+
+    /**
+     * Vista del libro sin el prestatario.
+     *
+     * @return columnas propias del libro
+     */
+    public LibroResumen resumen() {
+        return new LibroResumen(id, titulo, autor, isbn, anioPublicacion, editorial, estadoLibro, version);
+    }
+}
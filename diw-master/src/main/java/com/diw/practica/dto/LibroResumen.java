@@ -0,0 +1,59 @@
+package com.diw.practica.dto;
+
+import com.diw.practica.model.Libro;
+import com.fasterxml.jackson.annotation.JsonView;
+
+/**
+ * Vista de solo lectura de un {@link Libro} para los listados.
+ * <p>
+ * Se construye directamente en la consulta JPQL mediante una expresión
+ * {@code SELECT new}, de modo que solo se leen las columnas propias del libro:
+ * no se carga el usuario prestatario ni se crean entidades gestionadas.
+ * </p>
+ * <p>
+ * La vista {@link Vistas.Catalogo} omite el año, la editorial y la versión.
+ * </p>
+ *
+ * @param id              identificador del libro
+ * @param titulo          título del libro
+ * @param autor           autor o autores del libro
+ * @param isbn            código ISBN
+ * @param anioPublicacion año de publicación
+ * @param editorial       editorial del libro
+ * @param estadoLibro     estado actual del libro
+ * @param version         versión del registro, necesaria para editarlo con control optimista
+ * @since 1.1
+ */
+public record LibroResumen(
+        @JsonView(Vistas.Comun.class) Integer id,
+        @JsonView(Vistas.Catalogo.class) String titulo,
+        @JsonView(Vistas.Catalogo.class) String autor,
+        @JsonView(Vistas.Catalogo.class) String isbn,
+        Integer anioPublicacion,
+        String editorial,
+        @JsonView(Vistas.Catalogo.class) Libro.Estado estadoLibro,
+        Long version
+) {
+
+    /**
+     * Crea la vista a partir de una entidad.
+     *
+     * @param libro entidad de origen; no debe ser {@code null}
+     * @return vista con las columnas propias del libro
+     */
+    public static LibroResumen desde(Libro libro) {
+        return new LibroResumen(libro.getId(), libro.getTitulo(), libro.getAutor(), libro.getIsbn(),
+                libro.getAnioPublicacion(), libro.getEditorial(), libro.getEstadoLibro(), libro.getVersion());
+    }
+
+    /**
+     * Devuelve una copia con otro estado y versión.
+     *
+     * @param estado  nuevo estado
+     * @param version nueva versión
+     * @return copia modificada
+     */
+    public LibroResumen conEstado(Libro.Estado estado, Long version) {
+        return new LibroResumen(id, titulo, autor, isbn, anioPublicacion, editorial, estado, version);
+    }
+}
@@ -0,0 +1,55 @@
+package com.diw.practica.dto;
+
+import java.util.Arrays;
+
+/**
+ * Claves de ordenación admitidas en el listado paginado de libros.
+ * <p>
+ * Cada clave se identifica en la API por el nombre del atributo de {@code Libro}
+ * correspondiente ({@code id}, {@code titulo}, {@code autor}, {@code anioPublicacion}).
+ * El identificador se utiliza siempre como clave de desempate.
+ * </p>
+ *
+ * @since 1.1
+ */
+public enum OrdenLibro {
+    ID("id"),
+    TITULO("titulo"),
+    AUTOR("autor"),
+    ANIO_PUBLICACION("anioPublicacion");
+
+    /**
+     * Nombre con el que se expone la clave en la API.
+     */
+    private final String campo;
+
+    OrdenLibro(String campo) {
+        this.campo = campo;
+    }
+
+    /**
+     * Obtiene el nombre del campo expuesto en la API.
+     *
+     * @return nombre del campo
+     */
+    public String getCampo() {
+        return campo;
+    }
+
+    /**
+     * Resuelve una clave de ordenación a partir del nombre de campo recibido.
+     *
+     * @param campo nombre del campo; si es {@code null} o vacío se ordena por {@link #ID}
+     * @return la clave de ordenación correspondiente
+     * @throws IllegalArgumentException si el campo no es una clave admitida
+     */
+    public static OrdenLibro desdeCampo(String campo) {
+        if (campo == null || campo.isBlank()) {
+            return ID;
+        }
+        return Arrays.stream(values())
+                .filter(orden -> orden.campo.equalsIgnoreCase(campo))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Clave de ordenación no admitida: " + campo));
+    }
+}
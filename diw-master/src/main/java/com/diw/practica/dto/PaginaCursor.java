@@ -0,0 +1,23 @@
+package com.diw.practica.dto;
+
+import com.fasterxml.jackson.annotation.JsonView;
+
+import java.util.List;
+
+/**
+ * Página de resultados obtenida mediante paginación por cursor (keyset).
+ * <p>
+ * El campo {@code siguienteCursor} contiene un token opaco que el cliente debe
+ * reenviar para obtener la página siguiente. Es {@code null} cuando no quedan
+ * más resultados. Sus dos campos pertenecen a {@link Vistas.Comun}, así que se emiten
+ * con cualquier vista.
+ * </p>
+ *
+ * @param contenido       elementos de la página actual; nunca {@code null}
+ * @param siguienteCursor token de la página siguiente, o {@code null} si es la última
+ * @param <T>             tipo de los elementos de la página
+ * @since 1.1
+ */
+public record PaginaCursor<T>(@JsonView(Vistas.Comun.class) List<T> contenido,
+                              @JsonView(Vistas.Comun.class) String siguienteCursor) {
+}
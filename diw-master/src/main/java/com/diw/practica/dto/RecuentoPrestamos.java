@@ -0,0 +1,10 @@
+package com.diw.practica.dto;
+
+/**
+ * Número de libros que tiene prestados un usuario.
+ *
+ * @param usuarioId identificador del usuario
+ * @param prestamos número de préstamos activos
+ */
+public record RecuentoPrestamos(Integer usuarioId, long prestamos) {
+}
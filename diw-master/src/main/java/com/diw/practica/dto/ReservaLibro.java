@@ -0,0 +1,15 @@
+package com.diw.practica.dto;
+
+import java.time.Instant;
+
+/**
+ * Situación de una reserva en la cola de su libro.
+ *
+ * @param libroId    libro reservado
+ * @param solicitada momento de la solicitud
+ * @param posicion   posición en la cola, desde 1
+ * @param pendientes reservas en la cola del libro, incluida esta
+ * @since 1.2
+ */
+public record ReservaLibro(Integer libroId, Instant solicitada, int posicion, int pendientes) {
+}
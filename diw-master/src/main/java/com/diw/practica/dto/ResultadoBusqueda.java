@@ -0,0 +1,15 @@
+package com.diw.practica.dto;
+
+import java.util.List;
+
+/**
+ * Página de resultados de una búsqueda en el catálogo, ordenados por relevancia.
+ *
+ * @param contenido libros de la página actual, de mayor a menor relevancia
+ * @param total     número total de libros que coinciden con la búsqueda
+ * @param pagina    número de página (desde 0)
+ * @param tamanio   tamaño de página solicitado
+ * @since 1.1
+ */
+public record ResultadoBusqueda(List<LibroResumen> contenido, int total, int pagina, int tamanio) {
+}
@@ -0,0 +1,19 @@
+package com.diw.practica.dto;
+
+import java.util.List;
+
+/**
+ * Resumen de una importación masiva de libros.
+ * <p>
+ * Las filas inválidas no interrumpen la importación: se cuentan en {@code rechazados}
+ * y se detallan en {@code errores}. Para acotar el tamaño de la respuesta solo se
+ * detallan los primeros errores; {@code rechazados} refleja siempre el total.
+ * </p>
+ *
+ * @param importados número de libros insertados
+ * @param rechazados número de filas rechazadas
+ * @param errores    detalle de las filas rechazadas (posiblemente truncado)
+ * @since 1.1
+ */
+public record ResultadoImportacion(long importados, long rechazados, List<ErrorImportacion> errores) {
+}
@@ -0,0 +1,35 @@
+package com.diw.practica.dto;
+
+import java.util.List;
+
+/**
+ * Resultado de un préstamo o una devolución de varios libros a la vez.
+ *
+ * @param exitos número de libros prestados o devueltos
+ * @param libros resultado de cada libro, en el orden en que se pidieron
+ */
+public record ResultadoLote(int exitos, List<ResultadoLibro> libros) {
+
+    /**
+     * Resultado de un libro del lote.
+     */
+    public enum Resultado {
+        /** El libro se prestó o devolvió. */
+        EXITO,
+        /** El libro no existe. En un préstamo, también si el usuario no existe. */
+        NO_ENCONTRADO,
+        /** Préstamo rechazado: el libro no está disponible. */
+        NO_DISPONIBLE,
+        /** Devolución rechazada: el libro no lo tiene el usuario. */
+        NO_PRESTADO
+    }
+
+    /**
+     * Resultado de un libro.
+     *
+     * @param libroId   identificador del libro
+     * @param resultado resultado de la operación sobre el libro
+     */
+    public record ResultadoLibro(Integer libroId, Resultado resultado) {
+    }
+}
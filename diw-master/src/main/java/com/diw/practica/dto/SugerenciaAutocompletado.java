@@ -0,0 +1,17 @@
+package com.diw.practica.dto;
+
+/**
+ * Sugerencia de autocompletado para la caja de búsqueda.
+ *
+ * @param texto     texto sugerido, tal como figura en el catálogo
+ * @param tipo      campo del que procede la sugerencia
+ * @param prestamos popularidad: préstamos acumulados de los libros con ese texto
+ * @since 1.1
+ */
+public record SugerenciaAutocompletado(String texto, Tipo tipo, long prestamos) {
+
+    /**
+     * Campo de origen de una sugerencia.
+     */
+    public enum Tipo {TITULO, AUTOR}
+}
@@ -0,0 +1,15 @@
+package com.diw.practica.dto;
+
+import java.time.Instant;
+
+/**
+ * Token de acceso emitido tras autenticarse, para enviar en {@code Authorization: Bearer}.
+ *
+ * @param token           token firmado
+ * @param tipo            esquema de la cabecera {@code Authorization} ({@code Bearer})
+ * @param segundosValidez segundos de validez desde la emisión
+ * @param expira          instante de caducidad
+ * @since 1.2
+ */
+public record TokenAcceso(String token, String tipo, long segundosValidez, Instant expira) {
+}
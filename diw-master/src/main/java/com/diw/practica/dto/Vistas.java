@@ -0,0 +1,35 @@
+package com.diw.practica.dto;
+
+/**
+ * Vistas JSON ({@code @JsonView}) de los listados.
+ * <p>
+ * Cada endpoint que declara una vista emite solo los campos anotados con ella o con una de sus
+ * superinterfaces; los campos sin anotar se omiten. Los endpoints sin vista siguen emitiendo
+ * todos los campos.
+ * </p>
+ *
+ * @since 1.2
+ */
+public final class Vistas {
+
+    private Vistas() {
+    }
+
+    /**
+     * Campos presentes en todas las vistas: identificadores y envoltorios de paginación.
+     */
+    public interface Comun {
+    }
+
+    /**
+     * Tarjetas del catálogo: id, título, autor, ISBN y estado del libro.
+     */
+    public interface Catalogo extends Comun {
+    }
+
+    /**
+     * Listado de usuarios de administración: id, nombre y rol, sin los libros prestados.
+     */
+    public interface ListadoUsuarios extends Comun {
+    }
+}
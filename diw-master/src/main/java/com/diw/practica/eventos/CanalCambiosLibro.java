@@ -0,0 +1,403 @@
+package com.diw.practica.eventos;
+
+import com.diw.practica.dto.CambioLibro;
+import com.diw.practica.model.Libro;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Canal de server-sent events con los cambios de libros confirmados.
+ *
+ * <p>Cada {@link LibroCambiadoEvent} confirmado (altas, ediciones, bajas, importaciones, préstamos,
+ * devoluciones y reservas) se serializa una sola vez y se escribe en un anillo compartido de
+ * {@code diw.sse.capacidad} avisos numerados. Los suscriptores no tienen cola propia: solo guardan
+ * el número del último aviso que se les entregó y leen del anillo a partir de ahí.</p>
+ *
+ * <p>Un suscriptor inactivo no ocupa ningún hilo: la petición queda en modo asíncrono con un
+ * {@link SseEmitter}. Al llegar avisos, un único hilo despachador recorre los suscriptores y
+ * encarga el envío de cada uno que no esté ya enviando a un grupo fijo de
+ * {@code diw.sse.hilos-envio} hilos de plataforma. Cada suscriptor tiene como mucho un envío en
+ * curso o en cola, así que la cola del grupo no pasa del número de suscriptores. Un cliente lento
+ * solo se retrasa a sí mismo mientras haya menos clientes bloqueados escribiendo que hilos; cada
+ * uno retiene su hilo hasta que vence el tiempo de escritura del conector. Si un suscriptor se
+ * queda atrás más de lo que abarca el anillo, o reanuda con un {@code Last-Event-ID} que ya no
+ * está en él, recibe un evento {@code reinicio} y debe volver a leer el listado.</p>
+ *
+ * <p>Los envíos no se hacen en hilos virtuales: {@link SseEmitter#send} es {@code synchronized}, y
+ * un hilo virtual bloqueado escribiendo dentro del monitor inmoviliza su hilo portador. Con el
+ * perfil {@code virtual}, unos pocos clientes lentos bastarían para ocupar todos los portadores y
+ * detener el resto de peticiones.</p>
+ *
+ * <p>El mismo hilo envía cada {@code diw.sse.latido-ms} un comentario SSE a todos los
+ * suscriptores, que mantiene abiertas las conexiones a través de proxies y descubre las cerradas.
+ * Al cerrar la aplicación el canal se detiene antes que el servidor web, completando todas las
+ * conexiones para que el apagado ordenado no tenga que esperarlas.</p>
+ */
+@Component
+public class CanalCambiosLibro implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(CanalCambiosLibro.class);
+
+    public static final String SUSCRIPTORES = "biblioteca.sse.suscriptores";
+    public static final String REINICIOS = "biblioteca.sse.reinicios";
+
+    /**
+     * Nombre del evento SSE que pide al cliente volver a leer el listado.
+     */
+    public static final String REINICIO = "reinicio";
+
+    /**
+     * Tiempo de reconexión que se indica al navegador.
+     */
+    private static final long RECONEXION_MS = 3_000;
+
+    /**
+     * Aviso del anillo: el cambio ya serializado y su número de secuencia.
+     */
+    private record Aviso(long secuencia, CambioLibro cambio, String json) {
+    }
+
+    /**
+     * Estado de un suscriptor. {@code enviando} garantiza que un solo hilo escribe en su emisor.
+     */
+    private static final class Suscriptor {
+        final SseEmitter emisor;
+        final Set<Integer> libros;
+        final Set<Libro.Estado> estados;
+        final AtomicBoolean enviando = new AtomicBoolean();
+        volatile long entregado;
+        volatile boolean reinicioPendiente;
+        volatile boolean latidoPendiente;
+
+        Suscriptor(SseEmitter emisor, Set<Integer> libros, Set<Libro.Estado> estados) {
+            this.emisor = emisor;
+            this.libros = libros;
+            this.estados = estados;
+        }
+
+        boolean acepta(CambioLibro cambio) {
+            if (libros != null && !libros.contains(cambio.libroId())) {
+                return false;
+            }
+            return estados == null
+                    || (cambio.estadoAnterior() != null && estados.contains(cambio.estadoAnterior()))
+                    || (cambio.estadoActual() != null && estados.contains(cambio.estadoActual()));
+        }
+    }
+
+    private final ObjectMapper objectMapper;
+    private final String arranque = Long.toString(System.currentTimeMillis(), Character.MAX_RADIX);
+    private final AtomicReferenceArray<Aviso> anillo;
+    private final int mascara;
+    private final AtomicLong secuencia = new AtomicLong();
+    private final Set<Suscriptor> suscriptores = ConcurrentHashMap.newKeySet();
+    private final Semaphore novedades = new Semaphore(0);
+    private final ExecutorService envios;
+    private final int maximoSuscriptores;
+    private final long duracionMaximaMs;
+    private final long latidoMs;
+    private final Counter reinicios;
+
+    private volatile boolean activo;
+    private Thread despachador;
+
+    public CanalCambiosLibro(ObjectMapper objectMapper, MeterRegistry registry,
+                             @Value("${diw.sse.capacidad:4096}") int capacidad,
+                             @Value("${diw.sse.maximo-suscriptores:10000}") int maximoSuscriptores,
+                             @Value("${diw.sse.duracion-maxima-ms:1800000}") long duracionMaximaMs,
+                             @Value("${diw.sse.latido-ms:20000}") long latidoMs,
+                             @Value("${diw.sse.hilos-envio:8}") int hilosEnvio) {
+        this.objectMapper = objectMapper;
+        // Potencia de dos para calcular la posición con una máscara.
+        int tamanio = Integer.highestOneBit(Math.max(2, capacidad) * 2 - 1);
+        this.anillo = new AtomicReferenceArray<>(tamanio);
+        this.mascara = tamanio - 1;
+        this.maximoSuscriptores = maximoSuscriptores;
+        this.duracionMaximaMs = duracionMaximaMs;
+        this.latidoMs = latidoMs;
+        this.envios = Executors.newFixedThreadPool(Math.max(1, hilosEnvio),
+                Thread.ofPlatform().name("canal-cambios-envio-", 0).daemon().factory());
+
+        Gauge.builder(SUSCRIPTORES, suscriptores, Set::size)
+                .description("Conexiones abiertas al canal de cambios de libros")
+                .register(registry);
+        this.reinicios = Counter.builder(REINICIOS)
+                .description("Suscriptores que tuvieron que volver a leer el listado por quedarse atrás")
+                .register(registry);
+    }
+
+    /**
+     * Abre una suscripción.
+     *
+     * @param libros          solo los cambios de estos libros; vacío o {@code null} para todos
+     * @param estados         solo los cambios desde o hacia estos estados; vacío o {@code null} para todos
+     * @param ultimoEventoId  valor de {@code Last-Event-ID} al reconectar, o {@code null}
+     * @return emisor de la suscripción, o vacío si se alcanzó el máximo de suscriptores
+     */
+    public Optional<SseEmitter> suscribir(Collection<Integer> libros, Collection<Libro.Estado> estados,
+                                          String ultimoEventoId) {
+        if (suscriptores.size() >= maximoSuscriptores) {
+            return Optional.empty();
+        }
+        SseEmitter emisor = crearEmisor(duracionMaximaMs);
+        Suscriptor suscriptor = new Suscriptor(emisor,
+                libros == null || libros.isEmpty() ? null : Set.copyOf(libros),
+                estados == null || estados.isEmpty() ? null : EnumSet.copyOf(estados));
+
+        long actual = secuencia.get();
+        long reanudacion = reanudacion(ultimoEventoId, actual);
+        suscriptor.entregado = reanudacion >= 0 ? reanudacion : actual;
+        suscriptor.reinicioPendiente = ultimoEventoId != null && reanudacion < 0;
+
+        emisor.onCompletion(() -> suscriptores.remove(suscriptor));
+        emisor.onTimeout(() -> suscriptores.remove(suscriptor));
+        emisor.onError(error -> suscriptores.remove(suscriptor));
+        try {
+            // Se envía antes de registrarlo: aún ningún otro hilo puede escribir en el emisor.
+            emisor.send(SseEmitter.event().reconnectTime(RECONEXION_MS).comment("conectado"));
+        } catch (IOException e) {
+            emisor.completeWithError(e);
+            return Optional.of(emisor);
+        }
+        suscriptores.add(suscriptor);
+        programar(suscriptor);
+        return Optional.of(emisor);
+    }
+
+    /**
+     * Crea el emisor de una suscripción; las pruebas lo sustituyen por uno que registra los envíos.
+     *
+     * @param duracionMaximaMs duración máxima de la conexión
+     * @return emisor sin inicializar
+     */
+    SseEmitter crearEmisor(long duracionMaximaMs) {
+        return new SseEmitter(duracionMaximaMs);
+    }
+
+    /**
+     * Escribe un cambio confirmado en el anillo y avisa al despachador.
+     *
+     * @param evento cambio sobre un libro
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void alCambiarLibro(LibroCambiadoEvent evento) {
+        CambioLibro cambio = CambioLibro.desde(evento);
+        String json;
+        try {
+            json = objectMapper.writeValueAsString(cambio);
+        } catch (JsonProcessingException e) {
+            log.error("No se pudo serializar el cambio del libro {}", cambio.libroId(), e);
+            return;
+        }
+        long numero = secuencia.incrementAndGet();
+        anillo.set((int) (numero & mascara), new Aviso(numero, cambio, json));
+        novedades.release();
+    }
+
+    @Override
+    public void start() {
+        activo = true;
+        despachador = Thread.ofPlatform().name("canal-cambios-libro").daemon().unstarted(this::despachar);
+        despachador.start();
+    }
+
+    @Override
+    public void stop() {
+        activo = false;
+        despachador.interrupt();
+        suscriptores.forEach(suscriptor -> suscriptor.emisor.complete());
+        suscriptores.clear();
+        envios.shutdown();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return activo;
+    }
+
+    /**
+     * Fase por defecto: se detiene antes que el apagado ordenado del servidor web
+     * ({@code DEFAULT_PHASE - 1024}), que si no esperaría a las conexiones abiertas.
+     */
+    @Override
+    public int getPhase() {
+        return DEFAULT_PHASE;
+    }
+
+    /**
+     * Bucle del despachador: con cada tanda de avisos, o al vencer el latido, programa el envío a
+     * todos los suscriptores. Los avisos que llegan mientras recorre la lista se atienden en la
+     * vuelta siguiente.
+     */
+    private void despachar() {
+        long proximoLatido = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(latidoMs);
+        while (activo) {
+            try {
+                long espera = Math.max(0, proximoLatido - System.nanoTime());
+                if (novedades.tryAcquire(espera, TimeUnit.NANOSECONDS)) {
+                    novedades.drainPermits();
+                }
+            } catch (InterruptedException e) {
+                return;
+            }
+            boolean latido = System.nanoTime() >= proximoLatido;
+            if (latido) {
+                proximoLatido = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(latidoMs);
+            }
+            for (Suscriptor suscriptor : suscriptores) {
+                if (latido) {
+                    suscriptor.latidoPendiente = true;
+                }
+                programar(suscriptor);
+            }
+        }
+    }
+
+    private void programar(Suscriptor suscriptor) {
+        if (suscriptor.enviando.compareAndSet(false, true)) {
+            try {
+                envios.execute(() -> enviar(suscriptor));
+            } catch (RuntimeException e) {
+                // Ejecutor cerrado durante el apagado.
+                suscriptor.enviando.set(false);
+            }
+        }
+    }
+
+    /**
+     * Entrega a un suscriptor los avisos pendientes. Al terminar vuelve a comprobar si llegó algo
+     * mientras enviaba, para no perder un aviso cuyo despacho encontró el envío en curso.
+     *
+     * <p>Si el siguiente número está asignado pero su escritor aún no lo ha guardado en el anillo,
+     * el envío termina sin reintentar: el escritor libera {@code novedades} después de guardarlo
+     * y el despachador vuelve a programar al suscriptor.</p>
+     */
+    private void enviar(Suscriptor suscriptor) {
+        try {
+            do {
+                entregarPendientes(suscriptor);
+                suscriptor.enviando.set(false);
+            } while (tienePendientes(suscriptor) && suscriptor.enviando.compareAndSet(false, true));
+        } catch (IOException | IllegalStateException e) {
+            // Conexión cerrada por el cliente o emisor ya completado.
+            suscriptores.remove(suscriptor);
+            suscriptor.emisor.completeWithError(e);
+        }
+    }
+
+    private void entregarPendientes(Suscriptor suscriptor) throws IOException {
+        if (suscriptor.reinicioPendiente) {
+            suscriptor.reinicioPendiente = false;
+            enviarReinicio(suscriptor, suscriptor.entregado);
+        }
+        long hasta = secuencia.get();
+        while (suscriptor.entregado < hasta) {
+            long siguiente = suscriptor.entregado + 1;
+            Aviso aviso = anillo.get((int) (siguiente & mascara));
+            if (!escrito(aviso, siguiente)) {
+                // Número ya asignado pero aún sin escribir: su escritor avisará al terminar.
+                break;
+            }
+            if (aviso.secuencia() > siguiente) {
+                // El anillo dio la vuelta: los avisos que faltan se han perdido.
+                suscriptor.entregado = hasta;
+                enviarReinicio(suscriptor, hasta);
+                break;
+            }
+            if (suscriptor.acepta(aviso.cambio())) {
+                suscriptor.emisor.send(SseEmitter.event()
+                        .id(id(siguiente))
+                        .name(aviso.cambio().tipo().name())
+                        .data(aviso.json()));
+            }
+            suscriptor.entregado = siguiente;
+        }
+        if (suscriptor.latidoPendiente) {
+            suscriptor.latidoPendiente = false;
+            suscriptor.emisor.send(SseEmitter.event().comment(""));
+        }
+    }
+
+    private void enviarReinicio(Suscriptor suscriptor, long numero) throws IOException {
+        reinicios.increment();
+        suscriptor.emisor.send(SseEmitter.event().id(id(numero)).name(REINICIO).data(""));
+    }
+
+    /**
+     * Indica si hay algo que enviar ya: un latido, un reinicio o el siguiente aviso escrito en el
+     * anillo. Un número asignado pero sin escribir no cuenta, para no repetir el envío en vacío
+     * hasta que lo escriban.
+     */
+    private boolean tienePendientes(Suscriptor suscriptor) {
+        if (suscriptor.latidoPendiente || suscriptor.reinicioPendiente) {
+            return true;
+        }
+        long siguiente = suscriptor.entregado + 1;
+        return siguiente <= secuencia.get() && escrito(anillo.get((int) (siguiente & mascara)), siguiente);
+    }
+
+    /**
+     * Indica si la posición del número ya se escribió: contiene ese aviso o, si el anillo dio la
+     * vuelta, uno posterior.
+     */
+    private static boolean escrito(Aviso aviso, long numero) {
+        return aviso != null && aviso.secuencia() >= numero;
+    }
+
+    /**
+     * Identificador SSE de un aviso: el arranque y el número, para no confundir tras un reinicio
+     * del servidor números que vuelven a empezar.
+     */
+    private String id(long numero) {
+        return arranque + "." + numero;
+    }
+
+    /**
+     * Número desde el que reanudar según {@code Last-Event-ID}, o -1 si no es de este arranque o
+     * ya no está en el anillo.
+     */
+    private long reanudacion(String ultimoEventoId, long actual) {
+        if (ultimoEventoId == null) {
+            return -1;
+        }
+        int punto = ultimoEventoId.indexOf('.');
+        if (punto < 0 || !ultimoEventoId.substring(0, punto).equals(arranque)) {
+            return -1;
+        }
+        long numero;
+        try {
+            numero = Long.parseLong(ultimoEventoId.substring(punto + 1));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+        // El aviso siguiente al último recibido debe seguir en el anillo.
+        if (numero < 0 || numero > actual || actual - numero > anillo.length()) {
+            return -1;
+        }
+        return numero;
+    }
+}
@@ -0,0 +1,48 @@
+package com.diw.practica.eventos;
+
+import com.diw.practica.dto.LibroResumen;
+
+/**
+ * Evento publicado cada vez que cambia un libro del catálogo.
+ * <p>
+ * Lo emiten las operaciones de escritura de los servicios (altas, ediciones, bajas,
+ * importaciones, préstamos y devoluciones) para que las estructuras derivadas en memoria
+ * se actualicen de forma incremental. Los oyentes que dependan de datos confirmados deben
+ * usar {@code @TransactionalEventListener} para reaccionar solo tras el commit.
+ * </p>
+ *
+ * @param tipo                tipo de cambio
+ * @param anterior            estado del libro antes del cambio, o {@code null} si es un alta
+ * @param actual              estado del libro tras el cambio, o {@code null} si es una baja
+ * @param prestatarioAnterior id del usuario que tenía el libro antes del cambio, o {@code null}
+ * @param prestatarioActual   id del usuario que tiene el libro tras el cambio, o {@code null}
+ * @since 1.1
+ */
+public record LibroCambiadoEvent(Tipo tipo, LibroResumen anterior, LibroResumen actual,
+                                 Integer prestatarioAnterior, Integer prestatarioActual) {
+
+    /**
+     * Cambio que no afecta al prestatario (altas, importaciones).
+     *
+     * @param tipo     tipo de cambio
+     * @param anterior estado del libro antes del cambio, o {@code null} si es un alta
+     * @param actual   estado del libro tras el cambio, o {@code null} si es una baja
+     */
+    public LibroCambiadoEvent(Tipo tipo, LibroResumen anterior, LibroResumen actual) {
+        this(tipo, anterior, actual, null, null);
+    }
+
+    /**
+     * Tipos de cambio sobre un libro.
+     */
+    public enum Tipo {CREADO, ACTUALIZADO, ELIMINADO, PRESTADO, DEVUELTO}
+
+    /**
+     * Identificador del libro afectado.
+     *
+     * @return id del libro
+     */
+    public Integer libroId() {
+        return actual != null ? actual.id() : anterior.id();
+    }
+}
@@ -0,0 +1,397 @@
+package com.diw.practica.historial;
+
+import com.diw.practica.dto.PaginaCursor;
+import com.diw.practica.eventos.LibroCambiadoEvent;
+import com.diw.practica.model.EventoPrestamo;
+import com.diw.practica.model.Libro;
+import com.diw.practica.repository.EventoPrestamoRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Registro histórico de préstamos, devoluciones y reservas con escritura asíncrona por lotes.
+ *
+ * <p>Cada {@link LibroCambiadoEvent} confirmado que corresponde a un préstamo, una devolución o
+ * una reserva se convierte en un {@link EventoPrestamo} y se encola; la petición no espera a
+ * ninguna inserción. Un hilo escritor vacía la cola en transacciones de hasta
+ * {@code diw.eventos-prestamo.tamanio-lote} eventos, insertados en lotes JDBC: con poca carga
+ * escribe cada evento en cuanto llega y, con mucha, los lotes crecen solos con lo acumulado.</p>
+ *
+ * <p>La cola está acotada ({@code diw.eventos-prestamo.capacidad}). Si se llena porque la base de
+ * datos no da abasto, quien publica espera hasta {@code diw.eventos-prestamo.espera-maxima-ms}
+ * (contrapresión sobre las peticiones); si aun así no hay hueco, el evento se descarta y se cuenta
+ * en {@value #DESCARTADOS}.</p>
+ *
+ * <p>Si una escritura falla, el lote se reintenta con espera creciente. Mientras el fallo sea
+ * transitorio (sin conexión, base de datos caída) se reintenta sin límite. Si no lo es, tras
+ * {@value #INTENTOS_LOTE} intentos el lote se escribe evento a evento: los que vuelven a fallar se
+ * dejan en el log de errores con todos sus datos y se cuentan en {@value #FALLIDOS}, de modo que un
+ * evento que la base de datos rechaza no bloquea el resto del historial.</p>
+ *
+ * <p>Al cerrar la aplicación el registro se detiene después del servidor web: el escritor vacía la
+ * cola antes de que se cierre el pool de conexiones, durante como mucho
+ * {@code diw.eventos-prestamo.espera-cierre-ms}. Un evento que se encola justo cuando el escritor
+ * ya ha terminado lo escribe {@link #stop()} o quien lo encoló.</p>
+ */
+@Component
+public class RegistroEventosPrestamo implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(RegistroEventosPrestamo.class);
+
+    public static final String PENDIENTES = "biblioteca.eventos.prestamo.pendientes";
+    public static final String ESCRITOS = "biblioteca.eventos.prestamo.escritos";
+    public static final String DESCARTADOS = "biblioteca.eventos.prestamo.descartados";
+    public static final String FALLIDOS = "biblioteca.eventos.prestamo.fallidos";
+
+    /**
+     * Tamaño máximo de una página del historial.
+     */
+    public static final int TAMANIO_MAXIMO_PAGINA = 1000;
+
+    private static final long ESPERA_COLA_MS = 1_000;
+    private static final long ESPERA_MAXIMA_REINTENTO_MS = 30_000;
+
+    /**
+     * Intentos de un lote, con un fallo no transitorio, antes de escribirlo evento a evento.
+     */
+    static final int INTENTOS_LOTE = 3;
+
+    private final EventoPrestamoRepository repository;
+    private final EntityManager entityManager;
+    private final TransactionTemplate transaccion;
+    private final BlockingQueue<EventoPrestamo> cola;
+    private final int tamanioLote;
+    private final long esperaMaximaMs;
+    private final long esperaCierreMs;
+    private final Counter escritos;
+    private final Counter descartados;
+    private final Counter fallidos;
+
+    private volatile boolean activo;
+    private Thread escritor;
+
+    public RegistroEventosPrestamo(EventoPrestamoRepository repository, EntityManager entityManager,
+                                   PlatformTransactionManager transactionManager, MeterRegistry registry,
+                                   @Value("${diw.eventos-prestamo.capacidad:10000}") int capacidad,
+                                   @Value("${diw.eventos-prestamo.tamanio-lote:500}") int tamanioLote,
+                                   @Value("${diw.eventos-prestamo.espera-maxima-ms:500}") long esperaMaximaMs,
+                                   @Value("${diw.eventos-prestamo.espera-cierre-ms:10000}") long esperaCierreMs) {
+        this.repository = repository;
+        this.entityManager = entityManager;
+        // Transacción propia: también se escribe desde oyentes posteriores al commit de otra.
+        this.transaccion = new TransactionTemplate(transactionManager);
+        this.transaccion.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.cola = new ArrayBlockingQueue<>(capacidad);
+        this.tamanioLote = tamanioLote;
+        this.esperaMaximaMs = esperaMaximaMs;
+        this.esperaCierreMs = esperaCierreMs;
+
+        Gauge.builder(PENDIENTES, cola, BlockingQueue::size)
+                .description("Eventos de préstamo en cola pendientes de escribir")
+                .register(registry);
+        this.escritos = Counter.builder(ESCRITOS)
+                .description("Eventos de préstamo escritos en el historial")
+                .register(registry);
+        this.descartados = Counter.builder(DESCARTADOS)
+                .description("Eventos de préstamo descartados por cola llena")
+                .register(registry);
+        this.fallidos = Counter.builder(FALLIDOS)
+                .description("Eventos de préstamo que la base de datos rechazó y no se escribieron")
+                .register(registry);
+    }
+
+    /**
+     * Encola los eventos de historial que corresponden a un cambio confirmado, si los hay.
+     *
+     * @param evento cambio sobre un libro
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void alCambiarLibro(LibroCambiadoEvent evento) {
+        desde(evento).forEach(this::registrar);
+    }
+
+    /**
+     * Encola un evento para escribirlo en el historial.
+     *
+     * @param evento evento a registrar
+     */
+    public void registrar(EventoPrestamo evento) {
+        if (!activo) {
+            // Con el escritor parado (arranque o cierre) se escribe directamente.
+            guardar(List.of(evento));
+            escritos.increment();
+            return;
+        }
+        try {
+            if (!cola.offer(evento, esperaMaximaMs, TimeUnit.MILLISECONDS)) {
+                descartados.increment();
+                log.warn("Cola del historial de préstamos llena ({} eventos): descartado {} del libro {}",
+                        cola.size(), evento.getTipo(), evento.getLibroId());
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            descartados.increment();
+            return;
+        }
+        // Si se detuvo mientras se encolaba, puede que ni el escritor ni stop() lleguen a verlo.
+        if (!activo && cola.remove(evento)) {
+            guardar(List.of(evento));
+            escritos.increment();
+        }
+    }
+
+    /**
+     * Recorre el historial ya escrito en orden de escritura. Los eventos aún en cola no aparecen.
+     *
+     * @param cursor    id del último evento de la página anterior, o {@code null} para empezar
+     * @param tamanio   número máximo de eventos; se acota a [1, {@value #TAMANIO_MAXIMO_PAGINA}]
+     * @param desde     instante mínimo de los eventos, o {@code null} para todos
+     * @param libroId   solo los eventos de este libro, o {@code null}
+     * @param usuarioId solo los eventos de este usuario, o {@code null}
+     * @return página de eventos; el cursor siguiente es el id del último
+     * @throws IllegalArgumentException si el cursor no es válido o se filtra por libro y usuario a la vez
+     */
+    public PaginaCursor<EventoPrestamo> reproducir(String cursor, int tamanio, Instant desde,
+                                                   Integer libroId, Integer usuarioId) {
+        if (libroId != null && usuarioId != null) {
+            throw new IllegalArgumentException("Solo se puede filtrar por libro o por usuario");
+        }
+        long ultimoId;
+        try {
+            ultimoId = cursor != null ? Long.parseLong(cursor) : 0;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Cursor de historial inválido", e);
+        }
+        int limite = Math.max(1, Math.min(tamanio, TAMANIO_MAXIMO_PAGINA));
+        Instant minimo = desde != null ? desde : Instant.EPOCH;
+
+        List<EventoPrestamo> eventos;
+        if (libroId != null) {
+            eventos = repository.paginaDeLibro(libroId, ultimoId, minimo, Limit.of(limite + 1));
+        } else if (usuarioId != null) {
+            eventos = repository.paginaDeUsuario(usuarioId, ultimoId, minimo, Limit.of(limite + 1));
+        } else {
+            eventos = repository.pagina(ultimoId, minimo, Limit.of(limite + 1));
+        }
+        if (eventos.size() <= limite) {
+            return new PaginaCursor<>(eventos, null);
+        }
+        List<EventoPrestamo> contenido = eventos.subList(0, limite);
+        return new PaginaCursor<>(contenido, String.valueOf(contenido.get(limite - 1).getId()));
+    }
+
+    /**
+     * Eventos en cola pendientes de escribir.
+     *
+     * @return tamaño de la cola
+     */
+    public int pendientes() {
+        return cola.size();
+    }
+
+    @Override
+    public void start() {
+        activo = true;
+        escritor = Thread.ofPlatform().name("historial-prestamos").unstarted(this::escribir);
+        escritor.start();
+    }
+
+    @Override
+    public void stop() {
+        activo = false;
+        try {
+            escritor.join(esperaCierreMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (escritor.isAlive()) {
+            escritor.interrupt();
+            log.error("El historial de préstamos no terminó de escribirse al cerrar: {} eventos sin guardar", cola.size());
+            return;
+        }
+        // Eventos encolados por quien vio el registro activo justo antes de detenerlo.
+        List<EventoPrestamo> restantes = new ArrayList<>();
+        cola.drainTo(restantes);
+        if (!restantes.isEmpty()) {
+            try {
+                guardarUnoAUno(restantes);
+            } catch (RuntimeException e) {
+                log.error("El historial de préstamos no terminó de escribirse al cerrar: {} eventos sin guardar",
+                        restantes.size(), e);
+            }
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return activo;
+    }
+
+    /**
+     * Se arranca antes y se detiene después que el servidor web ({@code DEFAULT_PHASE - 2048}), de
+     * modo que ninguna petición encola eventos con el escritor parado.
+     */
+    @Override
+    public int getPhase() {
+        return DEFAULT_PHASE - 4096;
+    }
+
+    /**
+     * Bucle del hilo escritor: toma lo que haya en la cola, hasta el tamaño de lote, y lo escribe.
+     * Al detenerse sigue hasta vaciar la cola.
+     */
+    private void escribir() {
+        List<EventoPrestamo> lote = new ArrayList<>(tamanioLote);
+        long esperaReintento = 100;
+        int intentos = 0;
+        while (activo || !cola.isEmpty() || !lote.isEmpty()) {
+            try {
+                if (lote.isEmpty()) {
+                    EventoPrestamo primero = cola.poll(ESPERA_COLA_MS, TimeUnit.MILLISECONDS);
+                    if (primero == null) {
+                        continue;
+                    }
+                    lote.add(primero);
+                }
+                cola.drainTo(lote, tamanioLote - lote.size());
+                if (intentos >= INTENTOS_LOTE) {
+                    guardarUnoAUno(lote);
+                } else {
+                    guardar(lote);
+                    escritos.increment(lote.size());
+                }
+                lote.clear();
+                esperaReintento = 100;
+                intentos = 0;
+            } catch (InterruptedException e) {
+                log.error("Escritor del historial interrumpido: {} eventos sin guardar", lote.size() + cola.size());
+                return;
+            } catch (RuntimeException e) {
+                if (!esTransitorio(e)) {
+                    intentos++;
+                }
+                log.error("No se pudo escribir un lote de {} eventos de préstamo; se reintenta en {} ms",
+                        lote.size(), esperaReintento, e);
+                try {
+                    Thread.sleep(esperaReintento);
+                } catch (InterruptedException ie) {
+                    log.error("Escritor del historial interrumpido: {} eventos sin guardar", lote.size() + cola.size());
+                    return;
+                }
+                esperaReintento = Math.min(esperaReintento * 2, ESPERA_MAXIMA_REINTENTO_MS);
+            }
+        }
+    }
+
+    private void guardar(List<EventoPrestamo> lote) {
+        transaccion.executeWithoutResult(estado -> {
+            // Se persisten copias: un intento fallido deja asignado el id y el reintento las daría por separadas.
+            lote.forEach(evento -> entityManager.persist(new EventoPrestamo(evento.getTipo(), evento.getLibroId(),
+                    evento.getUsuarioId(), evento.getInstante())));
+            entityManager.flush();
+            entityManager.clear();
+        });
+    }
+
+    /**
+     * Escribe cada evento en su propia transacción y lo quita del lote. Un fallo transitorio se
+     * propaga y deja en el lote los que faltan; cualquier otro deja el evento en el log de errores
+     * y sigue con los demás.
+     */
+    private void guardarUnoAUno(List<EventoPrestamo> lote) {
+        for (Iterator<EventoPrestamo> eventos = lote.iterator(); eventos.hasNext(); ) {
+            EventoPrestamo evento = eventos.next();
+            try {
+                guardar(List.of(evento));
+                escritos.increment();
+            } catch (RuntimeException e) {
+                if (esTransitorio(e)) {
+                    throw e;
+                }
+                fallidos.increment();
+                log.error("Evento de préstamo rechazado, no se escribirá: tipo={} libroId={} usuarioId={} instante={}",
+                        evento.getTipo(), evento.getLibroId(), evento.getUsuarioId(), evento.getInstante(), e);
+            }
+            eventos.remove();
+        }
+    }
+
+    /**
+     * Indica si un fallo de escritura se debe a que la base de datos no está disponible, y no al
+     * contenido de lo escrito.
+     */
+    static boolean esTransitorio(Throwable error) {
+        for (Throwable causa = error; causa != null; causa = causa.getCause()) {
+            if (causa instanceof CannotCreateTransactionException
+                    || causa instanceof TransientDataAccessException
+                    || causa instanceof RecoverableDataAccessException
+                    || causa instanceof SQLTransientException
+                    || causa instanceof SQLRecoverableException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Eventos de historial de un cambio: ninguno si no es un préstamo, una devolución ni una
+     * reserva, y dos si un libro devuelto pasa directamente a la primera reserva de su cola.
+     */
+    static List<EventoPrestamo> desde(LibroCambiadoEvent evento) {
+        Instant ahora = Instant.now();
+        return switch (evento.tipo()) {
+            case PRESTADO -> List.of(new EventoPrestamo(EventoPrestamo.Tipo.PRESTADO, evento.libroId(),
+                    evento.prestatarioActual(), ahora));
+            case DEVUELTO -> {
+                EventoPrestamo devuelto = new EventoPrestamo(EventoPrestamo.Tipo.DEVUELTO, evento.libroId(),
+                        evento.prestatarioAnterior(), ahora);
+                yield nuevaReserva(evento)
+                        ? List.of(devuelto, new EventoPrestamo(EventoPrestamo.Tipo.RESERVADO, evento.libroId(),
+                                evento.prestatarioActual(), ahora))
+                        : List.of(devuelto);
+            }
+            case ACTUALIZADO -> nuevaReserva(evento)
+                    ? List.of(new EventoPrestamo(EventoPrestamo.Tipo.RESERVADO, evento.libroId(),
+                            evento.prestatarioActual(), ahora))
+                    : List.of();
+            case CREADO, ELIMINADO -> List.of();
+        };
+    }
+
+    /**
+     * Indica si el cambio deja el libro reservado para un usuario que antes no lo tenía reservado:
+     * al entregarse desde otro estado o al pasar de una reserva a la siguiente.
+     */
+    private static boolean nuevaReserva(LibroCambiadoEvent evento) {
+        return evento.actual().estadoLibro() == Libro.Estado.RESERVADO
+                && (evento.anterior().estadoLibro() != Libro.Estado.RESERVADO
+                || !Objects.equals(evento.prestatarioAnterior(), evento.prestatarioActual()));
+    }
+}
@@ -0,0 +1,389 @@
+package com.diw.practica.informes;
+
+import com.diw.practica.dto.LibroConPrestatario;
+import com.diw.practica.dto.LibroResumen;
+import com.diw.practica.eventos.LibroCambiadoEvent;
+import com.diw.practica.metricas.Recuento;
+import com.diw.practica.model.Libro;
+import com.diw.practica.model.Usuario;
+import com.diw.practica.repository.LibroRepository;
+import com.diw.practica.repository.UsuarioRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Agregados del catálogo mantenidos en memoria para los informes.
+ *
+ * <p>Cada {@link LibroCambiadoEvent} confirmado resta el estado anterior del libro y suma el
+ * actual: libros por estado, por editorial y por década, y préstamos por usuario y por rol del
+ * prestatario (libros {@code PRESTADO}, como {@code biblioteca.prestamos.activos}; un libro
+ * reservado para alguien no es un préstamo). Leer el informe no consulta la base de datos ni
+ * recorre el catálogo; la última instantánea se reutiliza hasta el siguiente cambio.</p>
+ *
+ * <p>El rol y el nombre de un prestatario se conocen por la reconciliación. Los de un usuario que
+ * presta por primera vez se leen en la siguiente lectura del informe, en una sola consulta, y
+ * hasta entonces sus préstamos no cuentan en ningún rol.</p>
+ *
+ * <p>Los agregados se calculan al arrancar y se reconcilian cada
+ * {@code diw.informes.reconciliacion-ms} con consultas agrupadas, lo que corrige los cambios que no
+ * pasan por los servicios (datos iniciales, cambios directos en la base de datos). Los eventos que
+ * se aplican mientras tanto se guardan y, al terminar, se vuelven a aplicar sobre el resultado de
+ * las consultas (ver {@link #reconciliar()}).</p>
+ */
+@Component
+public class EstadisticasCatalogo {
+
+    private static final Logger log = LoggerFactory.getLogger(EstadisticasCatalogo.class);
+
+    /**
+     * Número máximo de prestatarios que se guardan en la instantánea del informe.
+     */
+    public static final int MAXIMO_PRESTATARIOS = 100;
+
+    /**
+     * Libros por consulta al releer los que cambiaron durante una reconciliación.
+     */
+    private static final int TAMANIO_TRAMO = 1000;
+
+    private static final Comparator<RecuentoEditorial> POR_LIBROS = Comparator
+            .comparingLong(RecuentoEditorial::libros).reversed()
+            .thenComparing(RecuentoEditorial::editorial, Comparator.nullsLast(Comparator.naturalOrder()));
+
+    private static final Comparator<PrestamosUsuario> POR_PRESTAMOS = Comparator
+            .comparingLong(PrestamosUsuario::prestamos).reversed()
+            .thenComparing(PrestamosUsuario::usuarioId);
+
+    private final LibroRepository libroRepository;
+    private final UsuarioRepository usuarioRepository;
+    private final ReadWriteLock cerrojo = new ReentrantReadWriteLock();
+
+    // Estado protegido por el cerrojo: los eventos y la reconciliación escriben, el informe lee.
+    private final Map<Libro.Estado, Long> librosPorEstado = new EnumMap<>(Libro.Estado.class);
+    private final Map<Usuario.Rol, Long> prestamosPorRol = new EnumMap<>(Usuario.Rol.class);
+    private final Map<String, Long> librosPorEditorial = new HashMap<>();
+    private final Map<Integer, Long> librosPorDecada = new HashMap<>();
+    private final Map<Integer, Long> prestamosPorUsuario = new HashMap<>();
+    private final Map<Integer, DatosUsuario> usuarios = new HashMap<>();
+    private final Set<Integer> sinResolver = new HashSet<>();
+    // Último evento de cada libro cambiado durante cada reconciliación en curso.
+    private final List<Map<Integer, LibroCambiadoEvent>> reconciliaciones = new ArrayList<>();
+    private Instant reconciliado;
+
+    private volatile InformeCatalogo instantanea;
+
+    private record DatosUsuario(String nombre, Usuario.Rol rol) {
+    }
+
+    public EstadisticasCatalogo(LibroRepository libroRepository, UsuarioRepository usuarioRepository) {
+        this.libroRepository = libroRepository;
+        this.usuarioRepository = usuarioRepository;
+    }
+
+    /**
+     * Informe con los agregados actuales.
+     *
+     * @param prestatarios número máximo de prestatarios, entre 1 y {@value #MAXIMO_PRESTATARIOS}
+     * @return informe del catálogo
+     */
+    public InformeCatalogo informe(int prestatarios) {
+        resolverUsuarios();
+        InformeCatalogo informe = instantanea;
+        if (informe == null) {
+            cerrojo.readLock().lock();
+            try {
+                // Se publica con el cerrojo tomado: ningún cambio puede invalidarla antes de asignarla.
+                informe = construirInforme();
+                instantanea = informe;
+            } finally {
+                cerrojo.readLock().unlock();
+            }
+        }
+        return informe.conPrestatarios(Math.max(1, Math.min(prestatarios, MAXIMO_PRESTATARIOS)));
+    }
+
+    /**
+     * Aplica un cambio confirmado sobre un libro.
+     *
+     * @param evento cambio sobre un libro
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void alCambiarLibro(LibroCambiadoEvent evento) {
+        cerrojo.writeLock().lock();
+        try {
+            aplicar(evento.anterior(), evento.prestatarioAnterior(), -1);
+            aplicar(evento.actual(), evento.prestatarioActual(), 1);
+            for (Map<Integer, LibroCambiadoEvent> cambiados : reconciliaciones) {
+                cambiados.put(evento.libroId(), evento);
+            }
+            instantanea = null;
+        } finally {
+            cerrojo.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Calcula los agregados al arrancar y los reconcilia periódicamente.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelayString = "${diw.informes.reconciliacion-ms:300000}",
+            fixedDelayString = "${diw.informes.reconciliacion-ms:300000}")
+    @Transactional(readOnly = true, isolation = Isolation.REPEATABLE_READ)
+    public void reconciliarPeriodicamente() {
+        long inicio = System.nanoTime();
+        reconciliar();
+        log.debug("Informes reconciliados en {} ms", (System.nanoTime() - inicio) / 1_000_000);
+    }
+
+    /**
+     * Recalcula los agregados con consultas agrupadas y sustituye los mantenidos en memoria.
+     *
+     * <p>Las consultas se hacen en una única transacción de solo lectura con
+     * {@code REPEATABLE READ}, de modo que en MySQL todas ven la misma instantánea. Los eventos
+     * aplicados mientras tanto pueden estar o no en esa instantánea, así que no se suman sin más:
+     * de cada libro cambiado se relee, en la misma transacción, la fila que vieron las consultas,
+     * se resta su aportación y se suma el estado del último evento. El resultado es el mismo en
+     * ambos casos y la reconciliación no se descarta aunque el catálogo cambie.</p>
+     */
+    @Transactional(readOnly = true, isolation = Isolation.REPEATABLE_READ)
+    public void reconciliar() {
+        Map<Integer, LibroCambiadoEvent> cambiados = new HashMap<>();
+        cerrojo.writeLock().lock();
+        try {
+            reconciliaciones.add(cambiados);
+        } finally {
+            cerrojo.writeLock().unlock();
+        }
+        try {
+            reconciliar(cambiados);
+        } finally {
+            cerrojo.writeLock().lock();
+            try {
+                reconciliaciones.remove(cambiados);
+            } finally {
+                cerrojo.writeLock().unlock();
+            }
+        }
+    }
+
+    private void reconciliar(Map<Integer, LibroCambiadoEvent> cambiados) {
+        Map<Libro.Estado, Long> estados = new EnumMap<>(Libro.Estado.class);
+        for (Recuento recuento : libroRepository.contarPorEstado()) {
+            if (recuento.grupo() != null) {
+                estados.put((Libro.Estado) recuento.grupo(), recuento.cantidad());
+            }
+        }
+        Map<String, Long> editoriales = new HashMap<>();
+        for (RecuentoEditorial recuento : libroRepository.contarPorEditorial()) {
+            editoriales.put(recuento.editorial(), recuento.libros());
+        }
+        Map<Integer, Long> decadas = new HashMap<>();
+        for (RecuentoAnio recuento : libroRepository.contarPorAnioPublicacion()) {
+            decadas.merge(decada(recuento.anio()), recuento.libros(), Long::sum);
+        }
+        List<PrestamosUsuario> prestatarios = libroRepository.contarPrestamosPorUsuario();
+
+        // Filas de la instantánea de los libros cambiados; se repite hasta que no llegan más eventos.
+        Map<Integer, LibroConPrestatario> enInstantanea = new HashMap<>();
+        Set<Integer> releidos = new HashSet<>();
+        while (true) {
+            List<Integer> pendientes;
+            cerrojo.writeLock().lock();
+            try {
+                pendientes = new ArrayList<>();
+                for (Integer libroId : cambiados.keySet()) {
+                    if (!releidos.contains(libroId)) {
+                        pendientes.add(libroId);
+                    }
+                }
+                if (pendientes.isEmpty()) {
+                    sustituir(estados, editoriales, decadas, prestatarios, enInstantanea, cambiados);
+                    return;
+                }
+            } finally {
+                cerrojo.writeLock().unlock();
+            }
+            for (int i = 0; i < pendientes.size(); i += TAMANIO_TRAMO) {
+                List<Integer> tramo = pendientes.subList(i, Math.min(i + TAMANIO_TRAMO, pendientes.size()));
+                for (LibroConPrestatario libro : libroRepository.conPrestatarioPorIds(tramo)) {
+                    enInstantanea.put(libro.id(), libro);
+                }
+            }
+            releidos.addAll(pendientes);
+        }
+    }
+
+    /**
+     * Sustituye los agregados por los de las consultas y vuelve a aplicar los cambios recibidos
+     * durante ellas; requiere el cerrojo de escritura.
+     */
+    private void sustituir(Map<Libro.Estado, Long> estados, Map<String, Long> editoriales, Map<Integer, Long> decadas,
+                           List<PrestamosUsuario> prestatarios, Map<Integer, LibroConPrestatario> enInstantanea,
+                           Map<Integer, LibroCambiadoEvent> cambiados) {
+        Map<Libro.Estado, Long> anteriores = sinCeros(librosPorEstado);
+        reemplazar(librosPorEstado, estados);
+        reemplazar(librosPorEditorial, editoriales);
+        reemplazar(librosPorDecada, decadas);
+        prestamosPorUsuario.clear();
+        prestamosPorRol.clear();
+        sinResolver.clear();
+        usuarios.clear();
+        for (PrestamosUsuario prestatario : prestatarios) {
+            prestamosPorUsuario.put(prestatario.usuarioId(), prestatario.prestamos());
+            usuarios.put(prestatario.usuarioId(), new DatosUsuario(prestatario.nombre(), prestatario.rol()));
+            sumar(prestamosPorRol, prestatario.rol(), prestatario.prestamos());
+        }
+        cambiados.forEach((libroId, evento) -> {
+            LibroConPrestatario visto = enInstantanea.get(libroId);
+            if (visto != null) {
+                aplicar(visto.resumen(), visto.prestatarioId(), -1);
+            }
+            aplicar(evento.actual(), evento.prestatarioActual(), 1);
+        });
+        if (!cambiados.isEmpty()) {
+            log.debug("Reconciliación de informes: {} libros cambiados durante las consultas", cambiados.size());
+        }
+        if (reconciliado != null && !anteriores.equals(sinCeros(librosPorEstado))) {
+            log.warn("Reconciliación de informes: libros por estado {} corregidos a {}", anteriores, sinCeros(librosPorEstado));
+        }
+        reconciliado = Instant.now();
+        instantanea = null;
+    }
+
+    private void aplicar(LibroResumen libro, Integer prestatarioId, long signo) {
+        if (libro == null) {
+            return;
+        }
+        sumar(librosPorEstado, libro.estadoLibro(), signo);
+        sumar(librosPorEditorial, libro.editorial(), signo);
+        sumar(librosPorDecada, decada(libro.anioPublicacion()), signo);
+        if (prestatarioId != null && libro.estadoLibro() == Libro.Estado.PRESTADO) {
+            sumar(prestamosPorUsuario, prestatarioId, signo);
+            DatosUsuario usuario = usuarios.get(prestatarioId);
+            if (usuario != null) {
+                sumar(prestamosPorRol, usuario.rol(), signo);
+            } else {
+                sinResolver.add(prestatarioId);
+            }
+        }
+    }
+
+    /**
+     * Lee el nombre y el rol de los prestatarios nuevos y suma sus préstamos a su rol.
+     */
+    private void resolverUsuarios() {
+        List<Integer> ids;
+        cerrojo.readLock().lock();
+        try {
+            if (sinResolver.isEmpty()) {
+                return;
+            }
+            ids = new ArrayList<>(sinResolver);
+        } finally {
+            cerrojo.readLock().unlock();
+        }
+
+        List<Usuario> leidos = usuarioRepository.findAllById(ids);
+        cerrojo.writeLock().lock();
+        try {
+            for (Usuario usuario : leidos) {
+                if (sinResolver.remove(usuario.getId())) {
+                    usuarios.put(usuario.getId(), new DatosUsuario(usuario.getNombre(), usuario.getRol()));
+                    sumar(prestamosPorRol, usuario.getRol(), prestamosPorUsuario.getOrDefault(usuario.getId(), 0L));
+                }
+            }
+            // Los que ya no existen quedan fuera de los roles hasta la próxima reconciliación.
+            sinResolver.removeAll(ids);
+            instantanea = null;
+        } finally {
+            cerrojo.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Construye la instantánea; requiere el cerrojo de lectura.
+     */
+    private InformeCatalogo construirInforme() {
+        Map<Libro.Estado, Long> estados = new EnumMap<>(Libro.Estado.class);
+        long total = 0;
+        for (Libro.Estado estado : Libro.Estado.values()) {
+            long libros = librosPorEstado.getOrDefault(estado, 0L);
+            estados.put(estado, libros);
+            total += libros;
+        }
+        Map<Usuario.Rol, Long> roles = new EnumMap<>(Usuario.Rol.class);
+        for (Usuario.Rol rol : Usuario.Rol.values()) {
+            roles.put(rol, prestamosPorRol.getOrDefault(rol, 0L));
+        }
+
+        List<RecuentoEditorial> editoriales = new ArrayList<>(librosPorEditorial.size());
+        librosPorEditorial.forEach((editorial, libros) -> editoriales.add(new RecuentoEditorial(editorial, libros)));
+        editoriales.sort(POR_LIBROS);
+
+        List<RecuentoDecada> decadas = new ArrayList<>(librosPorDecada.size());
+        librosPorDecada.forEach((decada, libros) -> decadas.add(new RecuentoDecada(decada, libros)));
+        decadas.sort(Comparator.comparing(RecuentoDecada::decada, Comparator.nullsLast(Comparator.naturalOrder())));
+
+        List<PrestamosUsuario> prestatarios = prestamosPorUsuario.entrySet().stream()
+                .map(entrada -> {
+                    DatosUsuario usuario = usuarios.get(entrada.getKey());
+                    return new PrestamosUsuario(entrada.getKey(), usuario != null ? usuario.nombre() : null,
+                            usuario != null ? usuario.rol() : null, entrada.getValue());
+                })
+                .sorted(POR_PRESTAMOS)
+                .limit(MAXIMO_PRESTATARIOS)
+                .toList();
+
+        return new InformeCatalogo(total, Collections.unmodifiableMap(estados), Collections.unmodifiableMap(roles),
+                List.copyOf(editoriales), List.copyOf(decadas), prestatarios, reconciliado);
+    }
+
+    /**
+     * Suma al grupo y lo elimina al llegar a cero, para que no queden editoriales ni usuarios vacíos.
+     * Los mapas por constante no admiten claves nulas: un estado o rol nulo no se cuenta.
+     */
+    private static <K> void sumar(Map<K, Long> recuentos, K clave, long cantidad) {
+        if (clave == null && recuentos instanceof EnumMap) {
+            return;
+        }
+        recuentos.merge(clave, cantidad, (actual, incremento) -> actual + incremento == 0 ? null : actual + incremento);
+    }
+
+    private static <K> void reemplazar(Map<K, Long> destino, Map<K, Long> origen) {
+        destino.clear();
+        destino.putAll(origen);
+    }
+
+    private static Map<Libro.Estado, Long> sinCeros(Map<Libro.Estado, Long> recuentos) {
+        Map<Libro.Estado, Long> copia = new EnumMap<>(Libro.Estado.class);
+        recuentos.forEach((estado, libros) -> {
+            if (libros != 0) {
+                copia.put(estado, libros);
+            }
+        });
+        return copia;
+    }
+
+    private static Integer decada(Integer anio) {
+        return anio != null ? Math.floorDiv(anio, 10) * 10 : null;
+    }
+}
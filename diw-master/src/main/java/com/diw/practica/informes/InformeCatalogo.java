@@ -0,0 +1,42 @@
+package com.diw.practica.informes;
+
+import com.diw.practica.model.Libro;
+import com.diw.practica.model.Usuario;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Agregados del catálogo para la pantalla de informes.
+ *
+ * @param libros              número total de libros
+ * @param librosPorEstado     libros por estado (todos los estados, también los que están a cero)
+ * @param prestamosPorRol     libros prestados por rol del prestatario (todos los roles)
+ * @param librosPorEditorial  libros por editorial, de más a menos libros
+ * @param librosPorDecada     libros por década de publicación, en orden cronológico
+ * @param mayoresPrestatarios usuarios con más libros prestados, de más a menos
+ * @param reconciliado        momento de la última comprobación contra la base de datos
+ */
+public record InformeCatalogo(long libros,
+                              Map<Libro.Estado, Long> librosPorEstado,
+                              Map<Usuario.Rol, Long> prestamosPorRol,
+                              List<RecuentoEditorial> librosPorEditorial,
+                              List<RecuentoDecada> librosPorDecada,
+                              List<PrestamosUsuario> mayoresPrestatarios,
+                              Instant reconciliado) {
+
+    /**
+     * El mismo informe con solo los {@code n} primeros prestatarios.
+     *
+     * @param n número máximo de prestatarios
+     * @return informe recortado, o este mismo si no hay más de {@code n}
+     */
+    public InformeCatalogo conPrestatarios(int n) {
+        if (mayoresPrestatarios.size() <= n) {
+            return this;
+        }
+        return new InformeCatalogo(libros, librosPorEstado, prestamosPorRol, librosPorEditorial, librosPorDecada,
+                mayoresPrestatarios.subList(0, n), reconciliado);
+    }
+}
@@ -0,0 +1,14 @@
+package com.diw.practica.informes;
+
+import com.diw.practica.model.Usuario;
+
+/**
+ * Libros que tiene prestados un usuario.
+ *
+ * @param usuarioId identificador del usuario
+ * @param nombre    nombre del usuario, o {@code null} si aún no se ha leído
+ * @param rol       rol del usuario, o {@code null} si aún no se ha leído
+ * @param prestamos libros prestados actualmente al usuario
+ */
+public record PrestamosUsuario(Integer usuarioId, String nombre, Usuario.Rol rol, long prestamos) {
+}
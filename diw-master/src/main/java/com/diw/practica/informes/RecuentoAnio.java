@@ -0,0 +1,10 @@
+package com.diw.practica.informes;
+
+/**
+ * Número de libros publicados en un año, tal como lo devuelve la consulta agrupada.
+ *
+ * @param anio   año de publicación, o {@code null} si no consta
+ * @param libros libros del catálogo publicados ese año
+ */
+public record RecuentoAnio(Integer anio, long libros) {
+}
@@ -0,0 +1,10 @@
+package com.diw.practica.informes;
+
+/**
+ * Número de libros publicados en una década.
+ *
+ * @param decada primer año de la década (1990 para 1990-1999), o {@code null} si no consta el año
+ * @param libros libros del catálogo publicados en esa década
+ */
+public record RecuentoDecada(Integer decada, long libros) {
+}
@@ -0,0 +1,10 @@
+package com.diw.practica.informes;
+
+/**
+ * Número de libros de una editorial.
+ *
+ * @param editorial editorial, o {@code null} para los libros sin editorial
+ * @param libros    libros del catálogo con esa editorial
+ */
+public record RecuentoEditorial(String editorial, long libros) {
+}
@@ -0,0 +1,163 @@
+package com.diw.practica.metricas;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Temporizadores de las operaciones de la biblioteca.
+ *
+ * <ul>
+ *     <li>{@value #PRESTAMOS}: préstamos y devoluciones, con las etiquetas {@code operacion}
+ *     ({@code solicitar}, {@code devolver}) y {@code resultado} ({@code exito}, {@code no_disponible},
+ *     {@code no_encontrado}, {@code error}).</li>
+ *     <li>{@value #LIBROS_DISPONIBLES}: listado de libros disponibles.</li>
+ *     <li>{@value #ADMIN}: operaciones de administración, con las etiquetas {@code operacion} y
+ *     {@code resultado} ({@code exito}, {@code error}).</li>
+ * </ul>
+ *
+ * <p>Todos publican percentiles calculados en el proceso y el histograma de latencias, que es lo que
+ * permite agregar instancias y calcular {@code histogram_quantile} en Prometheus.</p>
+ *
+ * <p>Si la medida empieza dentro de una transacción, se detiene cuando esta termina, de modo que el
+ * tiempo incluye el commit; una transacción revertida se contabiliza como {@code error}.</p>
+ */
+@Component
+public class MetricasBiblioteca {
+
+    public static final String PRESTAMOS = "biblioteca.prestamos";
+    public static final String LIBROS_DISPONIBLES = "biblioteca.libros.disponibles";
+    public static final String ADMIN = "biblioteca.admin";
+
+    /**
+     * Operación medida en {@value #PRESTAMOS}.
+     */
+    public enum OperacionPrestamo {SOLICITAR, DEVOLVER}
+
+    /**
+     * Resultado de un préstamo o una devolución.
+     */
+    public enum ResultadoPrestamo {EXITO, NO_DISPONIBLE, NO_ENCONTRADO, ERROR}
+
+    private static final String EXITO = "exito";
+    private static final String ERROR = "error";
+
+    private final MeterRegistry registry;
+    private final Map<OperacionPrestamo, Map<ResultadoPrestamo, Timer>> prestamos = new EnumMap<>(OperacionPrestamo.class);
+    private final Timer librosDisponibles;
+    private final Map<String, Timer> admin = new ConcurrentHashMap<>();
+
+    public MetricasBiblioteca(MeterRegistry registry) {
+        this.registry = registry;
+        for (OperacionPrestamo operacion : OperacionPrestamo.values()) {
+            Map<ResultadoPrestamo, Timer> porResultado = new EnumMap<>(ResultadoPrestamo.class);
+            for (ResultadoPrestamo resultado : ResultadoPrestamo.values()) {
+                porResultado.put(resultado, temporizador(PRESTAMOS, "Préstamos y devoluciones")
+                        .tag("operacion", etiqueta(operacion))
+                        .tag("resultado", etiqueta(resultado))
+                        .register(registry));
+            }
+            prestamos.put(operacion, porResultado);
+        }
+        this.librosDisponibles = temporizador(LIBROS_DISPONIBLES, "Listado de libros disponibles").register(registry);
+    }
+
+    /**
+     * Empieza una medida.
+     *
+     * @return muestra que se entrega a {@link #registrarPrestamo}
+     */
+    public Timer.Sample iniciar() {
+        return Timer.start(registry);
+    }
+
+    /**
+     * Termina la medida de un préstamo o una devolución.
+     *
+     * @param muestra   muestra obtenida con {@link #iniciar()}
+     * @param operacion operación medida
+     * @param resultado resultado de la operación si la transacción se confirma
+     */
+    public void registrarPrestamo(Timer.Sample muestra, OperacionPrestamo operacion, ResultadoPrestamo resultado) {
+        Map<ResultadoPrestamo, Timer> porResultado = prestamos.get(operacion);
+        detener(muestra, porResultado.get(resultado), porResultado.get(ResultadoPrestamo.ERROR));
+    }
+
+    /**
+     * Mide el listado de libros disponibles.
+     *
+     * @param listado obtención del listado
+     * @param <T>     tipo del listado
+     * @return el listado
+     */
+    public <T> T medirLibrosDisponibles(Supplier<T> listado) {
+        return librosDisponibles.record(listado);
+    }
+
+    /**
+     * Mide una operación de administración.
+     *
+     * @param operacion nombre de la operación, usado como etiqueta
+     * @param accion    operación a ejecutar
+     * @param <T>       tipo del resultado
+     * @return el resultado de la operación
+     */
+    public <T> T medirAdmin(String operacion, Supplier<T> accion) {
+        Timer.Sample muestra = iniciar();
+        Timer exito = admin.computeIfAbsent(operacion + '|' + EXITO, clave -> temporizadorAdmin(operacion, EXITO));
+        Timer error = admin.computeIfAbsent(operacion + '|' + ERROR, clave -> temporizadorAdmin(operacion, ERROR));
+        boolean correcta = false;
+        try {
+            T resultado = accion.get();
+            correcta = true;
+            return resultado;
+        } finally {
+            detener(muestra, correcta ? exito : error, error);
+        }
+    }
+
+    private Timer temporizadorAdmin(String operacion, String resultado) {
+        return temporizador(ADMIN, "Operaciones de administración")
+                .tag("operacion", operacion)
+                .tag("resultado", resultado)
+                .register(registry);
+    }
+
+    /**
+     * Detiene la muestra ahora o, si hay una transacción en curso, cuando esta termine.
+     */
+    private static void detener(Timer.Sample muestra, Timer siConfirma, Timer siRevierte) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            muestra.stop(siConfirma);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int estado) {
+                muestra.stop(estado == STATUS_COMMITTED ? siConfirma : siRevierte);
+            }
+        });
+    }
+
+    private static Timer.Builder temporizador(String nombre, String descripcion) {
+        return Timer.builder(nombre)
+                .description(descripcion)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofMillis(1))
+                .maximumExpectedValue(Duration.ofSeconds(30));
+    }
+
+    private static String etiqueta(Enum<?> valor) {
+        return valor.name().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,10 @@
+package com.diw.practica.metricas;
+
+/**
+ * Número de elementos agrupados bajo una constante (un estado de libro, un rol de usuario...).
+ *
+ * @param grupo    constante por la que se agrupa
+ * @param cantidad elementos del grupo
+ */
+public record Recuento(Enum<?> grupo, long cantidad) {
+}
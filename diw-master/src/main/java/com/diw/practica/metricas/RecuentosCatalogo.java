@@ -0,0 +1,85 @@
+package com.diw.practica.metricas;
+
+import com.diw.practica.model.Libro;
+import com.diw.practica.model.Usuario;
+import com.diw.practica.repository.LibroRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Medidores del estado del catálogo.
+ *
+ * <ul>
+ *     <li>{@value #LIBROS}: libros por {@link Libro.Estado} (etiqueta {@code estado}).</li>
+ *     <li>{@value #PRESTAMOS_ACTIVOS}: libros prestados por {@link Usuario.Rol} del prestatario
+ *     (etiqueta {@code rol}).</li>
+ * </ul>
+ *
+ * <p>Cada familia se obtiene con una única consulta agrupada y se reutiliza durante
+ * {@value #VIGENCIA_MS} ms, así que una lectura de todos los medidores cuesta como mucho dos
+ * consultas, independientemente del número de estados y roles.</p>
+ */
+@Component
+public class RecuentosCatalogo {
+
+    public static final String LIBROS = "biblioteca.libros";
+    public static final String PRESTAMOS_ACTIVOS = "biblioteca.prestamos.activos";
+
+    static final long VIGENCIA_MS = 5_000;
+
+    private final Instantanea porEstado;
+    private final Instantanea porRol;
+
+    public RecuentosCatalogo(LibroRepository libroRepository, MeterRegistry registry) {
+        this.porEstado = new Instantanea(libroRepository::contarPorEstado);
+        this.porRol = new Instantanea(libroRepository::contarPrestamosPorRol);
+
+        for (Libro.Estado estado : Libro.Estado.values()) {
+            Gauge.builder(LIBROS, porEstado, instantanea -> instantanea.valor(estado))
+                    .description("Libros del catálogo por estado")
+                    .tag("estado", estado.name().toLowerCase(Locale.ROOT))
+                    .register(registry);
+        }
+        for (Usuario.Rol rol : Usuario.Rol.values()) {
+            Gauge.builder(PRESTAMOS_ACTIVOS, porRol, instantanea -> instantanea.valor(rol))
+                    .description("Libros prestados por rol del prestatario")
+                    .tag("rol", rol.name().toLowerCase(Locale.ROOT))
+                    .register(registry);
+        }
+    }
+
+    /**
+     * Resultado de una consulta agrupada, recalculado cuando caduca. Si dos lecturas coinciden con la
+     * caducidad, ambas consultan: el resultado es el mismo y se evita bloquear a los lectores.
+     */
+    private static final class Instantanea {
+
+        private final Supplier<List<Recuento>> consulta;
+        private volatile Map<Enum<?>, Long> valores = Map.of();
+        private volatile long caducidad;
+
+        private Instantanea(Supplier<List<Recuento>> consulta) {
+            this.consulta = consulta;
+        }
+
+        private double valor(Enum<?> grupo) {
+            long ahora = System.currentTimeMillis();
+            if (ahora >= caducidad) {
+                Map<Enum<?>, Long> nuevos = new HashMap<>();
+                for (Recuento recuento : consulta.get()) {
+                    nuevos.put(recuento.grupo(), recuento.cantidad());
+                }
+                valores = nuevos;
+                caducidad = ahora + VIGENCIA_MS;
+            }
+            return valores.getOrDefault(grupo, 0L);
+        }
+    }
+}
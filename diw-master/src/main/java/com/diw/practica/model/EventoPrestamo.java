@@ -0,0 +1,99 @@
+package com.diw.practica.model;
+
+import jakarta.persistence.*;
+import org.hibernate.annotations.Immutable;
+
+import java.time.Instant;
+
+/**
+ * Entrada del registro histórico de préstamos.
+ * <p>
+ * El estado de un {@link Libro} solo refleja su situación actual; cada préstamo, devolución o
+ * reserva confirmados se anotan además aquí para poder analizarlos después. La tabla es de solo
+ * inserción: la entidad es inmutable y no guarda referencias a otras entidades, solo sus ids,
+ * de modo que el historial sobrevive a la baja de libros y usuarios.
+ * </p>
+ *
+ * @since 1.2
+ */
+@Entity
+@Immutable
+@Table(name = "evento_prestamo", indexes = {
+        @Index(name = "idx_evento_prestamo_libro", columnList = "libroId, id"),
+        @Index(name = "idx_evento_prestamo_usuario", columnList = "usuarioId, id"),
+        @Index(name = "idx_evento_prestamo_instante", columnList = "instante")
+})
+public class EventoPrestamo {
+
+    /**
+     * Tipos de evento registrados.
+     */
+    public enum Tipo {PRESTADO, DEVUELTO, RESERVADO}
+
+    /**
+     * Número de identificadores que se reservan de la secuencia en cada acceso.
+     */
+    static final int TAMANIO_BLOQUE_ID = 50;
+
+    /**
+     * Identificador generado a partir de la secuencia {@code evento_prestamo_seq}, en bloques para
+     * que las inserciones se agrupen en lotes JDBC (ver {@link Libro}). Crece con el orden de
+     * escritura, así que sirve de cursor para recorrer el historial.
+     */
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "evento_prestamo_seq")
+    @SequenceGenerator(name = "evento_prestamo_seq", sequenceName = "evento_prestamo_seq",
+            allocationSize = EventoPrestamo.TAMANIO_BLOQUE_ID)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private Tipo tipo;
+
+    @Column(nullable = false)
+    private Integer libroId;
+
+    /**
+     * Usuario que recibe, devuelve o reserva el libro; {@code null} si no consta.
+     */
+    private Integer usuarioId;
+
+    /**
+     * Momento en que se confirmó el cambio.
+     */
+    @Column(nullable = false)
+    private Instant instante;
+
+    /**
+     * Constructor por defecto requerido por JPA.
+     */
+    protected EventoPrestamo() {
+    }
+
+    public EventoPrestamo(Tipo tipo, Integer libroId, Integer usuarioId, Instant instante) {
+        this.tipo = tipo;
+        this.libroId = libroId;
+        this.usuarioId = usuarioId;
+        this.instante = instante;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public Tipo getTipo() {
+        return tipo;
+    }
+
+    public Integer getLibroId() {
+        return libroId;
+    }
+
+    public Integer getUsuarioId() {
+        return usuarioId;
+    }
+
+    public Instant getInstante() {
+        return instante;
+    }
+}
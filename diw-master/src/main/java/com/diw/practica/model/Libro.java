@@ -4,6 +4,8 @@ import com.fasterxml.jackson.annotation.JsonBackReference;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 
+import java.time.Instant;
+
 /**
  * Entidad JPA que representa un libro en el sistema.
  * <p>
@@ -11,12 +13,23 @@ import jakarta.persistence.*;
  * editorial) y el estado actual (disponible, prestado, reservado). Si el libro está
  * prestado, la relación {@code prestadoA} referencia al {@link Usuario} que lo tiene.
  * </p>
+ * <p>
+ * Los índices {@code (columna, id)} sirven la paginación keyset del listado por título, autor
+ * y año de publicación: cubren el filtro de rango y el orden sin ordenar en memoria. El índice
+ * sobre {@code reservadoHasta} sirve la búsqueda periódica de reservas caducadas.
+ * </p>
  *
  * @author dmg00024
  * @version 1.0
  * @since 1.0
  */
 @Entity
+@Table(indexes = {
+        @Index(name = "idx_libro_titulo", columnList = "titulo, id"),
+        @Index(name = "idx_libro_autor", columnList = "autor, id"),
+        @Index(name = "idx_libro_anio_publicacion", columnList = "anioPublicacion, id"),
+        @Index(name = "idx_libro_reservado_hasta", columnList = "reservadoHasta")
+})
 public class Libro {
 
     /**
@@ -24,16 +37,29 @@ public class Libro {
      * <ul>
      *     <li>{@link #DISPONIBLE} — El libro está disponible para préstamo.</li>
      *     <li>{@link #PRESTADO} — El libro está actualmente prestado a un usuario.</li>
-     *     <li>{@link #RESERVADO} — El libro está reservado por un usuario y no está disponible.</li>
+     *     <li>{@link #RESERVADO} — El libro está reservado para el usuario de {@code prestadoA}, el
+     *     único que puede tomarlo en préstamo (ver {@link Reserva}).</li>
      * </ul>
      */
     public enum Estado {DISPONIBLE, PRESTADO, RESERVADO}
 
     /**
-     * Identificador único generado por la base de datos.
+     * Número de identificadores que se reservan de la secuencia en cada acceso.
+     */
+    public static final int TAMANIO_BLOQUE_ID = 50;
+
+    /**
+     * Identificador único generado a partir de la secuencia {@code libro_seq}.
+     * <p>
+     * Se reservan bloques de {@value #TAMANIO_BLOQUE_ID} identificadores (optimizador
+     * {@code pooled}), de modo que Hibernate conoce el id antes de insertar y puede
+     * agrupar las inserciones en lotes JDBC, cosa imposible con {@link GenerationType#IDENTITY}.
+     * En bases de datos sin secuencias (MySQL) Hibernate la emula con una tabla.
+     * </p>
      */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "libro_seq")
+    @SequenceGenerator(name = "libro_seq", sequenceName = "libro_seq", allocationSize = Libro.TAMANIO_BLOQUE_ID)
     private Integer id;
 
     /**
@@ -70,18 +96,53 @@ public class Libro {
     @Enumerated(EnumType.STRING)
     private Estado estadoLibro = Estado.DISPONIBLE;
 
+    /**
+     * Versión del registro para control de concurrencia optimista.
+     * <p>
+     * Se incrementa en cada modificación, incluidas las actualizaciones condicionales
+     * de préstamo y devolución, de forma que una edición basada en una lectura
+     * anterior falla en lugar de sobrescribir el préstamo.
+     * </p>
+     */
+    @Version
+    @Column(nullable = false)
+    private Long version;
+
+    /**
+     * Número de veces que se ha prestado el libro.
+     * <p>
+     * Lo incrementa la propia sentencia de préstamo y sirve como medida de popularidad
+     * para ordenar las sugerencias de autocompletado.
+     * </p>
+     */
+    @Column(nullable = false)
+    private int vecesPrestado;
+
     /**
      * Usuario al que está prestado el libro.
      * <p>
      * Relación muchos-a-uno con la entidad {@link Usuario}. Se utiliza {@link FetchType#LAZY}
-     * para evitar cargar el usuario hasta que sea necesario.
+     * para evitar cargar el usuario hasta que sea necesario. No se serializa a JSON
+     * (es la parte inversa de la referencia gestionada), así que los listados nunca
+     * necesitan inicializarla.
      * </p>
      */
-    @ManyToOne(fetch = FetchType.EAGER)
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "usuario_id")
     @JsonBackReference (value = "usuario-libros")
     private Usuario prestadoA;
 
+    /**
+     * Plazo para recoger un libro {@link Estado#RESERVADO}.
+     * <p>
+     * Lo fija la sentencia que entrega el libro a una reserva; pasado este instante, la reserva
+     * caduca y el libro pasa a la siguiente de la cola. Es {@code null} en los demás estados y en
+     * los libros reservados a mano por un administrador, que no caducan.
+     * </p>
+     */
+    @JsonIgnore
+    private Instant reservadoHasta;
+
     /**
      * Constructor por defecto requerido por JPA.
      */
@@ -235,14 +296,57 @@ public class Libro {
     }
 
     /**
-     * Establece el estado del libro.
+     * Establece el estado del libro. Al cambiarlo se descarta el plazo de recogida, que solo
+     * vale para la reserva en que se fijó.
      *
      * @param estadoLibro estado a establecer
      */
     public void setEstadoLibro(Estado estadoLibro) {
+        if (estadoLibro != this.estadoLibro) {
+            this.reservadoHasta = null;
+        }
         this.estadoLibro = estadoLibro;
     }
 
+    /**
+     * Obtiene la versión actual del registro.
+     *
+     * @return versión del libro, o {@code null} si no ha sido persistido aún
+     */
+    public Long getVersion() {
+        return version;
+    }
+
+    /**
+     * Establece la versión del registro.
+     * <p>
+     * Este valor es gestionado por JPA; solo se asigna al recibir datos de un cliente.
+     * </p>
+     *
+     * @param version versión a establecer
+     */
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
+    /**
+     * Obtiene el número de veces que se ha prestado el libro.
+     *
+     * @return número de préstamos
+     */
+    public int getVecesPrestado() {
+        return vecesPrestado;
+    }
+
+    /**
+     * Establece el número de veces que se ha prestado el libro.
+     *
+     * @param vecesPrestado número de préstamos
+     */
+    public void setVecesPrestado(int vecesPrestado) {
+        this.vecesPrestado = vecesPrestado;
+    }
+
     /**
      * Obtiene el usuario al que está prestado el libro.
      *
@@ -260,4 +364,13 @@ public class Libro {
     public void setPrestadoA(Usuario prestadoA) {
         this.prestadoA = prestadoA;
     }
-}
\ No newline at end of file
+
+    /**
+     * Obtiene el plazo para recoger el libro reservado.
+     *
+     * @return instante en que caduca la reserva, o {@code null} si no está reservado o no caduca
+     */
+    public Instant getReservadoHasta() {
+        return reservadoHasta;
+    }
+}
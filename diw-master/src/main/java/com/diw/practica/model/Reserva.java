@@ -0,0 +1,96 @@
+package com.diw.practica.model;
+
+import jakarta.persistence.*;
+
+import java.time.Instant;
+
+/**
+ * Reserva de un libro que no está disponible.
+ * <p>
+ * Cada libro tiene una cola de reservas atendida por rol del usuario (en el orden de
+ * {@link Usuario.Rol}: administradores, profesores y alumnos) y, dentro de cada rol, por orden de
+ * solicitud. Al devolverse el libro, la primera reserva se consume y el libro pasa a
+ * {@link Libro.Estado#RESERVADO} a nombre de ese usuario, que lo recoge con una solicitud de préstamo.
+ * </p>
+ * <p>
+ * El rol se copia al reservar para que la cola pueda reconstruirse leyendo solo esta tabla; un
+ * cambio de rol posterior no altera las reservas ya hechas. La restricción única sobre libro y
+ * usuario impide reservar dos veces y su índice sirve también para leer la cola de un libro.
+ * </p>
+ *
+ * @since 1.2
+ */
+@Entity
+@Table(name = "reserva",
+        uniqueConstraints = @UniqueConstraint(name = "uk_reserva_libro_usuario", columnNames = {"libro_id", "usuario_id"}),
+        indexes = @Index(name = "idx_reserva_usuario", columnList = "usuario_id"))
+public class Reserva {
+
+    /**
+     * Número de identificadores que se reservan de la secuencia en cada acceso.
+     */
+    static final int TAMANIO_BLOQUE_ID = 50;
+
+    /**
+     * Identificador generado a partir de la secuencia {@code reserva_seq}. Deshace los empates
+     * entre reservas del mismo rol solicitadas en el mismo instante.
+     */
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "reserva_seq")
+    @SequenceGenerator(name = "reserva_seq", sequenceName = "reserva_seq", allocationSize = Reserva.TAMANIO_BLOQUE_ID)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "libro_id")
+    private Libro libro;
+
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "usuario_id")
+    private Usuario usuario;
+
+    /**
+     * Rol del usuario en el momento de reservar.
+     */
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private Usuario.Rol rol;
+
+    /**
+     * Momento de la solicitud.
+     */
+    @Column(nullable = false)
+    private Instant solicitada;
+
+    /**
+     * Constructor por defecto requerido por JPA.
+     */
+    protected Reserva() {
+    }
+
+    public Reserva(Libro libro, Usuario usuario, Usuario.Rol rol, Instant solicitada) {
+        this.libro = libro;
+        this.usuario = usuario;
+        this.rol = rol;
+        this.solicitada = solicitada;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public Libro getLibro() {
+        return libro;
+    }
+
+    public Usuario getUsuario() {
+        return usuario;
+    }
+
+    public Usuario.Rol getRol() {
+        return rol;
+    }
+
+    public Instant getSolicitada() {
+        return solicitada;
+    }
+}
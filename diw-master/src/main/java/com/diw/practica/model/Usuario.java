@@ -1,5 +1,7 @@
 package com.diw.practica.model;
+import com.diw.practica.dto.Vistas;
 import com.fasterxml.jackson.annotation.JsonManagedReference;
+import com.fasterxml.jackson.annotation.JsonView;
 import jakarta.persistence.*;
 
 import java.util.*;
@@ -26,11 +28,13 @@ public class Usuario {
      */
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @JsonView(Vistas.Comun.class)
     private Integer id;
 
     /**
      * Nombre del usuario.
      */
+    @JsonView(Vistas.ListadoUsuarios.class)
     private String nombre;
 
     /**
@@ -42,6 +46,7 @@ public class Usuario {
      * Mapeo del rol en la base de datos como cadena.
      */
     @Enumerated (EnumType.STRING)
+    @JsonView(Vistas.ListadoUsuarios.class)
     private Rol rol;
 
     /**
@@ -50,7 +55,8 @@ public class Usuario {
      * Relación One\-To\-Many bidireccional con la entidad {@code Libro}. El atributo
      * {@code mappedBy = "prestadoA"} indica que la entidad inversa mantiene la relación.
      * Se utiliza {@link CascadeType#ALL} para propagar operaciones de persistencia.
-     * La lista se inicializa para evitar {@link NullPointerException}.
+     * La lista se inicializa para evitar {@link NullPointerException}. No pertenece a
+     * ninguna vista JSON, así que los listados con vista no la emiten ni la inicializan.
      * </p>
      */
     @OneToMany(mappedBy = "prestadoA", cascade = CascadeType.ALL)
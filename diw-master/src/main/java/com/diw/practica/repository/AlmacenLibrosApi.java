@@ -0,0 +1,149 @@
+package com.diw.practica.repository;
+
+import com.diw.practica.dto.LibroApi;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Almacén en memoria de los libros de la API {@code /api/libros}.
+ *
+ * <p>Los libros se guardan en un {@link LinkedHashMap} indexado por id, de modo que la consulta,
+ * la modificación y el borrado son O(1) y el listado conserva el orden de alta. Un cerrojo de
+ * lectura/escritura protege el mapa y la asignación de identificadores: las escrituras
+ * concurrentes de los hilos de Tomcat se serializan sin perder cambios ni repetir ids, y los
+ * listados trabajan sobre una copia.</p>
+ *
+ * <p>El número de libros se limita con {@code diw.api-libros.capacidad}.</p>
+ *
+ * @since 1.1
+ */
+@Repository
+public class AlmacenLibrosApi {
+
+    private final int capacidad;
+    private final ReadWriteLock cerrojo = new ReentrantReadWriteLock();
+    private final Map<Long, LibroApi> libros = new LinkedHashMap<>();
+    private long siguienteId = 1;
+
+    public AlmacenLibrosApi(@Value("${diw.api-libros.capacidad:10000}") int capacidad) {
+        if (capacidad < 1) {
+            throw new IllegalArgumentException("La capacidad del almacén debe ser positiva");
+        }
+        this.capacidad = capacidad;
+    }
+
+    /**
+     * Devuelve todos los libros en orden de alta.
+     *
+     * @return copia del contenido actual
+     */
+    public List<LibroApi> listar() {
+        cerrojo.readLock().lock();
+        try {
+            return new ArrayList<>(libros.values());
+        } finally {
+            cerrojo.readLock().unlock();
+        }
+    }
+
+    /**
+     * Busca un libro por id.
+     *
+     * @param id identificador del libro
+     * @return el libro, o vacío si no existe
+     */
+    public Optional<LibroApi> buscar(long id) {
+        cerrojo.readLock().lock();
+        try {
+            return Optional.ofNullable(libros.get(id));
+        } finally {
+            cerrojo.readLock().unlock();
+        }
+    }
+
+    /**
+     * Da de alta un libro con un identificador nuevo.
+     *
+     * @param titulo título del libro
+     * @param autor  autor del libro
+     * @return el libro creado
+     * @throws CapacidadAgotadaException si el almacén ha alcanzado su capacidad
+     */
+    public LibroApi crear(String titulo, String autor) {
+        cerrojo.writeLock().lock();
+        try {
+            if (libros.size() >= capacidad) {
+                throw new CapacidadAgotadaException("Se ha alcanzado la capacidad máxima de " + capacidad + " libros");
+            }
+            LibroApi libro = new LibroApi(siguienteId++, titulo, autor, LocalDateTime.now().toString());
+            libros.put(libro.id(), libro);
+            return libro;
+        } finally {
+            cerrojo.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Modifica título y autor de un libro existente, sin alterar su posición en el listado.
+     *
+     * @param id     identificador del libro
+     * @param titulo nuevo título
+     * @param autor  nuevo autor
+     * @return el libro modificado, o vacío si no existe
+     */
+    public Optional<LibroApi> actualizar(long id, String titulo, String autor) {
+        cerrojo.writeLock().lock();
+        try {
+            return Optional.ofNullable(libros.computeIfPresent(id, (clave, libro) -> libro.conDatos(titulo, autor)));
+        } finally {
+            cerrojo.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Elimina un libro.
+     *
+     * @param id identificador del libro
+     * @return {@code true} si existía
+     */
+    public boolean eliminar(long id) {
+        cerrojo.writeLock().lock();
+        try {
+            return libros.remove(id) != null;
+        } finally {
+            cerrojo.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Número de libros almacenados.
+     *
+     * @return tamaño actual
+     */
+    public int tamanio() {
+        cerrojo.readLock().lock();
+        try {
+            return libros.size();
+        } finally {
+            cerrojo.readLock().unlock();
+        }
+    }
+
+    /**
+     * Se lanza al intentar dar de alta un libro con el almacén lleno.
+     */
+    public static class CapacidadAgotadaException extends IllegalStateException {
+        public CapacidadAgotadaException(String mensaje) {
+            super(mensaje);
+        }
+    }
+}
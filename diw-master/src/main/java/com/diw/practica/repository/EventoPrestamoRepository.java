@@ -0,0 +1,34 @@
+package com.diw.practica.repository;
+
+import com.diw.practica.model.EventoPrestamo;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.Repository;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Lectura del historial de préstamos. Las inserciones las hace por lotes
+ * {@code RegistroEventosPrestamo}; el repositorio no expone métodos de escritura.
+ */
+public interface EventoPrestamoRepository extends Repository<EventoPrestamo, Long> {
+
+    // Recorrido por keyset sobre el id (orden de escritura); cada filtro usa su propio índice.
+
+    @Query("SELECT e FROM EventoPrestamo e WHERE e.id > :ultimoId AND e.instante >= :desde ORDER BY e.id")
+    List<EventoPrestamo> pagina(@Param("ultimoId") long ultimoId, @Param("desde") Instant desde, Limit limite);
+
+    @Query("SELECT e FROM EventoPrestamo e WHERE e.libroId = :libroId AND e.id > :ultimoId "
+            + "AND e.instante >= :desde ORDER BY e.id")
+    List<EventoPrestamo> paginaDeLibro(@Param("libroId") Integer libroId, @Param("ultimoId") long ultimoId,
+                                       @Param("desde") Instant desde, Limit limite);
+
+    @Query("SELECT e FROM EventoPrestamo e WHERE e.usuarioId = :usuarioId AND e.id > :ultimoId "
+            + "AND e.instante >= :desde ORDER BY e.id")
+    List<EventoPrestamo> paginaDeUsuario(@Param("usuarioId") Integer usuarioId, @Param("ultimoId") long ultimoId,
+                                         @Param("desde") Instant desde, Limit limite);
+
+    long count();
+}
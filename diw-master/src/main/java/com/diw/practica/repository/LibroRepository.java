@@ -1,10 +1,236 @@
 package com.diw.practica.repository;
 
+import com.diw.practica.busqueda.LibroPopularidad;
+import com.diw.practica.dto.LibroConPrestatario;
+import com.diw.practica.dto.LibroResumen;
+import com.diw.practica.informes.PrestamosUsuario;
+import com.diw.practica.informes.RecuentoAnio;
+import com.diw.practica.informes.RecuentoEditorial;
+import com.diw.practica.metricas.Recuento;
 import com.diw.practica.model.Libro;
+import com.diw.practica.model.Usuario;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 public interface LibroRepository extends JpaRepository<Libro, Integer> {
-    List<Libro> findByEstadoLibro(Libro.Estado estado);
+
+    /**
+     * Número de filas que se piden al driver por cada viaje al recorrer el catálogo completo
+     * (sin efecto en MySQL, que sin {@code useCursorFetch} entrega el resultado completo).
+     */
+    int TAMANIO_LOTE_RECORRIDO = 500;
+
+    /**
+     * Selección de las columnas propias del libro como {@link LibroResumen}, sin el prestatario.
+     */
+    String SELECT_RESUMEN = "SELECT new com.diw.practica.dto.LibroResumen("
+            + "l.id, l.titulo, l.autor, l.isbn, l.anioPublicacion, l.editorial, l.estadoLibro, l.version) "
+            + "FROM Libro l ";
+
+    /**
+     * Selección de las columnas propias del libro y del id de su prestatario como {@link LibroConPrestatario}.
+     */
+    String SELECT_CON_PRESTATARIO = "SELECT new com.diw.practica.dto.LibroConPrestatario("
+            + "l.id, l.titulo, l.autor, l.isbn, l.anioPublicacion, l.editorial, l.estadoLibro, l.version, "
+            + "l.prestadoA.id) FROM Libro l ";
+
+    @Query(SELECT_RESUMEN + "WHERE l.id = :id")
+    Optional<LibroResumen> resumenPorId(@Param("id") Integer id);
+
+    @Query(SELECT_CON_PRESTATARIO + "WHERE l.id IN :ids")
+    List<LibroConPrestatario> conPrestatarioPorIds(@Param("ids") Collection<Integer> ids);
+
+    @Query(SELECT_RESUMEN + "WHERE l.estadoLibro = :estado ORDER BY l.id")
+    List<LibroResumen> resumenPorEstado(@Param("estado") Libro.Estado estado);
+
+    // Paginación keyset: cada página filtra a partir de la última clave entregada,
+    // por lo que su coste no depende de la profundidad (sin OFFSET). Se filtra y ordena por la
+    // columna sin transformar para que los índices (columna, id) de Libro sirvan el rango y el
+    // orden. Los nulos van delante en orden ascendente (MySQL y H2): la variante "DesdeNulos"
+    // continúa dentro de ese tramo y la otra, a partir de un valor ya no nulo.
+
+    @Query(SELECT_RESUMEN + "WHERE l.id > :ultimoId ORDER BY l.id")
+    List<LibroResumen> paginaPorId(@Param("ultimoId") int ultimoId, Limit limite);
+
+    @Query(SELECT_RESUMEN + "WHERE l.titulo > :valor OR (l.titulo = :valor AND l.id > :ultimoId) "
+            + "ORDER BY l.titulo, l.id")
+    List<LibroResumen> paginaPorTitulo(@Param("valor") String valor, @Param("ultimoId") int ultimoId, Limit limite);
+
+    @Query(SELECT_RESUMEN + "WHERE (l.titulo IS NULL AND l.id > :ultimoId) OR l.titulo IS NOT NULL "
+            + "ORDER BY l.titulo, l.id")
+    List<LibroResumen> paginaPorTituloDesdeNulos(@Param("ultimoId") int ultimoId, Limit limite);
+
+    @Query(SELECT_RESUMEN + "WHERE l.autor > :valor OR (l.autor = :valor AND l.id > :ultimoId) "
+            + "ORDER BY l.autor, l.id")
+    List<LibroResumen> paginaPorAutor(@Param("valor") String valor, @Param("ultimoId") int ultimoId, Limit limite);
+
+    @Query(SELECT_RESUMEN + "WHERE (l.autor IS NULL AND l.id > :ultimoId) OR l.autor IS NOT NULL "
+            + "ORDER BY l.autor, l.id")
+    List<LibroResumen> paginaPorAutorDesdeNulos(@Param("ultimoId") int ultimoId, Limit limite);
+
+    @Query(SELECT_RESUMEN + "WHERE l.anioPublicacion > :valor OR (l.anioPublicacion = :valor AND l.id > :ultimoId) "
+            + "ORDER BY l.anioPublicacion, l.id")
+    List<LibroResumen> paginaPorAnioPublicacion(@Param("valor") int valor, @Param("ultimoId") int ultimoId, Limit limite);
+
+    @Query(SELECT_RESUMEN + "WHERE (l.anioPublicacion IS NULL AND l.id > :ultimoId) OR l.anioPublicacion IS NOT NULL "
+            + "ORDER BY l.anioPublicacion, l.id")
+    List<LibroResumen> paginaPorAnioPublicacionDesdeNulos(@Param("ultimoId") int ultimoId, Limit limite);
+
+    // Préstamos de un usuario filtrando por la clave foránea (l.prestadoA.id no une con usuario).
+    // El índice de la clave foránea incluye el id del libro: la página se localiza en el índice
+    // sin ordenar ni leer el resto de préstamos. Un libro RESERVADO también tiene prestadoA (el
+    // usuario que lo espera), así que todas las consultas de préstamos exigen además PRESTADO.
+
+    @Query(SELECT_RESUMEN + "WHERE l.prestadoA.id = :usuarioId "
+            + "AND l.estadoLibro = com.diw.practica.model.Libro$Estado.PRESTADO "
+            + "AND l.id > :ultimoId ORDER BY l.id")
+    List<LibroResumen> prestamosDeUsuario(@Param("usuarioId") Integer usuarioId, @Param("ultimoId") int ultimoId,
+                                          Limit limite);
+
+    @Query("SELECT COUNT(l) FROM Libro l WHERE l.prestadoA.id = :usuarioId "
+            + "AND l.estadoLibro = com.diw.practica.model.Libro$Estado.PRESTADO")
+    long contarPrestamosDeUsuario(@Param("usuarioId") Integer usuarioId);
+
+    // Lectura con bloqueo de los libros de un lote antes de prestarlos o devolverlos: las filas
+    // quedan bloqueadas hasta el commit, así que la actualización posterior afecta exactamente a
+    // los libros que la lectura da por válidos. Se ordenan por id para bloquear siempre en el
+    // mismo orden y evitar interbloqueos entre lotes concurrentes.
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query(SELECT_CON_PRESTATARIO + "WHERE l.id IN :ids ORDER BY l.id")
+    List<LibroConPrestatario> bloquearPorIds(@Param("ids") Collection<Integer> ids);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query(SELECT_CON_PRESTATARIO + "WHERE l.prestadoA.id = :usuarioId "
+            + "AND l.estadoLibro = com.diw.practica.model.Libro$Estado.PRESTADO ORDER BY l.id")
+    List<LibroConPrestatario> bloquearPrestamosDeUsuario(@Param("usuarioId") Integer usuarioId);
+
+    // Recorridos completos en streaming: deben consumirse dentro de una transacción y cerrarse
+    // al terminar. La exportación del catálogo no pasa por aquí: fija su tamaño de lectura según
+    // la base de datos (ver AdminServiceImpl#recorrerCatalogo).
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "" + TAMANIO_LOTE_RECORRIDO))
+    @Query(SELECT_RESUMEN + "ORDER BY l.id")
+    Stream<LibroResumen> recorrerResumenes();
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "" + TAMANIO_LOTE_RECORRIDO))
+    @Query("SELECT new com.diw.practica.busqueda.LibroPopularidad(l.id, l.titulo, l.autor, l.vecesPrestado) "
+            + "FROM Libro l ORDER BY l.id")
+    Stream<LibroPopularidad> recorrerPopularidad();
+
+    // Recuentos agregados para las métricas: una sola consulta agrupada por cada lectura.
+
+    @Query("SELECT new com.diw.practica.metricas.Recuento(l.estadoLibro, COUNT(l)) "
+            + "FROM Libro l GROUP BY l.estadoLibro")
+    List<Recuento> contarPorEstado();
+
+    @Query("SELECT new com.diw.practica.metricas.Recuento(u.rol, COUNT(l)) "
+            + "FROM Libro l JOIN l.prestadoA u "
+            + "WHERE l.estadoLibro = com.diw.practica.model.Libro$Estado.PRESTADO GROUP BY u.rol")
+    List<Recuento> contarPrestamosPorRol();
+
+    // Recuentos completos con los que se reconcilian los agregados de informes en memoria.
+
+    @Query("SELECT new com.diw.practica.informes.RecuentoEditorial(l.editorial, COUNT(l)) "
+            + "FROM Libro l GROUP BY l.editorial")
+    List<RecuentoEditorial> contarPorEditorial();
+
+    @Query("SELECT new com.diw.practica.informes.RecuentoAnio(l.anioPublicacion, COUNT(l)) "
+            + "FROM Libro l GROUP BY l.anioPublicacion")
+    List<RecuentoAnio> contarPorAnioPublicacion();
+
+    @Query("SELECT new com.diw.practica.informes.PrestamosUsuario(u.id, u.nombre, u.rol, COUNT(l)) "
+            + "FROM Libro l JOIN l.prestadoA u "
+            + "WHERE l.estadoLibro = com.diw.practica.model.Libro$Estado.PRESTADO GROUP BY u.id, u.nombre, u.rol")
+    List<PrestamosUsuario> contarPrestamosPorUsuario();
+
+    // Transiciones de préstamo como una única sentencia condicionada: la comprobación de
+    // estado y la escritura son atómicas, así que entre peticiones concurrentes sobre el
+    // mismo libro solo una puede afectar a la fila. Devuelven el número de filas modificadas.
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Libro l SET l.estadoLibro = com.diw.practica.model.Libro$Estado.PRESTADO, "
+            + "l.prestadoA = :usuario, l.vecesPrestado = l.vecesPrestado + 1, l.version = l.version + 1 "
+            + "WHERE l.id = :libroId AND l.estadoLibro = com.diw.practica.model.Libro$Estado.DISPONIBLE "
+            + "AND EXISTS (SELECT u.id FROM Usuario u WHERE u = :usuario)")
+    int prestarSiDisponible(@Param("libroId") Integer libroId, @Param("usuario") Usuario usuario);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Libro l SET l.estadoLibro = com.diw.practica.model.Libro$Estado.DISPONIBLE, "
+            + "l.prestadoA = null, l.version = l.version + 1 "
+            + "WHERE l.id = :libroId AND l.estadoLibro = com.diw.practica.model.Libro$Estado.PRESTADO "
+            + "AND l.prestadoA = :usuario")
+    int devolverSiPrestadoA(@Param("libroId") Integer libroId, @Param("usuario") Usuario usuario);
+
+    // Transiciones de reserva: un libro RESERVADO tiene como prestadoA al usuario que lo espera
+    // y, si se le entregó desde la cola, en reservadoHasta el plazo para recogerlo.
+
+    /**
+     * Entrega a una reserva el libro que tiene el usuario, prestado o reservado, sin pasar por
+     * {@code DISPONIBLE}.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Libro l SET l.estadoLibro = com.diw.practica.model.Libro$Estado.RESERVADO, "
+            + "l.prestadoA = :reservador, l.reservadoHasta = :hasta, l.version = l.version + 1 "
+            + "WHERE l.id = :libroId AND l.estadoLibro = :estado AND l.prestadoA = :usuario")
+    int entregarAReservaSi(@Param("libroId") Integer libroId, @Param("estado") Libro.Estado estado,
+                           @Param("usuario") Usuario usuario, @Param("reservador") Usuario reservador,
+                           @Param("hasta") Instant hasta);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Libro l SET l.estadoLibro = com.diw.practica.model.Libro$Estado.PRESTADO, "
+            + "l.reservadoHasta = null, l.vecesPrestado = l.vecesPrestado + 1, l.version = l.version + 1 "
+            + "WHERE l.id = :libroId AND l.estadoLibro = com.diw.practica.model.Libro$Estado.RESERVADO "
+            + "AND l.prestadoA = :usuario")
+    int prestarSiReservadoPara(@Param("libroId") Integer libroId, @Param("usuario") Usuario usuario);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Libro l SET l.estadoLibro = com.diw.practica.model.Libro$Estado.DISPONIBLE, "
+            + "l.prestadoA = null, l.reservadoHasta = null, l.version = l.version + 1 "
+            + "WHERE l.id = :libroId AND l.estadoLibro = com.diw.practica.model.Libro$Estado.RESERVADO "
+            + "AND l.prestadoA = :usuario")
+    int liberarSiReservadoPara(@Param("libroId") Integer libroId, @Param("usuario") Usuario usuario);
+
+    /**
+     * Libros reservados cuyo plazo de recogida venció antes de {@code ahora}, los más antiguos primero.
+     */
+    @Query("SELECT l.id FROM Libro l WHERE l.estadoLibro = com.diw.practica.model.Libro$Estado.RESERVADO "
+            + "AND l.reservadoHasta < :ahora ORDER BY l.reservadoHasta")
+    List<Integer> reservasCaducadas(@Param("ahora") Instant ahora, Limit limite);
+
+    /**
+     * Indica si el libro sigue reservado con el plazo de recogida vencido.
+     */
+    @Query("SELECT COUNT(l) > 0 FROM Libro l WHERE l.id = :libroId "
+            + "AND l.estadoLibro = com.diw.practica.model.Libro$Estado.RESERVADO AND l.reservadoHasta < :ahora")
+    boolean reservaCaducada(@Param("libroId") Integer libroId, @Param("ahora") Instant ahora);
+
+    // Versiones de conjunto de las transiciones anteriores: una sentencia por lote de ids.
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Libro l SET l.estadoLibro = com.diw.practica.model.Libro$Estado.PRESTADO, "
+            + "l.prestadoA = :usuario, l.vecesPrestado = l.vecesPrestado + 1, l.version = l.version + 1 "
+            + "WHERE l.id IN :ids AND l.estadoLibro = com.diw.practica.model.Libro$Estado.DISPONIBLE")
+    int prestarSiDisponibles(@Param("ids") Collection<Integer> ids, @Param("usuario") Usuario usuario);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Libro l SET l.estadoLibro = com.diw.practica.model.Libro$Estado.DISPONIBLE, "
+            + "l.prestadoA = null, l.version = l.version + 1 "
+            + "WHERE l.id IN :ids AND l.estadoLibro = com.diw.practica.model.Libro$Estado.PRESTADO "
+            + "AND l.prestadoA = :usuario")
+    int devolverSiPrestadosA(@Param("ids") Collection<Integer> ids, @Param("usuario") Usuario usuario);
 }
@@ -0,0 +1,46 @@
+package com.diw.practica.repository;
+
+import com.diw.practica.model.Reserva;
+import com.diw.practica.reservas.EntradaReserva;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+public interface ReservaRepository extends JpaRepository<Reserva, Long> {
+
+    /**
+     * Selección de una reserva como {@link EntradaReserva}, sin cargar el libro ni el usuario.
+     */
+    String SELECT_ENTRADA = "SELECT new com.diw.practica.reservas.EntradaReserva("
+            + "r.id, r.libro.id, r.usuario.id, r.rol, r.solicitada) FROM Reserva r ";
+
+    @Query(SELECT_ENTRADA + "WHERE r.libro.id = :libroId AND r.usuario.id = :usuarioId")
+    Optional<EntradaReserva> entrada(@Param("libroId") Integer libroId, @Param("usuarioId") Integer usuarioId);
+
+    @Query(SELECT_ENTRADA + "WHERE r.usuario.id = :usuarioId ORDER BY r.id")
+    List<EntradaReserva> entradasDeUsuario(@Param("usuarioId") Integer usuarioId);
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "" + LibroRepository.TAMANIO_LOTE_RECORRIDO))
+    @Query(SELECT_ENTRADA + "ORDER BY r.id")
+    Stream<EntradaReserva> recorrerEntradas();
+
+    // Bajas por sentencia: el número de filas borradas indica si la reserva seguía vigente, sin
+    // leerla antes. Quien borra tiene bloqueada la fila del libro, así que las operaciones sobre
+    // la cola de un mismo libro se suceden de una en una.
+
+    @Modifying(flushAutomatically = true)
+    @Query("DELETE FROM Reserva r WHERE r.id = :id")
+    int eliminarSiExiste(@Param("id") Long id);
+
+    @Modifying(flushAutomatically = true)
+    @Query("DELETE FROM Reserva r WHERE r.libro.id = :libroId")
+    int eliminarDeLibro(@Param("libroId") Integer libroId);
+}
@@ -1,8 +1,15 @@
 package com.diw.practica.repository;
 
 import com.diw.practica.model.Usuario;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
 
 public interface UsuarioRepository extends JpaRepository<Usuario, Integer> {
 
+    @Query("SELECT u FROM Usuario u WHERE u.id > :ultimoId ORDER BY u.id")
+    List<Usuario> paginaPorId(@Param("ultimoId") int ultimoId, Limit limite);
 }
@@ -0,0 +1,64 @@
+package com.diw.practica.reservas;
+
+import com.diw.practica.beans.UsuarioService;
+import com.diw.practica.repository.LibroRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Retira periódicamente los libros reservados que nadie ha recogido dentro del plazo.
+ *
+ * <p>Cada pasada busca, por el índice de {@code reservadoHasta}, hasta
+ * {@value #MAXIMO_POR_PASADA} libros con el plazo vencido y los caduca uno a uno, cada uno en su
+ * transacción (ver {@link UsuarioService#caducarReserva}); si quedan más, se atienden en la
+ * pasada siguiente. Un fallo en un libro no detiene los demás.</p>
+ */
+@Component
+public class CaducidadReservas {
+
+    private static final Logger log = LoggerFactory.getLogger(CaducidadReservas.class);
+
+    /**
+     * Libros caducados que se atienden como máximo en cada pasada.
+     */
+    static final int MAXIMO_POR_PASADA = 500;
+
+    private final LibroRepository libroRepository;
+    private final UsuarioService usuarioService;
+
+    public CaducidadReservas(LibroRepository libroRepository, UsuarioService usuarioService) {
+        this.libroRepository = libroRepository;
+        this.usuarioService = usuarioService;
+    }
+
+    /**
+     * Caduca las reservas con el plazo de recogida vencido.
+     *
+     * @return número de reservas caducadas
+     */
+    @Scheduled(initialDelayString = "${diw.reservas.caducidad-ms:60000}",
+            fixedDelayString = "${diw.reservas.caducidad-ms:60000}")
+    public int caducar() {
+        List<Integer> caducadas = libroRepository.reservasCaducadas(Instant.now(), Limit.of(MAXIMO_POR_PASADA));
+        int atendidas = 0;
+        for (Integer libroId : caducadas) {
+            try {
+                if (usuarioService.caducarReserva(libroId)) {
+                    atendidas++;
+                }
+            } catch (RuntimeException e) {
+                log.warn("No se pudo caducar la reserva del libro {}", libroId, e);
+            }
+        }
+        if (atendidas > 0) {
+            log.info("Reservas caducadas: {}", atendidas);
+        }
+        return atendidas;
+    }
+}
@@ -0,0 +1,237 @@
+package com.diw.practica.reservas;
+
+import com.diw.practica.repository.ReservaRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Colas de reservas por libro en memoria, ordenadas por {@link EntradaReserva#PRIORIDAD}.
+ *
+ * <p>La tabla {@code reserva} es la fuente de verdad; esta estructura evita consultarla en cada
+ * devolución, que en la mayoría de libros no tiene a nadie esperando. Cada cola es un conjunto
+ * ordenado concurrente: consultar o retirar la primera reserva y añadir o quitar una cualquiera
+ * cuesta O(log n) en el número de reservas del libro.</p>
+ *
+ * <p>Los servicios modifican la cola dentro de la transacción que modifica la tabla, con la fila
+ * del libro bloqueada, y el cambio se deshace si la transacción no se confirma. Así la cola
+ * contiene siempre, como mínimo, las reservas confirmadas del libro; si contiene alguna de más
+ * (de una transacción aún sin terminar), quien la atiende la descubre al no poder borrar su fila
+ * y la descarta con {@link #descartarObsoleta}.</p>
+ *
+ * <p>Las reservas guardadas se cargan al arrancar, antes que el servidor web: una devolución que
+ * llegue con la cola aún vacía dejaría el libro disponible saltándose a quien lo espera.</p>
+ */
+@Component
+public class ColaReservas implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(ColaReservas.class);
+
+    public static final String PENDIENTES = "biblioteca.reservas.pendientes";
+
+    private final ReservaRepository reservaRepository;
+    private final TransactionTemplate transaccion;
+
+    /**
+     * Id de libro → reservas pendientes. Las colas vacías se eliminan; todas las altas y bajas se
+     * hacen con {@code compute} para no perder una alta sobre una cola que se está retirando.
+     */
+    private final ConcurrentHashMap<Integer, NavigableSet<EntradaReserva>> colas = new ConcurrentHashMap<>();
+    private final AtomicInteger total = new AtomicInteger();
+
+    private volatile boolean cargada;
+
+    public ColaReservas(ReservaRepository reservaRepository, PlatformTransactionManager transactionManager,
+                        MeterRegistry registry) {
+        this.reservaRepository = reservaRepository;
+        this.transaccion = new TransactionTemplate(transactionManager);
+        this.transaccion.setReadOnly(true);
+        Gauge.builder(PENDIENTES, total, AtomicInteger::get)
+                .description("Reservas pendientes en todas las colas")
+                .register(registry);
+    }
+
+    /**
+     * Carga las reservas guardadas al arrancar. Se suman a las que se hayan podido anotar ya.
+     */
+    @Override
+    public void start() {
+        long inicio = System.nanoTime();
+        transaccion.executeWithoutResult(estado -> {
+            try (Stream<EntradaReserva> entradas = reservaRepository.recorrerEntradas()) {
+                entradas.forEach(this::anadir);
+            }
+        });
+        cargada = true;
+        log.info("Colas de reservas cargadas: {} reservas de {} libros en {} ms",
+                total.get(), colas.size(), (System.nanoTime() - inicio) / 1_000_000);
+    }
+
+    @Override
+    public void stop() {
+        cargada = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return cargada;
+    }
+
+    /**
+     * Se carga antes de que arranque el servidor web ({@code DEFAULT_PHASE - 2048}), de modo que
+     * ninguna petición ve la cola sin las reservas guardadas.
+     */
+    @Override
+    public int getPhase() {
+        return DEFAULT_PHASE - 4096;
+    }
+
+    /**
+     * Indica si alguien espera el libro.
+     *
+     * @param libroId libro
+     * @return {@code true} si su cola no está vacía
+     */
+    public boolean tieneReservas(Integer libroId) {
+        return colas.containsKey(libroId);
+    }
+
+    /**
+     * Primera reserva de la cola del libro.
+     *
+     * @param libroId libro
+     * @return reserva que se atendería ahora, si hay alguna
+     */
+    public Optional<EntradaReserva> primera(Integer libroId) {
+        NavigableSet<EntradaReserva> cola = colas.get(libroId);
+        if (cola == null) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(cola.isEmpty() ? null : cola.first());
+    }
+
+    /**
+     * Posición de una reserva en su cola, desde 1. Cuesta O(k), con k las reservas que la preceden.
+     *
+     * @param entrada reserva
+     * @return posición, o 0 si la reserva ya no está en la cola
+     */
+    public int posicion(EntradaReserva entrada) {
+        NavigableSet<EntradaReserva> cola = colas.get(entrada.libroId());
+        if (cola == null || !cola.contains(entrada)) {
+            return 0;
+        }
+        return cola.headSet(entrada, false).size() + 1;
+    }
+
+    /**
+     * Número de reservas pendientes de un libro.
+     *
+     * @param libroId libro
+     * @return tamaño de su cola
+     */
+    public int pendientes(Integer libroId) {
+        NavigableSet<EntradaReserva> cola = colas.get(libroId);
+        return cola != null ? cola.size() : 0;
+    }
+
+    /**
+     * Añade una reserva recién guardada; se retira si la transacción en curso no se confirma.
+     *
+     * @param entrada reserva
+     */
+    public void anotar(EntradaReserva entrada) {
+        anadir(entrada);
+        alDeshacer(() -> quitar(entrada));
+    }
+
+    /**
+     * Retira una reserva recién borrada; se repone si la transacción en curso no se confirma.
+     *
+     * @param entrada reserva
+     */
+    public void retirar(EntradaReserva entrada) {
+        if (quitar(entrada)) {
+            alDeshacer(() -> anadir(entrada));
+        }
+    }
+
+    /**
+     * Retira todas las reservas de un libro dado de baja; se reponen si la transacción no se confirma.
+     *
+     * @param libroId libro
+     */
+    public void retirarTodas(Integer libroId) {
+        NavigableSet<EntradaReserva> cola = colas.remove(libroId);
+        if (cola != null) {
+            total.addAndGet(-cola.size());
+            List<EntradaReserva> retiradas = List.copyOf(cola);
+            alDeshacer(() -> retiradas.forEach(this::anadir));
+        }
+    }
+
+    /**
+     * Retira una reserva que ya no existe en la tabla, sin reponerla pase lo que pase.
+     *
+     * @param entrada reserva
+     */
+    public void descartarObsoleta(EntradaReserva entrada) {
+        quitar(entrada);
+    }
+
+    private void anadir(EntradaReserva entrada) {
+        colas.compute(entrada.libroId(), (libroId, cola) -> {
+            NavigableSet<EntradaReserva> destino = cola != null
+                    ? cola
+                    : new ConcurrentSkipListSet<>(EntradaReserva.PRIORIDAD);
+            if (destino.add(entrada)) {
+                total.incrementAndGet();
+            }
+            return destino;
+        });
+    }
+
+    private boolean quitar(EntradaReserva entrada) {
+        boolean[] quitada = {false};
+        colas.computeIfPresent(entrada.libroId(), (libroId, cola) -> {
+            if (cola.remove(entrada)) {
+                total.decrementAndGet();
+                quitada[0] = true;
+            }
+            return cola.isEmpty() ? null : cola;
+        });
+        return quitada[0];
+    }
+
+    /**
+     * Ejecuta la acción si la transacción en curso termina sin confirmarse.
+     */
+    private static void alDeshacer(Runnable accion) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int estado) {
+                if (estado != STATUS_COMMITTED) {
+                    accion.run();
+                }
+            }
+        });
+    }
+}
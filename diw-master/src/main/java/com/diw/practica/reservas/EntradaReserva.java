@@ -0,0 +1,27 @@
+package com.diw.practica.reservas;
+
+import com.diw.practica.model.Usuario;
+
+import java.time.Instant;
+import java.util.Comparator;
+
+/**
+ * Reserva tal como se guarda en la cola en memoria, sin entidades.
+ *
+ * @param id         identificador de la reserva
+ * @param libroId    libro reservado
+ * @param usuarioId  usuario que reserva
+ * @param rol        rol del usuario al reservar
+ * @param solicitada momento de la solicitud
+ * @since 1.2
+ */
+public record EntradaReserva(Long id, Integer libroId, Integer usuarioId, Usuario.Rol rol, Instant solicitada) {
+
+    /**
+     * Orden de atención: rol en el orden de {@link Usuario.Rol}, después antigüedad y, a igualdad, id.
+     */
+    public static final Comparator<EntradaReserva> PRIORIDAD = Comparator
+            .comparing(EntradaReserva::rol)
+            .thenComparing(EntradaReserva::solicitada)
+            .thenComparing(EntradaReserva::id);
+}
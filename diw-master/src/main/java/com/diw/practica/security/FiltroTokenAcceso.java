@@ -0,0 +1,76 @@
+package com.diw.practica.security;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.context.SecurityContextHolderStrategy;
+import org.springframework.security.web.context.RequestAttributeSecurityContextRepository;
+import org.springframework.security.web.context.SecurityContextRepository;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.Optional;
+
+/**
+ * Autentica las peticiones con {@code Authorization: Bearer} mediante {@link TokensAcceso}.
+ *
+ * <p>Si la cabecera no es de tipo {@code Bearer}, la petición sigue sin cambios hacia la
+ * autenticación básica. Un token inválido o caducado se rechaza con {@code 401} y
+ * {@code WWW-Authenticate: Bearer error="invalid_token"}, sin probar otros mecanismos.</p>
+ *
+ * <p>No se aplica a la ruta de emisión de tokens, que exige autenticación básica: un token no puede
+ * renovarse a sí mismo indefinidamente.</p>
+ */
+public class FiltroTokenAcceso extends OncePerRequestFilter {
+
+    private static final String PREFIJO = TokensAcceso.TIPO + " ";
+
+    private final TokensAcceso tokens;
+    private final String rutaEmision;
+    private final SecurityContextHolderStrategy contextos = SecurityContextHolder.getContextHolderStrategy();
+    // Como la autenticación básica: el contexto se conserva en la petición para los despachos
+    // asíncronos (exportaciones en streaming, SSE), sin crear sesión.
+    private final SecurityContextRepository repositorio = new RequestAttributeSecurityContextRepository();
+
+    /**
+     * @param tokens      verificador de tokens
+     * @param rutaEmision ruta del endpoint que emite los tokens
+     */
+    public FiltroTokenAcceso(TokensAcceso tokens, String rutaEmision) {
+        this.tokens = tokens;
+        this.rutaEmision = rutaEmision;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String cabecera = request.getHeader(HttpHeaders.AUTHORIZATION);
+        if (cabecera == null || !cabecera.regionMatches(true, 0, PREFIJO, 0, PREFIJO.length())) {
+            chain.doFilter(request, response);
+            return;
+        }
+        Optional<Authentication> autenticacion = tokens.verificar(cabecera.substring(PREFIJO.length()).trim());
+        if (autenticacion.isEmpty()) {
+            contextos.clearContext();
+            response.setHeader(HttpHeaders.WWW_AUTHENTICATE, TokensAcceso.TIPO + " error=\"invalid_token\"");
+            // Sin sendError: el despacho a /error respondería con el desafío de la autenticación básica.
+            response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
+            return;
+        }
+        SecurityContext contexto = contextos.createEmptyContext();
+        contexto.setAuthentication(autenticacion.get());
+        contextos.setContext(contexto);
+        repositorio.saveContext(contexto, request, response);
+        chain.doFilter(request, response);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return rutaEmision.equals(request.getServletPath());
+    }
+}
@@ -1,21 +1,29 @@
 package com.diw.practica.security;
 
+import com.diw.practica.contoller.AutenticacionController;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.swagger.v3.oas.annotations.enums.SecuritySchemeType;
+import io.swagger.v3.oas.annotations.security.SecurityScheme;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.Customizer;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
+import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.core.userdetails.User;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.provisioning.InMemoryUserDetailsManager;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.authentication.www.BasicAuthenticationFilter;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.CorsConfigurationSource;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
 
+import java.time.Duration;
 import java.util.List;
 
 /**
@@ -23,12 +31,14 @@ import java.util.List;
  *
  * <p>Provee beans para:
  * <ul>
- *   <li>Un {@link PasswordEncoder} basado en {@link BCryptPasswordEncoder}.</li>
+ *   <li>Un {@link PasswordEncoder} basado en {@link BCryptPasswordEncoder}, opcionalmente con una
+ *       caché de comprobaciones correctas ({@link VerificacionesCacheadas}).</li>
  *   <li>Un {@link UserDetailsService} en memoria con dos usuarios de ejemplo
  *       (roles ADMIN y USER).</li>
  *   <li>Un {@link SecurityFilterChain} que define las reglas de autorización,
  *       permite el acceso público a los recursos de Swagger/OpenAPI y requiere
- *       autenticación para el resto de endpoints.</li>
+ *       autenticación para el resto de endpoints, con token de acceso ({@code Bearer})
+ *       o autenticación básica.</li>
  * </ul>
  *
  * <p>La clase está anotada con {@code @EnableWebSecurity} y {@code @EnableMethodSecurity}
@@ -39,19 +49,32 @@ import java.util.List;
 @Configuration
 @EnableWebSecurity
 @EnableMethodSecurity
+@SecurityScheme(name = "bearerAuth", type = SecuritySchemeType.HTTP, scheme = "bearer", bearerFormat = "JWT",
+        description = "Token obtenido en POST /auth/token")
+@SecurityScheme(name = "basicAuth", type = SecuritySchemeType.HTTP, scheme = "basic")
 public class SecurityConfig {
 
     /**
      * Crea y configura un {@link PasswordEncoder} que utiliza el algoritmo BCrypt.
      *
      * <p>BCrypt es recomendado para el almacenamiento seguro de contraseñas por su
-     * resistencia a ataques por fuerza bruta y su uso de sal interna.
+     * resistencia a ataques por fuerza bruta y su uso de sal interna. Por eso mismo es caro, y con
+     * autenticación básica se paga en cada petición: con {@code diw.seguridad.cache-basic.habilitada}
+     * las comprobaciones correctas se recuerdan durante un tiempo acotado.
      *
+     * @param registry registro de métricas de la caché
+     * @param cache    si se recuerdan las comprobaciones correctas
+     * @param maximo   número máximo de credenciales recordadas
+     * @param duracion tiempo durante el que se recuerda cada comprobación
      * @return un {@link PasswordEncoder} basado en BCrypt
      */
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public PasswordEncoder passwordEncoder(MeterRegistry registry,
+                                           @Value("${diw.seguridad.cache-basic.habilitada:true}") boolean cache,
+                                           @Value("${diw.seguridad.cache-basic.maximo:1000}") long maximo,
+                                           @Value("${diw.seguridad.cache-basic.duracion:5m}") Duration duracion) {
+        PasswordEncoder bcrypt = new BCryptPasswordEncoder();
+        return cache ? new VerificacionesCacheadas(bcrypt, maximo, duracion, registry) : bcrypt;
     }
 
     /**
@@ -90,17 +113,21 @@ public class SecurityConfig {
      * <ul>
      *   <li>Permite acceso público a los recursos estáticos y endpoints relacionados con Swagger/OpenAPI
      *       para facilitar el UI de la documentación ({@code /swagger-ui/**}, {@code /v3/api-docs/**}, etc.).</li>
+     *   <li>Reserva los endpoints de actuator ({@code /actuator/**}) al rol {@code ADMIN}.</li>
      *   <li>Requiere autenticación para cualquier otra petición.</li>
-     *   <li>Habilita autenticación HTTP básica y desactiva CSRF (útil para APIs; revisar según necesidades).</li>
+     *   <li>Acepta tokens de acceso ({@link FiltroTokenAcceso}) antes que la autenticación HTTP básica;
+     *       {@value AutenticacionController#RUTA_TOKEN} solo admite la básica.</li>
+     *   <li>No crea sesiones y desactiva CSRF (útil para APIs; revisar según necesidades).</li>
      * </ul>
      *
-     * @param http el builder {@link HttpSecurity} provisto por Spring Security
+     * @param http   el builder {@link HttpSecurity} provisto por Spring Security
+     * @param tokens emisor y verificador de tokens de acceso
      * @return la instancia construida de {@link SecurityFilterChain}
      * @throws Exception si ocurre un error durante la configuración del filtro de seguridad
      */
 
     @Bean
-    public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
+    public SecurityFilterChain securityFilterChain(HttpSecurity http, TokensAcceso tokens) throws Exception {
         http
                 .cors(Customizer.withDefaults())
                 .authorizeHttpRequests(auth -> auth
@@ -114,10 +141,15 @@ public class SecurityConfig {
                                         "/webjars/**",
                                         "/swagger-resources/**"
                                 ).permitAll()
+// Actuator (métricas, SQL normalizado de la aplicación, operaciones de reinicio): solo administradores
+                                .requestMatchers("/actuator/**").hasRole("ADMIN")
 // Resto de endpoints requieren autenticación
                                 .anyRequest().authenticated()
                 )
+                .addFilterBefore(new FiltroTokenAcceso(tokens, AutenticacionController.RUTA_TOKEN),
+                        BasicAuthenticationFilter.class)
                 .httpBasic(Customizer.withDefaults())
+                .sessionManagement(sesiones -> sesiones.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
                 .csrf(csrf -> csrf.disable()); // para APIs; ajustar según necesidad
 
         return http.build();
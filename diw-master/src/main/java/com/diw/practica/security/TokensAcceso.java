@@ -0,0 +1,181 @@
+package com.diw.practica.security;
+
+import com.diw.practica.dto.TokenAcceso;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Emisión y verificación de tokens de acceso sin estado.
+ *
+ * <p>Los tokens son JWT firmados con HMAC-SHA256 ({@code HS256}) que llevan el usuario, sus roles
+ * y la caducidad. Verificarlos cuesta un HMAC y la lectura de un JSON pequeño, frente a los
+ * decenas de milisegundos de BCrypt que paga cada petición con autenticación básica; tampoco se
+ * guarda nada en el servidor.</p>
+ *
+ * <p>Solo se aceptan tokens con exactamente la cabecera que se emite, de modo que no puede
+ * elegirse otro algoritmo ni {@code none}. La firma se compara en tiempo constante.</p>
+ *
+ * <p>La clave se lee de {@code diw.tokens.secreto} en Base64 (al menos 32 bytes). Sin ella la
+ * aplicación no arranca, salvo con {@code diw.tokens.clave-aleatoria=true} (lo activa el perfil
+ * {@code embebida}): entonces se genera una al arrancar, los tokens dejan de valer al reiniciar y
+ * no sirven entre varias instancias.</p>
+ */
+@Component
+public class TokensAcceso {
+
+    private static final Logger log = LoggerFactory.getLogger(TokensAcceso.class);
+
+    public static final String TIPO = "Bearer";
+
+    private static final String ALGORITMO = "HmacSHA256";
+    private static final int LONGITUD_MINIMA_CLAVE = 32;
+    private static final Base64.Encoder BASE64URL = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder BASE64URL_DECODER = Base64.getUrlDecoder();
+    private static final String CABECERA = BASE64URL.encodeToString(
+            "{\"alg\":\"HS256\",\"typ\":\"JWT\"}".getBytes(StandardCharsets.US_ASCII));
+
+    /**
+     * Contenido del token: usuario ({@code sub}), autoridades, emisión y caducidad en segundos
+     * desde la época.
+     */
+    private record Contenido(String sub, List<String> roles, long iat, long exp) {
+    }
+
+    private final ObjectMapper objectMapper;
+    private final SecretKeySpec clave;
+    private final Mac prototipo;
+    private final Duration duracion;
+
+    public TokensAcceso(ObjectMapper objectMapper,
+                        @Value("${diw.tokens.secreto:}") String secreto,
+                        @Value("${diw.tokens.duracion:15m}") Duration duracion,
+                        @Value("${diw.tokens.clave-aleatoria:false}") boolean claveAleatoria) {
+        this.objectMapper = objectMapper;
+        this.duracion = duracion;
+        this.clave = new SecretKeySpec(clave(secreto, claveAleatoria), ALGORITMO);
+        this.prototipo = crearMac(this.clave);
+    }
+
+    /**
+     * Emite un token para un usuario ya autenticado.
+     *
+     * @param autenticacion autenticación del usuario
+     * @return token y caducidad
+     */
+    public TokenAcceso emitir(Authentication autenticacion) {
+        Instant ahora = Instant.now();
+        Instant expira = ahora.plus(duracion);
+        Contenido contenido = new Contenido(autenticacion.getName(),
+                AuthorityUtils.authorityListToSet(autenticacion.getAuthorities()).stream().sorted().toList(),
+                ahora.getEpochSecond(), expira.getEpochSecond());
+        String firmado;
+        try {
+            firmado = CABECERA + "." + BASE64URL.encodeToString(objectMapper.writeValueAsBytes(contenido));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("No se pudo serializar el token", e);
+        }
+        String token = firmado + "." + BASE64URL.encodeToString(firmar(firmado));
+        return new TokenAcceso(token, TIPO, duracion.toSeconds(), expira);
+    }
+
+    /**
+     * Verifica un token y devuelve la autenticación que representa.
+     *
+     * @param token token recibido en {@code Authorization: Bearer}
+     * @return autenticación del usuario, o vacío si el token es inválido o ha caducado
+     */
+    public Optional<Authentication> verificar(String token) {
+        int primero = token.indexOf('.');
+        int segundo = token.indexOf('.', primero + 1);
+        if (primero < 0 || segundo < 0 || token.indexOf('.', segundo + 1) >= 0
+                || !token.startsWith(CABECERA) || primero != CABECERA.length()) {
+            return Optional.empty();
+        }
+        String firmado = token.substring(0, segundo);
+        Contenido contenido;
+        try {
+            byte[] firma = BASE64URL_DECODER.decode(token.substring(segundo + 1));
+            if (!MessageDigest.isEqual(firma, firmar(firmado))) {
+                return Optional.empty();
+            }
+            contenido = objectMapper.readValue(BASE64URL_DECODER.decode(token.substring(primero + 1, segundo)),
+                    Contenido.class);
+        } catch (IllegalArgumentException | IOException e) {
+            return Optional.empty();
+        }
+        if (contenido.sub() == null || Instant.now().getEpochSecond() >= contenido.exp()) {
+            return Optional.empty();
+        }
+        List<GrantedAuthority> autoridades = contenido.roles() != null
+                ? AuthorityUtils.createAuthorityList(contenido.roles())
+                : List.of();
+        return Optional.of(UsernamePasswordAuthenticationToken.authenticated(contenido.sub(), null, autoridades));
+    }
+
+    private byte[] firmar(String firmado) {
+        Mac mac;
+        try {
+            // Mac no es seguro entre hilos; clonar el prototipo evita buscar el proveedor cada vez.
+            mac = (Mac) prototipo.clone();
+        } catch (CloneNotSupportedException e) {
+            mac = crearMac(clave);
+        }
+        return mac.doFinal(firmado.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static byte[] clave(String secreto, boolean claveAleatoria) {
+        if (secreto == null || secreto.isBlank()) {
+            if (!claveAleatoria) {
+                throw new IllegalStateException("diw.tokens.secreto no está configurado (variable de entorno "
+                        + "DIW_TOKENS_SECRETO); solo el perfil embebida admite una clave aleatoria");
+            }
+            log.warn("diw.tokens.secreto no está configurado: se genera una clave aleatoria y los tokens "
+                    + "no sobrevivirán a un reinicio");
+            byte[] clave = new byte[LONGITUD_MINIMA_CLAVE];
+            new SecureRandom().nextBytes(clave);
+            return clave;
+        }
+        byte[] clave;
+        try {
+            clave = Base64.getDecoder().decode(secreto.trim());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalStateException("diw.tokens.secreto no está en Base64", e);
+        }
+        if (clave.length < LONGITUD_MINIMA_CLAVE) {
+            throw new IllegalStateException("diw.tokens.secreto debe tener al menos "
+                    + LONGITUD_MINIMA_CLAVE + " bytes en Base64");
+        }
+        return clave;
+    }
+
+    private static Mac crearMac(SecretKeySpec clave) {
+        try {
+            Mac mac = Mac.getInstance(ALGORITMO);
+            mac.init(clave);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HMAC-SHA256 no disponible", e);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.diw.practica.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Base64;
+
+/**
+ * {@link PasswordEncoder} que recuerda durante un tiempo las comprobaciones de contraseña correctas.
+ *
+ * <p>Pensado para los clientes que siguen usando autenticación básica: cada petición vuelve a
+ * enviar la contraseña y, sin esta caché, paga una comprobación BCrypt completa. Solo se guardan
+ * los aciertos; una contraseña incorrecta siempre se comprueba con el codificador real, así que no
+ * se abarata un ataque por fuerza bruta.</p>
+ *
+ * <p>La contraseña no se guarda: la clave de cada entrada es un HMAC-SHA256 de la contraseña
+ * codificada y la recibida, con una clave aleatoria que solo existe en memoria. Como incluye la
+ * contraseña codificada, un cambio de contraseña invalida las entradas antiguas. El número de
+ * entradas y su duración están acotados; las estadísticas se publican como
+ * {@code cache.gets{cache="credencialesBasic"}}.</p>
+ */
+public class VerificacionesCacheadas implements PasswordEncoder {
+
+    static final String NOMBRE = "credencialesBasic";
+
+    private static final String ALGORITMO = "HmacSHA256";
+
+    private final PasswordEncoder codificador;
+    private final Cache<String, Boolean> verificadas;
+    private final SecretKeySpec clave;
+    private final Mac prototipo;
+
+    /**
+     * @param codificador codificador real de las contraseñas
+     * @param maximo      número máximo de credenciales recordadas
+     * @param duracion    tiempo durante el que se recuerda una comprobación
+     * @param registry    registro de métricas
+     */
+    public VerificacionesCacheadas(PasswordEncoder codificador, long maximo, Duration duracion, MeterRegistry registry) {
+        this.codificador = codificador;
+        this.verificadas = Caffeine.newBuilder()
+                .maximumSize(maximo)
+                .expireAfterWrite(duracion)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(registry, verificadas, NOMBRE);
+        byte[] aleatoria = new byte[32];
+        new SecureRandom().nextBytes(aleatoria);
+        this.clave = new SecretKeySpec(aleatoria, ALGORITMO);
+        this.prototipo = crearMac(clave);
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return codificador.encode(rawPassword);
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        if (rawPassword == null || encodedPassword == null) {
+            return codificador.matches(rawPassword, encodedPassword);
+        }
+        String huella = huella(rawPassword, encodedPassword);
+        if (verificadas.getIfPresent(huella) != null) {
+            return true;
+        }
+        boolean correcta = codificador.matches(rawPassword, encodedPassword);
+        if (correcta) {
+            verificadas.put(huella, Boolean.TRUE);
+        }
+        return correcta;
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return codificador.upgradeEncoding(encodedPassword);
+    }
+
+    private String huella(CharSequence rawPassword, String encodedPassword) {
+        Mac mac;
+        try {
+            mac = (Mac) prototipo.clone();
+        } catch (CloneNotSupportedException e) {
+            mac = crearMac(clave);
+        }
+        mac.update(encodedPassword.getBytes(StandardCharsets.UTF_8));
+        mac.update((byte) 0);
+        return Base64.getEncoder().encodeToString(mac.doFinal(rawPassword.toString().getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static Mac crearMac(SecretKeySpec clave) {
+        try {
+            Mac mac = Mac.getInstance(ALGORITMO);
+            mac.init(clave);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HMAC-SHA256 no disponible", e);
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.diw.practica.sql;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.Objects;
+
+/**
+ * Delimita cada petición HTTP para que {@link PerfiladorSql} cuente sus sentencias y detecte los
+ * patrones N+1.
+ */
+@Component
+public class FiltroPerfilSql extends OncePerRequestFilter {
+
+    private final PerfiladorSql perfilador;
+
+    public FiltroPerfilSql(PerfiladorSql perfilador) {
+        this.perfilador = Objects.requireNonNull(perfilador, "perfilador no puede ser null");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        perfilador.iniciarPeticion(request.getMethod() + " " + request.getRequestURI());
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            perfilador.terminarPeticion();
+        }
+    }
+}
@@ -0,0 +1,384 @@
+package com.diw.practica.sql;
+
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.listener.MethodExecutionContext;
+import net.ttddyy.dsproxy.listener.MethodExecutionListener;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+import net.ttddyy.dsproxy.proxy.ProxyJdbcObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.sql.ResultSet;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Perfilador de las sentencias SQL que atraviesan el {@code DataSource}.
+ *
+ * <p>Recibe cada ejecución del proxy JDBC (ver {@link com.diw.practica.config.PerfiladoSqlConfig}) y
+ * anota su duración, las filas leídas o modificadas y el método de la aplicación que la lanzó. Con eso:</p>
+ *
+ * <ul>
+ *     <li>registra en el log las sentencias que superan {@code diw.sql.umbral-lento-ms}, con una tasa de
+ *     muestreo {@code diw.sql.muestreo-lentas} entre 0 y 1;</li>
+ *     <li>acumula estadísticas por sentencia normalizada, que se consultan en
+ *     {@code /actuator/sentenciaslentas};</li>
+ *     <li>avisa de las peticiones HTTP que repiten una misma sentencia más de
+ *     {@code diw.sql.maximo-similares} veces (posible N+1).</li>
+ * </ul>
+ *
+ * <p>Las filas de una consulta se cuentan al recorrer su {@link ResultSet}, así que la sentencia se da por
+ * terminada cuando este se cierra. El estado por hilo no se comparte: no hay bloqueos en el camino de
+ * cada sentencia.</p>
+ */
+@Component
+public class PerfiladorSql implements QueryExecutionListener, MethodExecutionListener {
+
+    private static final Logger log = LoggerFactory.getLogger(PerfiladorSql.class);
+
+    /**
+     * Sentencias normalizadas distintas que se acumulan; las nuevas a partir de ahí no se contabilizan.
+     */
+    static final int MAXIMO_SENTENCIAS = 1_000;
+
+    /**
+     * Sospechas de N+1 que se conservan, de la más reciente a la más antigua.
+     */
+    static final int MAXIMO_SOSPECHAS = 100;
+
+    /**
+     * Consultas abiertas por hilo a partir de las cuales se dan por cerradas las pendientes, por si
+     * algún {@link ResultSet} se libera sin llamar a {@code close()}.
+     */
+    private static final int MAXIMO_ABIERTAS = 64;
+
+    private static final String INICIO = PerfiladorSql.class.getName() + ".inicio";
+    private static final String PAQUETE_APLICACION = "com.diw.practica.";
+    private static final String PAQUETE_PROPIO = PerfiladorSql.class.getPackageName() + ".";
+    private static final String DESCONOCIDO = "desconocido";
+    private static final StackWalker PILA = StackWalker.getInstance();
+
+    private static final Pattern ESPACIOS = Pattern.compile("\\s+");
+    private static final Pattern CADENAS = Pattern.compile("'(?:[^']|'')*'");
+    private static final Pattern NUMEROS = Pattern.compile("\\b\\d+(?:\\.\\d+)?\\b");
+    private static final Pattern LISTAS_IN = Pattern.compile("(?i)\\bin\\s*\\(\\s*\\?(?:\\s*,\\s*\\?)*\\s*\\)");
+
+    private final long umbralNanos;
+    private final double muestreo;
+    private final int maximoSimilares;
+
+    private final ThreadLocal<Map<Object, RegistroSentencia>> abiertas = ThreadLocal.withInitial(IdentityHashMap::new);
+    private final ThreadLocal<PerfilPeticion> peticion = new ThreadLocal<>();
+    private final Map<String, String> normalizadas = new ConcurrentHashMap<>();
+    private final Map<String, Acumulado> acumulados = new ConcurrentHashMap<>();
+    private final Deque<SospechaNMasUno> sospechas = new ConcurrentLinkedDeque<>();
+
+    public PerfiladorSql(@Value("${diw.sql.umbral-lento-ms:100}") long umbralMs,
+                         @Value("${diw.sql.muestreo-lentas:1.0}") double muestreo,
+                         @Value("${diw.sql.maximo-similares:10}") int maximoSimilares) {
+        if (umbralMs < 0) {
+            throw new IllegalArgumentException("diw.sql.umbral-lento-ms no puede ser negativo");
+        }
+        if (muestreo < 0 || muestreo > 1) {
+            throw new IllegalArgumentException("diw.sql.muestreo-lentas debe estar entre 0 y 1");
+        }
+        if (maximoSimilares < 1) {
+            throw new IllegalArgumentException("diw.sql.maximo-similares debe ser mayor que 0");
+        }
+        this.umbralNanos = umbralMs * 1_000_000;
+        this.muestreo = muestreo;
+        this.maximoSimilares = maximoSimilares;
+    }
+
+    @Override
+    public void beforeQuery(ExecutionInfo info, List<QueryInfo> consultas) {
+        info.addCustomValue(INICIO, System.nanoTime());
+    }
+
+    @Override
+    public void afterQuery(ExecutionInfo info, List<QueryInfo> consultas) {
+        Long inicio = info.getCustomValue(INICIO, Long.class);
+        long nanos = inicio != null ? System.nanoTime() - inicio : info.getElapsedTime() * 1_000_000;
+        String sql = consultas.size() == 1
+                ? consultas.get(0).getQuery()
+                : consultas.stream().map(QueryInfo::getQuery).collect(Collectors.joining("; "));
+        Object resultado = info.getResult();
+        RegistroSentencia registro = new RegistroSentencia(sql, llamante(), nanos,
+                info.isBatch() ? info.getBatchSize() : 1, filasModificadas(resultado));
+
+        if (resultado instanceof ResultSet && info.getThrowable() == null) {
+            Map<Object, RegistroSentencia> pendientes = abiertas.get();
+            if (pendientes.size() >= MAXIMO_ABIERTAS) {
+                cerrarAbiertas();
+            }
+            pendientes.put(objetivo(resultado), registro);
+        } else {
+            cerrar(registro);
+        }
+    }
+
+    @Override
+    public void beforeMethod(MethodExecutionContext contexto) {
+    }
+
+    @Override
+    public void afterMethod(MethodExecutionContext contexto) {
+        if (!(contexto.getTarget() instanceof ResultSet)) {
+            return;
+        }
+        String metodo = contexto.getMethod().getName();
+        if ("next".equals(metodo)) {
+            if (Boolean.TRUE.equals(contexto.getResult())) {
+                RegistroSentencia registro = abiertas.get().get(contexto.getTarget());
+                if (registro != null) {
+                    registro.filas++;
+                }
+            }
+        } else if ("close".equals(metodo)) {
+            RegistroSentencia registro = abiertas.get().remove(contexto.getTarget());
+            if (registro != null) {
+                cerrar(registro);
+            }
+        }
+    }
+
+    /**
+     * Empieza a contar las sentencias de una petición en el hilo actual.
+     *
+     * @param descripcion método y ruta de la petición
+     */
+    void iniciarPeticion(String descripcion) {
+        peticion.set(new PerfilPeticion(descripcion));
+    }
+
+    /**
+     * Termina la petición del hilo actual y avisa de las sentencias que se repitieron demasiado.
+     */
+    void terminarPeticion() {
+        cerrarAbiertas();
+        PerfilPeticion perfil = peticion.get();
+        peticion.remove();
+        if (perfil == null) {
+            return;
+        }
+        perfil.porSentencia.forEach((sql, repeticion) -> {
+            if (repeticion.veces > maximoSimilares) {
+                log.warn("Posible N+1 en {}: {} ejecuciones desde {} de: {}",
+                        perfil.descripcion, repeticion.veces, repeticion.llamante, sql);
+                sospechas.addFirst(new SospechaNMasUno(Instant.now(), perfil.descripcion,
+                        repeticion.llamante, sql, repeticion.veces));
+                while (sospechas.size() > MAXIMO_SOSPECHAS) {
+                    sospechas.pollLast();
+                }
+            }
+        });
+    }
+
+    /**
+     * Sentencias ordenadas de mayor a menor tiempo de la ejecución más lenta.
+     *
+     * @param n número máximo de sentencias
+     * @return resúmenes; nunca {@code null}
+     */
+    public List<ResumenSentencia> masLentas(int n) {
+        return resumenes(Comparator.comparingDouble(ResumenSentencia::maximoMs).reversed(), n);
+    }
+
+    /**
+     * Sentencias ordenadas de mayor a menor tiempo acumulado: las que más conviene optimizar aunque
+     * cada ejecución sea rápida.
+     *
+     * @param n número máximo de sentencias
+     * @return resúmenes; nunca {@code null}
+     */
+    public List<ResumenSentencia> mayorTiempoTotal(int n) {
+        return resumenes(Comparator.comparingDouble(ResumenSentencia::totalMs).reversed(), n);
+    }
+
+    /**
+     * Últimas peticiones sospechosas de N+1, de la más reciente a la más antigua.
+     *
+     * @return sospechas; nunca {@code null}
+     */
+    public List<SospechaNMasUno> sospechasNMasUno() {
+        return new ArrayList<>(sospechas);
+    }
+
+    /**
+     * Descarta las estadísticas acumuladas y las sospechas registradas.
+     */
+    public void reiniciar() {
+        acumulados.clear();
+        sospechas.clear();
+    }
+
+    private void cerrar(RegistroSentencia registro) {
+        String clave = normalizar(registro.sql);
+        Acumulado acumulado = acumulados.get(clave);
+        if (acumulado == null && acumulados.size() < MAXIMO_SENTENCIAS) {
+            acumulado = acumulados.computeIfAbsent(clave, sql -> new Acumulado());
+        }
+        if (acumulado != null) {
+            acumulado.sumar(registro);
+        }
+
+        PerfilPeticion perfil = peticion.get();
+        if (perfil != null) {
+            perfil.anotar(clave, registro.llamante);
+        }
+
+        if (registro.nanos >= umbralNanos
+                && (muestreo >= 1.0 || ThreadLocalRandom.current().nextDouble() < muestreo)) {
+            log.warn("Sentencia lenta: {} ms, {} filas, lote {}, desde {}: {}",
+                    String.format("%.1f", registro.milis()), registro.filas, registro.lote,
+                    registro.llamante, registro.sql);
+        }
+    }
+
+    private void cerrarAbiertas() {
+        Map<Object, RegistroSentencia> pendientes = abiertas.get();
+        if (pendientes.isEmpty()) {
+            return;
+        }
+        List<RegistroSentencia> registros = new ArrayList<>(pendientes.values());
+        pendientes.clear();
+        registros.forEach(this::cerrar);
+    }
+
+    private List<ResumenSentencia> resumenes(Comparator<ResumenSentencia> orden, int n) {
+        return acumulados.entrySet().stream()
+                .map(entrada -> entrada.getValue().resumen(entrada.getKey()))
+                .sorted(orden)
+                .limit(Math.max(0, n))
+                .toList();
+    }
+
+    /**
+     * Sustituye literales y listas {@code IN} por marcadores para agrupar sentencias equivalentes. Hibernate
+     * ya parametriza las suyas, así que el resultado se guarda para no repetir las expresiones regulares.
+     */
+    private String normalizar(String sql) {
+        String normalizada = normalizadas.get(sql);
+        if (normalizada != null) {
+            return normalizada;
+        }
+        normalizada = ESPACIOS.matcher(sql.strip()).replaceAll(" ");
+        normalizada = CADENAS.matcher(normalizada).replaceAll("?");
+        normalizada = NUMEROS.matcher(normalizada).replaceAll("?");
+        normalizada = LISTAS_IN.matcher(normalizada).replaceAll("in (?...)");
+        if (normalizadas.size() < MAXIMO_SENTENCIAS * 4) {
+            normalizadas.put(sql, normalizada);
+        }
+        return normalizada;
+    }
+
+    /**
+     * Primer método de la aplicación en la pila, fuera de este paquete, como {@code Clase.metodo}. Los
+     * cuerpos de lambda se atribuyen al método que los declara.
+     */
+    private static String llamante() {
+        return PILA.walk(marcos -> marcos
+                .filter(marco -> marco.getClassName().startsWith(PAQUETE_APLICACION)
+                        && !marco.getClassName().startsWith(PAQUETE_PROPIO)
+                        && !marco.getClassName().contains("$$"))
+                .findFirst()
+                .map(marco -> {
+                    String clase = marco.getClassName();
+                    String metodo = marco.getMethodName();
+                    if (metodo.startsWith("lambda$")) {
+                        int fin = metodo.indexOf('$', "lambda$".length());
+                        metodo = metodo.substring("lambda$".length(), fin > 0 ? fin : metodo.length());
+                    }
+                    return clase.substring(clase.lastIndexOf('.') + 1) + "." + metodo;
+                })
+                .orElse(DESCONOCIDO));
+    }
+
+    private static long filasModificadas(Object resultado) {
+        if (resultado instanceof Number numero) {
+            return Math.max(0, numero.longValue());
+        }
+        long total = 0;
+        if (resultado instanceof int[] filas) {
+            for (int n : filas) {
+                total += Math.max(0, n);
+            }
+        } else if (resultado instanceof long[] filas) {
+            for (long n : filas) {
+                total += Math.max(0, n);
+            }
+        }
+        return total;
+    }
+
+    private static Object objetivo(Object jdbc) {
+        return jdbc instanceof ProxyJdbcObject proxy ? proxy.getTarget() : jdbc;
+    }
+
+    /**
+     * Sentencias de una petición, agrupadas por su forma normalizada. Solo lo usa el hilo de la petición.
+     */
+    private static final class PerfilPeticion {
+
+        final String descripcion;
+        final Map<String, Repeticion> porSentencia = new HashMap<>();
+
+        PerfilPeticion(String descripcion) {
+            this.descripcion = descripcion;
+        }
+
+        void anotar(String sql, String llamante) {
+            porSentencia.computeIfAbsent(sql, s -> new Repeticion(llamante)).veces++;
+        }
+    }
+
+    private static final class Repeticion {
+
+        final String llamante;
+        int veces;
+
+        Repeticion(String llamante) {
+            this.llamante = llamante;
+        }
+    }
+
+    private static final class Acumulado {
+
+        final LongAdder ejecuciones = new LongAdder();
+        final LongAdder nanos = new LongAdder();
+        final LongAdder filas = new LongAdder();
+        final LongAccumulator maximo = new LongAccumulator(Long::max, 0);
+        volatile String llamante = DESCONOCIDO;
+
+        void sumar(RegistroSentencia registro) {
+            ejecuciones.increment();
+            nanos.add(registro.nanos);
+            filas.add(registro.filas);
+            maximo.accumulate(registro.nanos);
+            llamante = registro.llamante;
+        }
+
+        ResumenSentencia resumen(String sql) {
+            long n = ejecuciones.sum();
+            double totalMs = nanos.sum() / 1_000_000.0;
+            return new ResumenSentencia(sql, llamante, n, totalMs, n == 0 ? 0 : totalMs / n,
+                    maximo.get() / 1_000_000.0, filas.sum());
+        }
+    }
+}
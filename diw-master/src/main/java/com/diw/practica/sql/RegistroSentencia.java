@@ -0,0 +1,28 @@
+package com.diw.practica.sql;
+
+/**
+ * Ejecución de una sentencia en curso de medida.
+ *
+ * <p>Las actualizaciones se cierran al terminar la ejecución; las consultas siguen abiertas mientras
+ * se recorre su {@link java.sql.ResultSet}, que es cuando se cuentan las filas.</p>
+ */
+final class RegistroSentencia {
+
+    final String sql;
+    final String llamante;
+    final long nanos;
+    final int lote;
+    long filas;
+
+    RegistroSentencia(String sql, String llamante, long nanos, int lote, long filas) {
+        this.sql = sql;
+        this.llamante = llamante;
+        this.nanos = nanos;
+        this.lote = lote;
+        this.filas = filas;
+    }
+
+    double milis() {
+        return nanos / 1_000_000.0;
+    }
+}
@@ -0,0 +1,16 @@
+package com.diw.practica.sql;
+
+/**
+ * Estadísticas acumuladas de una sentencia SQL normalizada.
+ *
+ * @param sql          sentencia con los literales y las listas {@code IN} sustituidos por marcadores
+ * @param llamante     último método de la aplicación que la ejecutó, p. ej. {@code UsuarioServiceImpl.devolverPrestamo}
+ * @param ejecuciones  número de ejecuciones
+ * @param totalMs      tiempo total de ejecución
+ * @param mediaMs      tiempo medio por ejecución
+ * @param maximoMs     ejecución más lenta
+ * @param filas        filas leídas o modificadas en total
+ */
+public record ResumenSentencia(String sql, String llamante, long ejecuciones,
+                               double totalMs, double mediaMs, double maximoMs, long filas) {
+}
@@ -0,0 +1,54 @@
+package com.diw.practica.sql;
+
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Endpoint de actuator {@code /actuator/sentenciaslentas}.
+ *
+ * <p>{@code GET} devuelve las {@code top} sentencias (20 por defecto) con la ejecución más lenta y con
+ * más tiempo acumulado, junto con las últimas sospechas de N+1. {@code DELETE} pone los contadores a
+ * cero, por ejemplo antes de una prueba de carga. Como todo actuator, solo lo usa el rol
+ * {@code ADMIN} (ver {@code SecurityConfig}).</p>
+ */
+@Component
+@Endpoint(id = "sentenciaslentas")
+public class SentenciasLentasEndpoint {
+
+    static final int TOP_POR_DEFECTO = 20;
+
+    private final PerfiladorSql perfilador;
+
+    public SentenciasLentasEndpoint(PerfiladorSql perfilador) {
+        this.perfilador = Objects.requireNonNull(perfilador, "perfilador no puede ser null");
+    }
+
+    @ReadOperation
+    public Informe informe(@Nullable Integer top) {
+        int n = top != null ? top : TOP_POR_DEFECTO;
+        return new Informe(perfilador.masLentas(n), perfilador.mayorTiempoTotal(n), perfilador.sospechasNMasUno());
+    }
+
+    @DeleteOperation
+    public void reiniciar() {
+        perfilador.reiniciar();
+    }
+
+    /**
+     * Contenido del endpoint.
+     *
+     * @param masLentas        sentencias por tiempo de su ejecución más lenta
+     * @param mayorTiempoTotal sentencias por tiempo acumulado
+     * @param sospechasNMasUno últimas peticiones que repitieron una sentencia demasiadas veces
+     */
+    public record Informe(List<ResumenSentencia> masLentas,
+                          List<ResumenSentencia> mayorTiempoTotal,
+                          List<SospechaNMasUno> sospechasNMasUno) {
+    }
+}
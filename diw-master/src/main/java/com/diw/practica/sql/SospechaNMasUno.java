@@ -0,0 +1,16 @@
+package com.diw.practica.sql;
+
+import java.time.Instant;
+
+/**
+ * Petición HTTP que repitió la misma sentencia más veces de las permitidas, síntoma típico de un
+ * patrón N+1 (una consulta por cada elemento de una colección cargada previamente).
+ *
+ * @param instante     momento en que terminó la petición
+ * @param peticion     método y ruta de la petición
+ * @param llamante     método de la aplicación que lanzó la primera repetición
+ * @param sql          sentencia normalizada repetida
+ * @param repeticiones número de veces que se ejecutó durante la petición
+ */
+public record SospechaNMasUno(Instant instante, String peticion, String llamante, String sql, int repeticiones) {
+}
@@ -0,0 +1,196 @@
+package com.diw.practica.beans;
+
+import com.diw.practica.dto.ResultadoLote;
+import com.diw.practica.eventos.LibroCambiadoEvent;
+import com.diw.practica.model.Libro;
+import com.diw.practica.repository.LibroRepository;
+import com.diw.practica.reservas.CaducidadReservas;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.event.ApplicationEvents;
+import org.springframework.test.context.event.RecordApplicationEvents;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Entrega de libros a la cola de reservas: al devolverse pasan directamente a la primera reserva y,
+ * si nadie los recoge a tiempo, a la siguiente.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE)
+@ActiveProfiles("embebida")
+@RecordApplicationEvents
+class EntregaReservaTest {
+
+    private static final int ADMINISTRADOR = 1;
+    private static final int PROFESOR = 2;
+    private static final int ALUMNO = 3;
+
+    @Autowired
+    private UsuarioService usuarioService;
+
+    @Autowired
+    private AdminService adminService;
+
+    @Autowired
+    private LibroRepository libroRepository;
+
+    @Autowired
+    private CaducidadReservas caducidadReservas;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ApplicationEvents eventos;
+
+    @Test
+    void laDevolucionPasaDirectamenteALaPrimeraReservaConUnSoloEvento() {
+        Libro libro = prestadoAlAlumno("978-0-00-000001-1");
+        assertTrue(usuarioService.reservarLibro(PROFESOR, libro.getId()).isPresent());
+        long prestamosProfesor = usuarioService.contarPrestamos(PROFESOR);
+        eventos.clear();
+
+        Libro devuelto = usuarioService.devolverPrestamo(ALUMNO, libro.getId()).orElseThrow();
+
+        assertEquals(Libro.Estado.RESERVADO, devuelto.getEstadoLibro());
+        Duration plazo = Duration.between(Instant.now(), devuelto.getReservadoHasta());
+        assertTrue(plazo.compareTo(Duration.ofDays(3).minusMinutes(1)) > 0, "Plazo de recogida: " + plazo);
+        LibroCambiadoEvent cambio = unicoCambio(libro.getId());
+        assertEquals(LibroCambiadoEvent.Tipo.DEVUELTO, cambio.tipo());
+        assertEquals(Libro.Estado.PRESTADO, cambio.anterior().estadoLibro());
+        assertEquals(Libro.Estado.RESERVADO, cambio.actual().estadoLibro());
+        assertEquals(ALUMNO, cambio.prestatarioAnterior());
+        assertEquals(PROFESOR, cambio.prestatarioActual());
+        assertEquals(devuelto.getVersion(), cambio.actual().version());
+        // Reservado a su nombre, pero aún no es un préstamo del profesor
+        assertEquals(prestamosProfesor, usuarioService.contarPrestamos(PROFESOR));
+        assertTrue(usuarioService.prestamosDeUsuario(PROFESOR, null, 100).contenido().stream()
+                .noneMatch(prestado -> prestado.id().equals(libro.getId())));
+    }
+
+    @Test
+    void laReservaCaducadaPasaALaSiguienteYDespuesQuedaDisponible() {
+        Libro libro = prestadoAlAlumno("978-0-00-000001-2");
+        assertTrue(usuarioService.reservarLibro(PROFESOR, libro.getId()).isPresent());
+        assertTrue(usuarioService.reservarLibro(ADMINISTRADOR, libro.getId()).isPresent());
+        usuarioService.devolverPrestamo(ALUMNO, libro.getId()).orElseThrow();
+        assertEquals(ADMINISTRADOR, prestatario(libro.getId()));
+
+        // Aún en plazo: no se toca
+        assertEquals(0, caducidadReservas.caducar());
+        assertEquals(ADMINISTRADOR, prestatario(libro.getId()));
+
+        vencerPlazo(libro.getId());
+        eventos.clear();
+        assertEquals(1, caducidadReservas.caducar());
+
+        Libro reservado = libroRepository.findById(libro.getId()).orElseThrow();
+        assertEquals(Libro.Estado.RESERVADO, reservado.getEstadoLibro());
+        assertEquals(PROFESOR, prestatario(libro.getId()));
+        assertTrue(reservado.getReservadoHasta().isAfter(Instant.now()));
+        LibroCambiadoEvent cambio = unicoCambio(libro.getId());
+        assertEquals(LibroCambiadoEvent.Tipo.ACTUALIZADO, cambio.tipo());
+        assertEquals(ADMINISTRADOR, cambio.prestatarioAnterior());
+        assertEquals(PROFESOR, cambio.prestatarioActual());
+
+        vencerPlazo(libro.getId());
+        assertEquals(1, caducidadReservas.caducar());
+
+        Libro disponible = libroRepository.findById(libro.getId()).orElseThrow();
+        assertEquals(Libro.Estado.DISPONIBLE, disponible.getEstadoLibro());
+        assertNull(disponible.getReservadoHasta());
+        assertNull(prestatario(libro.getId()));
+    }
+
+    @Test
+    void unaReservaRecogidaNoCaduca() {
+        Libro libro = prestadoAlAlumno("978-0-00-000001-3");
+        assertTrue(usuarioService.reservarLibro(PROFESOR, libro.getId()).isPresent());
+        usuarioService.devolverPrestamo(ALUMNO, libro.getId()).orElseThrow();
+        vencerPlazo(libro.getId());
+        Libro prestado = usuarioService.solicitarPrestamo(PROFESOR, libro.getId()).orElseThrow();
+
+        assertNull(prestado.getReservadoHasta());
+        assertEquals(0, caducidadReservas.caducar());
+        assertEquals(PROFESOR, prestatario(libro.getId()));
+    }
+
+    @Test
+    void laReservaSeRecogeTambienEnUnPrestamoPorLotes() {
+        Libro reservado = prestadoAlAlumno("978-0-00-000001-4");
+        Libro disponible = adminService.registrarLibro(new Libro("Disponible", "Anónimo", "978-0-00-000001-5", 2024,
+                "Pruebas", Libro.Estado.DISPONIBLE));
+        assertTrue(usuarioService.reservarLibro(PROFESOR, reservado.getId()).isPresent());
+        usuarioService.devolverPrestamo(ALUMNO, reservado.getId()).orElseThrow();
+
+        // El alumno no puede llevarse el libro reservado para el profesor
+        ResultadoLote ajeno = usuarioService.solicitarPrestamos(ALUMNO, List.of(reservado.getId()));
+        assertEquals(ResultadoLote.Resultado.NO_DISPONIBLE, ajeno.libros().get(0).resultado());
+
+        eventos.clear();
+        ResultadoLote lote = usuarioService.solicitarPrestamos(PROFESOR, List.of(reservado.getId(), disponible.getId()));
+
+        assertEquals(2, lote.exitos());
+        Libro recogido = libroRepository.findById(reservado.getId()).orElseThrow();
+        assertEquals(Libro.Estado.PRESTADO, recogido.getEstadoLibro());
+        assertNull(recogido.getReservadoHasta());
+        assertEquals(PROFESOR, prestatario(reservado.getId()));
+        LibroCambiadoEvent cambio = unicoCambio(reservado.getId());
+        assertEquals(LibroCambiadoEvent.Tipo.PRESTADO, cambio.tipo());
+        assertEquals(Libro.Estado.RESERVADO, cambio.anterior().estadoLibro());
+        assertEquals(recogido.getVersion(), cambio.actual().version());
+    }
+
+    @Test
+    void laEdicionNoSaltaLaColaNiCreaReservasSinTitular() {
+        Libro libro = prestadoAlAlumno("978-0-00-000001-6");
+        assertTrue(usuarioService.reservarLibro(PROFESOR, libro.getId()).isPresent());
+        usuarioService.devolverPrestamo(ALUMNO, libro.getId()).orElseThrow();
+
+        Libro edicion = new Libro();
+        edicion.setEstadoLibro(Libro.Estado.DISPONIBLE);
+        assertThrows(IllegalArgumentException.class, () -> adminService.actualizarLibro(libro.getId(), edicion));
+        edicion.setEstadoLibro(Libro.Estado.RESERVADO);
+        edicion.setTitulo("Reserva revisada");
+        assertEquals("Reserva revisada", adminService.actualizarLibro(libro.getId(), edicion).orElseThrow().getTitulo());
+        assertEquals(PROFESOR, prestatario(libro.getId()));
+
+        assertThrows(IllegalArgumentException.class, () -> adminService.registrarLibro(new Libro("Sin titular",
+                "Anónimo", "978-0-00-000001-7", 2024, "Pruebas", Libro.Estado.RESERVADO)));
+    }
+
+    private Libro prestadoAlAlumno(String isbn) {
+        Libro libro = adminService.registrarLibro(new Libro("Reserva", "Anónimo", isbn, 2024, "Pruebas",
+                Libro.Estado.DISPONIBLE));
+        usuarioService.solicitarPrestamo(ALUMNO, libro.getId()).orElseThrow();
+        return libro;
+    }
+
+    private void vencerPlazo(Integer libroId) {
+        jdbcTemplate.update("UPDATE libro SET reservado_hasta = ? WHERE id = ?",
+                Timestamp.from(Instant.now().minusSeconds(1)), libroId);
+    }
+
+    private Integer prestatario(Integer libroId) {
+        return jdbcTemplate.queryForObject("SELECT usuario_id FROM libro WHERE id = ?", Integer.class, libroId);
+    }
+
+    private LibroCambiadoEvent unicoCambio(Integer libroId) {
+        List<LibroCambiadoEvent> cambios = eventos.stream(LibroCambiadoEvent.class)
+                .filter(evento -> evento.libroId().equals(libroId))
+                .toList();
+        assertEquals(1, cambios.size(), "Eventos publicados: " + cambios);
+        return cambios.get(0);
+    }
+}
@@ -0,0 +1,75 @@
+package com.diw.practica.beans;
+
+import com.diw.practica.config.CacheConfig;
+import com.diw.practica.dto.LibroResumen;
+import com.diw.practica.model.Libro;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.Objects;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Préstamos con entradas obsoletas en la caché del catálogo: la caché solo orienta, la decisión la
+ * toma la sentencia sobre la base de datos.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE)
+@ActiveProfiles("embebida")
+class PrestamoCacheObsoletaTest {
+
+    private static final int USUARIO = 3;
+
+    @Autowired
+    private UsuarioService usuarioService;
+
+    @Autowired
+    private AdminService adminService;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Test
+    void prestaUnLibroDisponibleQueLaCacheDaPorPrestado() {
+        Libro libro = registrarDisponible("978-0-00-000000-2");
+        LibroResumen obsoleto = LibroResumen.desde(libro);
+        libros().put(libro.getId(), new LibroResumen(obsoleto.id(), obsoleto.titulo(), obsoleto.autor(),
+                obsoleto.isbn(), obsoleto.anioPublicacion(), obsoleto.editorial(), Libro.Estado.PRESTADO,
+                obsoleto.version()));
+
+        Libro prestado = usuarioService.solicitarPrestamo(USUARIO, libro.getId()).orElseThrow();
+
+        assertEquals(Libro.Estado.PRESTADO, prestado.getEstadoLibro());
+        assertEquals(1, prestado.getVecesPrestado());
+    }
+
+    @Test
+    void prestaUnLibroQueLaCacheDaPorInexistente() {
+        Libro libro = registrarDisponible("978-0-00-000000-3");
+        libros().put(libro.getId(), null);
+
+        assertTrue(usuarioService.solicitarPrestamo(USUARIO, libro.getId()).isPresent());
+    }
+
+    @Test
+    void rechazaUnLibroPrestadoQueLaCacheDaPorDisponible() {
+        Libro libro = registrarDisponible("978-0-00-000000-4");
+        assertTrue(usuarioService.solicitarPrestamo(USUARIO, libro.getId()).isPresent());
+        libros().put(libro.getId(), LibroResumen.desde(libro));
+
+        assertTrue(usuarioService.solicitarPrestamo(2, libro.getId()).isEmpty());
+    }
+
+    private Libro registrarDisponible(String isbn) {
+        return adminService.registrarLibro(new Libro("Caché", "Anónimo", isbn, 2024, "Pruebas", Libro.Estado.DISPONIBLE));
+    }
+
+    private Cache libros() {
+        return Objects.requireNonNull(cacheManager.getCache(CacheConfig.CACHE_LIBROS));
+    }
+}
@@ -0,0 +1,99 @@
+package com.diw.practica.beans;
+
+import com.diw.practica.metricas.MetricasBiblioteca;
+import com.diw.practica.model.Libro;
+import com.diw.practica.repository.LibroRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Préstamos simultáneos de un mismo libro contra la base de datos H2 del perfil {@code embebida}.
+ *
+ * <p>Todas las peticiones salen a la vez de una barrera; la sentencia {@code UPDATE} condicionada
+ * al estado debe dejar pasar exactamente una y rechazar las demás como no disponibles.</p>
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE)
+@ActiveProfiles("embebida")
+class PrestamoConcurrenteTest {
+
+    private static final int HILOS = 16;
+
+    /**
+     * Usuarios de los datos iniciales que piden el libro, por turnos.
+     */
+    private static final int[] USUARIOS = {1, 2, 3};
+
+    @Autowired
+    private UsuarioService usuarioService;
+
+    @Autowired
+    private AdminService adminService;
+
+    @Autowired
+    private LibroRepository libroRepository;
+
+    @Autowired
+    private MeterRegistry registry;
+
+    @Test
+    void soloUnPrestamoSimultaneoTieneExito() throws Exception {
+        Integer libroId = adminService.registrarLibro(new Libro("Concurrencia", "Anónimo", "978-0-00-000000-1",
+                2024, "Pruebas", Libro.Estado.DISPONIBLE)).getId();
+        long rechazadosAntes = prestamos("no_disponible");
+        long exitosAntes = prestamos("exito");
+
+        CountDownLatch salida = new CountDownLatch(1);
+        ExecutorService hilos = Executors.newFixedThreadPool(HILOS);
+        List<Future<Optional<Libro>>> resultados = new ArrayList<>();
+        try {
+            for (int i = 0; i < HILOS; i++) {
+                int usuarioId = USUARIOS[i % USUARIOS.length];
+                resultados.add(hilos.submit(() -> {
+                    salida.await();
+                    return usuarioService.solicitarPrestamo(usuarioId, libroId);
+                }));
+            }
+            salida.countDown();
+
+            int concedidos = 0;
+            for (Future<Optional<Libro>> resultado : resultados) {
+                if (resultado.get(30, TimeUnit.SECONDS).isPresent()) {
+                    concedidos++;
+                }
+            }
+            assertEquals(1, concedidos);
+        } finally {
+            hilos.shutdownNow();
+            assertTrue(hilos.awaitTermination(30, TimeUnit.SECONDS));
+        }
+
+        assertEquals(1, prestamos("exito") - exitosAntes);
+        assertEquals(HILOS - 1, prestamos("no_disponible") - rechazadosAntes);
+        Libro libro = libroRepository.findById(libroId).orElseThrow();
+        assertEquals(Libro.Estado.PRESTADO, libro.getEstadoLibro());
+        assertEquals(1, libro.getVecesPrestado());
+    }
+
+    private long prestamos(String resultado) {
+        return registry.get(MetricasBiblioteca.PRESTAMOS)
+                .tag("operacion", "solicitar")
+                .tag("resultado", resultado)
+                .timer()
+                .count();
+    }
+}
@@ -0,0 +1,225 @@
+package com.diw.practica.cache;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.search.Search;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Coalescencia de {@link LecturasCoalescidas}: quién se une a una lectura en curso, cuánto dura la
+ * ventana de reutilización y cómo llegan las excepciones a todos los que esperaban.
+ */
+class LecturasCoalescidasTest {
+
+    private static final String LECTURA = "pruebas";
+    private static final int ESPERANDO = 8;
+
+    private final MeterRegistry registry = new SimpleMeterRegistry();
+    private final ExecutorService hilos = Executors.newCachedThreadPool();
+    private final AtomicInteger cargas = new AtomicInteger();
+
+    @AfterEach
+    void detener() throws InterruptedException {
+        hilos.shutdownNow();
+        if (!hilos.awaitTermination(30, TimeUnit.SECONDS)) {
+            fail("Los hilos de la prueba no terminaron");
+        }
+    }
+
+    @Test
+    void lasLecturasSimultaneasSeUnenALaEnCurso() throws Exception {
+        LecturasCoalescidas lecturas = new LecturasCoalescidas(registry, 0);
+        CountDownLatch liberar = new CountDownLatch(1);
+        Future<List<Integer>> primera = hilos.submit(() -> lecturas.leer(LECTURA, 1, cargaBloqueada(liberar)));
+        esperarHasta(() -> cargas.get() == 1);
+
+        List<Future<List<Integer>>> unidas = new ArrayList<>();
+        for (int i = 0; i < ESPERANDO; i++) {
+            unidas.add(hilos.submit(() -> lecturas.leer(LECTURA, 1, this::cargar)));
+        }
+        esperarHasta(() -> contador("en_curso") == ESPERANDO);
+        liberar.countDown();
+
+        List<Integer> resultado = primera.get(30, TimeUnit.SECONDS);
+        for (Future<List<Integer>> unida : unidas) {
+            assertSame(resultado, unida.get(30, TimeUnit.SECONDS));
+        }
+        assertEquals(1, cargas.get());
+        assertEquals(1, contador("ejecutada"));
+    }
+
+    @Test
+    void sinFrescuraLasLecturasSucesivasNoSeReutilizan() {
+        LecturasCoalescidas lecturas = new LecturasCoalescidas(registry, 0);
+
+        lecturas.leer(LECTURA, 1, this::cargar);
+        lecturas.leer(LECTURA, 1, this::cargar);
+
+        assertEquals(2, cargas.get());
+        assertEquals(0, contador("reciente"));
+    }
+
+    @Test
+    void dentroDeLaVentanaSeReutilizaYAlCaducarSeVuelveALeer() throws Exception {
+        LecturasCoalescidas lecturas = new LecturasCoalescidas(registry, 300);
+
+        List<Integer> primera = lecturas.leer(LECTURA, 1, this::cargar);
+        assertSame(primera, lecturas.leer(LECTURA, 1, this::cargar));
+        assertEquals(1, cargas.get());
+        assertEquals(1, contador("reciente"));
+
+        Thread.sleep(400);
+        List<Integer> tras = lecturas.leer(LECTURA, 1, this::cargar);
+
+        assertEquals(2, cargas.get());
+        assertEquals(List.of(2), tras);
+    }
+
+    @Test
+    void parametrosDistintosNoSeUnen() {
+        LecturasCoalescidas lecturas = new LecturasCoalescidas(registry, 60_000);
+
+        lecturas.leer(LECTURA, 1, this::cargar);
+        lecturas.leer(LECTURA, 2, this::cargar);
+        lecturas.leer("otra", 1, this::cargar);
+
+        assertEquals(3, cargas.get());
+    }
+
+    @Test
+    void laExcepcionLlegaATodosLosQueEsperabanYNoSeReutiliza() throws Exception {
+        LecturasCoalescidas lecturas = new LecturasCoalescidas(registry, 60_000);
+        IllegalStateException fallo = new IllegalStateException("Base de datos caída");
+        CountDownLatch liberar = new CountDownLatch(1);
+        Future<Object> primera = hilos.submit(() -> lecturas.leer(LECTURA, 1, () -> {
+            cargas.incrementAndGet();
+            esperar(liberar);
+            throw fallo;
+        }));
+        esperarHasta(() -> cargas.get() == 1);
+
+        List<Future<List<Integer>>> unidas = new ArrayList<>();
+        for (int i = 0; i < ESPERANDO; i++) {
+            unidas.add(hilos.submit(() -> lecturas.leer(LECTURA, 1, this::cargar)));
+        }
+        esperarHasta(() -> contador("en_curso") == ESPERANDO);
+        liberar.countDown();
+
+        assertSame(fallo, causa(primera));
+        for (Future<List<Integer>> unida : unidas) {
+            assertSame(fallo, causa(unida));
+        }
+        // El fallo no se sirve como resultado reciente: la siguiente llamada vuelve a leer
+        assertEquals(List.of(2), lecturas.leer(LECTURA, 1, this::cargar));
+        assertEquals(2, contador("ejecutada"));
+    }
+
+    @Test
+    void invalidarDescartaLaLecturaSinAfectarAQuienYaEsperaba() throws Exception {
+        LecturasCoalescidas lecturas = new LecturasCoalescidas(registry, 60_000);
+        CountDownLatch liberar = new CountDownLatch(1);
+        Future<List<Integer>> anterior = hilos.submit(() -> lecturas.leer(LECTURA, 1, cargaBloqueada(liberar)));
+        esperarHasta(() -> cargas.get() == 1);
+        Future<List<Integer>> unida = hilos.submit(() -> lecturas.leer(LECTURA, 1, this::cargar));
+        esperarHasta(() -> contador("en_curso") == 1);
+
+        lecturas.invalidar(LECTURA, parametros -> parametros.equals(1));
+        List<Integer> posterior = lecturas.leer(LECTURA, 1, this::cargar);
+        liberar.countDown();
+
+        assertEquals(List.of(2), posterior);
+        assertEquals(List.of(1), anterior.get(30, TimeUnit.SECONDS));
+        assertSame(anterior.get(), unida.get(30, TimeUnit.SECONDS));
+        // La lectura posterior es la que queda en la ventana
+        assertSame(posterior, lecturas.leer(LECTURA, 1, this::cargar));
+    }
+
+    @Test
+    void limpiarConservaLasLecturasEnCursoYLasRecientes() throws Exception {
+        LecturasCoalescidas lecturas = new LecturasCoalescidas(registry, 60_000);
+        List<Integer> reciente = lecturas.leer(LECTURA, 1, this::cargar);
+        CountDownLatch liberar = new CountDownLatch(1);
+        Future<List<Integer>> enCurso = hilos.submit(() -> lecturas.leer(LECTURA, 2, cargaBloqueada(liberar)));
+        esperarHasta(() -> cargas.get() == 2);
+
+        lecturas.limpiar();
+        Future<List<Integer>> unida = hilos.submit(() -> lecturas.leer(LECTURA, 2, this::cargar));
+        esperarHasta(() -> contador("en_curso") == 1);
+        liberar.countDown();
+
+        assertSame(enCurso.get(30, TimeUnit.SECONDS), unida.get(30, TimeUnit.SECONDS));
+        assertSame(reciente, lecturas.leer(LECTURA, 1, this::cargar));
+        assertEquals(2, cargas.get());
+    }
+
+    /**
+     * Lectura que devuelve su número de orden en una lista nueva.
+     */
+    private List<Integer> cargar() {
+        return List.of(cargas.incrementAndGet());
+    }
+
+    /**
+     * Lectura que no termina hasta que se libera el cerrojo.
+     */
+    private Supplier<List<Integer>> cargaBloqueada(CountDownLatch liberar) {
+        return () -> {
+            List<Integer> valor = cargar();
+            esperar(liberar);
+            return valor;
+        };
+    }
+
+    private double contador(String resultado) {
+        return Search.in(registry).name(LecturasCoalescidas.LECTURAS)
+                .tags("lectura", LECTURA, "resultado", resultado)
+                .counters().stream().mapToDouble(contador -> contador.count()).sum();
+    }
+
+    private static Throwable causa(Future<?> futuro) {
+        return assertThrows(ExecutionException.class, () -> futuro.get(30, TimeUnit.SECONDS)).getCause();
+    }
+
+    private static void esperar(CountDownLatch cerrojo) {
+        try {
+            if (!cerrojo.await(30, TimeUnit.SECONDS)) {
+                throw new IllegalStateException("La prueba no liberó la lectura");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void esperarHasta(Condicion condicion) throws InterruptedException {
+        long limite = System.nanoTime() + TimeUnit.SECONDS.toNanos(20);
+        while (!condicion.cumplida()) {
+            if (System.nanoTime() - limite > 0) {
+                fail("No se cumplió la condición a tiempo");
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    @FunctionalInterface
+    private interface Condicion {
+        boolean cumplida();
+    }
+}
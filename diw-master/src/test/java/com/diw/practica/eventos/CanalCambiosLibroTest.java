@@ -0,0 +1,352 @@
+package com.diw.practica.eventos;
+
+import com.diw.practica.dto.LibroResumen;
+import com.diw.practica.model.Libro;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Anillo de avisos y gestión de suscriptores de {@link CanalCambiosLibro}, con emisores que
+ * registran lo que se les envía en lugar de escribir en una conexión.
+ */
+class CanalCambiosLibroTest {
+
+    private final MeterRegistry registry = new SimpleMeterRegistry();
+    private CanalCambiosLibro canal;
+
+    @AfterEach
+    void detener() {
+        if (canal != null) {
+            canal.stop();
+        }
+    }
+
+    @Test
+    void entregaCadaCambioUnaVezEnOrdenDesdeHilosDePlataforma() throws Exception {
+        arrancar(4, 10, 60_000);
+        EmisorGrabado emisor = suscribir(null, null, null);
+
+        for (int libro = 1; libro <= 3; libro++) {
+            publicarAlta(libro);
+        }
+        esperarHasta(() -> emisor.eventos().size() == 3);
+
+        assertEquals(List.of(1L, 2L, 3L), emisor.numeros());
+        assertEquals(List.of("CREADO", "CREADO", "CREADO"), emisor.nombres());
+        assertFalse(emisor.enviosEnHiloVirtual(), "Envío hecho desde un hilo virtual");
+    }
+
+    @Test
+    void filtraPorLibroYPorEstado() throws Exception {
+        arrancar(4, 10, 60_000);
+        EmisorGrabado porLibro = suscribir(Set.of(2), null, null);
+        EmisorGrabado porEstado = suscribir(null, Set.of(Libro.Estado.PRESTADO), null);
+        EmisorGrabado todos = suscribir(null, null, null);
+
+        publicarAlta(1);
+        publicarAlta(2);
+        publicarPrestamo(1);
+        // Lo aceptan los tres: cuando les llega, ya pasaron por los anteriores
+        publicarPrestamo(2);
+        esperarHasta(() -> todos.eventos().size() == 4 && porLibro.eventos().size() == 2
+                && porEstado.eventos().size() == 2);
+
+        assertEquals(List.of(2L, 4L), porLibro.numeros());
+        assertEquals(List.of(3L, 4L), porEstado.numeros());
+        assertEquals(List.of("PRESTADO", "PRESTADO"), porEstado.nombres());
+    }
+
+    @Test
+    void reanudaDesdeLastEventIdMientrasSigaEnElAnillo() throws Exception {
+        arrancar(4, 10, 60_000);
+        EmisorGrabado primero = suscribir(null, null, null);
+        publicarAlta(1);
+        publicarAlta(2);
+        publicarAlta(3);
+        esperarHasta(() -> primero.eventos().size() == 3);
+        String ultimoRecibido = primero.eventos().get(0).id();
+
+        EmisorGrabado reanudado = suscribir(null, null, ultimoRecibido);
+        esperarHasta(() -> reanudado.eventos().size() == 2);
+        assertEquals(List.of(2L, 3L), reanudado.numeros());
+
+        // El anillo guarda 4 avisos: tras 10 más, el siguiente al 1 ya no está
+        for (int libro = 4; libro <= 13; libro++) {
+            publicarAlta(libro);
+        }
+        EmisorGrabado tardio = suscribir(null, null, ultimoRecibido);
+        EmisorGrabado deOtroArranque = suscribir(null, null, "otro.2");
+        esperarHasta(() -> !tardio.eventos().isEmpty() && !deOtroArranque.eventos().isEmpty());
+
+        // El reinicio lleva el número actual, desde el que el cliente reanudará después
+        assertEquals(List.of(CanalCambiosLibro.REINICIO), tardio.nombres());
+        assertEquals(List.of(13L), tardio.numeros());
+        assertEquals(List.of(CanalCambiosLibro.REINICIO), deOtroArranque.nombres());
+    }
+
+    @Test
+    void unClienteLentoSoloSeRetrasaASiMismoYRecibeReinicioSiSeQuedaAtras() throws Exception {
+        arrancar(4, 10, 60_000);
+        EmisorGrabado lento = suscribir(null, null, null);
+        EmisorGrabado rapido = suscribir(null, null, null);
+        CountDownLatch bloqueo = new CountDownLatch(1);
+        lento.bloquear(bloqueo);
+
+        publicarAlta(1);
+        esperarHasta(lento::bloqueado);
+        // De uno en uno, para que el rápido no se quede atrás por la ráfaga
+        for (int libro = 2; libro <= 11; libro++) {
+            publicarAlta(libro);
+            int recibidos = libro;
+            esperarHasta(() -> rapido.eventos().size() == recibidos);
+        }
+        assertTrue(lento.eventos().isEmpty());
+
+        bloqueo.countDown();
+        esperarHasta(() -> lento.eventos().size() == 2);
+
+        assertEquals(LongStream.rangeClosed(1, 11).boxed().toList(), rapido.numeros());
+        assertEquals(List.of("CREADO", CanalCambiosLibro.REINICIO), lento.nombres());
+        assertEquals(List.of(1L, 11L), lento.numeros());
+    }
+
+    @Test
+    void escritoresSimultaneosNoPierdenNiRepitenAvisos() throws Exception {
+        int hilos = 8;
+        int porHilo = 500;
+        arrancar(hilos * porHilo, 10, 60_000);
+        EmisorGrabado primero = suscribir(null, null, null);
+        EmisorGrabado segundo = suscribir(null, null, null);
+
+        CountDownLatch salida = new CountDownLatch(1);
+        ExecutorService escritores = Executors.newFixedThreadPool(hilos);
+        try {
+            List<Future<?>> futuros = new ArrayList<>();
+            for (int i = 0; i < hilos; i++) {
+                int hilo = i;
+                futuros.add(escritores.submit(() -> {
+                    salida.await();
+                    for (int j = 0; j < porHilo; j++) {
+                        publicarAlta(hilo * porHilo + j + 1);
+                    }
+                    return null;
+                }));
+            }
+            salida.countDown();
+            for (Future<?> futuro : futuros) {
+                futuro.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            escritores.shutdownNow();
+        }
+
+        List<Long> esperados = LongStream.rangeClosed(1, (long) hilos * porHilo).boxed().toList();
+        esperarHasta(() -> primero.eventos().size() >= esperados.size() && segundo.eventos().size() >= esperados.size());
+        assertEquals(esperados, primero.numeros());
+        assertEquals(esperados, segundo.numeros());
+    }
+
+    @Test
+    void unEnvioFallidoRetiraAlSuscriptor() throws Exception {
+        arrancar(4, 10, 60_000);
+        EmisorGrabado roto = suscribir(null, null, null);
+        EmisorGrabado sano = suscribir(null, null, null);
+        roto.fallar();
+
+        publicarAlta(1);
+        esperarHasta(() -> suscriptores() == 1 && sano.eventos().size() == 1);
+
+        publicarAlta(2);
+        esperarHasta(() -> sano.eventos().size() == 2);
+        // El saludo al suscribirse y el envío que falló; después ya no se le escribe
+        assertEquals(2, roto.intentos());
+    }
+
+    @Test
+    void rechazaSuscripcionesPorEncimaDelMaximo() {
+        arrancar(4, 2, 60_000);
+        suscribir(null, null, null);
+        suscribir(null, null, null);
+
+        assertTrue(canal.suscribir(null, null, null).isEmpty());
+        assertEquals(2, suscriptores());
+    }
+
+    @Test
+    void enviaLatidosALosSuscriptoresInactivos() throws Exception {
+        arrancar(4, 10, 50);
+        EmisorGrabado emisor = suscribir(null, null, null);
+
+        esperarHasta(() -> emisor.comentarios() >= 3);
+        assertTrue(emisor.eventos().isEmpty());
+    }
+
+    private void arrancar(int capacidad, int maximoSuscriptores, long latidoMs) {
+        canal = new CanalCambiosLibro(new ObjectMapper(), registry, capacidad, maximoSuscriptores, 60_000, latidoMs, 2) {
+            @Override
+            SseEmitter crearEmisor(long duracionMaximaMs) {
+                return new EmisorGrabado(duracionMaximaMs);
+            }
+        };
+        canal.start();
+    }
+
+    private EmisorGrabado suscribir(Set<Integer> libros, Set<Libro.Estado> estados, String ultimoEventoId) {
+        return (EmisorGrabado) canal.suscribir(libros, estados, ultimoEventoId).orElseThrow();
+    }
+
+    private void publicarAlta(int libroId) {
+        canal.alCambiarLibro(new LibroCambiadoEvent(LibroCambiadoEvent.Tipo.CREADO, null,
+                libro(libroId, Libro.Estado.DISPONIBLE)));
+    }
+
+    private void publicarPrestamo(int libroId) {
+        canal.alCambiarLibro(new LibroCambiadoEvent(LibroCambiadoEvent.Tipo.PRESTADO,
+                libro(libroId, Libro.Estado.DISPONIBLE), libro(libroId, Libro.Estado.PRESTADO), null, 3));
+    }
+
+    private double suscriptores() {
+        return registry.get(CanalCambiosLibro.SUSCRIPTORES).gauge().value();
+    }
+
+    private static LibroResumen libro(int id, Libro.Estado estado) {
+        return new LibroResumen(id, "Libro " + id, "Autor", "isbn-" + id, 2008, "Editorial", estado, 0L);
+    }
+
+    private static void esperarHasta(Condicion condicion) throws InterruptedException {
+        long limite = System.nanoTime() + TimeUnit.SECONDS.toNanos(20);
+        while (!condicion.cumplida()) {
+            if (System.nanoTime() - limite > 0) {
+                fail("No se cumplió la condición a tiempo");
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    @FunctionalInterface
+    private interface Condicion {
+        boolean cumplida();
+    }
+
+    /**
+     * Evento SSE recibido por un {@link EmisorGrabado}.
+     */
+    private record Evento(String id, String nombre) {
+    }
+
+    /**
+     * Emisor que registra los eventos y comentarios en lugar de escribirlos. Puede bloquear el
+     * siguiente envío, como un cliente que no lee, o fallar, como una conexión cerrada.
+     */
+    private static final class EmisorGrabado extends SseEmitter {
+
+        private final List<Evento> eventos = new CopyOnWriteArrayList<>();
+        private volatile int comentarios;
+        private volatile int intentos;
+        private volatile boolean enHiloVirtual;
+        private volatile CountDownLatch bloqueo;
+        private volatile boolean bloqueado;
+        private volatile boolean fallar;
+
+        EmisorGrabado(long duracionMaximaMs) {
+            super(duracionMaximaMs);
+        }
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            intentos++;
+            enHiloVirtual |= Thread.currentThread().isVirtual();
+            if (fallar) {
+                throw new IOException("Conexión cerrada");
+            }
+            CountDownLatch espera = bloqueo;
+            if (espera != null) {
+                bloqueo = null;
+                bloqueado = true;
+                try {
+                    espera.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException(e);
+                }
+            }
+            StringBuilder texto = new StringBuilder();
+            for (ResponseBodyEmitter.DataWithMediaType parte : builder.build()) {
+                texto.append(parte.getData());
+            }
+            String id = null;
+            String nombre = null;
+            for (String linea : texto.toString().split("\n")) {
+                if (linea.startsWith("id:")) {
+                    id = linea.substring(3);
+                } else if (linea.startsWith("event:")) {
+                    nombre = linea.substring(6);
+                }
+            }
+            if (nombre != null) {
+                eventos.add(new Evento(id, nombre));
+            } else {
+                comentarios++;
+            }
+        }
+
+        List<Evento> eventos() {
+            return eventos;
+        }
+
+        List<String> nombres() {
+            return eventos.stream().map(Evento::nombre).toList();
+        }
+
+        List<Long> numeros() {
+            return eventos.stream().map(evento -> Long.parseLong(evento.id().substring(evento.id().indexOf('.') + 1)))
+                    .toList();
+        }
+
+        int comentarios() {
+            return comentarios;
+        }
+
+        int intentos() {
+            return intentos;
+        }
+
+        boolean enviosEnHiloVirtual() {
+            return enHiloVirtual;
+        }
+
+        void bloquear(CountDownLatch espera) {
+            this.bloqueo = espera;
+        }
+
+        boolean bloqueado() {
+            return bloqueado;
+        }
+
+        void fallar() {
+            this.fallar = true;
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package com.diw.practica.historial;
+
+import com.diw.practica.dto.LibroResumen;
+import com.diw.practica.eventos.LibroCambiadoEvent;
+import com.diw.practica.model.EventoPrestamo;
+import com.diw.practica.model.Libro;
+import com.diw.practica.repository.EventoPrestamoRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Escritura del historial de préstamos con una base de datos simulada que rechaza eventos o deja
+ * de estar disponible durante un tiempo.
+ */
+class RegistroEventosPrestamoTest {
+
+    /**
+     * Libro cuyos eventos rechaza la base de datos simulada.
+     */
+    private static final int LIBRO_RECHAZADO = 13;
+
+    private final List<EventoPrestamo> escritos = new CopyOnWriteArrayList<>();
+    private final List<EventoPrestamo> pendientesDeFlush = new CopyOnWriteArrayList<>();
+    private final AtomicInteger caidas = new AtomicInteger();
+
+    private MeterRegistry registry;
+    private RegistroEventosPrestamo registro;
+
+    @BeforeEach
+    void preparar() {
+        EntityManager entityManager = mock(EntityManager.class);
+        doAnswer(invocacion -> {
+            pendientesDeFlush.add(invocacion.getArgument(0));
+            return null;
+        }).when(entityManager).persist(any());
+        doAnswer(invocacion -> {
+            boolean rechazado = pendientesDeFlush.stream().anyMatch(evento -> evento.getLibroId() == LIBRO_RECHAZADO);
+            if (rechazado) {
+                pendientesDeFlush.clear();
+                throw new PersistenceException("Restricción violada");
+            }
+            escritos.addAll(pendientesDeFlush);
+            pendientesDeFlush.clear();
+            return null;
+        }).when(entityManager).flush();
+
+        PlatformTransactionManager transacciones = mock(PlatformTransactionManager.class);
+        when(transacciones.getTransaction(any())).thenAnswer(invocacion -> {
+            if (caidas.getAndUpdate(n -> Math.max(0, n - 1)) > 0) {
+                throw new CannotCreateTransactionException("Sin conexión");
+            }
+            return new SimpleTransactionStatus();
+        });
+
+        registry = new SimpleMeterRegistry();
+        registro = new RegistroEventosPrestamo(mock(EventoPrestamoRepository.class), entityManager, transacciones,
+                registry, 100, 50, 500, 10_000);
+    }
+
+    @Test
+    void unEventoRechazadoNoBloqueaAlResto() throws Exception {
+        registro.start();
+        try {
+            registro.registrar(evento(1));
+            registro.registrar(evento(LIBRO_RECHAZADO));
+            registro.registrar(evento(2));
+            esperarHasta(() -> contador(RegistroEventosPrestamo.FALLIDOS) == 1 && escritos.size() == 2);
+        } finally {
+            registro.stop();
+        }
+
+        assertEquals(List.of(1, 2), escritos.stream().map(EventoPrestamo::getLibroId).sorted().toList());
+        assertEquals(2, contador(RegistroEventosPrestamo.ESCRITOS));
+        assertEquals(1, contador(RegistroEventosPrestamo.FALLIDOS));
+        assertEquals(0, registro.pendientes());
+    }
+
+    @Test
+    void unaCaidaDeLaBaseDeDatosSeReintentaSinPerderEventos() throws Exception {
+        // Más fallos seguidos que intentos de lote: al no ser culpa del contenido, no se descarta nada.
+        caidas.set(RegistroEventosPrestamo.INTENTOS_LOTE + 2);
+        registro.start();
+        try {
+            registro.registrar(evento(1));
+            registro.registrar(evento(2));
+            esperarHasta(() -> escritos.size() == 2);
+        } finally {
+            registro.stop();
+        }
+
+        assertEquals(0, caidas.get());
+        assertEquals(2, contador(RegistroEventosPrestamo.ESCRITOS));
+        assertEquals(0, contador(RegistroEventosPrestamo.FALLIDOS));
+    }
+
+    @Test
+    void trasDetenerseEscribeDirectamente() {
+        registro.start();
+        registro.stop();
+
+        registro.registrar(evento(1));
+
+        assertEquals(1, escritos.size());
+        assertEquals(0, registro.pendientes());
+    }
+
+    @Test
+    void unaDevolucionEntregadaAUnaReservaSeRegistraDosVeces() {
+        LibroResumen prestado = new LibroResumen(1, "Libro", "Autor", "isbn", 2008, "Editorial",
+                Libro.Estado.PRESTADO, 4L);
+        LibroResumen reservado = prestado.conEstado(Libro.Estado.RESERVADO, 5L);
+
+        List<EventoPrestamo> eventos = RegistroEventosPrestamo.desde(new LibroCambiadoEvent(
+                LibroCambiadoEvent.Tipo.DEVUELTO, prestado, reservado, 3, 2));
+        List<EventoPrestamo> siguiente = RegistroEventosPrestamo.desde(new LibroCambiadoEvent(
+                LibroCambiadoEvent.Tipo.ACTUALIZADO, reservado, reservado.conEstado(Libro.Estado.RESERVADO, 6L), 2, 1));
+
+        assertEquals(List.of(EventoPrestamo.Tipo.DEVUELTO, EventoPrestamo.Tipo.RESERVADO),
+                eventos.stream().map(EventoPrestamo::getTipo).toList());
+        assertEquals(List.of(3, 2), eventos.stream().map(EventoPrestamo::getUsuarioId).toList());
+        assertEquals(1, siguiente.size());
+        assertEquals(EventoPrestamo.Tipo.RESERVADO, siguiente.get(0).getTipo());
+        assertEquals(1, siguiente.get(0).getUsuarioId());
+    }
+
+    private static EventoPrestamo evento(int libroId) {
+        return new EventoPrestamo(EventoPrestamo.Tipo.PRESTADO, libroId, 3, Instant.now());
+    }
+
+    private double contador(String nombre) {
+        return registry.get(nombre).counter().count();
+    }
+
+    private static void esperarHasta(Condicion condicion) throws InterruptedException {
+        long limite = System.nanoTime() + TimeUnit.SECONDS.toNanos(20);
+        while (!condicion.cumplida()) {
+            if (System.nanoTime() - limite > 0) {
+                fail("No se cumplió la condición a tiempo");
+            }
+            Thread.sleep(20);
+        }
+        assertTrue(condicion.cumplida());
+    }
+
+    @FunctionalInterface
+    private interface Condicion {
+        boolean cumplida();
+    }
+}
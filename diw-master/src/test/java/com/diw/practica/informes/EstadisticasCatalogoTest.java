@@ -0,0 +1,135 @@
+package com.diw.practica.informes;
+
+import com.diw.practica.dto.LibroConPrestatario;
+import com.diw.practica.dto.LibroResumen;
+import com.diw.practica.eventos.LibroCambiadoEvent;
+import com.diw.practica.metricas.Recuento;
+import com.diw.practica.model.Libro;
+import com.diw.practica.model.Usuario;
+import com.diw.practica.repository.LibroRepository;
+import com.diw.practica.repository.UsuarioRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Reconciliación de {@link EstadisticasCatalogo} con eventos aplicados mientras se consultan los
+ * agregados: el resultado no debe depender de si la instantánea de las consultas ya incluía el
+ * cambio.
+ */
+class EstadisticasCatalogoTest {
+
+    private static final int PROFESOR = 7;
+    private static final int ALUMNO = 8;
+
+    private static final LibroResumen DISPONIBLE = libro(1, Libro.Estado.DISPONIBLE);
+    private static final LibroResumen PRESTADO = libro(1, Libro.Estado.PRESTADO);
+    private static final LibroResumen OTRO = libro(2, Libro.Estado.DISPONIBLE);
+    private static final LibroResumen NUEVO = libro(3, Libro.Estado.DISPONIBLE);
+
+    private LibroRepository libroRepository;
+    private UsuarioRepository usuarioRepository;
+    private EstadisticasCatalogo estadisticas;
+
+    @BeforeEach
+    void preparar() {
+        libroRepository = mock(LibroRepository.class);
+        usuarioRepository = mock(UsuarioRepository.class);
+        when(usuarioRepository.findAllById(anyIterable()))
+                .thenReturn(List.of(new Usuario(PROFESOR, "Profesorado", Usuario.Rol.PROFESOR)));
+        estadisticas = new EstadisticasCatalogo(libroRepository, usuarioRepository);
+    }
+
+    @Test
+    void cambioPosteriorALaInstantaneaSeVuelveAAplicar() {
+        // Las consultas ven el catálogo anterior al préstamo y al alta
+        consultasDevuelven(Map.of(Libro.Estado.DISPONIBLE, 2L), List.of(), 2);
+        when(libroRepository.conPrestatarioPorIds(anyCollection()))
+                .thenReturn(List.of(conPrestatario(DISPONIBLE, null)));
+
+        estadisticas.reconciliar();
+
+        comprobarInforme();
+    }
+
+    @Test
+    void cambioIncluidoEnLaInstantaneaNoSeCuentaDosVeces() {
+        // Las consultas ya ven el préstamo y el alta
+        consultasDevuelven(Map.of(Libro.Estado.DISPONIBLE, 2L, Libro.Estado.PRESTADO, 1L),
+                List.of(new PrestamosUsuario(PROFESOR, "Profesorado", Usuario.Rol.PROFESOR, 1)), 3);
+        when(libroRepository.conPrestatarioPorIds(anyCollection()))
+                .thenReturn(List.of(conPrestatario(PRESTADO, PROFESOR), conPrestatario(NUEVO, null)));
+
+        estadisticas.reconciliar();
+
+        comprobarInforme();
+    }
+
+    @Test
+    void unLibroReservadoNoCuentaComoPrestamo() {
+        LibroResumen reservado = libro(1, Libro.Estado.RESERVADO);
+        estadisticas.alCambiarLibro(new LibroCambiadoEvent(LibroCambiadoEvent.Tipo.PRESTADO, DISPONIBLE, PRESTADO,
+                null, ALUMNO));
+        estadisticas.alCambiarLibro(new LibroCambiadoEvent(LibroCambiadoEvent.Tipo.DEVUELTO, PRESTADO, reservado,
+                ALUMNO, PROFESOR));
+
+        InformeCatalogo informe = estadisticas.informe(10);
+        assertEquals(1L, informe.librosPorEstado().get(Libro.Estado.RESERVADO));
+        assertEquals(0L, informe.prestamosPorRol().get(Usuario.Rol.PROFESOR));
+        assertEquals(List.of(), informe.mayoresPrestatarios());
+
+        // Al recogerlo pasa a ser un préstamo del profesor
+        estadisticas.alCambiarLibro(new LibroCambiadoEvent(LibroCambiadoEvent.Tipo.PRESTADO, reservado, PRESTADO,
+                PROFESOR, PROFESOR));
+
+        informe = estadisticas.informe(10);
+        assertEquals(1L, informe.prestamosPorRol().get(Usuario.Rol.PROFESOR));
+        assertEquals(List.of(new PrestamosUsuario(PROFESOR, "Profesorado", Usuario.Rol.PROFESOR, 1)),
+                informe.mayoresPrestatarios());
+    }
+
+    /**
+     * Prepara las consultas agrupadas; la primera aplica, como haría otro hilo, el préstamo del
+     * libro 1 al profesor y el alta del libro 3.
+     */
+    private void consultasDevuelven(Map<Libro.Estado, Long> estados, List<PrestamosUsuario> prestatarios, long libros) {
+        when(libroRepository.contarPorEstado()).thenAnswer(invocacion -> {
+            estadisticas.alCambiarLibro(new LibroCambiadoEvent(LibroCambiadoEvent.Tipo.PRESTADO, DISPONIBLE, PRESTADO,
+                    null, PROFESOR));
+            estadisticas.alCambiarLibro(new LibroCambiadoEvent(LibroCambiadoEvent.Tipo.CREADO, null, NUEVO));
+            return estados.entrySet().stream().map(entrada -> new Recuento(entrada.getKey(), entrada.getValue())).toList();
+        });
+        when(libroRepository.contarPorEditorial()).thenReturn(List.of(new RecuentoEditorial("Editorial", libros)));
+        when(libroRepository.contarPorAnioPublicacion()).thenReturn(List.of(new RecuentoAnio(2008, libros)));
+        when(libroRepository.contarPrestamosPorUsuario()).thenReturn(prestatarios);
+    }
+
+    private void comprobarInforme() {
+        InformeCatalogo informe = estadisticas.informe(10);
+        assertEquals(3, informe.libros());
+        assertEquals(2L, informe.librosPorEstado().get(Libro.Estado.DISPONIBLE));
+        assertEquals(1L, informe.librosPorEstado().get(Libro.Estado.PRESTADO));
+        assertEquals(1L, informe.prestamosPorRol().get(Usuario.Rol.PROFESOR));
+        assertEquals(List.of(new RecuentoEditorial("Editorial", 3)), informe.librosPorEditorial());
+        assertEquals(List.of(new RecuentoDecada(2000, 3)), informe.librosPorDecada());
+        assertEquals(List.of(new PrestamosUsuario(PROFESOR, "Profesorado", Usuario.Rol.PROFESOR, 1)),
+                informe.mayoresPrestatarios());
+    }
+
+    private static LibroResumen libro(int id, Libro.Estado estado) {
+        return new LibroResumen(id, "Libro " + id, "Autor", "isbn-" + id, 2008, "Editorial", estado, 0L);
+    }
+
+    private static LibroConPrestatario conPrestatario(LibroResumen libro, Integer prestatarioId) {
+        return new LibroConPrestatario(libro.id(), libro.titulo(), libro.autor(), libro.isbn(), libro.anioPublicacion(),
+                libro.editorial(), libro.estadoLibro(), libro.version(), prestatarioId);
+    }
+}
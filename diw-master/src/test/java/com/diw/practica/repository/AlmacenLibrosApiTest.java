@@ -0,0 +1,144 @@
+package com.diw.practica.repository;
+
+import com.diw.practica.dto.LibroApi;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Pruebas de estrés de {@link AlmacenLibrosApi}: varios hilos crean, modifican, borran y listan a
+ * la vez y, al terminar, el contenido debe cuadrar con lo que cada hilo hizo.
+ */
+class AlmacenLibrosApiTest {
+
+    private static final int CAPACIDAD = 507;
+    private static final int HILOS = 16;
+
+    @Test
+    void laCapacidadSeRespetaConAltasSimultaneas() throws Exception {
+        AlmacenLibrosApi almacen = new AlmacenLibrosApi(CAPACIDAD);
+        AtomicInteger rechazadas = new AtomicInteger();
+
+        List<List<Long>> creadosPorHilo = enParalelo(hilo -> {
+            List<Long> creados = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                try {
+                    creados.add(almacen.crear("Título " + hilo + "-" + i, "Autor").id());
+                } catch (AlmacenLibrosApi.CapacidadAgotadaException e) {
+                    rechazadas.incrementAndGet();
+                }
+            }
+            return creados;
+        });
+
+        Set<Long> ids = new HashSet<>();
+        creadosPorHilo.forEach(creados -> creados.forEach(id -> assertTrue(ids.add(id), "Id repetido: " + id)));
+        assertEquals(CAPACIDAD, ids.size());
+        assertEquals(HILOS * 100 - CAPACIDAD, rechazadas.get());
+        assertEquals(CAPACIDAD, almacen.tamanio());
+        assertEquals(ids, idsListados(almacen.listar()));
+    }
+
+    @Test
+    void operacionesMezcladasNoPierdenNiRepitenIds() throws Exception {
+        AlmacenLibrosApi almacen = new AlmacenLibrosApi(CAPACIDAD);
+        Set<Long> eliminados = ConcurrentHashMap.newKeySet();
+
+        List<List<Long>> creadosPorHilo = enParalelo(hilo -> {
+            ThreadLocalRandom azar = ThreadLocalRandom.current();
+            List<Long> creados = new ArrayList<>();
+            List<Long> vivos = new ArrayList<>();
+            for (int i = 0; i < 2_000; i++) {
+                int operacion = azar.nextInt(10);
+                if (operacion < 4) {
+                    try {
+                        long id = almacen.crear("Título " + hilo + "-" + i, "Autor " + hilo).id();
+                        creados.add(id);
+                        vivos.add(id);
+                    } catch (AlmacenLibrosApi.CapacidadAgotadaException e) {
+                        // Lleno: el siguiente borrado de algún hilo dejará sitio
+                    }
+                } else if (operacion < 6 && !vivos.isEmpty()) {
+                    long id = vivos.get(azar.nextInt(vivos.size()));
+                    LibroApi modificado = almacen.actualizar(id, "Modificado " + i, "Autor " + hilo).orElseThrow();
+                    assertEquals("Modificado " + i, modificado.titulo());
+                } else if (operacion < 8 && !vivos.isEmpty()) {
+                    long id = vivos.remove(azar.nextInt(vivos.size()));
+                    assertTrue(almacen.eliminar(id), "El libro " + id + " ya no estaba");
+                    eliminados.add(id);
+                } else {
+                    List<LibroApi> listado = almacen.listar();
+                    assertTrue(listado.size() <= CAPACIDAD, "Listado por encima de la capacidad: " + listado.size());
+                    assertEquals(listado.size(), idsListados(listado).size(), "Listado con ids repetidos");
+                    for (int j = 1; j < listado.size(); j++) {
+                        assertTrue(listado.get(j - 1).id() < listado.get(j).id(), "Listado fuera del orden de alta");
+                    }
+                }
+            }
+            return creados;
+        });
+
+        Set<Long> esperados = new HashSet<>();
+        creadosPorHilo.forEach(creados -> creados.forEach(id -> assertTrue(esperados.add(id), "Id repetido: " + id)));
+        esperados.removeAll(eliminados);
+        assertEquals(esperados, idsListados(almacen.listar()));
+        assertEquals(esperados.size(), almacen.tamanio());
+    }
+
+    /**
+     * Ejecuta la tarea en {@value #HILOS} hilos que arrancan a la vez y devuelve sus resultados.
+     */
+    private static <T> List<T> enParalelo(Tarea<T> tarea) throws Exception {
+        CountDownLatch salida = new CountDownLatch(1);
+        ExecutorService hilos = Executors.newFixedThreadPool(HILOS);
+        try {
+            List<Future<T>> futuros = new ArrayList<>();
+            for (int i = 0; i < HILOS; i++) {
+                int hilo = i;
+                Callable<T> llamada = () -> {
+                    salida.await();
+                    return tarea.ejecutar(hilo);
+                };
+                futuros.add(hilos.submit(llamada));
+            }
+            salida.countDown();
+            List<T> resultados = new ArrayList<>();
+            for (Future<T> futuro : futuros) {
+                resultados.add(futuro.get(60, TimeUnit.SECONDS));
+            }
+            return resultados;
+        } finally {
+            hilos.shutdownNow();
+            if (!hilos.awaitTermination(30, TimeUnit.SECONDS)) {
+                fail("Los hilos de la prueba no terminaron");
+            }
+        }
+    }
+
+    private static Set<Long> idsListados(List<LibroApi> listado) {
+        Set<Long> ids = new HashSet<>();
+        listado.forEach(libro -> ids.add(libro.id()));
+        return ids;
+    }
+
+    @FunctionalInterface
+    private interface Tarea<T> {
+        T ejecutar(int hilo) throws Exception;
+    }
+}
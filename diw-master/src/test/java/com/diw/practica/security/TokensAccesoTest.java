@@ -0,0 +1,118 @@
+package com.diw.practica.security;
+
+import com.diw.practica.dto.TokenAcceso;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.AuthorityUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Firma, caducidad y manipulación de los tokens de {@link TokensAcceso}.
+ */
+class TokensAccesoTest {
+
+    private static final String SECRETO = secreto('a');
+    private static final Base64.Encoder BASE64URL = Base64.getUrlEncoder().withoutPadding();
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final TokensAcceso tokens = new TokensAcceso(objectMapper, SECRETO, Duration.ofMinutes(15), false);
+
+    @Test
+    void unTokenEmitidoSeVerificaConSuUsuarioYRoles() {
+        TokenAcceso emitido = tokens.emitir(usuario("ROLE_USER", "ROLE_ADMIN"));
+
+        Authentication verificado = tokens.verificar(emitido.token()).orElseThrow();
+
+        assertEquals("ana", verificado.getName());
+        assertTrue(verificado.isAuthenticated());
+        assertEquals(Set.of("ROLE_USER", "ROLE_ADMIN"), AuthorityUtils.authorityListToSet(verificado.getAuthorities()));
+        assertEquals(TokensAcceso.TIPO, emitido.tipo());
+        assertEquals(15 * 60, emitido.segundosValidez());
+    }
+
+    @Test
+    void noSeAceptaUnTokenFirmadoConOtraClave() {
+        TokensAcceso otraInstancia = new TokensAcceso(objectMapper, secreto('b'), Duration.ofMinutes(15), false);
+
+        String ajeno = otraInstancia.emitir(usuario("ROLE_USER")).token();
+
+        assertTrue(tokens.verificar(ajeno).isEmpty());
+    }
+
+    @Test
+    void unTokenCaducadoNoSeAcepta() {
+        TokensAcceso sinDuracion = new TokensAcceso(objectMapper, SECRETO, Duration.ZERO, false);
+        TokensAcceso caducados = new TokensAcceso(objectMapper, SECRETO, Duration.ofSeconds(-1), false);
+
+        assertTrue(tokens.verificar(sinDuracion.emitir(usuario("ROLE_USER")).token()).isEmpty());
+        assertTrue(tokens.verificar(caducados.emitir(usuario("ROLE_USER")).token()).isEmpty());
+    }
+
+    @Test
+    void cambiarElContenidoInvalidaLaFirma() {
+        String[] partes = tokens.emitir(usuario("ROLE_USER")).token().split("\\.");
+        String contenido = new String(Base64.getUrlDecoder().decode(partes[1]), StandardCharsets.UTF_8);
+        String elevado = contenido.replace("\"ROLE_USER\"", "\"ROLE_ADMIN\"");
+
+        assertTrue(tokens.verificar(partes[0] + "." + base64(elevado) + "." + partes[2]).isEmpty());
+    }
+
+    @Test
+    void rechazaOtrosAlgoritmosYTokensMalFormados() {
+        String token = tokens.emitir(usuario("ROLE_USER")).token();
+        String[] partes = token.split("\\.");
+        String sinFirma = base64("{\"alg\":\"none\",\"typ\":\"JWT\"}") + "." + partes[1] + ".";
+        String otraCabecera = base64("{\"typ\":\"JWT\",\"alg\":\"HS256\"}") + "." + partes[1] + "." + partes[2];
+
+        assertTrue(tokens.verificar(sinFirma).isEmpty());
+        assertTrue(tokens.verificar(otraCabecera).isEmpty());
+        assertTrue(tokens.verificar(partes[0] + "." + partes[1]).isEmpty());
+        assertTrue(tokens.verificar(token + ".x").isEmpty());
+        assertTrue(tokens.verificar(token.substring(0, token.length() - 2)).isEmpty());
+        assertTrue(tokens.verificar(partes[0] + "." + partes[1] + ".%%%").isEmpty());
+        assertTrue(tokens.verificar("").isEmpty());
+    }
+
+    @Test
+    void sinSecretoNoArrancaSalvoQueSeAdmitaUnaClaveAleatoria() {
+        assertThrows(IllegalStateException.class, () -> new TokensAcceso(objectMapper, "", Duration.ofMinutes(15), false));
+        assertThrows(IllegalStateException.class, () -> new TokensAcceso(objectMapper, "  ", Duration.ofMinutes(15), false));
+
+        TokensAcceso aleatoria = new TokensAcceso(objectMapper, "", Duration.ofMinutes(15), true);
+        TokensAcceso otraAleatoria = new TokensAcceso(objectMapper, "", Duration.ofMinutes(15), true);
+        String token = aleatoria.emitir(usuario("ROLE_USER")).token();
+
+        assertTrue(aleatoria.verificar(token).isPresent());
+        assertTrue(otraAleatoria.verificar(token).isEmpty());
+    }
+
+    @Test
+    void rechazaSecretosCortosONoBase64() {
+        String corto = Base64.getEncoder().encodeToString(new byte[16]);
+
+        assertThrows(IllegalStateException.class, () -> new TokensAcceso(objectMapper, corto, Duration.ofMinutes(15), false));
+        assertThrows(IllegalStateException.class, () -> new TokensAcceso(objectMapper, "no es base64!", Duration.ofMinutes(15), false));
+    }
+
+    private static Authentication usuario(String... roles) {
+        return UsernamePasswordAuthenticationToken.authenticated("ana", null, AuthorityUtils.createAuthorityList(roles));
+    }
+
+    private static String secreto(char relleno) {
+        return Base64.getEncoder().encodeToString(String.valueOf(relleno).repeat(32).getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static String base64(String texto) {
+        return BASE64URL.encodeToString(texto.getBytes(StandardCharsets.UTF_8));
+    }
+}